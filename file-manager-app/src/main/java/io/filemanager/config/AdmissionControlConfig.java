@@ -0,0 +1,113 @@
+package io.filemanager.config;
+
+import io.filemanager.web.admission.AdmissionControlFilter;
+import io.filemanager.web.admission.AdmissionController;
+import io.filemanager.web.admission.EndpointClass;
+import io.filemanager.web.admission.HeapPressure;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Optional admission control and load shedding for the upload, archive and download endpoints.
+ * Enabled with {@code admission.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true")
+public class AdmissionControlConfig {
+
+    @Bean
+    AdmissionControlProperties uploadAdmissionProperties(@Value("${admission.upload.max-in-flight:64}") Integer maxInFlight,
+                                                         @Value("${admission.upload.max-queue-size:128}") Integer maxQueueSize,
+                                                         @Value("${admission.upload.max-queue-time-ms:2000}") Long maxQueueTimeMs,
+                                                         @Value("${admission.upload.memory-budget-mb:512}") Long memoryBudgetMb,
+                                                         @Value("${admission.upload.request-cost-kb:10240}") Long requestCostKb,
+                                                         @Value("${admission.upload.priority:10}") Integer priority,
+                                                         @Value("${admission.upload.retry-after-seconds:2}") Long retryAfterSeconds) {
+        return AdmissionControlProperties.builder()
+                .maxInFlight(maxInFlight)
+                .maxQueueSize(maxQueueSize)
+                .maxQueueTimeMs(maxQueueTimeMs)
+                .memoryBudgetMb(memoryBudgetMb)
+                .requestCostKb(requestCostKb)
+                .priority(priority)
+                .retryAfterSeconds(retryAfterSeconds)
+                .build();
+    }
+
+    @Bean
+    AdmissionControlProperties archiveAdmissionProperties(@Value("${admission.archive.max-in-flight:16}") Integer maxInFlight,
+                                                          @Value("${admission.archive.max-queue-size:32}") Integer maxQueueSize,
+                                                          @Value("${admission.archive.max-queue-time-ms:1000}") Long maxQueueTimeMs,
+                                                          @Value("${admission.archive.memory-budget-mb:256}") Long memoryBudgetMb,
+                                                          @Value("${admission.archive.request-cost-kb:4096}") Long requestCostKb,
+                                                          @Value("${admission.archive.priority:1}") Integer priority,
+                                                          @Value("${admission.archive.retry-after-seconds:10}") Long retryAfterSeconds) {
+        return AdmissionControlProperties.builder()
+                .maxInFlight(maxInFlight)
+                .maxQueueSize(maxQueueSize)
+                .maxQueueTimeMs(maxQueueTimeMs)
+                .memoryBudgetMb(memoryBudgetMb)
+                .requestCostKb(requestCostKb)
+                .priority(priority)
+                .retryAfterSeconds(retryAfterSeconds)
+                .build();
+    }
+
+    @Bean
+    AdmissionControlProperties downloadAdmissionProperties(@Value("${admission.download.max-in-flight:256}") Integer maxInFlight,
+                                                           @Value("${admission.download.max-queue-size:512}") Integer maxQueueSize,
+                                                           @Value("${admission.download.max-queue-time-ms:1000}") Long maxQueueTimeMs,
+                                                           @Value("${admission.download.memory-budget-mb:256}") Long memoryBudgetMb,
+                                                           @Value("${admission.download.request-cost-kb:256}") Long requestCostKb,
+                                                           @Value("${admission.download.priority:5}") Integer priority,
+                                                           @Value("${admission.download.retry-after-seconds:1}") Long retryAfterSeconds) {
+        return AdmissionControlProperties.builder()
+                .maxInFlight(maxInFlight)
+                .maxQueueSize(maxQueueSize)
+                .maxQueueTimeMs(maxQueueTimeMs)
+                .memoryBudgetMb(memoryBudgetMb)
+                .requestCostKb(requestCostKb)
+                .priority(priority)
+                .retryAfterSeconds(retryAfterSeconds)
+                .build();
+    }
+
+    /**
+     * Runs before every other filter, so rejected requests cost as little as possible.
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public AdmissionControlFilter admissionControlFilter(AdmissionControlProperties uploadAdmissionProperties,
+                                                         AdmissionControlProperties archiveAdmissionProperties,
+                                                         AdmissionControlProperties downloadAdmissionProperties,
+                                                         @Value("${admission.heap-shed-threshold:0.9}") Double heapShedThreshold,
+                                                         @Value("${admission.critical-priority:10}") Integer criticalPriority) {
+        Map<EndpointClass, AdmissionControlFilter.ClassPolicy> policies = new EnumMap<>(EndpointClass.class);
+        policies.put(EndpointClass.UPLOAD, policy(EndpointClass.UPLOAD, uploadAdmissionProperties));
+        policies.put(EndpointClass.ARCHIVE, policy(EndpointClass.ARCHIVE, archiveAdmissionProperties));
+        policies.put(EndpointClass.DOWNLOAD, policy(EndpointClass.DOWNLOAD, downloadAdmissionProperties));
+
+        log.info("Enabling admission control for {}, shedding priorities below {} above {}% heap",
+                policies.keySet(), criticalPriority, Math.round(heapShedThreshold * 100));
+        return new AdmissionControlFilter(policies, new HeapPressure()::current, heapShedThreshold, criticalPriority);
+    }
+
+    private AdmissionControlFilter.ClassPolicy policy(EndpointClass endpointClass, AdmissionControlProperties properties) {
+        AdmissionController controller = new AdmissionController(endpointClass,
+                properties.getMaxInFlight(),
+                properties.getMaxQueueSize(),
+                properties.getMaxQueueTime(),
+                properties.getMemoryBudgetBytes());
+        return new AdmissionControlFilter.ClassPolicy(controller, properties.getRequestCostBytes(),
+                properties.getPriority(), properties.getRetryAfterSeconds());
+    }
+}
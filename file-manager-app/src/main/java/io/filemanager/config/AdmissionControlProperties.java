@@ -0,0 +1,35 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class AdmissionControlProperties {
+    // Requests of the class that may run at the same time
+    private Integer maxInFlight;
+    // Requests over the limit wait in a queue of this size for at most max-queue-time-ms
+    private Integer maxQueueSize;
+    private Long maxQueueTimeMs;
+    // Memory the running requests of the class may hold, and the estimate per request
+    private Long memoryBudgetMb;
+    private Long requestCostKb;
+    // Classes below admission.critical-priority are shed first under memory pressure
+    private Integer priority;
+    // Sent as Retry-After on 429 and 503
+    private Long retryAfterSeconds;
+
+    public Duration getMaxQueueTime() {
+        return Duration.ofMillis(maxQueueTimeMs);
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetMb * 1024 * 1024;
+    }
+
+    public long getRequestCostBytes() {
+        return requestCostKb * 1024;
+    }
+}
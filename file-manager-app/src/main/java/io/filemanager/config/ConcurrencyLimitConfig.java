@@ -0,0 +1,71 @@
+package io.filemanager.config;
+
+import io.filemanager.storage.api.FileStorageDecorator;
+import io.filemanager.storage.limiter.AdaptiveConcurrencyLimiter;
+import io.filemanager.storage.limiter.CircuitBreaker;
+import io.filemanager.storage.limiter.ConcurrencyLimitedFileStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Optional adaptive concurrency limit and circuit breaker per storage backend.
+ * Enabled with {@code storage.limiter.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "storage.limiter.enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    ConcurrencyLimitProperties concurrencyLimitProperties(@Value("${storage.limiter.initial-limit:20}") Integer initialLimit,
+                                                          @Value("${storage.limiter.min-limit:2}") Integer minLimit,
+                                                          @Value("${storage.limiter.max-limit:200}") Integer maxLimit,
+                                                          @Value("${storage.limiter.max-queue-size:100}") Integer maxQueueSize,
+                                                          @Value("${storage.limiter.max-wait-ms:5000}") Long maxWaitMs,
+                                                          @Value("${storage.limiter.failure-threshold:5}") Integer failureThreshold,
+                                                          @Value("${storage.limiter.open-duration-ms:10000}") Long openDurationMs) {
+        return ConcurrencyLimitProperties.builder()
+                .initialLimit(initialLimit)
+                .minLimit(minLimit)
+                .maxLimit(maxLimit)
+                .maxQueueSize(maxQueueSize)
+                .maxWaitMs(maxWaitMs)
+                .failureThreshold(failureThreshold)
+                .openDurationMs(openDurationMs)
+                .build();
+    }
+
+    /**
+     * Ordered first, so it wraps the adapter directly and also counts hedged requests.
+     * Every adapter (one per StorageType) gets its own limit and circuit breaker.
+     */
+    @Bean
+    @Order(10)
+    public FileStorageDecorator concurrencyLimitDecorator(ConcurrencyLimitProperties properties,
+                                                          @Value("${storage.metrics-enabled:false}") boolean metricsEnabled,
+                                                          MeterRegistry meterRegistry) {
+        log.info("Enabling adaptive concurrency limits ({}..{}) for storage backends",
+                properties.getMinLimit(), properties.getMaxLimit());
+        return storage -> {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(storage.getStorageType().name(),
+                    properties.getInitialLimit(),
+                    properties.getMinLimit(),
+                    properties.getMaxLimit(),
+                    properties.getMaxQueueSize(),
+                    properties.getMaxWait());
+            if (metricsEnabled) {
+                StorageMetrics.gauge(meterRegistry, "storage.limiter.limit", storage, limiter, AdaptiveConcurrencyLimiter::getLimit);
+                StorageMetrics.gauge(meterRegistry, "storage.limiter.in.flight", storage, limiter, AdaptiveConcurrencyLimiter::getInFlight);
+                StorageMetrics.gauge(meterRegistry, "storage.limiter.queued", storage, limiter, AdaptiveConcurrencyLimiter::getQueued);
+                StorageMetrics.count(meterRegistry, "storage.limiter.rejected", storage, limiter, AdaptiveConcurrencyLimiter::getRejectedCount);
+            }
+            return new ConcurrencyLimitedFileStorage(storage, limiter,
+                    new CircuitBreaker(properties.getFailureThreshold(), properties.getOpenDuration()));
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class ConcurrencyLimitProperties {
+    // Bounds of the adaptive in-flight limit per storage backend
+    private Integer initialLimit;
+    private Integer minLimit;
+    private Integer maxLimit;
+    // Requests over the limit wait in a queue of this size for at most max-wait-ms
+    private Integer maxQueueSize;
+    private Long maxWaitMs;
+    // Consecutive backend failures that open the circuit, and how long it stays open
+    private Integer failureThreshold;
+    private Long openDurationMs;
+
+    public Duration getMaxWait() {
+        return Duration.ofMillis(maxWaitMs);
+    }
+
+    public Duration getOpenDuration() {
+        return Duration.ofMillis(openDurationMs);
+    }
+}
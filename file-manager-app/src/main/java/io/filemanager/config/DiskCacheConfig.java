@@ -0,0 +1,72 @@
+package io.filemanager.config;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.storage.api.FileStorageDecorator;
+import io.filemanager.storage.cache.DiskCache;
+import io.filemanager.storage.cache.DiskCachingFileStorage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+import java.nio.file.Path;
+
+/**
+ * Optional local disk cache in front of all storage adapters for hot downloads.
+ * Enabled with {@code storage.cache.disk.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "storage.cache.disk.enabled", havingValue = "true")
+public class DiskCacheConfig {
+
+    @Bean
+    DiskCacheProperties diskCacheProperties(@Value("${storage.cache.disk.directory:${java.io.tmpdir}/file-manager-cache}") String directory,
+                                            @Value("${storage.cache.disk.max-size-mb:1024}") Long maxSizeMb,
+                                            @Value("${storage.cache.disk.max-entry-size-mb:256}") Long maxEntrySizeMb) {
+        return DiskCacheProperties.builder()
+                .directory(directory)
+                .maxSizeMb(maxSizeMb)
+                .maxEntrySizeMb(maxEntrySizeMb)
+                .build();
+    }
+
+    @Bean
+    public DiskCache diskCache(DiskCacheProperties diskCacheProperties,
+                               @Value("${storage.metrics-enabled:false}") boolean metricsEnabled,
+                               MeterRegistry meterRegistry) {
+        DiskCache diskCache = new DiskCache(Path.of(diskCacheProperties.getDirectory()),
+                diskCacheProperties.getMaxSizeBytes(),
+                diskCacheProperties.getMaxEntrySizeBytes());
+        if (metricsEnabled) {
+            Gauge.builder("storage.cache.disk.size", diskCache, DiskCache::getCurrentSizeBytes)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        return diskCache;
+    }
+
+    @Bean
+    @Order(100)
+    public FileStorageDecorator diskCacheDecorator(DiskCache diskCache,
+                                                   @Value("${storage.metrics-enabled:false}") boolean metricsEnabled,
+                                                   MeterRegistry meterRegistry) {
+        log.info("Enabling disk cache for storage downloads");
+        return storage -> {
+            // Files that already live on the local file system gain nothing from a second local copy.
+            if (storage.getStorageType() == StorageType.LOCAL) {
+                return storage;
+            }
+            DiskCachingFileStorage cached = new DiskCachingFileStorage(storage, diskCache);
+            if (metricsEnabled) {
+                StorageMetrics.count(meterRegistry, "storage.cache.disk.hits", storage, cached, DiskCachingFileStorage::getHitCount);
+                StorageMetrics.count(meterRegistry, "storage.cache.disk.misses", storage, cached, DiskCachingFileStorage::getMissCount);
+            }
+            return cached;
+        };
+    }
+}
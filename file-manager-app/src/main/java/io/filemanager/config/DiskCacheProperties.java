@@ -0,0 +1,20 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class DiskCacheProperties {
+    private String directory;
+    private Long maxSizeMb;
+    private Long maxEntrySizeMb;
+
+    public long getMaxSizeBytes() {
+        return maxSizeMb * 1024 * 1024;
+    }
+
+    public long getMaxEntrySizeBytes() {
+        return maxEntrySizeMb * 1024 * 1024;
+    }
+}
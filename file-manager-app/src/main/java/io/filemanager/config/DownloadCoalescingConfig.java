@@ -0,0 +1,41 @@
+package io.filemanager.config;
+
+import io.filemanager.storage.api.FileStorageDecorator;
+import io.filemanager.storage.coalescing.CoalescingFileStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Optional single-flight coalescing of concurrent downloads of the same object.
+ * Enabled with {@code storage.coalescing.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "storage.coalescing.enabled", havingValue = "true")
+public class DownloadCoalescingConfig {
+
+    /**
+     * Ordered below the disk cache, so concurrent cache misses share one backend stream.
+     */
+    @Bean
+    @Order(50)
+    public FileStorageDecorator coalescingDecorator(@Value("${storage.coalescing.replay-chunks:64}") Integer replayChunks,
+                                                    @Value("${storage.metrics-enabled:false}") boolean metricsEnabled,
+                                                    MeterRegistry meterRegistry) {
+        log.info("Enabling download coalescing with a replay buffer of {} chunks", replayChunks);
+        return storage -> {
+            CoalescingFileStorage coalescing = new CoalescingFileStorage(storage, replayChunks);
+            if (metricsEnabled) {
+                StorageMetrics.count(meterRegistry, "storage.coalescing.backend.streams", storage, coalescing, CoalescingFileStorage::getBackendStreamCount);
+                StorageMetrics.count(meterRegistry, "storage.coalescing.coalesced", storage, coalescing, CoalescingFileStorage::getCoalescedRequestCount);
+                StorageMetrics.count(meterRegistry, "storage.coalescing.late.joiners", storage, coalescing, CoalescingFileStorage::getLateJoinerFallbackCount);
+            }
+            return coalescing;
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package io.filemanager.config;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.storage.api.FileStorageDecorator;
+import io.filemanager.storage.resume.ResumingFileStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+import java.time.Duration;
+
+/**
+ * Optional resuming of interrupted downloads with ranged re-fetches.
+ * Enabled with {@code storage.resume.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "storage.resume.enabled", havingValue = "true")
+public class DownloadResumeConfig {
+
+    /**
+     * Ordered above hedging and the concurrency limit, so every re-fetch goes through them, and
+     * below coalescing and the disk cache, which then see one continuous stream.
+     */
+    @Bean
+    @Order(30)
+    public FileStorageDecorator resumeDecorator(@Value("${storage.resume.max-retries:3}") Integer maxRetries,
+                                                @Value("${storage.resume.min-backoff-ms:200}") Long minBackoffMs,
+                                                @Value("${storage.resume.max-backoff-ms:5000}") Long maxBackoffMs,
+                                                @Value("${storage.metrics-enabled:false}") boolean metricsEnabled,
+                                                MeterRegistry meterRegistry) {
+        log.info("Enabling resume of interrupted downloads with up to {} retries", maxRetries);
+        return storage -> {
+            // Local reads don't fail on transient network errors.
+            if (storage.getStorageType() == StorageType.LOCAL) {
+                return storage;
+            }
+            ResumingFileStorage resuming = new ResumingFileStorage(storage, maxRetries,
+                    Duration.ofMillis(minBackoffMs), Duration.ofMillis(maxBackoffMs));
+            if (metricsEnabled) {
+                StorageMetrics.count(meterRegistry, "storage.resume.resumes", storage, resuming, ResumingFileStorage::getResumeCount);
+                StorageMetrics.count(meterRegistry, "storage.resume.bytes.saved", storage, resuming, ResumingFileStorage::getBytesSaved);
+            }
+            return resuming;
+        };
+    }
+}
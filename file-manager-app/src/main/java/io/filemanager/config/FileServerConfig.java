@@ -1,6 +1,7 @@
 package io.filemanager.config;
 
 import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -8,10 +9,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 
+@Slf4j
 @Configuration
 public class FileServerConfig {
 
@@ -21,27 +26,84 @@ public class FileServerConfig {
                                               @Value("${file-server.port}") Integer port,
                                               @Value("${file-server.secure:false}") Boolean secure,
                                               @Value("${file-server.connection-timeout-ms:10000}") Integer connectionTimeoutMs,
-                                              @Value("${file-server.response-timeout-seconds:600}") Integer responseTimeoutSeconds) {
+                                              @Value("${file-server.response-timeout-seconds:600}") Integer responseTimeoutSeconds,
+                                              @Value("${file-server.protocol:HTTP11}") HttpProtocol protocol,
+                                              @Value("${file-server.max-connections:500}") Integer maxConnections,
+                                              @Value("${file-server.max-concurrent-streams:100}") Integer maxConcurrentStreams,
+                                              @Value("${file-server.pending-acquire-max-count:1000}") Integer pendingAcquireMaxCount,
+                                              @Value("${file-server.metrics-enabled:false}") Boolean metricsEnabled) {
+        if (protocol == HttpProtocol.H2 && !secure) {
+            // h2 is only offered through ALPN; cleartext HTTP/2 needs file-server.protocol=H2C
+            throw new IllegalStateException("file-server.protocol=H2 requires file-server.secure=true, use H2C for cleartext HTTP/2");
+        }
         return FileServerProperties.builder()
                 .secure(secure)
                 .host(host)
                 .port(port)
                 .connectionTimeoutMs(connectionTimeoutMs)
                 .responseTimeoutSeconds(responseTimeoutSeconds)
+                .protocol(protocol)
+                .maxConnections(maxConnections)
+                .maxConcurrentStreams(maxConcurrentStreams)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .metricsEnabled(metricsEnabled)
                 .build();
     }
 
+    /**
+     * Dedicated connection pool for the file server. With HTTP/2 the allocation strategy multiplexes
+     * up to max-concurrent-streams requests over each connection before another one is opened.
+     * Pool metrics are published when enabled. Reactor Netty always records to the Micrometer global
+     * registry, which Spring Boot adds the application's meter registry to.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider fileServerConnectionProvider(FileServerProperties fileServerProperties) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("file-server")
+                .maxConnections(fileServerProperties.getMaxConnections())
+                .pendingAcquireMaxCount(fileServerProperties.getPendingAcquireMaxCount())
+                .metrics(fileServerProperties.isMetricsEnabled());
+
+        if (fileServerProperties.isHttp2()) {
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                    .minConnections(1)
+                    .maxConnections(fileServerProperties.getMaxConnections())
+                    .maxConcurrentStreams(fileServerProperties.getMaxConcurrentStreams())
+                    .build());
+        }
+        return builder.build();
+    }
+
     @Bean
     @Qualifier("streamingWebClient")
-    public WebClient streamingWebClient(FileServerProperties fileServerProperties) {
+    public WebClient streamingWebClient(FileServerProperties fileServerProperties,
+                                        ConnectionProvider fileServerConnectionProvider) {
+        log.info("Configuring file server WebClient for {} using {}", fileServerProperties.getUri(), fileServerProperties.getProtocol());
+
+        HttpClient httpClient = HttpClient.create(fileServerConnectionProvider)
+                .responseTimeout(Duration.ofSeconds(fileServerProperties.getResponseTimeoutSeconds()))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, fileServerProperties.getConnectionTimeoutMs())
+                // Configure smaller buffer sizes for more frequent chunks
+                .option(ChannelOption.SO_RCVBUF, 8192) // 8KB receive buffer
+                // Keep the URI tag low-cardinality: one tag per endpoint, not per file key
+                .metrics(fileServerProperties.isMetricsEnabled(), uri -> uri.replaceAll("^(/[^/]+/).*$", "$1{key}"));
+
+        httpClient = switch (fileServerProperties.getProtocol()) {
+            // h2 is negotiated through ALPN (file-server.secure is checked at startup) and falls back to
+            // HTTP/1.1 if the server doesn't offer it.
+            case H2 -> httpClient
+                    .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                    // The default SSL context for an H2 client already advertises h2 and http/1.1 via ALPN.
+                    .secure()
+                    .http2Settings(settings -> settings.maxConcurrentStreams(fileServerProperties.getMaxConcurrentStreams()));
+            // h2c with prior knowledge; the HTTP/1.1 upgrade dance doesn't work with streamed request bodies.
+            case H2C -> httpClient
+                    .protocol(HttpProtocol.H2C)
+                    .http2Settings(settings -> settings.maxConcurrentStreams(fileServerProperties.getMaxConcurrentStreams()));
+            default -> httpClient;
+        };
+
         return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(
-                        HttpClient.create()
-                                .responseTimeout(Duration.ofSeconds(fileServerProperties.getResponseTimeoutSeconds()))
-                                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, fileServerProperties.getConnectionTimeoutMs())
-                                // Configure smaller buffer sizes for more frequent chunks
-                                .option(ChannelOption.SO_RCVBUF, 8192) // 8KB receive buffer
-                ))
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .codecs(configurer -> {
                     configurer.defaultCodecs()
                             // Keep this small to avoid buffering large amounts
@@ -50,4 +112,4 @@ public class FileServerConfig {
                 .baseUrl(fileServerProperties.getUri())
                 .build();
     }
-}
\ No newline at end of file
+}
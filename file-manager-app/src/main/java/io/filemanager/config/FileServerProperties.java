@@ -2,6 +2,7 @@ package io.filemanager.config;
 
 import lombok.Builder;
 import lombok.Data;
+import reactor.netty.http.HttpProtocol;
 
 @Data
 @Builder
@@ -13,8 +14,26 @@ public class FileServerProperties {
     private Integer connectionTimeoutMs;
     private Integer responseTimeoutSeconds;
 
+    // HTTP11, H2 (TLS with ALPN, falls back to HTTP/1.1) or H2C (cleartext, prior knowledge)
+    @Builder.Default
+    private HttpProtocol protocol = HttpProtocol.HTTP11;
+    // HTTP/1.1: one request per connection. HTTP/2: a new connection is only opened once all
+    // streams on the existing ones are in use. Defaults match the reactor-netty global pool.
+    @Builder.Default
+    private Integer maxConnections = 500;
+    @Builder.Default
+    private Integer maxConcurrentStreams = 100;
+    @Builder.Default
+    private Integer pendingAcquireMaxCount = 1000;
+    @Builder.Default
+    private boolean metricsEnabled = false;
+
     public String getUri() {
         String schema = secure ? "https" : "http";
         return schema + "://" + host + ":" + port;
     }
+
+    public boolean isHttp2() {
+        return protocol == HttpProtocol.H2 || protocol == HttpProtocol.H2C;
+    }
 }
@@ -0,0 +1,68 @@
+package io.filemanager.config;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.storage.api.FileStorageDecorator;
+import io.filemanager.storage.hedging.HedgingFileStorage;
+import io.filemanager.storage.hedging.LatencyTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Optional hedging of slow downloads from remote storage backends.
+ * Enabled with {@code storage.hedging.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "storage.hedging.enabled", havingValue = "true")
+public class HedgingConfig {
+
+    @Bean
+    HedgingProperties hedgingProperties(@Value("${storage.hedging.percentile:0.95}") Double percentile,
+                                        @Value("${storage.hedging.budget-ratio:0.05}") Double budgetRatio,
+                                        @Value("${storage.hedging.min-delay-ms:20}") Long minDelayMs,
+                                        @Value("${storage.hedging.window-size:1000}") Integer windowSize,
+                                        @Value("${storage.hedging.min-samples:100}") Integer minSamples) {
+        return HedgingProperties.builder()
+                .percentile(percentile)
+                .budgetRatio(budgetRatio)
+                .minDelayMs(minDelayMs)
+                .windowSize(windowSize)
+                .minSamples(minSamples)
+                .build();
+    }
+
+    /**
+     * Ordered below coalescing and caching, so only requests that really go to the backend are
+     * hedged. Every adapter gets its own latency tracker, as S3 and the file server differ a lot.
+     */
+    @Bean
+    @Order(20)
+    public FileStorageDecorator hedgingDecorator(HedgingProperties hedgingProperties,
+                                                 @Value("${storage.metrics-enabled:false}") boolean metricsEnabled,
+                                                 MeterRegistry meterRegistry) {
+        log.info("Enabling hedged downloads at p{} with a budget ratio of {}",
+                Math.round(hedgingProperties.getPercentile() * 100), hedgingProperties.getBudgetRatio());
+        return storage -> {
+            // Local reads have no long tail worth a second request.
+            if (storage.getStorageType() == StorageType.LOCAL) {
+                return storage;
+            }
+            HedgingFileStorage hedging = new HedgingFileStorage(storage,
+                    new LatencyTracker(hedgingProperties.getWindowSize(), hedgingProperties.getMinSamples()),
+                    hedgingProperties.getPercentile(),
+                    hedgingProperties.getBudgetRatio(),
+                    hedgingProperties.getMinDelay());
+            if (metricsEnabled) {
+                StorageMetrics.count(meterRegistry, "storage.hedging.downloads", storage, hedging, HedgingFileStorage::getDownloadCount);
+                StorageMetrics.count(meterRegistry, "storage.hedging.hedges", storage, hedging, HedgingFileStorage::getHedgeCount);
+                StorageMetrics.count(meterRegistry, "storage.hedging.denied", storage, hedging, HedgingFileStorage::getHedgeDeniedCount);
+            }
+            return hedging;
+        };
+    }
+}
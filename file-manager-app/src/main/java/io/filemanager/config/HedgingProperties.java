@@ -0,0 +1,23 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class HedgingProperties {
+    // Time-to-first-byte percentile after which a hedged request is sent
+    private Double percentile;
+    // Hedged requests allowed per download
+    private Double budgetRatio;
+    private Long minDelayMs;
+    // Latency samples kept per backend, and how many are needed before hedging starts
+    private Integer windowSize;
+    private Integer minSamples;
+
+    public Duration getMinDelay() {
+        return Duration.ofMillis(minDelayMs);
+    }
+}
@@ -0,0 +1,92 @@
+package io.filemanager.config;
+
+import io.filemanager.scanner.engine.CompositeScanEngine;
+import io.filemanager.scanner.engine.HashBlocklistScanEngine;
+import io.filemanager.scanner.engine.ScanEngine;
+import io.filemanager.scanner.engine.SignatureScanEngine;
+import io.filemanager.service.InlineScanner;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional in-process scanning of uploads with signatures and a hash blocklist.
+ * Enabled with {@code scanner.inline.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "scanner.inline.enabled", havingValue = "true")
+public class InlineScannerConfig {
+    private static final String EICAR = "X5O!P%@AP[4\\PZX54(P^)7CC)7}$EICAR-STANDARD-ANTIVIRUS-TEST-FILE!$H+H*";
+
+    @Bean
+    InlineScannerProperties inlineScannerProperties(@Value("${scanner.inline.mode:PREFILTER}") InlineScanner.Mode mode,
+                                                    @Value("${scanner.inline.signatures-file:}") String signaturesFile,
+                                                    @Value("${scanner.inline.hash-blocklist-file:}") String hashBlocklistFile,
+                                                    @Value("${scanner.inline.eicar-signature:true}") boolean eicarSignature,
+                                                    @Value("${scanner.inline.max-states:16384}") Integer maxStates,
+                                                    @Value("${scanner.inline.metrics-enabled:false}") boolean metricsEnabled) {
+        return InlineScannerProperties.builder()
+                .mode(mode)
+                .signaturesFile(signaturesFile)
+                .hashBlocklistFile(hashBlocklistFile)
+                .eicarSignature(eicarSignature)
+                .maxStates(maxStates)
+                .metricsEnabled(metricsEnabled)
+                .build();
+    }
+
+    /**
+     * The engine is built once at startup from the configured files; changed files need a restart.
+     *
+     * @throws IllegalStateException If neither signatures nor hashes are configured.
+     */
+    @Bean
+    public InlineScanner inlineScanner(InlineScannerProperties properties, MeterRegistry meterRegistry) throws IOException {
+        List<ScanEngine> engines = new ArrayList<>();
+
+        Map<String, byte[]> signatures = new LinkedHashMap<>();
+        if (properties.isEicarSignature()) {
+            signatures.put("EICAR-Test-File", EICAR.getBytes(StandardCharsets.US_ASCII));
+        }
+        if (!properties.getSignaturesFile().isBlank()) {
+            signatures.putAll(SignatureScanEngine.parse(Files.readAllLines(Path.of(properties.getSignaturesFile()))));
+        }
+        if (!signatures.isEmpty()) {
+            engines.add(new SignatureScanEngine(signatures, properties.getMaxStates()));
+        }
+        if (!properties.getHashBlocklistFile().isBlank()) {
+            List<String> hashes = HashBlocklistScanEngine.parse(Files.readAllLines(Path.of(properties.getHashBlocklistFile())));
+            if (!hashes.isEmpty()) {
+                engines.add(new HashBlocklistScanEngine(hashes));
+            }
+        }
+        // Without an engine every upload would pass as clean, which in AUTHORITATIVE mode skips the scanner too
+        if (engines.isEmpty()) {
+            throw new IllegalStateException("scanner.inline.enabled needs signatures or a hash blocklist: "
+                    + "set scanner.inline.signatures-file, scanner.inline.hash-blocklist-file "
+                    + "or scanner.inline.eicar-signature=true");
+        }
+
+        ScanEngine engine = new CompositeScanEngine(engines);
+        log.info("Scanning uploads in process ({}), engine version {}", properties.getMode(), engine.signatureVersion());
+        InlineScanner scanner = new InlineScanner(engine, properties.getMode(), Schedulers.parallel());
+        if (properties.isMetricsEnabled()) {
+            scanner.bindMetrics(meterRegistry);
+        }
+        return scanner;
+    }
+}
@@ -0,0 +1,16 @@
+package io.filemanager.config;
+
+import io.filemanager.service.InlineScanner;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class InlineScannerProperties {
+    private InlineScanner.Mode mode;
+    private String signaturesFile; // name:hex per line, empty for none
+    private String hashBlocklistFile; // hex SHA-256 per line, empty for none
+    private boolean eicarSignature;
+    private Integer maxStates;
+    private boolean metricsEnabled;
+}
@@ -0,0 +1,43 @@
+package io.filemanager.config;
+
+import io.filemanager.service.ScanBatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Optional batching of small files into one scanner request.
+ * Enabled with {@code scanner.batch.enabled=true}; the scanner must support {@code /scan-batch}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "scanner.batch.enabled", havingValue = "true")
+public class ScanBatchConfig {
+
+    @Bean
+    ScanBatchProperties scanBatchProperties(@Value("${scanner.batch.max-file-size-kb:64}") Long maxFileSizeKb,
+                                            @Value("${scanner.batch.max-files:64}") Integer maxFiles,
+                                            @Value("${scanner.batch.max-batch-size-kb:4096}") Long maxBatchSizeKb,
+                                            @Value("${scanner.batch.max-wait-ms:20}") Long maxWaitMs,
+                                            @Value("${scanner.batch.callback-url:http://host.testcontainers.internal:8080/api/files/upload-scanned-batch}") String callbackUrl) {
+        return ScanBatchProperties.builder()
+                .maxFileSizeKb(maxFileSizeKb)
+                .maxFiles(maxFiles)
+                .maxBatchSizeKb(maxBatchSizeKb)
+                .maxWaitMs(maxWaitMs)
+                .callbackUrl(callbackUrl)
+                .build();
+    }
+
+    @Bean
+    public ScanBatcher scanBatcher(@Qualifier("virusScannerWebClient") WebClient virusScannerWebClient,
+                                   ScanBatchProperties properties) {
+        log.info("Scanning files up to {} bytes in batches of up to {} files", properties.getMaxFileBytes(), properties.getMaxFiles());
+        return new ScanBatcher(virusScannerWebClient, properties.getCallbackUrl(), properties.getMaxFileBytes(),
+                properties.getMaxFiles(), properties.getMaxBatchBytes(), properties.getMaxWait());
+    }
+}
@@ -0,0 +1,28 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class ScanBatchProperties {
+    private Long maxFileSizeKb;
+    private Integer maxFiles;
+    private Long maxBatchSizeKb;
+    private Long maxWaitMs;
+    private String callbackUrl;
+
+    public long getMaxFileBytes() {
+        return maxFileSizeKb * 1024;
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchSizeKb * 1024;
+    }
+
+    public Duration getMaxWait() {
+        return Duration.ofMillis(maxWaitMs);
+    }
+}
@@ -0,0 +1,33 @@
+package io.filemanager.config;
+
+import io.filemanager.service.ScanVerdictCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Optional cache of scanner verdicts by content hash.
+ * Enabled with {@code scanner.verdict-cache.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "scanner.verdict-cache.enabled", havingValue = "true")
+public class ScanVerdictCacheConfig {
+
+    @Bean
+    ScanVerdictCacheProperties scanVerdictCacheProperties(@Value("${scanner.verdict-cache.max-entries:100000}") Long maxEntries,
+                                                          @Value("${scanner.verdict-cache.ttl-hours:24}") Long ttlHours) {
+        return ScanVerdictCacheProperties.builder()
+                .maxEntries(maxEntries)
+                .ttlHours(ttlHours)
+                .build();
+    }
+
+    @Bean
+    public ScanVerdictCache scanVerdictCache(ScanVerdictCacheProperties properties) {
+        log.info("Enabling scan verdict cache: {} entries, TTL {}", properties.getMaxEntries(), properties.getTtl());
+        return new ScanVerdictCache(properties.getMaxEntries(), properties.getTtl());
+    }
+}
@@ -0,0 +1,17 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class ScanVerdictCacheProperties {
+    private Long maxEntries;
+    private Long ttlHours;
+
+    public Duration getTtl() {
+        return Duration.ofHours(ttlHours);
+    }
+}
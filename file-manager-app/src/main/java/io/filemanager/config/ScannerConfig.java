@@ -1,5 +1,7 @@
 package io.filemanager.config;
 
+import io.filemanager.scanner.ScannerPool;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,26 +10,74 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import java.util.List;
+
 @Slf4j
 @Configuration
 public class ScannerConfig {
 
     @Bean
     @ConditionalOnProperty(name = "scanner.local", havingValue = "false", matchIfMissing = true)
-    ScannerProperties scannerProperties(@Value("${scanner.host}") String host,
-                                        @Value("${scanner.port}") Integer port) {
+    ScannerProperties scannerProperties(@Value("${scanner.host:}") String host,
+                                        @Value("${scanner.port:#{null}}") Integer port,
+                                        @Value("${scanner.endpoints:}") List<String> endpoints) {
         return ScannerProperties.builder()
                 .scannerHost(host)
                 .scannerPort(port)
+                .endpoints(endpoints)
                 .build();
     }
 
+    @Bean
+    ScannerPoolProperties scannerPoolProperties(@Value("${scanner.pool.health-path:/health}") String healthPath,
+                                                @Value("${scanner.pool.health-check-interval-ms:5000}") Long healthCheckIntervalMs,
+                                                @Value("${scanner.pool.health-check-timeout-ms:1000}") Long healthCheckTimeoutMs,
+                                                @Value("${scanner.pool.max-consecutive-failures:3}") Integer maxConsecutiveFailures,
+                                                @Value("${scanner.pool.slow-factor:3.0}") Double slowFactor,
+                                                @Value("${scanner.pool.min-samples:20}") Long minSamples,
+                                                @Value("${scanner.pool.ejection-ms:30000}") Long ejectionMs,
+                                                @Value("${scanner.pool.metrics-enabled:false}") Boolean metricsEnabled) {
+        return ScannerPoolProperties.builder()
+                .healthPath(healthPath)
+                .healthCheckIntervalMs(healthCheckIntervalMs)
+                .healthCheckTimeoutMs(healthCheckTimeoutMs)
+                .maxConsecutiveFailures(maxConsecutiveFailures)
+                .slowFactor(slowFactor)
+                .minSamples(minSamples)
+                .ejectionMs(ejectionMs)
+                .metricsEnabled(metricsEnabled)
+                .build();
+    }
+
+    /**
+     * The scanner instances behind {@code virusScannerWebClient}. With a single host it is a pool of one.
+     * Metrics are published to the meter registry when enabled.
+     */
+    @Bean(destroyMethod = "close")
+    public ScannerPool scannerPool(ScannerProperties scannerProperties, ScannerPoolProperties poolProperties,
+                                   MeterRegistry meterRegistry) {
+        ScannerPool pool = new ScannerPool(scannerProperties.getScannerUris(),
+                poolProperties.getSlowFactor(),
+                poolProperties.getMinSamples(),
+                poolProperties.getMaxConsecutiveFailures(),
+                poolProperties.getEjectionTime());
+        if (pool.getInstances().size() > 1) {
+            pool.startHealthChecks(WebClient.create(), poolProperties.getHealthPath(),
+                    poolProperties.getHealthCheckInterval(), poolProperties.getHealthCheckTimeout());
+        }
+        if (poolProperties.isMetricsEnabled()) {
+            pool.bindMetrics(meterRegistry);
+        }
+        return pool;
+    }
+
     @Bean
     @Qualifier("virusScannerWebClient")
-    public WebClient virusScannerWebClient(ScannerProperties scannerProperties) {
-        log.info("Configuring Virus Scanner WebClient to point at: {}", scannerProperties.getScannerUri());
+    public WebClient virusScannerWebClient(ScannerProperties scannerProperties, ScannerPool scannerPool) {
+        log.info("Configuring Virus Scanner WebClient to point at: {}", scannerProperties.getScannerUris());
         return WebClient.builder()
-                .baseUrl(scannerProperties.getScannerUri())
+                .baseUrl(scannerProperties.getScannerUris().getFirst().toString())
+                .filter(scannerPool)
                 .build();
     }
 }
@@ -0,0 +1,31 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class ScannerPoolProperties {
+    private String healthPath;
+    private Long healthCheckIntervalMs;
+    private Long healthCheckTimeoutMs;
+    private Integer maxConsecutiveFailures;
+    private Double slowFactor;
+    private Long minSamples;
+    private Long ejectionMs;
+    private boolean metricsEnabled;
+
+    public Duration getHealthCheckInterval() {
+        return Duration.ofMillis(healthCheckIntervalMs);
+    }
+
+    public Duration getHealthCheckTimeout() {
+        return Duration.ofMillis(healthCheckTimeoutMs);
+    }
+
+    public Duration getEjectionTime() {
+        return Duration.ofMillis(ejectionMs);
+    }
+}
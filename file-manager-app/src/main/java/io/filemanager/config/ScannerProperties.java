@@ -3,13 +3,32 @@ package io.filemanager.config;
 import lombok.Builder;
 import lombok.Data;
 
+import java.net.URI;
+import java.util.List;
+
 @Data
 @Builder
 public class ScannerProperties {
     private String scannerHost;
     private Integer scannerPort;
+    // host:port or base URLs of a pool of scanners; when set, host and port are not used
+    @Builder.Default
+    private List<String> endpoints = List.of();
 
     public String getScannerUri() {
         return "http://" + scannerHost + ":" + scannerPort;
     }
+
+    public List<URI> getScannerUris() {
+        if (endpoints == null || endpoints.isEmpty()) {
+            if (scannerHost == null || scannerHost.isBlank() || scannerPort == null) {
+                throw new IllegalStateException("Either scanner.endpoints or scanner.host and scanner.port must be set");
+            }
+            return List.of(URI.create(getScannerUri()));
+        }
+        return endpoints.stream()
+                .map(String::trim)
+                .map(endpoint -> URI.create(endpoint.contains("://") ? endpoint : "http://" + endpoint))
+                .toList();
+    }
 }
@@ -0,0 +1,50 @@
+package io.filemanager.config;
+
+import io.filemanager.service.SmallObjectCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Optional in-memory cache for complete small objects.
+ * Enabled with {@code storage.cache.memory.enabled=true}.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "storage.cache.memory.enabled", havingValue = "true")
+public class SmallObjectCacheConfig {
+
+    @Bean
+    SmallObjectCacheProperties smallObjectCacheProperties(@Value("${storage.cache.memory.max-size-mb:64}") Long maxSizeMb,
+                                                          @Value("${storage.cache.memory.max-object-size-kb:256}") Long maxObjectSizeKb,
+                                                          @Value("${storage.cache.memory.expire-after-access-minutes:60}") Long expireAfterAccessMinutes) {
+        return SmallObjectCacheProperties.builder()
+                .maxSizeMb(maxSizeMb)
+                .maxObjectSizeKb(maxObjectSizeKb)
+                .expireAfterAccessMinutes(expireAfterAccessMinutes)
+                .build();
+    }
+
+    /**
+     * Hit rate and size are published to the meter registry with {@code storage.metrics-enabled}.
+     */
+    @Bean
+    public SmallObjectCache smallObjectCache(SmallObjectCacheProperties properties,
+                                             @Value("${storage.metrics-enabled:false}") boolean metricsEnabled,
+                                             MeterRegistry meterRegistry) {
+        log.info("Enabling small object cache: {} bytes total, {} bytes per object",
+                properties.getMaxSizeBytes(), properties.getMaxObjectSizeBytes());
+        SmallObjectCache cache = new SmallObjectCache(properties.getMaxSizeBytes(),
+                properties.getMaxObjectSizeBytes(),
+                Duration.ofMinutes(properties.getExpireAfterAccessMinutes()));
+        if (metricsEnabled) {
+            cache.bindMetrics(meterRegistry);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,20 @@
+package io.filemanager.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SmallObjectCacheProperties {
+    private Long maxSizeMb;
+    private Long maxObjectSizeKb;
+    private Long expireAfterAccessMinutes;
+
+    public long getMaxSizeBytes() {
+        return maxSizeMb * 1024 * 1024;
+    }
+
+    public long getMaxObjectSizeBytes() {
+        return maxObjectSizeKb * 1024;
+    }
+}
@@ -0,0 +1,32 @@
+package io.filemanager.config;
+
+import io.filemanager.storage.api.FileStorage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the counters of storage decorators to the application's meter registry, tagged with
+ * the backend they wrap. Enabled with {@code storage.metrics-enabled=true}.
+ */
+final class StorageMetrics {
+
+    private StorageMetrics() {
+    }
+
+    static <T> void count(MeterRegistry registry, String name, FileStorage backend, T decorator,
+                          ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, decorator, count)
+                .tag("storage", backend.getStorageType().name())
+                .register(registry);
+    }
+
+    static <T> void gauge(MeterRegistry registry, String name, FileStorage backend, T decorator,
+                          ToDoubleFunction<T> value) {
+        Gauge.builder(name, decorator, value)
+                .tag("storage", backend.getStorageType().name())
+                .register(registry);
+    }
+}
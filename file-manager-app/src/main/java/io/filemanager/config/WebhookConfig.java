@@ -0,0 +1,19 @@
+package io.filemanager.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+public class WebhookConfig {
+
+    /**
+     * Client for the upload status callbacks. Callbacks go to arbitrary client URLs, so it has no base URL.
+     */
+    @Bean
+    @Qualifier("webhookWebClient")
+    public WebClient webhookWebClient() {
+        return WebClient.builder().build();
+    }
+}
@@ -0,0 +1,71 @@
+package io.filemanager.scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The body of a batch scan request, and of the scanner's callback with the clean files of a batch:
+ * the files one after the other, each framed as
+ * <pre>
+ * int32 length of the file ID | file ID (UTF-8) | int64 length of the content | content
+ * </pre>
+ * All numbers are big-endian.
+ */
+public final class ScanBatchFrames {
+
+    public static final String CONTENT_TYPE = "application/x-scan-batch";
+
+    // The two length fields of a frame
+    public static final int FRAME_OVERHEAD = Integer.BYTES + Long.BYTES;
+
+    public record Entry(String fileId, byte[] content) {}
+
+    private ScanBatchFrames() {
+    }
+
+    public static byte[] encode(List<Entry> entries) {
+        int size = 0;
+        List<byte[]> ids = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            byte[] id = entry.fileId().getBytes(StandardCharsets.UTF_8);
+            ids.add(id);
+            size += FRAME_OVERHEAD + id.length + entry.content().length;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(size);
+        for (int i = 0; i < entries.size(); i++) {
+            byte[] content = entries.get(i).content();
+            body.putInt(ids.get(i).length)
+                    .put(ids.get(i))
+                    .putLong(content.length)
+                    .put(content);
+        }
+        return body.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body is not a sequence of complete frames.
+     */
+    public static List<Entry> decode(ByteBuffer body) {
+        List<Entry> entries = new ArrayList<>();
+        while (body.hasRemaining()) {
+            int idLength = checkedLength(body, body.remaining() >= Integer.BYTES ? body.getInt() : -1);
+            byte[] id = new byte[idLength];
+            body.get(id);
+            long contentLength = checkedLength(body, body.remaining() >= Long.BYTES ? body.getLong() : -1);
+            byte[] content = new byte[(int) contentLength];
+            body.get(content);
+            entries.add(new Entry(new String(id, StandardCharsets.UTF_8), content));
+        }
+        return entries;
+    }
+
+    private static int checkedLength(ByteBuffer body, long length) {
+        if (length < 0 || length > body.remaining()) {
+            throw new IllegalArgumentException("Truncated or malformed scan batch frame");
+        }
+        return (int) length;
+    }
+}
@@ -0,0 +1,9 @@
+package io.filemanager.scanner;
+
+/**
+ * The verdict for one file of a batch scan, one JSON line per file in the scanner's answer.
+ */
+public record ScanBatchVerdict(
+        String fileId,
+        String verdict // CLEAN, INFECTED or ERROR
+) {}
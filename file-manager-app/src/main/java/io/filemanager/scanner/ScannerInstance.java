@@ -0,0 +1,138 @@
+package io.filemanager.scanner;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One scanner behind the pool, with the load and health the pool routes by.
+ */
+public class ScannerInstance {
+    // Weight of the newest sample in the moving average of the response time per MiB
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final URI baseUri;
+
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong ejections = new AtomicLong();
+
+    // Guarded by this
+    private double millisPerMibEwma;
+    private long samples;
+    private int consecutiveFailures;
+
+    private volatile boolean healthy = true;
+    private volatile boolean ejected;
+    private volatile long ejectedUntilNanos;
+
+    public ScannerInstance(URI baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * The URL of a request, pointed at this instance.
+     */
+    URI resolve(URI url) {
+        return URI.create(baseUri.getScheme() + "://" + baseUri.getRawAuthority()
+                + (url.getRawPath() != null ? url.getRawPath() : "")
+                + (url.getRawQuery() != null ? "?" + url.getRawQuery() : ""));
+    }
+
+    boolean isAvailable(long nowNanos) {
+        return healthy && !isEjected(nowNanos);
+    }
+
+    void begin() {
+        requests.incrementAndGet();
+        outstandingRequests.incrementAndGet();
+    }
+
+    void sent(long bytes) {
+        outstandingBytes.addAndGet(bytes);
+    }
+
+    void end(long bytes) {
+        outstandingRequests.decrementAndGet();
+        outstandingBytes.addAndGet(-bytes);
+    }
+
+    synchronized void recordSuccess(double millisPerMib) {
+        millisPerMibEwma = samples == 0 ? millisPerMib : EWMA_ALPHA * millisPerMib + (1 - EWMA_ALPHA) * millisPerMibEwma;
+        samples++;
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * @return The number of failures in a row, including this one.
+     */
+    synchronized int recordFailure() {
+        failures.incrementAndGet();
+        return ++consecutiveFailures;
+    }
+
+    /**
+     * Takes the instance out of rotation until the given time. Its statistics start over when it is back.
+     */
+    synchronized void eject(long untilNanos) {
+        ejections.incrementAndGet();
+        ejectedUntilNanos = untilNanos;
+        ejected = true;
+        millisPerMibEwma = 0;
+        samples = 0;
+        consecutiveFailures = 0;
+    }
+
+    void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    public long getOutstandingBytes() {
+        return outstandingBytes.get();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getEjectionCount() {
+        return ejections.get();
+    }
+
+    /**
+     * The moving average of the response time per MiB sent, with smaller requests counted as 1 MiB.
+     */
+    public synchronized double getMillisPerMibEwma() {
+        return millisPerMibEwma;
+    }
+
+    public synchronized long getLatencySamples() {
+        return samples;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public boolean isEjected() {
+        return isEjected(System.nanoTime());
+    }
+
+    private boolean isEjected(long nowNanos) {
+        return ejected && nowNanos - ejectedUntilNanos < 0;
+    }
+}
@@ -0,0 +1,250 @@
+package io.filemanager.scanner;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads scan requests over several scanner instances.
+ * <p>
+ * As a filter of the scanner WebClient, it points every request at the available instance with
+ * the fewest outstanding requests, and among those the fewest bytes sent but not yet answered.
+ * A request is outstanding until the scanner has answered it, i.e. has scanned the file.
+ * <p>
+ * An instance is taken out of rotation for {@code ejectionTime} when it fails
+ * {@code maxConsecutiveFailures} times in a row, or when its average response time is more than
+ * {@code slowFactor} times the median of the other instances. Scanning time grows with the size of
+ * the file, so response times are compared per MiB sent, otherwise an instance that happened to get
+ * the large files would look slow. Requests under 1 MiB count as 1 MiB, where the fixed cost of a
+ * request dominates. An instance whose health check fails
+ * gets no requests until it passes again. The last available instance is never ejected, and if no
+ * instance is available, requests still go to the least loaded one rather than nowhere.
+ */
+@Slf4j
+public class ScannerPool implements ExchangeFilterFunction {
+
+    private static final long MIB = 1024 * 1024;
+
+    private final List<ScannerInstance> instances;
+    private final double slowFactor;
+    private final long minSamples;
+    private final int maxConsecutiveFailures;
+    private final Duration ejectionTime;
+
+    // Where the search for the least loaded instance starts, so ties are spread round-robin
+    private final AtomicInteger nextStart = new AtomicInteger();
+
+    private Disposable healthChecks;
+
+    public ScannerPool(List<URI> endpoints, double slowFactor, long minSamples,
+                       int maxConsecutiveFailures, Duration ejectionTime) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("A scanner pool needs at least one endpoint");
+        }
+        this.instances = endpoints.stream().map(ScannerInstance::new).toList();
+        this.slowFactor = slowFactor;
+        this.minSamples = minSamples;
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+        this.ejectionTime = ejectionTime;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            ScannerInstance instance = choose();
+            AtomicLong sent = new AtomicLong();
+            AtomicBoolean ended = new AtomicBoolean(false);
+            long start = System.nanoTime();
+
+            instance.begin();
+            ClientRequest routed = ClientRequest.from(request)
+                    .url(instance.resolve(request.url()))
+                    .body(counting(request.body(), instance, sent, ended))
+                    .build();
+
+            return next.exchange(routed)
+                    .doOnNext(response -> {
+                        // 4xx answers, e.g. for infected files, are the scanner doing its job
+                        if (response.statusCode().is5xxServerError()) {
+                            failed(instance);
+                        } else {
+                            succeeded(instance, Duration.ofNanos(System.nanoTime() - start).toMillis(), sent.get());
+                        }
+                    })
+                    .doOnError(error -> failed(instance))
+                    .doFinally(signal -> {
+                        if (ended.compareAndSet(false, true)) {
+                            instance.end(sent.get());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Checks the health endpoint of every instance every {@code interval}.
+     *
+     * @param client A client without this filter.
+     */
+    public synchronized void startHealthChecks(WebClient client, String path, Duration interval, Duration timeout) {
+        if (healthChecks != null) {
+            healthChecks.dispose();
+        }
+        healthChecks = Flux.interval(Duration.ZERO, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(instances)
+                        .flatMap(instance -> checkHealth(client, instance, path, timeout))
+                        .then())
+                .subscribe();
+    }
+
+    public synchronized void close() {
+        if (healthChecks != null) {
+            healthChecks.dispose();
+            healthChecks = null;
+        }
+    }
+
+    /**
+     * Publishes the load and health of every instance, tagged with its base URI.
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        for (ScannerInstance instance : instances) {
+            String tag = instance.getBaseUri().toString();
+            Gauge.builder("scanner.pool.outstanding.requests", instance, ScannerInstance::getOutstandingRequests)
+                    .tag("instance", tag).register(registry);
+            Gauge.builder("scanner.pool.outstanding.bytes", instance, ScannerInstance::getOutstandingBytes)
+                    .tag("instance", tag).baseUnit("bytes").register(registry);
+            Gauge.builder("scanner.pool.latency.per.mib.ewma", instance, ScannerInstance::getMillisPerMibEwma)
+                    .tag("instance", tag).baseUnit("milliseconds").register(registry);
+            Gauge.builder("scanner.pool.available", instance, i -> i.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .tag("instance", tag).register(registry);
+            FunctionCounter.builder("scanner.pool.requests", instance, ScannerInstance::getRequestCount)
+                    .tag("instance", tag).register(registry);
+            FunctionCounter.builder("scanner.pool.failures", instance, ScannerInstance::getFailureCount)
+                    .tag("instance", tag).register(registry);
+            FunctionCounter.builder("scanner.pool.ejections", instance, ScannerInstance::getEjectionCount)
+                    .tag("instance", tag).register(registry);
+        }
+    }
+
+    public List<ScannerInstance> getInstances() {
+        return instances;
+    }
+
+    ScannerInstance choose() {
+        long now = System.nanoTime();
+        List<ScannerInstance> candidates = new ArrayList<>(instances.size());
+        int start = Math.floorMod(nextStart.getAndIncrement(), instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            ScannerInstance instance = instances.get((start + i) % instances.size());
+            if (instance.isAvailable(now)) {
+                candidates.add(instance);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(instances);
+        }
+        // min() keeps the first of equal elements, i.e. the one nearest to the rotating start
+        return candidates.stream()
+                .min(Comparator.comparingInt(ScannerInstance::getOutstandingRequests)
+                        .thenComparingLong(ScannerInstance::getOutstandingBytes))
+                .orElseThrow();
+    }
+
+    private void succeeded(ScannerInstance instance, long latencyMillis, long bytes) {
+        instance.recordSuccess((double) latencyMillis * MIB / Math.max(bytes, MIB));
+        if (instance.getLatencySamples() < minSamples) {
+            return;
+        }
+        long now = System.nanoTime();
+        double[] peers = instances.stream()
+                .filter(other -> other != instance && other.isAvailable(now) && other.getLatencySamples() >= minSamples)
+                .mapToDouble(ScannerInstance::getMillisPerMibEwma)
+                .sorted()
+                .toArray();
+        if (peers.length == 0) {
+            return;
+        }
+        double median = peers[peers.length / 2];
+        double latency = instance.getMillisPerMibEwma();
+        if (latency > slowFactor * median) {
+            eject(instance, String.format("average response time %.0f ms/MiB against %.0f ms/MiB for its peers", latency, median));
+        }
+    }
+
+    private void failed(ScannerInstance instance) {
+        int failures = instance.recordFailure();
+        if (failures >= maxConsecutiveFailures) {
+            eject(instance, failures + " failures in a row");
+        }
+    }
+
+    private synchronized void eject(ScannerInstance instance, String reason) {
+        long now = System.nanoTime();
+        long available = instances.stream().filter(other -> other.isAvailable(now)).count();
+        if (!instance.isAvailable(now) || available <= 1) {
+            return;
+        }
+        log.warn("Ejecting scanner {} for {} ms: {}", instance.getBaseUri(), ejectionTime.toMillis(), reason);
+        instance.eject(now + ejectionTime.toNanos());
+    }
+
+    private Mono<Void> checkHealth(WebClient client, ScannerInstance instance, String path, Duration timeout) {
+        return client.get()
+                .uri(instance.getBaseUri().resolve(path))
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(timeout)
+                .map(response -> true)
+                .onErrorReturn(false)
+                .doOnNext(healthy -> {
+                    if (healthy != instance.isHealthy()) {
+                        log.info("Scanner {} is {}", instance.getBaseUri(), healthy ? "healthy again" : "unhealthy");
+                    }
+                    instance.setHealthy(healthy);
+                })
+                .then();
+    }
+
+    private static BodyInserter<?, ? super ClientHttpRequest> counting(BodyInserter<?, ? super ClientHttpRequest> body,
+                                                                       ScannerInstance instance,
+                                                                       AtomicLong sent, AtomicBoolean ended) {
+        return (BodyInserter<Object, ClientHttpRequest>) (message, context) ->
+                body.insert(new ClientHttpRequestDecorator(message) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> content) {
+                        return super.writeWith(Flux.from(content).doOnNext(buffer -> {
+                            int bytes = buffer.readableByteCount();
+                            // Bytes written after the answer, e.g. on cancellation, are no longer outstanding
+                            if (!ended.get()) {
+                                sent.addAndGet(bytes);
+                                instance.sent(bytes);
+                            }
+                        }));
+                    }
+                }, context);
+    }
+}
@@ -0,0 +1,66 @@
+package io.filemanager.scanner.engine;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runs several engines over the same content. The content is infected as soon as one of them
+ * says so.
+ */
+public class CompositeScanEngine implements ScanEngine {
+
+    private final List<ScanEngine> engines;
+    private final String signatureVersion;
+
+    public CompositeScanEngine(List<ScanEngine> engines) {
+        this.engines = List.copyOf(engines);
+        this.signatureVersion = engines.stream()
+                .map(ScanEngine::signatureVersion)
+                .collect(Collectors.joining("+"));
+    }
+
+    @Override
+    public ScanSession newSession() {
+        ScanSession[] sessions = new ScanSession[engines.size()];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = engines.get(i).newSession();
+        }
+        return new Session(sessions);
+    }
+
+    @Override
+    public String signatureVersion() {
+        return signatureVersion;
+    }
+
+    private record Session(ScanSession[] sessions) implements ScanSession {
+
+        @Override
+        public void update(byte[] chunk, int offset, int length) {
+            for (ScanSession session : sessions) {
+                session.update(chunk, offset, length);
+            }
+        }
+
+        @Override
+        public boolean isInfected() {
+            for (ScanSession session : sessions) {
+                if (session.isInfected()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public EngineVerdict finish() {
+            for (ScanSession session : sessions) {
+                EngineVerdict verdict = session.finish();
+                if (verdict.infected()) {
+                    return verdict;
+                }
+            }
+            return EngineVerdict.CLEAN;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package io.filemanager.scanner.engine;
+
+/**
+ * The outcome of an in-process scan.
+ */
+public record EngineVerdict(
+        boolean infected,
+        String threat // the signature or blocklist that matched, null if clean
+) {
+    public static final EngineVerdict CLEAN = new EngineVerdict(false, null);
+
+    public static EngineVerdict infected(String threat) {
+        return new EngineVerdict(true, threat);
+    }
+}
@@ -0,0 +1,90 @@
+package io.filemanager.scanner.engine;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Flags content whose SHA-256 is on a blocklist of known malware.
+ * <p>
+ * The verdict is only known once the whole content has been seen.
+ */
+public class HashBlocklistScanEngine implements ScanEngine {
+
+    private final Set<ByteBuffer> blocklist; // wrapped 32 byte hashes, compared by content
+    private final String signatureVersion;
+
+    /**
+     * @param hashes Hex encoded SHA-256 hashes.
+     */
+    public HashBlocklistScanEngine(List<String> hashes) {
+        this.blocklist = new HashSet<>();
+        CRC32 crc = new CRC32();
+        for (String hash : hashes) {
+            byte[] bytes = HexFormat.of().parseHex(hash.strip().toLowerCase());
+            if (bytes.length != 32) {
+                throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+            }
+            if (blocklist.add(ByteBuffer.wrap(bytes))) {
+                crc.update(bytes);
+            }
+        }
+        this.signatureVersion = "sha256-" + blocklist.size() + "-" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Parses one hex encoded hash per line. Blank lines and lines starting with {@code #} are
+     * skipped; anything after the hash on a line is ignored.
+     */
+    public static List<String> parse(List<String> lines) {
+        return lines.stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(line -> line.split("\\s+", 2)[0])
+                .toList();
+    }
+
+    @Override
+    public ScanSession newSession() {
+        try {
+            return new Session(MessageDigest.getInstance("SHA-256"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public String signatureVersion() {
+        return signatureVersion;
+    }
+
+    private final class Session implements ScanSession {
+        private final MessageDigest digest;
+        private boolean infected;
+
+        private Session(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte[] chunk, int offset, int length) {
+            digest.update(chunk, offset, length);
+        }
+
+        @Override
+        public boolean isInfected() {
+            return infected;
+        }
+
+        @Override
+        public EngineVerdict finish() {
+            infected = blocklist.contains(ByteBuffer.wrap(digest.digest()));
+            return infected ? EngineVerdict.infected("sha256-blocklist") : EngineVerdict.CLEAN;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.filemanager.scanner.engine;
+
+/**
+ * An in-process scanner that inspects content as it streams through the application.
+ * <p>
+ * Engines are shared and thread-safe; all state of one scan lives in its {@link ScanSession}.
+ */
+public interface ScanEngine {
+
+    /**
+     * Starts the scan of one file.
+     */
+    ScanSession newSession();
+
+    /**
+     * Identifies the signatures the engine matches against, so verdicts can be tied to them.
+     */
+    String signatureVersion();
+}
@@ -0,0 +1,22 @@
+package io.filemanager.scanner.engine;
+
+/**
+ * The scan of one file. Chunks are passed in order, from one thread at a time.
+ * <p>
+ * {@link #update} is called for every chunk of the stream and must not allocate: the bytes are
+ * only valid during the call and are neither kept nor modified.
+ */
+public interface ScanSession {
+
+    void update(byte[] chunk, int offset, int length);
+
+    /**
+     * @return true once the content is known to be infected, so the rest of it need not be read.
+     */
+    boolean isInfected();
+
+    /**
+     * Ends the scan once all content has been passed in, or early once {@link #isInfected()}.
+     */
+    EngineVerdict finish();
+}
@@ -0,0 +1,172 @@
+package io.filemanager.scanner.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Finds any of a set of byte signatures anywhere in the content, in one pass.
+ * <p>
+ * The signatures are compiled into an Aho–Corasick automaton, flattened into a full transition
+ * table: each byte costs one array lookup, whatever the number of signatures, and a match that
+ * spans two chunks is still found. The table takes {@code 1 KB} per automaton state, i.e. per
+ * distinct signature prefix, so the engine suits a few thousand short signatures.
+ */
+public class SignatureScanEngine implements ScanEngine {
+    private static final int ALPHABET = 256;
+
+    private final String[] names;
+    private final int[] transitions; // state * 256 + byte -> next state
+    private final int[] matches; // state -> index of a signature ending there, or -1
+    private final String signatureVersion;
+
+    /**
+     * @param signatures The byte patterns to find, by name.
+     * @param maxStates Upper bound for the automaton, to keep the table within memory limits.
+     */
+    public SignatureScanEngine(Map<String, byte[]> signatures, int maxStates) {
+        this.names = signatures.keySet().toArray(String[]::new);
+        List<int[]> gotos = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        gotos.add(newState());
+        outputs.add(-1);
+
+        // Trie of all signatures
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < names.length; i++) {
+            byte[] pattern = signatures.get(names[i]);
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("Signature " + names[i] + " is empty");
+            }
+            crc.update(pattern);
+            int state = 0;
+            for (byte b : pattern) {
+                int next = gotos.get(state)[b & 0xff];
+                if (next < 0) {
+                    if (gotos.size() >= maxStates) {
+                        throw new IllegalArgumentException("Signatures need more than " + maxStates + " automaton states");
+                    }
+                    next = gotos.size();
+                    gotos.get(state)[b & 0xff] = next;
+                    gotos.add(newState());
+                    outputs.add(-1);
+                }
+                state = next;
+            }
+            if (outputs.get(state) < 0) {
+                outputs.set(state, i);
+            }
+        }
+
+        // Failure links, breadth first, folded into the transitions
+        int states = gotos.size();
+        int[] failure = new int[states];
+        this.transitions = new int[states * ALPHABET];
+        this.matches = new int[states];
+        for (int s = 0; s < states; s++) {
+            matches[s] = outputs.get(s);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = gotos.getFirst()[c];
+            if (child < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = child;
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            if (matches[state] < 0) {
+                matches[state] = matches[failure[state]];
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = gotos.get(state)[c];
+                int fallback = transitions[failure[state] * ALPHABET + c];
+                if (child < 0) {
+                    transitions[state * ALPHABET + c] = fallback;
+                } else {
+                    transitions[state * ALPHABET + c] = child;
+                    failure[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+        this.signatureVersion = "sig-" + names.length + "-" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Parses signatures in the form {@code name:hex}, one per line. Blank lines and lines
+     * starting with {@code #} are skipped.
+     */
+    public static Map<String, byte[]> parse(List<String> lines) {
+        Map<String, byte[]> signatures = new LinkedHashMap<>();
+        for (String line : lines) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int separator = trimmed.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Signature line is not name:hex: " + trimmed);
+            }
+            signatures.put(trimmed.substring(0, separator), HexFormat.of().parseHex(trimmed.substring(separator + 1)));
+        }
+        return signatures;
+    }
+
+    @Override
+    public ScanSession newSession() {
+        return new Session();
+    }
+
+    @Override
+    public String signatureVersion() {
+        return signatureVersion;
+    }
+
+    private static int[] newState() {
+        int[] next = new int[ALPHABET];
+        Arrays.fill(next, -1);
+        return next;
+    }
+
+    private final class Session implements ScanSession {
+        private int state;
+        private int match = -1;
+
+        @Override
+        public void update(byte[] chunk, int offset, int length) {
+            if (match >= 0) {
+                return;
+            }
+            int[] delta = transitions;
+            int s = state;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                s = delta[s * ALPHABET + (chunk[i] & 0xff)];
+                if (matches[s] >= 0) {
+                    match = matches[s];
+                    break;
+                }
+            }
+            state = s;
+        }
+
+        @Override
+        public boolean isInfected() {
+            return match >= 0;
+        }
+
+        @Override
+        public EngineVerdict finish() {
+            return match >= 0 ? EngineVerdict.infected(names[match]) : EngineVerdict.CLEAN;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.filemanager.service;
 import io.filemanager.archiving.service.ArchiveService;
 import io.filemanager.metadata.dto.FileMetadataDto;
 import io.filemanager.metadata.service.FileMetadataService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -16,21 +17,25 @@ public class ArchiveOrchestrationService {
     private final FileMetadataService metadataService;
     private final FileDownloadService fileDownloadService;
     private final ArchiveService archiveService;
+    private final int maxConcurrentEntries;
 
     public ArchiveOrchestrationService(
             FileMetadataService metadataService,
             FileDownloadService fileDownloadService,
-            ArchiveService archiveService) {
+            ArchiveService archiveService,
+            @Value("${archive.max-concurrent-entries:16}") int maxConcurrentEntries) {
         this.metadataService = metadataService;
         this.fileDownloadService = fileDownloadService;
         this.archiveService = archiveService;
+        this.maxConcurrentEntries = maxConcurrentEntries;
     }
 
     public Flux<ByteBuffer> createZipStreamFromIds(List<Long> fileIds) {
         // Step 1: For each ID, attempt to download the file and transform the outcome
-        // (success or failure) into a ZipCreationResult object.
+        // (success or failure) into a ZipCreationResult object. The fan-out is bounded, so a large
+        // archive can't flood a slow backend; requests it rejects end up in the error report.
         Flux<ArchiveService.ZipCreationResult> results = metadataService.findByIds(fileIds)
-                .flatMap(this::downloadAndWrapResult);
+                .flatMap(this::downloadAndWrapResult, maxConcurrentEntries);
 
         // Step 2: Pass the unified stream of results to the specialized ArchiveService.
         return archiveService.createZipStream(results);
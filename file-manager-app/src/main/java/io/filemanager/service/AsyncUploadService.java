@@ -0,0 +1,240 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.metadata.service.StatusConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads that are acknowledged as soon as their body has been received.
+ * <p>
+ * The file is scanned and stored the same way as a synchronous upload, but the caller only waits
+ * until the last byte of the body has been handed to the scanner and storage. The rest happens in
+ * the background; the outcome can be polled with {@link #getStatus(Long)} or is posted to a
+ * callback URL once it is known.
+ * <p>
+ * At most {@code maxPending} uploads run in the background. Beyond that, uploads are processed
+ * while the caller waits, so a slow scanner slows clients down instead of piling up work.
+ * <p>
+ * Callbacks are only accepted for the hosts in {@code upload.async.webhook.allowed-hosts}; without
+ * any, callbacks are refused. {@code *} allows any host that resolves to public addresses only,
+ * so a callback can't be pointed at the loopback interface, the cloud metadata endpoint or the
+ * internal network.
+ */
+@Slf4j
+@Service
+public class AsyncUploadService {
+
+    private final FileUploadService fileUploadService;
+    private final FileMetadataService metadataService;
+    private final WebClient webhookWebClient;
+    private final int maxPending;
+    private final Set<String> allowedWebhookHosts;
+    private final int webhookMaxRetries;
+    private final Duration webhookTimeout;
+
+    private static final String ANY_PUBLIC_HOST = "*";
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong processedInline = new AtomicLong();
+    private final AtomicLong webhookFailures = new AtomicLong();
+
+    public AsyncUploadService(FileUploadService fileUploadService,
+                              FileMetadataService metadataService,
+                              @Qualifier("webhookWebClient") WebClient webhookWebClient,
+                              @Value("${upload.async.max-pending:256}") int maxPending,
+                              @Value("${upload.async.webhook.allowed-hosts:}") List<String> allowedWebhookHosts,
+                              @Value("${upload.async.webhook.max-retries:3}") int webhookMaxRetries,
+                              @Value("${upload.async.webhook.timeout-ms:5000}") long webhookTimeoutMs) {
+        this.fileUploadService = fileUploadService;
+        this.metadataService = metadataService;
+        this.webhookWebClient = webhookWebClient;
+        this.maxPending = maxPending;
+        this.allowedWebhookHosts = Set.copyOf(allowedWebhookHosts);
+        this.webhookMaxRetries = webhookMaxRetries;
+        this.webhookTimeout = Duration.ofMillis(webhookTimeoutMs);
+    }
+
+    /**
+     * Accepts an upload and lets it finish in the background.
+     *
+     * @param fileName The name of the uploaded file.
+     * @param content The content of the file, consumed once.
+     * @param contentHash The SHA-256 the client declared for the content, or null.
+     * @param callbackUrl Where to post the {@link UploadStatus} once the file is scanned, or null.
+     * @return A Mono containing the new record, in status SCANNING, once the whole body has been
+     *         received; or an error if the upload failed before that.
+     */
+    public Mono<FileMetadataDto> accept(String fileName, Flux<DataBuffer> content, String contentHash,
+                                        String callbackUrl) {
+        return Mono.fromCallable(() -> toCallbackUri(callbackUrl))
+                .flatMap(callback -> checkHost(callback).thenReturn(callback))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(callback -> metadataService.createInitialRecord(fileName)
+                        .flatMap(file -> start(file, content, contentHash, callback.orElse(null))));
+    }
+
+    /**
+     * The current status of an upload, or empty if there is no such file.
+     */
+    public Mono<UploadStatus> getStatus(Long fileId) {
+        return metadataService.findById(fileId)
+                .map(UploadStatus::of);
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Uploads that were processed while the caller waited because too many were pending.
+     */
+    public long getProcessedInlineCount() {
+        return processedInline.get();
+    }
+
+    public long getWebhookFailureCount() {
+        return webhookFailures.get();
+    }
+
+    private Mono<FileMetadataDto> start(FileMetadataDto file, Flux<DataBuffer> content, String contentHash,
+                                        URI callback) {
+        Sinks.Empty<Void> received = Sinks.empty();
+        Flux<DataBuffer> observed = content.doOnComplete(received::tryEmitEmpty);
+
+        Mono<UploadStatus> outcome = fileUploadService.process(file, observed, contentHash)
+                // Releases the caller if processing ends before the body does, e.g. on an early error
+                .doOnError(received::tryEmitError)
+                .doOnSuccess(result -> received.tryEmitEmpty())
+                .then(Mono.defer(() -> getStatus(file.id())))
+                .onErrorResume(error -> markFailed(file, error))
+                .flatMap(status -> notify(callback, status).thenReturn(status));
+
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            processedInline.incrementAndGet();
+            log.debug("{} uploads pending, processing file {} inline", maxPending, file.id());
+            return outcome.thenReturn(file);
+        }
+
+        outcome.doFinally(signal -> pending.decrementAndGet())
+                .subscribe(
+                        status -> log.info("File {} finished with status {}", status.fileId(), status.status()),
+                        error -> log.error("Background processing of file {} failed", file.id(), error));
+        return received.asMono().thenReturn(file);
+    }
+
+    /**
+     * Makes sure a failed upload doesn't stay in SCANNING forever. Failures the upload itself has
+     * already recorded, e.g. an infested file, are kept.
+     */
+    private Mono<UploadStatus> markFailed(FileMetadataDto file, Throwable error) {
+        log.warn("Upload of file {} failed: {}", file.id(), error.getMessage());
+        return metadataService.updateStatus(file.id(), Status.ERROR, 0)
+                .onErrorResume(StatusConflictException.class, conflict -> metadataService.findById(file.id()))
+                .map(UploadStatus::of)
+                .onErrorResume(updateError -> {
+                    log.error("Failed to record the failure of file {}", file.id(), updateError);
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(new UploadStatus(file.id(), file.fileName(), Status.ERROR, 0, true));
+    }
+
+    private Mono<Void> notify(URI callback, UploadStatus status) {
+        if (callback == null) {
+            return Mono.empty();
+        }
+        Mono<Void> post = webhookWebClient.post()
+                .uri(callback)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(status)
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(webhookTimeout)
+                .retryWhen(Retry.backoff(webhookMaxRetries, Duration.ofSeconds(1)))
+                .then();
+        // The host is checked again, since its addresses may have changed since the upload was accepted
+        return checkHost(callback)
+                .then(post)
+                .onErrorResume(error -> {
+                    webhookFailures.incrementAndGet();
+                    log.warn("Webhook {} for file {} failed: {}", callback, status.fileId(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private URI toCallbackUri(String callbackUrl) {
+        if (callbackUrl == null || callbackUrl.isBlank()) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = URI.create(callbackUrl);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid callback URL: " + callbackUrl);
+        }
+        if (!("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) || uri.getHost() == null) {
+            throw new IllegalArgumentException("Callback URL must be an absolute http(s) URL: " + callbackUrl);
+        }
+        return uri;
+    }
+
+    private Mono<Void> checkHost(URI callback) {
+        String host = callback.getHost();
+        if (allowedWebhookHosts.contains(host)) {
+            return Mono.empty();
+        }
+        if (!allowedWebhookHosts.contains(ANY_PUBLIC_HOST)) {
+            return Mono.error(new IllegalArgumentException("Callback host " + host + " is not allowed"));
+        }
+        // The DNS lookup blocks
+        return Mono.<Void>fromRunnable(() -> checkPublic(host))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static void checkPublic(String host) {
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Callback host " + host + " cannot be resolved");
+        }
+        for (InetAddress address : addresses) {
+            if (!isPublic(address)) {
+                throw new IllegalArgumentException("Callback host " + host + " resolves to non-public address "
+                        + address.getHostAddress());
+            }
+        }
+    }
+
+    private static boolean isPublic(InetAddress address) {
+        // IPv4-mapped IPv6 addresses are returned as Inet4Address, so they are covered as well
+        boolean uniqueLocal = address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc; // fc00::/7
+        return !(address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress() || uniqueLocal);
+    }
+}
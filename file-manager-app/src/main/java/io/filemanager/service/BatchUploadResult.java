@@ -0,0 +1,14 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+
+/**
+ * The outcome for one file of a batch upload.
+ */
+public record BatchUploadResult(
+        String fileName,
+        Long fileId, // null if no record could be saved
+        Status status,
+        long size,
+        String error // null unless the status is INFESTED or ERROR
+) {}
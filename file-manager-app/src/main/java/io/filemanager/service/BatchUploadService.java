@@ -0,0 +1,115 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Ingests many files sent in one streaming request.
+ * <p>
+ * Each file is stored in quarantine and scanned as it streams in. While one file is being
+ * received, the files before it can still be waiting for their verdict and being moved out of
+ * quarantine, up to {@code maxConcurrentFiles} at a time. The request body is never buffered.
+ * <p>
+ * Metadata rows are only written once a file has been scanned, with its final status, and are
+ * saved in batches of up to {@code insertBatchSize} rows rather than one insert per file.
+ */
+@Slf4j
+@Service
+public class BatchUploadService {
+    private final FileMetadataService metadataService;
+    private final FileUploadService fileUploadService;
+    private final int maxConcurrentFiles;
+    private final int insertBatchSize;
+    private final Duration insertMaxWait;
+
+    public BatchUploadService(FileMetadataService metadataService,
+                              FileUploadService fileUploadService,
+                              @Value("${upload.batch.max-concurrent-files:8}") int maxConcurrentFiles,
+                              @Value("${upload.batch.insert-batch-size:100}") int insertBatchSize,
+                              @Value("${upload.batch.insert-max-wait-ms:200}") long insertMaxWaitMs) {
+        this.metadataService = metadataService;
+        this.fileUploadService = fileUploadService;
+        this.maxConcurrentFiles = maxConcurrentFiles;
+        this.insertBatchSize = insertBatchSize;
+        this.insertMaxWait = Duration.ofMillis(insertMaxWaitMs);
+    }
+
+    /**
+     * Stores and scans every file of the stream.
+     *
+     * @param files One inner Flux per file, e.g. from a multipart body or {@link #readTar(Flux)}.
+     * @return The outcome of every file, in the order they are settled. A failing file does not
+     * stop the others.
+     */
+    public Flux<BatchUploadResult> upload(Flux<Flux<FileChunk>> files) {
+        return files
+                .flatMap(file -> file.switchOnFirst((first, chunks) -> first.hasValue()
+                        ? scan(first.get().fileName(), chunks.map(FileChunk::data)).flux()
+                        : Flux.empty()), maxConcurrentFiles)
+                .bufferTimeout(insertBatchSize, insertMaxWait)
+                .concatMap(this::record);
+    }
+
+    /**
+     * Splits a tar stream into files for {@link #upload(Flux)}.
+     */
+    public Flux<Flux<FileChunk>> readTar(Flux<DataBuffer> tar) {
+        return TarReader.read(tar);
+    }
+
+    private record ScannedFile(FileMetadataDto file, long size, Status status, String error) {}
+
+    private Mono<ScannedFile> scan(String fileName, Flux<DataBuffer> content) {
+        FileMetadataDto file = metadataService.prepareRecord(fileName);
+
+        return fileUploadService.storeAndScan(file, content)
+                .flatMap(outcome -> switch (outcome.verdict()) {
+                    case CLEAN -> fileUploadService.releaseQuarantined(file)
+                            .thenReturn(new ScannedFile(file, outcome.size(), Status.CLEAN, null));
+                    case INFESTED -> fileUploadService.dropQuarantined(file)
+                            .thenReturn(new ScannedFile(file, outcome.size(), Status.INFESTED, "File is infested"));
+                    default -> fileUploadService.dropQuarantined(file)
+                            .thenReturn(new ScannedFile(file, 0, Status.ERROR, "Scanner gave no verdict"));
+                })
+                .onErrorResume(error -> {
+                    log.warn("Batch upload of file {} failed: {}", fileName, error.getMessage());
+                    return fileUploadService.dropQuarantined(file)
+                            .thenReturn(new ScannedFile(file, 0, Status.ERROR, error.getMessage()));
+                });
+    }
+
+    private Flux<BatchUploadResult> record(List<ScannedFile> batch) {
+        List<FileMetadataDto> records = batch.stream()
+                .map(scanned -> new FileMetadataDto(null, scanned.file().fileName(), scanned.file().contentType(),
+                        scanned.file().fileKey(), scanned.file().storageType(), scanned.size(), scanned.status(),
+                        scanned.file().createdAt()))
+                .toList();
+
+        // Collected first, so a failure part way through can't report a file twice.
+        return metadataService.createRecords(records)
+                .collectList()
+                .flatMapMany(saved -> Flux.fromIterable(saved)
+                        .zipWithIterable(batch, (record, scanned) ->
+                                new BatchUploadResult(record.fileName(), record.id(), record.status(), record.size(), scanned.error())))
+                .onErrorResume(error -> {
+                    log.error("Failed to save metadata for a batch of {} files: {}", batch.size(), error.getMessage());
+                    // Without a record the clean files already under their final key can't be reached
+                    return Flux.fromIterable(batch)
+                            .filter(scanned -> scanned.status() == Status.CLEAN)
+                            .concatMap(scanned -> fileUploadService.dropReleased(scanned.file()))
+                            .thenMany(Flux.fromIterable(batch))
+                            .map(scanned -> new BatchUploadResult(scanned.file().fileName(), null, Status.ERROR,
+                                    scanned.size(), "Failed to save metadata: " + error.getMessage()));
+                });
+    }
+}
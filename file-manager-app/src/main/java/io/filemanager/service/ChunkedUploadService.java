@@ -0,0 +1,193 @@
+package io.filemanager.service;
+
+import io.filemanager.common.exception.ResourceNotFoundException;
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.UploadSessionStatus;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.dto.UploadChunkDto;
+import io.filemanager.metadata.dto.UploadSessionDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.metadata.service.UploadSessionService;
+import io.filemanager.storage.api.MultipartUploadStorage;
+import io.filemanager.storage.api.UploadedPart;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Uploads large files as numbered chunks that can be sent in parallel, in any order and again
+ * after a failure. Each session maps to one S3 multipart upload and each chunk to one part, so
+ * chunks are stored as they arrive. The session state lives in the metadata database.
+ * <p>
+ * The parts are assembled under the quarantine key of the file. On completion the file is
+ * scanned and only promoted to its real key if it is clean.
+ */
+@Slf4j
+@Service
+public class ChunkedUploadService {
+    private static final long MIN_CHUNK_SIZE_BYTES = 5L * 1024 * 1024; // 5MB, the S3 minimum part size
+    private static final long MAX_CHUNK_SIZE_BYTES = 5L * 1024 * 1024 * 1024; // 5GB, the S3 maximum part size
+    private static final int MAX_CHUNKS = 10_000; // S3 maximum number of parts
+
+    private final FileMetadataService metadataService;
+    private final UploadSessionService sessionService;
+    private final MultipartUploadStorage storage;
+    private final FileUploadService fileUploadService;
+    private final long defaultChunkSize;
+
+    public ChunkedUploadService(FileMetadataService metadataService,
+                                UploadSessionService sessionService,
+                                @Qualifier("s3FileStorageAdapter") MultipartUploadStorage storage,
+                                FileUploadService fileUploadService,
+                                @Value("${upload.chunked.default-chunk-size-mb:16}") long defaultChunkSizeMb) {
+        this.metadataService = metadataService;
+        this.sessionService = sessionService;
+        this.storage = storage;
+        this.fileUploadService = fileUploadService;
+        this.defaultChunkSize = defaultChunkSizeMb * 1024 * 1024;
+        if (defaultChunkSize < MIN_CHUNK_SIZE_BYTES || defaultChunkSize > MAX_CHUNK_SIZE_BYTES) {
+            throw new IllegalStateException("upload.chunked.default-chunk-size-mb must be between 5 and 5120");
+        }
+    }
+
+    /**
+     * Creates the file record and opens an upload session for it.
+     *
+     * @param fileName The name of the file.
+     * @param totalSize The size of the whole file.
+     * @param chunkSize The size of every chunk but the last one, or null for the default.
+     * @return A Mono containing the state of the new session.
+     */
+    public Mono<UploadSessionState> createSession(String fileName, long totalSize, Long chunkSize) {
+        long size = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (totalSize <= 0) {
+            return Mono.error(new IllegalArgumentException("File size must be positive"));
+        }
+        if (size < MIN_CHUNK_SIZE_BYTES && size < totalSize) {
+            return Mono.error(new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE_BYTES + " bytes"));
+        }
+        if (size > MAX_CHUNK_SIZE_BYTES) {
+            return Mono.error(new IllegalArgumentException("Chunk size must be at most " + MAX_CHUNK_SIZE_BYTES + " bytes"));
+        }
+        if ((totalSize + size - 1) / size > MAX_CHUNKS) {
+            return Mono.error(new IllegalArgumentException("A file can have at most " + MAX_CHUNKS + " chunks, use a larger chunk size"));
+        }
+
+        return metadataService.createInitialRecord(fileName)
+                .flatMap(file -> storage.initiateMultipartUpload(FileUploadService.quarantineKey(file.fileKey()), file.contentType())
+                        .flatMap(uploadId -> sessionService.createSession(file.id(), uploadId, size, totalSize)))
+                .doOnNext(session -> log.info("Opened upload session {} for file {} ({} chunks)",
+                        session.id(), fileName, session.chunkCount()))
+                .map(session -> toState(session, List.of()));
+    }
+
+    /**
+     * Stores one chunk. Chunks can be sent in parallel and in any order; sending a chunk again replaces it.
+     *
+     * @param sessionId The ID of the session.
+     * @param chunkNumber The 1-based number of the chunk.
+     * @param content The content of the chunk.
+     * @param contentLength The announced length of the content, or null if unknown.
+     * @return A Mono containing the stored chunk.
+     */
+    public Mono<UploadChunkDto> uploadChunk(Long sessionId, int chunkNumber, Flux<DataBuffer> content, Long contentLength) {
+        return openSession(sessionId)
+                .zipWhen(session -> metadataService.findById(session.fileId()))
+                .flatMap(sessionAndFile -> {
+                    UploadSessionDto session = sessionAndFile.getT1();
+                    FileMetadataDto file = sessionAndFile.getT2();
+                    if (chunkNumber < 1 || chunkNumber > session.chunkCount()) {
+                        return Mono.error(new IllegalArgumentException(
+                                "Chunk number must be between 1 and " + session.chunkCount()));
+                    }
+                    long expectedSize = chunkNumber < session.chunkCount()
+                            ? session.chunkSize()
+                            : session.totalSize() - (long) (session.chunkCount() - 1) * session.chunkSize();
+                    if (contentLength != null && contentLength != expectedSize) {
+                        return Mono.error(new IllegalArgumentException(
+                                "Chunk " + chunkNumber + " must be " + expectedSize + " bytes, got " + contentLength));
+                    }
+
+                    return storage.uploadPart(FileUploadService.quarantineKey(file.fileKey()), session.uploadId(),
+                                    chunkNumber, content, expectedSize)
+                            .flatMap(part -> sessionService.recordChunk(sessionId, part.partNumber(), part.eTag(), part.size()));
+                });
+    }
+
+    public Mono<UploadSessionState> getState(Long sessionId) {
+        return findSession(sessionId)
+                .flatMap(session -> sessionService.findChunks(sessionId)
+                        .map(UploadChunkDto::chunkNumber)
+                        .collectList()
+                        .map(chunks -> toState(session, chunks)));
+    }
+
+    /**
+     * Assembles the chunks into the file and scans it. Fails without side effects while chunks are missing.
+     *
+     * @param sessionId The ID of the session.
+     * @return A Mono containing the metadata of the clean file.
+     */
+    public Mono<FileMetadataDto> complete(Long sessionId) {
+        return openSession(sessionId)
+                .flatMap(session -> sessionService.findChunks(sessionId).collectList()
+                        .flatMap(chunks -> {
+                            Set<Integer> stored = chunks.stream().map(UploadChunkDto::chunkNumber).collect(Collectors.toSet());
+                            List<Integer> missing = IntStream.rangeClosed(1, session.chunkCount())
+                                    .filter(chunk -> !stored.contains(chunk))
+                                    .boxed()
+                                    .toList();
+                            if (!missing.isEmpty()) {
+                                return Mono.error(new IllegalStateException("Upload session " + sessionId
+                                        + " is missing chunks " + missing));
+                            }
+
+                            List<UploadedPart> parts = chunks.stream()
+                                    .map(chunk -> new UploadedPart(chunk.chunkNumber(), chunk.etag(), chunk.size()))
+                                    .toList();
+                            return metadataService.findById(session.fileId())
+                                    .flatMap(file -> storage.completeMultipartUpload(
+                                                    FileUploadService.quarantineKey(file.fileKey()), session.uploadId(), parts)
+                                            .flatMap(result -> sessionService.close(sessionId, UploadSessionStatus.COMPLETED)
+                                                    .then(fileUploadService.scanQuarantined(file, result.size()))));
+                        }));
+    }
+
+    /**
+     * Aborts the upload, frees the stored chunks and marks the file as failed.
+     */
+    public Mono<Void> abort(Long sessionId) {
+        return openSession(sessionId)
+                .flatMap(session -> metadataService.findById(session.fileId())
+                        .flatMap(file -> storage.abortMultipartUpload(FileUploadService.quarantineKey(file.fileKey()), session.uploadId()))
+                        .then(sessionService.close(sessionId, UploadSessionStatus.ABORTED))
+                        .then(metadataService.updateStatus(session.fileId(), Status.ERROR, 0)))
+                .then();
+    }
+
+    private Mono<UploadSessionDto> findSession(Long sessionId) {
+        return sessionService.findById(sessionId)
+                .switchIfEmpty(Mono.error(new ResourceNotFoundException("Upload session not found: " + sessionId)));
+    }
+
+    private Mono<UploadSessionDto> openSession(Long sessionId) {
+        return findSession(sessionId)
+                .flatMap(session -> session.status() == UploadSessionStatus.OPEN
+                        ? Mono.just(session)
+                        : Mono.error(new IllegalStateException("Upload session " + sessionId + " is " + session.status())));
+    }
+
+    private UploadSessionState toState(UploadSessionDto session, List<Integer> completedChunks) {
+        return new UploadSessionState(session.id(), session.fileId(), session.status(),
+                session.chunkSize(), session.totalSize(), session.chunkCount(), completedChunks);
+    }
+}
@@ -0,0 +1,46 @@
+package io.filemanager.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of a stream of DataBuffers, computed as the stream passes by.
+ */
+final class ContentDigest {
+
+    private final MessageDigest digest;
+
+    private ContentDigest(MessageDigest digest) {
+        this.digest = digest;
+    }
+
+    static ContentDigest sha256() {
+        try {
+            return new ContentDigest(MessageDigest.getInstance("SHA-256"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Feeds every buffer to the digest before passing it on, without moving its read position.
+     */
+    Flux<DataBuffer> observe(Flux<DataBuffer> content) {
+        return content.doOnNext(buffer -> {
+            try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+                buffers.forEachRemaining(digest::update);
+            }
+        });
+    }
+
+    /**
+     * The hex encoded hash. Only valid once the stream has completed.
+     */
+    String hex() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
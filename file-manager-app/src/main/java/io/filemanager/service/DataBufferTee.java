@@ -0,0 +1,66 @@
+package io.filemanager.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Splits one stream of DataBuffers into two that can be consumed independently.
+ * <p>
+ * The source is subscribed once both branches are subscribed and is paced by the slower one.
+ * Each branch gets its own buffer per chunk with its own read position: pooled Netty buffers
+ * share their memory through a retained duplicate, other buffers are copied. Each branch releases
+ * its buffers as usual. Once a branch has cancelled, its buffers are released on its behalf.
+ */
+final class DataBufferTee {
+
+    private record Pair(DataBuffer first, DataBuffer second) {}
+
+    private DataBufferTee() {
+    }
+
+    static Tuple2<Flux<DataBuffer>, Flux<DataBuffer>> tee(Flux<DataBuffer> source) {
+        AtomicBoolean firstGone = new AtomicBoolean(false);
+        AtomicBoolean secondGone = new AtomicBoolean(false);
+
+        Flux<Pair> shared = source
+                .map(buffer -> new Pair(buffer, duplicate(buffer)))
+                .publish()
+                .autoConnect(2);
+
+        Flux<DataBuffer> first = shared
+                .map(pair -> {
+                    if (secondGone.get()) {
+                        DataBufferUtils.release(pair.second());
+                    }
+                    return pair.first();
+                })
+                .doOnCancel(() -> firstGone.set(true));
+        Flux<DataBuffer> second = shared
+                .map(pair -> {
+                    if (firstGone.get()) {
+                        DataBufferUtils.release(pair.first());
+                    }
+                    return pair.second();
+                })
+                .doOnCancel(() -> secondGone.set(true));
+
+        return Tuples.of(first, second);
+    }
+
+    private static DataBuffer duplicate(DataBuffer buffer) {
+        if (buffer instanceof NettyDataBuffer nettyBuffer) {
+            return nettyBuffer.factory().wrap(nettyBuffer.getNativeBuffer().retainedDuplicate());
+        }
+        ByteBuffer copy = ByteBuffer.allocate(buffer.readableByteCount());
+        buffer.toByteBuffer(buffer.readPosition(), copy, 0, copy.capacity());
+        return DefaultDataBufferFactory.sharedInstance.wrap(copy);
+    }
+}
@@ -0,0 +1,11 @@
+package io.filemanager.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+/**
+ * A piece of one file out of a stream that carries several files, such as a multipart body or a tar stream.
+ */
+public record FileChunk(
+        String fileName,
+        DataBuffer data
+) {}
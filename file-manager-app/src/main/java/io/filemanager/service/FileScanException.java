@@ -0,0 +1,10 @@
+package io.filemanager.service;
+
+/**
+ * The scanner rejected a file or gave no usable verdict, so the file was not stored.
+ */
+public class FileScanException extends RuntimeException {
+    public FileScanException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,55 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.FileStorageDecorator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The storage adapters by storage type, each wrapped in the {@link FileStorageDecorator}s once.
+ * <p>
+ * Every service that talks to a backend goes through here, so uploads, downloads and archives
+ * share one concurrency limit, one cache and one set of counters per backend instead of each
+ * building its own or bypassing them.
+ */
+@Slf4j
+@Component
+public class FileStorageRegistry {
+    private final Map<StorageType, FileStorage> storages;
+
+    // Spring injects all beans of type FileStorage, i.e. the undecorated adapters
+    public FileStorageRegistry(List<FileStorage> adapters, ObjectProvider<FileStorageDecorator> decorators) {
+        List<FileStorageDecorator> ordered = decorators.orderedStream().toList();
+        this.storages = adapters.stream()
+                .map(adapter -> decorate(adapter, ordered))
+                .collect(Collectors.toUnmodifiableMap(FileStorage::getStorageType, Function.identity()));
+        log.info("Initialized storage adapters for {} with {} decorators", storages.keySet(), ordered.size());
+    }
+
+    /**
+     * @throws IllegalStateException If no adapter is configured for the type.
+     */
+    public FileStorage get(StorageType storageType) {
+        FileStorage storage = storages.get(storageType);
+        if (storage == null) {
+            throw new IllegalStateException("No storage adapter configured for type: " + storageType);
+        }
+        return storage;
+    }
+
+    private static FileStorage decorate(FileStorage adapter, List<FileStorageDecorator> decorators) {
+        // Decorators are applied in @Order, so the lowest order wraps the adapter directly.
+        FileStorage decorated = adapter;
+        for (FileStorageDecorator decorator : decorators) {
+            decorated = decorator.decorate(decorated);
+        }
+        return decorated;
+    }
+}
@@ -1,38 +1,346 @@
 package io.filemanager.service;
 
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
 import io.filemanager.metadata.dto.FileMetadataDto;
 import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.metadata.service.StatusConflictException;
+import io.filemanager.scanner.ScanBatchFrames;
 import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+@Slf4j
 @Service
 public class FileUploadService {
     private final FileMetadataService metadataService;
-    private final FileStorage fileStorage; // specific storage adapter for S3
+    private final FileStorage fileStorage; // the (decorated) S3 adapter
     private final WebClient virusScannerWebClient;
 
     private final String TARGET_URL = "http://host.testcontainers.internal:8080/api/files/upload-scanned"; // could be passed as a header or config property
     private final String PROXY_URL = "/scan"; // TODO: configure as environment variable or property. BaseUrl is set in ScannerConfig!!!
+    private static final String QUARANTINE_PREFIX = "quarantine/";
+
+    private static final String SIGNATURE_VERSION_HEADER = "X-Signature-Version";
+
+    private final boolean parallelUpload;
+    private final ScanVerdictCache verdictCache; // null when the verdict cache is disabled
+    private final ScanBatcher scanBatcher; // null when small files are scanned one by one
+    private final InlineScanner inlineScanner; // null when there is no in-process engine
 
     public FileUploadService(FileMetadataService metadataService,
-                             @Qualifier("s3FileStorageAdapter") FileStorage fileStorage,
-                             @Qualifier("virusScannerWebClient") WebClient virusScannerWebClient)
+                             FileStorageRegistry storages,
+                             @Qualifier("virusScannerWebClient") WebClient virusScannerWebClient,
+                             @Value("${scanner.parallel-upload:false}") boolean parallelUpload,
+                             ObjectProvider<ScanVerdictCache> verdictCache,
+                             ObjectProvider<ScanBatcher> scanBatcher,
+                             ObjectProvider<InlineScanner> inlineScanner)
     {
         this.metadataService = metadataService;
-        this.fileStorage = fileStorage;
+        this.fileStorage = storages.get(StorageType.S3);
         this.virusScannerWebClient = virusScannerWebClient;
+        this.parallelUpload = parallelUpload;
+        this.verdictCache = verdictCache.getIfAvailable();
+        this.scanBatcher = scanBatcher.getIfAvailable();
+        this.inlineScanner = inlineScanner.getIfAvailable();
     }
 
     public Mono<FileMetadataDto> processRawFileUpload(String filename, Flux<DataBuffer> content) {
+        return processRawFileUpload(filename, content, null);
+    }
+
+    /**
+     * Same as {@link #processRawFileUpload(String, Flux)}, for a client that declared the SHA-256
+     * of the content.
+     */
+    public Mono<FileMetadataDto> processRawFileUpload(String filename, Flux<DataBuffer> content, String contentHash) {
         return metadataService.createInitialRecord(filename)
-                .flatMap(savedFile -> forwardToScanner(savedFile, content));
+                .flatMap(savedFile -> process(savedFile, content, contentHash));
+    }
+
+    /**
+     * Scans and stores the content of a file whose record has already been created.
+     *
+     * @param file The saved metadata of the file, in status SCANNING.
+     * @param content The content of the file, consumed once.
+     * @return A Mono that completes once the file has been scanned and stored.
+     */
+    public Mono<FileMetadataDto> process(FileMetadataDto file, Flux<DataBuffer> content) {
+        return process(file, content, null);
+    }
+
+    /**
+     * Same as {@link #process(FileMetadataDto, Flux)}. If the verdict cache knows the declared
+     * hash, the file is stored without going through the scanner; the hash is checked while the
+     * file is stored.
+     *
+     * @param contentHash The hex encoded SHA-256 the client declared for the content, or null.
+     */
+    public Mono<FileMetadataDto> process(FileMetadataDto file, Flux<DataBuffer> content, String contentHash) {
+        Optional<Status> cached = cachedVerdict(contentHash);
+        if (cached.isPresent()) {
+            return settleStored(file, storeWithKnownVerdict(file, content, contentHash, cached.get()));
+        }
+        if (parallelUpload) {
+            return settleStored(file, storeAndScan(file, content));
+        }
+        return forwardToScanner(file, content);
+    }
+
+    /**
+     * Settles a file that has been stored in quarantine. In parallel mode the upload is streamed
+     * to the scanner and to a quarantine key in S3 at the same time, instead of sending it to the
+     * scanner and having the scanner send it back. The file is only moved to its real key once the
+     * scanner has found it clean; otherwise the quarantined copy is deleted.
+     * The returned metadata reflects the final status.
+     */
+    private Mono<FileMetadataDto> settleStored(FileMetadataDto file, Mono<ScanOutcome> stored) {
+        return stored
+                .onErrorResume(error -> metadataService.updateStatus(file.id(), Status.ERROR, 0)
+                        .then(Mono.error(error)))
+                .flatMap(outcome -> settle(file, outcome.size(), outcome.verdict()));
+    }
+
+    /**
+     * Stores the content under the quarantine key of the file while the scanner reads it, without
+     * touching the metadata. The file stays in quarantine whatever the verdict; if storing or
+     * scanning fails, the quarantined copy is deleted.
+     *
+     * @param file The metadata of the file; it need not be saved yet.
+     * @param content The content of the file, consumed once.
+     * @return A Mono containing the stored size and the verdict of the scanner.
+     */
+    Mono<ScanOutcome> storeAndScan(FileMetadataDto file, Flux<DataBuffer> content) {
+        String quarantineKey = quarantineKey(file.fileKey());
+        Tuple2<Flux<DataBuffer>, Flux<DataBuffer>> branches = DataBufferTee.tee(content);
+        ContentDigest digest = verdictCache != null ? ContentDigest.sha256() : null;
+        Flux<DataBuffer> toStore = digest != null ? digest.observe(branches.getT1()) : branches.getT1();
+
+        Mono<UploadResult> stored = fileStorage.upload(quarantineKey, toStore, file.contentType());
+        Mono<ScannerVerdict> verdict = requestVerdict(file, branches.getT2());
+
+        return Mono.zip(stored, verdict)
+                .map(result -> {
+                    remember(digest, result.getT2());
+                    return new ScanOutcome(result.getT1().size(), result.getT2().status());
+                })
+                .onErrorResume(error -> dropQuarantined(file).then(Mono.error(error)));
+    }
+
+    /**
+     * Stores content whose verdict is already known from its declared hash. If the stored content
+     * turns out to have a different hash, it is scanned after all.
+     */
+    private Mono<ScanOutcome> storeWithKnownVerdict(FileMetadataDto file, Flux<DataBuffer> content,
+                                                    String contentHash, Status verdict) {
+        ContentDigest digest = ContentDigest.sha256();
+        return fileStorage.upload(quarantineKey(file.fileKey()), digest.observe(content), file.contentType())
+                .flatMap(stored -> {
+                    if (digest.hex().equalsIgnoreCase(contentHash)) {
+                        log.debug("File {} has a known verdict {}, not scanned", file.fileName(), verdict);
+                        return Mono.just(new ScanOutcome(stored.size(), verdict));
+                    }
+                    log.warn("Content of file {} does not match its declared hash, scanning it", file.fileName());
+                    return scanStored(file, stored.size())
+                            .map(scanned -> new ScanOutcome(stored.size(), scanned));
+                })
+                .onErrorResume(error -> dropQuarantined(file).then(Mono.error(error)));
+    }
+
+    /**
+     * Moves a clean file from quarantine to its real key.
+     */
+    Mono<Void> releaseQuarantined(FileMetadataDto file) {
+        return fileStorage.move(quarantineKey(file.fileKey()), file.fileKey());
+    }
+
+    /**
+     * Deletes the quarantined copy of a file. Failures are only logged, since the file is
+     * unreachable either way.
+     */
+    Mono<Void> dropQuarantined(FileMetadataDto file) {
+        String quarantineKey = quarantineKey(file.fileKey());
+        return fileStorage.delete(quarantineKey)
+                .onErrorResume(error -> {
+                    log.warn("Failed to delete quarantined object {}: {}", quarantineKey, error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Deletes a file that has already been moved out of quarantine, e.g. because its record could
+     * not be saved. Failures are only logged, like for {@link #dropQuarantined(FileMetadataDto)}.
+     */
+    Mono<Void> dropReleased(FileMetadataDto file) {
+        return fileStorage.delete(file.fileKey())
+                .onErrorResume(error -> {
+                    log.warn("Failed to delete released object {}: {}", file.fileKey(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Scans a file that has already been stored under its quarantine key, e.g. one assembled
+     * from chunks, and promotes or discards it the same way as a file scanned while it is stored.
+     *
+     * @param file The metadata of the file.
+     * @param size The size of the stored file.
+     * @return A Mono containing the metadata of the clean file, or a FileScanException.
+     */
+    public Mono<FileMetadataDto> scanQuarantined(FileMetadataDto file, long size) {
+        return scanStored(file, size)
+                .onErrorResume(error -> discard(file, Status.ERROR, 0)
+                        .then(Mono.error(error)))
+                .flatMap(verdict -> settle(file, size, verdict));
+    }
+
+    /**
+     * Sends the quarantined copy of a file to the scanner.
+     */
+    private Mono<Status> scanStored(FileMetadataDto file, long size) {
+        String quarantineKey = quarantineKey(file.fileKey());
+        FileMetadataDto quarantined = new FileMetadataDto(file.id(), file.fileName(), file.contentType(),
+                quarantineKey, file.storageType(), size, file.status(), file.createdAt());
+        ContentDigest digest = verdictCache != null ? ContentDigest.sha256() : null;
+        Flux<DataBuffer> content = fileStorage.download(quarantined)
+                .map(DefaultDataBufferFactory.sharedInstance::wrap);
+
+        return requestVerdict(file, digest != null ? digest.observe(content) : content)
+                .map(verdict -> {
+                    remember(digest, verdict);
+                    return verdict.status();
+                });
+    }
+
+    private Optional<Status> cachedVerdict(String contentHash) {
+        if (verdictCache == null || !ScanVerdictCache.isSha256(contentHash)) {
+            return Optional.empty();
+        }
+        return verdictCache.lookup(contentHash);
+    }
+
+    private void remember(ContentDigest digest, ScannerVerdict verdict) {
+        if (digest != null) {
+            verdictCache.record(digest.hex(), verdict.status(), verdict.signatureVersion());
+        }
+    }
+
+    /**
+     * The key a file is stored under until the scanner has found it clean.
+     */
+    static String quarantineKey(String fileKey) {
+        return QUARANTINE_PREFIX + fileKey;
+    }
+
+    private Mono<FileMetadataDto> settle(FileMetadataDto file, long size, Status verdict) {
+        return switch (verdict) {
+            case CLEAN -> {
+                AtomicBoolean released = new AtomicBoolean();
+                yield releaseQuarantined(file)
+                        .doOnSuccess(ignored -> released.set(true))
+                        .then(Mono.defer(() -> metadataService.finalizeUpload(file.id(), size)))
+                        .onErrorResume(error -> abandon(file, released.get()).then(Mono.error(error)));
+            }
+            case INFESTED -> discard(file, Status.INFESTED, size)
+                    .then(Mono.error(new FileScanException("File " + file.fileName() + " is infested")));
+            default -> discard(file, Status.ERROR, 0)
+                    .then(Mono.error(new FileScanException("Scanner gave no verdict for file " + file.fileName())));
+        };
+    }
+
+    /**
+     * Cleans up after a clean file could not be released or finalized: deletes its object, from
+     * quarantine or from its real key if it got there, and marks it as ERROR unless it has been
+     * settled meanwhile. Otherwise it would stay in SCANNING for good.
+     */
+    private Mono<Void> abandon(FileMetadataDto file, boolean released) {
+        return dropQuarantined(file)
+                .then(released ? dropReleased(file) : Mono.empty())
+                .then(metadataService.updateStatus(file.id(), Status.ERROR, 0)
+                        .onErrorResume(StatusConflictException.class, conflict -> Mono.empty())
+                        .onErrorResume(error -> {
+                            log.warn("Failed to mark file {} as ERROR: {}", file.id(), error.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<FileMetadataDto> discard(FileMetadataDto file, Status status, long size) {
+        return dropQuarantined(file)
+                .then(metadataService.updateStatus(file.id(), status, size));
+    }
+
+    /**
+     * Gets a verdict for the content. With an in-process engine, the engine inspects the content
+     * on its way to the scanner and may settle the verdict without it.
+     */
+    private Mono<ScannerVerdict> requestVerdict(FileMetadataDto file, Flux<DataBuffer> content) {
+        if (inlineScanner == null) {
+            return requestExternalVerdict(file, content);
+        }
+        return inlineScanner.scan(file.fileName(), content, toScanner -> requestExternalVerdict(file, toScanner));
+    }
+
+    /**
+     * Asks the scanner for a verdict. With batching enabled, files that turn out to be small are
+     * collected in memory and scanned together with others; larger ones get a request of their own.
+     */
+    private Mono<ScannerVerdict> requestExternalVerdict(FileMetadataDto file, Flux<DataBuffer> content) {
+        if (scanBatcher == null) {
+            return requestSingleVerdict(file, content);
+        }
+        return smallOrLarge(content, scanBatcher.getMaxFileBytes(),
+                small -> scanBatcher.scan(file, small),
+                large -> requestSingleVerdict(file, large));
+    }
+
+    private Mono<ScannerVerdict> requestSingleVerdict(FileMetadataDto file, Flux<DataBuffer> content) {
+        return virusScannerWebClient.post()
+                .uri(PROXY_URL)
+                // Files of a batch upload get their ID only after the scan
+                .header("X-File-Id", file.id() != null ? String.valueOf(file.id()) : file.fileKey())
+                .header("X-Marker", "some-marker")
+                .header("X-Original-Filename", file.fileName())
+                .header("X-Content-Type", file.contentType())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(content, DataBuffer.class)
+                .exchangeToMono(response -> response.bodyToMono(String.class)
+                        .defaultIfEmpty("")
+                        .map(body -> new ScannerVerdict(toVerdict(response.statusCode(), body),
+                                response.headers().asHttpHeaders().getFirst(SIGNATURE_VERSION_HEADER))));
+    }
+
+    private static Status toVerdict(HttpStatusCode statusCode, String body) {
+        if (body.startsWith("INFECTED")) {
+            return Status.INFESTED;
+        }
+        if (statusCode.is2xxSuccessful() && body.startsWith("CLEAN")) {
+            return Status.CLEAN;
+        }
+        return Status.ERROR;
     }
 
     /**
@@ -55,7 +363,60 @@ public class FileUploadService {
                 });
     }
 
+    /**
+     * Stores the clean files of a batch that the scanner sends back in one callback.
+     *
+     * @param body The {@link ScanBatchFrames} with the clean files.
+     * @return A Mono containing the number of files stored.
+     */
+    public Mono<Long> uploadScannedBatchToS3(Flux<DataBuffer> body) {
+        if (scanBatcher == null) {
+            return Mono.error(new IllegalStateException("Batched scanning is disabled"));
+        }
+        return DataBufferUtils.join(body, (int) Math.min(Integer.MAX_VALUE, scanBatcher.getMaxRequestBytes()))
+                .map(joined -> {
+                    try {
+                        ByteBuffer bytes = ByteBuffer.allocate(joined.readableByteCount());
+                        joined.toByteBuffer(joined.readPosition(), bytes, 0, bytes.capacity());
+                        return ScanBatchFrames.decode(bytes);
+                    } finally {
+                        DataBufferUtils.release(joined);
+                    }
+                })
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(entry -> uploadScannedFileToS3(entry.fileId(),
+                        Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(entry.content()))))
+                .count();
+    }
+
+    /**
+     * Sends the file to the scanner, which forwards it to /upload-scanned if it is clean. Small
+     * files go in a batch when batching is enabled; the scanner then forwards the clean files of
+     * the batch to /upload-scanned-batch in one callback.
+     */
     private Mono<FileMetadataDto> forwardToScanner(FileMetadataDto file, Flux<DataBuffer> content) {
+        if (scanBatcher == null) {
+            return forwardSingle(file, content);
+        }
+        return smallOrLarge(content, scanBatcher.getMaxFileBytes(),
+                small -> scanBatcher.scanAndForward(file, small)
+                        .flatMap(verdict -> switch (verdict.status()) {
+                            // The callback has stored and finalized the file by the time the scanner answers
+                            case CLEAN -> metadataService.findById(file.id()).defaultIfEmpty(file);
+                            case INFESTED -> metadataService.updateStatus(file.id(), Status.INFESTED, small.length)
+                                    .then(Mono.error(new FileScanException("File " + file.fileName() + " is infested")));
+                            default -> metadataService.updateStatus(file.id(), Status.ERROR, 0)
+                                    .then(Mono.error(new FileScanException("Scanner gave no verdict for file " + file.fileName())));
+                        }),
+                large -> forwardSingle(file, large));
+    }
+
+    /**
+     * Sends one file to the scanner to be forwarded. An infected file is recorded as INFESTED, like
+     * one of a batch; any other error answer is passed on as a WebClientResponseException.
+     */
+    private Mono<FileMetadataDto> forwardSingle(FileMetadataDto file, Flux<DataBuffer> content) {
+        AtomicLong sent = new AtomicLong();
         return virusScannerWebClient.post()
                 .uri(PROXY_URL)
                 .header("X-File-Id", String.valueOf(file.id()))
@@ -64,9 +425,74 @@ public class FileUploadService {
                 .header("X-Content-Type", file.contentType())
                 .header("X-Target-Url", TARGET_URL)
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(content, DataBuffer.class)
-                .retrieve()
-                .bodyToMono(String.class)
-                .then(Mono.just(file));
+                .body(content.doOnNext(buffer -> sent.addAndGet(buffer.readableByteCount())), DataBuffer.class)
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is2xxSuccessful()) {
+                        return response.releaseBody().thenReturn(file);
+                    }
+                    return response.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .flatMap(body -> toVerdict(response.statusCode(), body) == Status.INFESTED
+                                    ? metadataService.updateStatus(file.id(), Status.INFESTED, sent.get())
+                                            .then(Mono.error(new FileScanException("File " + file.fileName() + " is infested")))
+                                    : Mono.error(WebClientResponseException.create(response.statusCode(),
+                                            response.statusCode().toString(), response.headers().asHttpHeaders(),
+                                            body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, null)));
+                });
+    }
+
+    /**
+     * Reads up to {@code maxSmallBytes} of the content to find out whether it is small. Small
+     * content is handed over as a byte array; larger content as a stream that starts with the
+     * bytes already read, so it is never held in memory as a whole. An error of the content before
+     * that is decided is passed on, and buffers read so far are released on error or cancel.
+     */
+    private static <T> Mono<T> smallOrLarge(Flux<DataBuffer> content, long maxSmallBytes,
+                                            Function<byte[], Mono<T>> small,
+                                            Function<Flux<DataBuffer>, Mono<T>> large) {
+        return Mono.defer(() -> {
+            AtomicLong seen = new AtomicLong();
+            // The first list holds everything up to the buffer that crosses the limit; after that
+            // every buffer comes in a list of its own. Content within the limit comes as one list.
+            return content
+                    .bufferUntil(buffer -> seen.addAndGet(buffer.readableByteCount()) > maxSmallBytes)
+                    .switchOnFirst((first, lists) -> {
+                        if (first.isOnError()) {
+                            return Flux.error(first.getThrowable());
+                        }
+                        if (seen.get() > maxSmallBytes) {
+                            return large.apply(lists.concatMapIterable(Function.identity())).flux();
+                        }
+                        return small.apply(first.hasValue() ? drain(first.get()) : new byte[0]).flux();
+                    })
+                    .next()
+                    // Buffers still held by bufferUntil, switchOnFirst or concatMapIterable
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .doOnDiscard(List.class, FileUploadService::releaseAll);
+        });
+    }
+
+    private static void releaseAll(List<?> buffers) {
+        for (Object buffer : buffers) {
+            if (buffer instanceof DataBuffer dataBuffer) {
+                DataBufferUtils.release(dataBuffer);
+            }
+        }
+        buffers.clear();
+    }
+
+    private static byte[] drain(List<DataBuffer> buffers) {
+        int size = buffers.stream().mapToInt(DataBuffer::readableByteCount).sum();
+        byte[] bytes = new byte[size];
+        int position = 0;
+        for (DataBuffer buffer : buffers) {
+            int length = buffer.readableByteCount();
+            buffer.read(bytes, position, length);
+            position += length;
+            DataBufferUtils.release(buffer);
+        }
+        // The list may still be discarded later on
+        buffers.clear();
+        return bytes;
     }
 }
@@ -0,0 +1,145 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.scanner.engine.EngineVerdict;
+import io.filemanager.scanner.engine.ScanEngine;
+import io.filemanager.scanner.engine.ScanSession;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.function.Tuple2;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Runs an in-process {@link ScanEngine} over the content on its way to the scanner.
+ * <p>
+ * The engine works on a CPU scheduler, off the threads that move the bytes, and each buffer is
+ * copied into a scratch array of the scan before it is handed to the engine, so the engine sees
+ * plain arrays and nothing is allocated per chunk.
+ * <p>
+ * In {@code PREFILTER} mode the content is also sent to the external scanner. A file the engine
+ * finds infected is rejected straight away and its scanner request is cancelled; other files get
+ * the verdict of the external scanner. In {@code AUTHORITATIVE} mode the verdict of the engine is
+ * final and the external scanner is never called.
+ */
+@Slf4j
+public class InlineScanner {
+    private static final int SCRATCH_BYTES = 16 * 1024;
+    private static final int PREFETCH = 4;
+
+    public enum Mode { PREFILTER, AUTHORITATIVE }
+
+    private final ScanEngine engine;
+    private final Mode mode;
+    private final Scheduler scheduler;
+
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong detections = new AtomicLong();
+
+    /**
+     * Signals that the engine found the content infected, so the external scan can be cancelled.
+     */
+    private static final class InlineDetection extends RuntimeException {
+        private InlineDetection() {
+            super(null, null, false, false);
+        }
+    }
+
+    public InlineScanner(ScanEngine engine, Mode mode, Scheduler scheduler) {
+        this.engine = engine;
+        this.mode = mode;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Scans the content with the engine and, depending on the mode, with the external scanner.
+     *
+     * @param content The content of the file, consumed once.
+     * @param external Sends content to the external scanner.
+     */
+    Mono<ScannerVerdict> scan(String fileName, Flux<DataBuffer> content,
+                              Function<Flux<DataBuffer>, Mono<ScannerVerdict>> external) {
+        if (mode == Mode.AUTHORITATIVE) {
+            return inspect(fileName, content)
+                    .map(verdict -> verdict.infected()
+                            ? new ScannerVerdict(Status.INFESTED, engine.signatureVersion())
+                            : new ScannerVerdict(Status.CLEAN, engine.signatureVersion()));
+        }
+
+        Tuple2<Flux<DataBuffer>, Flux<DataBuffer>> branches = DataBufferTee.tee(content);
+        Mono<EngineVerdict> inline = inspect(fileName, branches.getT2())
+                .flatMap(verdict -> verdict.infected() ? Mono.error(new InlineDetection()) : Mono.just(verdict));
+        return Mono.zip(external.apply(branches.getT1()), inline)
+                .map(Tuple2::getT1)
+                // Not tied to the signature version of the external scanner, so the verdict cache keeps its version.
+                .onErrorResume(InlineDetection.class, detection -> Mono.just(new ScannerVerdict(Status.INFESTED, null)));
+    }
+
+    /**
+     * Runs the engine over the content. Stops reading as soon as the engine has found a threat.
+     */
+    Mono<EngineVerdict> inspect(String fileName, Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            scans.incrementAndGet();
+            ScanSession session = engine.newSession();
+            byte[] scratch = new byte[SCRATCH_BYTES];
+            ByteBuffer scratchView = ByteBuffer.wrap(scratch);
+            return content
+                    .publishOn(scheduler, PREFETCH)
+                    .doOnNext(buffer -> {
+                        try {
+                            feed(session, buffer, scratch, scratchView);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .takeUntil(buffer -> session.isInfected())
+                    // Buffers still queued for the scheduler when the scan stops early
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .then(Mono.fromCallable(session::finish))
+                    .doOnNext(verdict -> {
+                        if (verdict.infected()) {
+                            detections.incrementAndGet();
+                            log.info("File {} matched {} in process", fileName, verdict.threat());
+                        }
+                    });
+        });
+    }
+
+    private static void feed(ScanSession session, DataBuffer buffer, byte[] scratch, ByteBuffer scratchView) {
+        int position = buffer.readPosition();
+        int remaining = buffer.readableByteCount();
+        while (remaining > 0 && !session.isInfected()) {
+            int length = Math.min(remaining, scratch.length);
+            buffer.toByteBuffer(position, scratchView, 0, length);
+            session.update(scratch, 0, length);
+            position += length;
+            remaining -= length;
+        }
+    }
+
+    public void bindMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("scanner.inline.scans", scans, AtomicLong::get).register(registry);
+        FunctionCounter.builder("scanner.inline.detections", detections, AtomicLong::get).register(registry);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getScanCount() {
+        return scans.get();
+    }
+
+    public long getDetectionCount() {
+        return detections.get();
+    }
+}
@@ -0,0 +1,232 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.scanner.ScanBatchFrames;
+import io.filemanager.scanner.ScanBatchVerdict;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans small files in batches, so they share one scanner request instead of paying for one each.
+ * <p>
+ * Files are collected until {@code maxFiles} files or {@code maxBatchBytes} bytes are waiting, or
+ * the first of them has waited {@code maxWait}. The batch is then sent as one
+ * {@link ScanBatchFrames} request; the scanner answers with one {@link ScanBatchVerdict} line per
+ * file. In forwarding mode the scanner also posts all clean files of the batch back in one callback.
+ * Files are only batched with files of the same mode.
+ */
+@Slf4j
+public class ScanBatcher {
+    private static final String BATCH_PATH = "/scan-batch";
+
+    private final WebClient virusScannerWebClient;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final long maxBatchBytes;
+    private final Duration maxWait;
+
+    private final Lane scanOnly;
+    private final Lane forwarding;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+
+    private static final class Pending {
+        private final String fileId;
+        private final byte[] content;
+        private final MonoSink<ScannerVerdict> sink;
+        private Map<String, Pending> sentIn; // the files of its batch still waiting for a verdict, once sent
+
+        private Pending(String fileId, byte[] content, MonoSink<ScannerVerdict> sink) {
+            this.fileId = fileId;
+            this.content = content;
+            this.sink = sink;
+        }
+    }
+
+    public ScanBatcher(WebClient virusScannerWebClient, String callbackUrl,
+                       long maxFileBytes, int maxFiles, long maxBatchBytes, Duration maxWait) {
+        this.virusScannerWebClient = virusScannerWebClient;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxWait = maxWait;
+        this.scanOnly = new Lane(null);
+        this.forwarding = new Lane(callbackUrl);
+    }
+
+    /**
+     * Files up to this size are scanned in batches.
+     */
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    /**
+     * The largest body a batch request or callback can have: a batch is sent once it reaches
+     * {@code maxBatchBytes}, so the last file may take it beyond that.
+     */
+    public long getMaxRequestBytes() {
+        return maxBatchBytes + maxFileBytes + (long) maxFiles * (ScanBatchFrames.FRAME_OVERHEAD + 256);
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getFileCount() {
+        return files.get();
+    }
+
+    /**
+     * Gets the verdict for a small file; the caller stores the file itself.
+     */
+    Mono<ScannerVerdict> scan(FileMetadataDto file, byte[] content) {
+        return scanOnly.submit(file, content);
+    }
+
+    /**
+     * Gets the verdict for a small file, which the scanner sends to the callback URL if it is clean.
+     */
+    Mono<ScannerVerdict> scanAndForward(FileMetadataDto file, byte[] content) {
+        return forwarding.submit(file, content);
+    }
+
+    private final class Lane {
+        private final String callbackUrl; // null if the scanner should only answer
+
+        private List<Pending> current = new ArrayList<>();
+        private long currentBytes;
+
+        private Lane(String callbackUrl) {
+            this.callbackUrl = callbackUrl;
+        }
+
+        Mono<ScannerVerdict> submit(FileMetadataDto file, byte[] content) {
+            // Files of a batch upload get their ID only after the scan
+            String fileId = file.id() != null ? String.valueOf(file.id()) : file.fileKey();
+            return Mono.create(sink -> {
+                Pending pending = new Pending(fileId, content, sink);
+                sink.onCancel(() -> cancel(pending));
+                enqueue(pending);
+            });
+        }
+
+        private void enqueue(Pending pending) {
+            Map<String, Pending> full = null;
+            synchronized (this) {
+                if (current.isEmpty()) {
+                    List<Pending> batch = current;
+                    Mono.delay(maxWait).subscribe(tick -> flush(batch));
+                }
+                current.add(pending);
+                currentBytes += pending.content.length;
+                if (current.size() >= maxFiles || currentBytes >= maxBatchBytes) {
+                    full = takeCurrent();
+                }
+            }
+            if (full != null) {
+                send(full);
+            }
+        }
+
+        private void flush(List<Pending> batch) {
+            Map<String, Pending> byId;
+            synchronized (this) {
+                // Already sent because it filled up, or all its files were cancelled
+                if (current != batch || batch.isEmpty()) {
+                    return;
+                }
+                byId = takeCurrent();
+            }
+            send(byId);
+        }
+
+        /**
+         * Drops a file whose caller is gone: it is left out of the batch if that is still being
+         * collected, and otherwise no longer waits for its verdict.
+         */
+        private synchronized void cancel(Pending pending) {
+            if (current.remove(pending)) {
+                currentBytes -= pending.content.length;
+            } else if (pending.sentIn != null) {
+                pending.sentIn.remove(pending.fileId, pending);
+            }
+        }
+
+        private Map<String, Pending> takeCurrent() {
+            Map<String, Pending> byId = new ConcurrentHashMap<>();
+            current.forEach(pending -> {
+                byId.put(pending.fileId, pending);
+                pending.sentIn = byId;
+            });
+            current = new ArrayList<>();
+            currentBytes = 0;
+            return byId;
+        }
+
+        private void send(Map<String, Pending> byId) {
+            List<Pending> batch = List.copyOf(byId.values());
+            batches.incrementAndGet();
+            files.addAndGet(batch.size());
+            byte[] body = ScanBatchFrames.encode(batch.stream()
+                    .map(pending -> new ScanBatchFrames.Entry(pending.fileId, pending.content))
+                    .toList());
+
+            WebClient.RequestBodySpec request = virusScannerWebClient.post()
+                    .uri(BATCH_PATH)
+                    .header("X-Marker", "some-marker");
+            if (callbackUrl != null) {
+                request = request.header("X-Target-Url", callbackUrl);
+            }
+            request.contentType(MediaType.parseMediaType(ScanBatchFrames.CONTENT_TYPE))
+                    .bodyValue(body)
+                    .exchangeToMono(response -> {
+                        if (!response.statusCode().is2xxSuccessful()) {
+                            return response.releaseBody().then(Mono.<Void>error(new IllegalStateException(
+                                    "Scanner answered a batch of " + batch.size() + " files with " + response.statusCode())));
+                        }
+                        String signatureVersion = response.headers().asHttpHeaders().getFirst("X-Signature-Version");
+                        return response.bodyToFlux(ScanBatchVerdict.class)
+                                .doOnNext(verdict -> {
+                                    Pending pending = byId.remove(verdict.fileId());
+                                    if (pending != null) {
+                                        pending.sink.success(new ScannerVerdict(toStatus(verdict.verdict()), signatureVersion));
+                                    }
+                                })
+                                .then();
+                    })
+                    .subscribe(
+                            null,
+                            error -> {
+                                log.warn("Batch scan of {} files failed: {}", batch.size(), error.getMessage());
+                                byId.values().forEach(pending -> pending.sink.error(error));
+                            },
+                            // Files the scanner didn't mention have no verdict
+                            () -> byId.values().forEach(pending ->
+                                    pending.sink.success(new ScannerVerdict(Status.ERROR, null))));
+        }
+    }
+
+    private static Status toStatus(String verdict) {
+        if (verdict == null) {
+            return Status.ERROR;
+        }
+        return switch (verdict) {
+            case "CLEAN" -> Status.CLEAN;
+            case "INFECTED" -> Status.INFESTED;
+            default -> Status.ERROR;
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+
+/**
+ * A file stored in quarantine together with the verdict of the scanner.
+ */
+record ScanOutcome(
+        long size,
+        Status verdict // CLEAN, INFESTED or ERROR if the scanner gave no usable answer
+) {}
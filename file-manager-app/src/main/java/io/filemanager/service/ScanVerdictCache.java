@@ -0,0 +1,92 @@
+package io.filemanager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.filemanager.metadata.domain.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Remembers the verdict of the scanner per SHA-256 of the content, so a file that has been
+ * uploaded before doesn't have to be scanned again.
+ * <p>
+ * Entries expire after a fixed time. A CLEAN verdict is also only trusted while the scanner still
+ * reports the signature version it was given under: new signatures may find something the old ones
+ * missed. An INFESTED verdict stays valid across versions.
+ */
+@Slf4j
+public class ScanVerdictCache {
+
+    record Entry(Status verdict, String signatureVersion) {}
+
+    private final Cache<String, Entry> cache;
+
+    // The latest signature version reported by the scanner, null until it has reported one
+    private volatile String signatureVersion;
+
+    public ScanVerdictCache(long maxEntries, Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param sha256 The hex encoded SHA-256 of the content.
+     * @return The verdict for that content, if one is known and still valid.
+     */
+    public Optional<Status> lookup(String sha256) {
+        Entry entry = cache.getIfPresent(normalize(sha256));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.verdict() == Status.CLEAN && !Objects.equals(entry.signatureVersion(), signatureVersion)) {
+            cache.invalidate(normalize(sha256));
+            return Optional.empty();
+        }
+        return Optional.of(entry.verdict());
+    }
+
+    /**
+     * Remembers a verdict of the scanner. Anything but CLEAN and INFESTED is ignored.
+     *
+     * @param sha256 The hex encoded SHA-256 of the content.
+     * @param verdict The verdict of the scanner.
+     * @param signatureVersion The signature version the scanner reported with it, or null.
+     */
+    public void record(String sha256, Status verdict, String signatureVersion) {
+        if (signatureVersion != null && !signatureVersion.equals(this.signatureVersion)) {
+            log.info("Scanner signature version changed from {} to {}", this.signatureVersion, signatureVersion);
+            this.signatureVersion = signatureVersion;
+        }
+        if (verdict == Status.CLEAN || verdict == Status.INFESTED) {
+            cache.put(normalize(sha256), new Entry(verdict, signatureVersion));
+        }
+    }
+
+    /**
+     * @return true if the value looks like a hex encoded SHA-256.
+     */
+    public static boolean isSha256(String value) {
+        return value != null && value.length() == 64 && value.chars().allMatch(HexFormat::isHexDigit);
+    }
+
+    public String getSignatureVersion() {
+        return signatureVersion;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static String normalize(String sha256) {
+        return sha256.toLowerCase(Locale.ROOT);
+    }
+}
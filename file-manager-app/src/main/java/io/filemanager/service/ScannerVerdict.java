@@ -0,0 +1,11 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+
+/**
+ * The answer of the scanner, with the signature version it was given under if the scanner reports one.
+ */
+record ScannerVerdict(
+        Status status, // CLEAN, INFESTED or ERROR if the scanner gave no usable answer
+        String signatureVersion
+) {}
@@ -0,0 +1,118 @@
+package io.filemanager.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * In-heap cache of complete small objects, so tiny hot files (icons, thumbnails, small PDFs)
+ * are served without a backend round trip.
+ * <p>
+ * Caffeine bounds the cache by total bytes and uses W-TinyLFU admission, so a burst of one-off
+ * downloads cannot flush the frequently requested objects.
+ */
+@Slf4j
+public class SmallObjectCache {
+
+    /**
+     * The storage key changes with every upload, so together with the size it identifies
+     * one version of a file.
+     */
+    record CacheKey(Long fileId, String fileKey, long size) {
+        static CacheKey of(FileMetadataDto metadata) {
+            return new CacheKey(metadata.id(), metadata.fileKey(), metadata.size());
+        }
+    }
+
+    private final Cache<CacheKey, byte[]> cache;
+    private final long maxObjectBytes;
+
+    public SmallObjectCache(long maxTotalBytes, long maxObjectBytes, Duration expireAfterAccess) {
+        this.maxObjectBytes = maxObjectBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxTotalBytes)
+                .weigher((CacheKey key, byte[] value) -> value.length)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return true if the object is small enough to be considered. A size of 0 means "unknown";
+     * such objects are buffered up to the object limit and dropped if they turn out to be larger.
+     */
+    public boolean accepts(FileMetadataDto metadata) {
+        return metadata.size() <= maxObjectBytes;
+    }
+
+    /**
+     * Serves the object from memory, or streams it from the loader while keeping a copy.
+     * The first bytes of a miss are emitted as they arrive; the copy is only stored once the
+     * stream completes.
+     */
+    public Flux<ByteBuffer> get(FileMetadataDto metadata, Supplier<Flux<ByteBuffer>> loader) {
+        return Flux.defer(() -> {
+            CacheKey key = CacheKey.of(metadata);
+            byte[] cached = cache.getIfPresent(key);
+            if (cached != null) {
+                return Flux.just(ByteBuffer.wrap(cached));
+            }
+
+            ByteArrayOutputStream copy = new ByteArrayOutputStream((int) Math.max(metadata.size(), 1024));
+            AtomicBoolean tooLarge = new AtomicBoolean(false);
+
+            return loader.get()
+                    .doOnNext(buffer -> {
+                        if (tooLarge.get()) {
+                            return;
+                        }
+                        if (copy.size() + buffer.remaining() > maxObjectBytes) {
+                            tooLarge.set(true);
+                            copy.reset();
+                            return;
+                        }
+                        ByteBuffer view = buffer.duplicate();
+                        byte[] bytes = new byte[view.remaining()];
+                        view.get(bytes);
+                        copy.writeBytes(bytes);
+                    })
+                    .doOnComplete(() -> {
+                        if (!tooLarge.get()) {
+                            cache.put(key, copy.toByteArray());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Publishes hits, misses, evictions and the number of cached bytes.
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "small-objects");
+        Gauge.builder("storage.cache.memory.size", this, SmallObjectCache::weightedSize)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long weightedSize() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+}
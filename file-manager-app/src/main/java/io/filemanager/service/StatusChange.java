@@ -0,0 +1,17 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileChangeEvent;
+
+/**
+ * A change of the scan status of a file, as pushed to clients that watch their uploads.
+ */
+public record StatusChange(
+        Long fileId,
+        Status status, // null if the file doesn't exist
+        boolean done // false while the file is still being scanned
+) {
+    public static StatusChange of(FileChangeEvent event) {
+        return new StatusChange(event.fileId(), event.status(), event.status() != Status.SCANNING);
+    }
+}
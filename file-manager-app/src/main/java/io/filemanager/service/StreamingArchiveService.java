@@ -1,7 +1,6 @@
 package io.filemanager.service;
 
 import io.filemanager.metadata.dto.FileMetadataDto;
-import io.filemanager.metadata.domain.StorageType;
 import io.filemanager.metadata.service.FileMetadataService;
 import io.filemanager.storage.api.FileStorage;
 import lombok.extern.slf4j.Slf4j;
@@ -17,10 +16,8 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -30,19 +27,12 @@ import java.util.zip.ZipOutputStream;
 public class StreamingArchiveService {
 
     private final FileMetadataService fileMetadataService;
-    private final Map<StorageType, FileStorage> storageAdapters;
+    private final FileStorageRegistry storages;
     private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
 
-    /**
-     * Constructor that uses Spring's dependency injection to find all beans
-     * implementing the FileStorage interface and organizes them into a lookup map.
-     */
-    public StreamingArchiveService(FileMetadataService fileMetadataService, List<FileStorage> adapters) {
+    public StreamingArchiveService(FileMetadataService fileMetadataService, FileStorageRegistry storages) {
         this.fileMetadataService = fileMetadataService;
-        // This creates an efficient, immutable lookup map from StorageType enum to the correct adapter bean.
-        this.storageAdapters = adapters.stream()
-                .collect(Collectors.toUnmodifiableMap(FileStorage::getStorageType, Function.identity()));
-        log.info("Initialized StreamingArchiveService with adapters for: {}", storageAdapters.keySet());
+        this.storages = storages;
     }
 
     /**
@@ -91,10 +81,7 @@ public class StreamingArchiveService {
 
             for (FileMetadataDto metadata : filesToProcess) {
                 try {
-                    FileStorage adapter = storageAdapters.get(metadata.storageType());
-                    if (adapter == null) {
-                        throw new IllegalStateException("No storage adapter configured for type: " + metadata.storageType());
-                    }
+                    FileStorage adapter = storages.get(metadata.storageType());
                     log.info("Processing file '{}' (ID: {}) using adapter: {}", metadata.fileName(), metadata.id(), adapter.getClass().getSimpleName());
 
                     // Use an AtomicBoolean to track if the zip entry has been created for this file.
@@ -0,0 +1,222 @@
+package io.filemanager.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a tar stream into its regular files while it is being received, so a tar of any size
+ * can be ingested without buffering it.
+ * <p>
+ * Supports ustar and the GNU and pax extensions for long names. Directories, links and other
+ * special entries are skipped. The bytes of each file are copied out of the incoming buffers,
+ * which are released right away.
+ */
+final class TarReader {
+    private static final int BLOCK_SIZE = 512;
+    // Long name and pax entries are collected in memory. Real ones hold a path and a few
+    // attributes, so a larger one is rejected before any of it is read.
+    private static final int MAX_EXTENSION_SIZE = 64 * 1024;
+
+    private TarReader() {
+    }
+
+    /**
+     * @param tar The tar stream.
+     * @return One inner Flux per regular file, in archive order. An inner Flux must be consumed
+     * before the next one can make progress.
+     */
+    static Flux<Flux<FileChunk>> read(Flux<DataBuffer> tar) {
+        return Flux.defer(() -> {
+            Parser parser = new Parser();
+            return tar.concatMapIterable(buffer -> {
+                        try {
+                            return parser.feed(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .concatWith(Flux.defer(() -> parser.isComplete()
+                            ? Flux.empty()
+                            : Flux.error(new IllegalArgumentException("Tar stream ended in the middle of an entry"))))
+                    .windowUntil(Piece::startsEntry, true)
+                    .map(window -> window.map(piece -> new FileChunk(piece.fileName(), piece.data())));
+        });
+    }
+
+    private record Piece(String fileName, DataBuffer data, boolean startsEntry) {}
+
+    private static final class Parser {
+        private final byte[] header = new byte[BLOCK_SIZE];
+        private int headerFill;
+
+        private long remaining; // data bytes left in the current entry
+        private long padding; // bytes up to the next block boundary
+        private String fileName; // of the current entry, if it is a regular file
+        private char extensionType; // 'L' or 'x' while reading the data of a long name entry
+        private ByteArrayOutputStream extension;
+        private String nextFileName; // long name that applies to the next entry
+        private int zeroBlocks;
+
+        List<Piece> feed(DataBuffer buffer) {
+            List<Piece> pieces = new ArrayList<>();
+            while (buffer.readableByteCount() > 0) {
+                if (zeroBlocks >= 2) {
+                    // End of archive; whatever follows is padding.
+                    buffer.readPosition(buffer.writePosition());
+                } else if (remaining > 0) {
+                    int length = (int) Math.min(remaining, buffer.readableByteCount());
+                    byte[] bytes = new byte[length];
+                    buffer.read(bytes);
+                    remaining -= length;
+                    if (fileName != null) {
+                        pieces.add(new Piece(fileName, DefaultDataBufferFactory.sharedInstance.wrap(bytes), false));
+                    } else if (extension != null) {
+                        extension.writeBytes(bytes);
+                    }
+                    if (remaining == 0) {
+                        endOfData();
+                    }
+                } else if (padding > 0) {
+                    int length = (int) Math.min(padding, buffer.readableByteCount());
+                    buffer.readPosition(buffer.readPosition() + length);
+                    padding -= length;
+                } else {
+                    int length = Math.min(BLOCK_SIZE - headerFill, buffer.readableByteCount());
+                    buffer.read(header, headerFill, length);
+                    headerFill += length;
+                    if (headerFill == BLOCK_SIZE) {
+                        headerFill = 0;
+                        parseHeader(pieces);
+                    }
+                }
+            }
+            return pieces;
+        }
+
+        boolean isComplete() {
+            return remaining == 0 && headerFill == 0;
+        }
+
+        private void parseHeader(List<Piece> pieces) {
+            if (isZeroBlock()) {
+                zeroBlocks++;
+                return;
+            }
+            zeroBlocks = 0;
+            if (!hasValidChecksum()) {
+                throw new IllegalArgumentException("Not a tar stream: invalid header checksum");
+            }
+
+            long size = parseNumber(124, 12);
+            char type = (char) header[156];
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+            fileName = null;
+            extension = null;
+
+            switch (type) {
+                case '0', '\0', '7' -> {
+                    fileName = nextFileName != null ? nextFileName : headerName();
+                    nextFileName = null;
+                    pieces.add(new Piece(fileName, DefaultDataBufferFactory.sharedInstance.allocateBuffer(0), true));
+                }
+                case 'L', 'x' -> {
+                    if (size > MAX_EXTENSION_SIZE) {
+                        throw new IllegalArgumentException("Tar extension header of " + size
+                                + " bytes exceeds the limit of " + MAX_EXTENSION_SIZE + " bytes");
+                    }
+                    extensionType = type;
+                    extension = new ByteArrayOutputStream();
+                }
+                default -> nextFileName = null; // directory, link or other special entry
+            }
+            if (size == 0) {
+                endOfData();
+            }
+        }
+
+        private void endOfData() {
+            if (extension != null) {
+                String name = extensionType == 'L'
+                        ? trimNul(extension.toString(StandardCharsets.UTF_8))
+                        : paxPath(extension.toString(StandardCharsets.UTF_8));
+                if (name != null) {
+                    nextFileName = name;
+                }
+                extension = null;
+            }
+            fileName = null;
+        }
+
+        private String headerName() {
+            String name = readString(0, 100);
+            String prefix = readString(345, 155);
+            boolean ustar = new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar");
+            return ustar && !prefix.isEmpty() ? prefix + "/" + name : name;
+        }
+
+        private long parseNumber(int offset, int length) {
+            if ((header[offset] & 0x80) != 0) {
+                // Base-256 encoding, used for entries of 8GB and more
+                long value = header[offset] & 0x7f;
+                for (int i = offset + 1; i < offset + length; i++) {
+                    value = (value << 8) | (header[i] & 0xff);
+                }
+                return value;
+            }
+            String octal = readString(offset, length).trim();
+            return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+        }
+
+        private boolean hasValidChecksum() {
+            long expected = parseNumber(148, 8);
+            long sum = 0;
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                sum += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xff);
+            }
+            return sum == expected;
+        }
+
+        private boolean isZeroBlock() {
+            for (byte b : header) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String readString(int offset, int length) {
+            int end = offset;
+            while (end < offset + length && header[end] != 0) {
+                end++;
+            }
+            return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        private static String trimNul(String value) {
+            int end = value.indexOf('\0');
+            return end >= 0 ? value.substring(0, end) : value;
+        }
+
+        /**
+         * Pax records look like "{length} {key}={value}\n"; only the path is of interest.
+         */
+        private static String paxPath(String records) {
+            for (String record : records.split("\n")) {
+                int space = record.indexOf(' ');
+                if (space > 0 && record.startsWith("path=", space + 1)) {
+                    return record.substring(space + 1 + "path=".length());
+                }
+            }
+            return null;
+        }
+    }
+}
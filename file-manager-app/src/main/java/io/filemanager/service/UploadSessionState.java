@@ -0,0 +1,18 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.UploadSessionStatus;
+
+import java.util.List;
+
+/**
+ * What a client needs to continue a chunked upload: the chunk layout and the chunks already stored.
+ */
+public record UploadSessionState(
+        Long sessionId,
+        Long fileId,
+        UploadSessionStatus status,
+        long chunkSize,
+        long totalSize,
+        int chunkCount,
+        List<Integer> completedChunks
+) {}
@@ -0,0 +1,19 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileMetadataDto;
+
+/**
+ * Where an upload stands, as returned by the status endpoint and sent to webhooks.
+ */
+public record UploadStatus(
+        Long fileId,
+        String fileName,
+        Status status,
+        long size,
+        boolean done // false while the file is still being scanned
+) {
+    public static UploadStatus of(FileMetadataDto file) {
+        return new UploadStatus(file.id(), file.fileName(), file.status(), file.size(), file.status() != Status.SCANNING);
+    }
+}
@@ -0,0 +1,93 @@
+package io.filemanager.web;
+
+import io.filemanager.common.exception.ResourceNotFoundException;
+import io.filemanager.metadata.dto.UploadChunkDto;
+import io.filemanager.service.ChunkedUploadService;
+import io.filemanager.service.FileScanException;
+import io.filemanager.service.UploadSessionState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Chunked upload protocol for large files:
+ * <ol>
+ *     <li>{@code POST /api/files/uploads} opens a session and returns the chunk layout.</li>
+ *     <li>{@code PUT /api/files/uploads/{id}/chunks/{n}} stores chunk n; chunks can be sent in parallel.</li>
+ *     <li>{@code GET /api/files/uploads/{id}} tells which chunks are stored, e.g. after a dropped connection.</li>
+ *     <li>{@code POST /api/files/uploads/{id}/complete} assembles and scans the file and returns its ID.</li>
+ * </ol>
+ * {@code DELETE /api/files/uploads/{id}} gives up on an upload.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/files/uploads")
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public ChunkedUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<UploadSessionState>> createSession(@RequestHeader("X-File-Name") String fileName,
+                                                                  @RequestHeader("X-File-Size") long fileSize,
+                                                                  @RequestHeader(value = "X-Chunk-Size", required = false) Long chunkSize) {
+        return chunkedUploadService.createSession(fileName, fileSize, chunkSize)
+                .map(state -> ResponseEntity.status(HttpStatus.CREATED).body(state))
+                .onErrorMap(this::toResponseStatus);
+    }
+
+    @PutMapping(value = "/{sessionId}/chunks/{chunkNumber}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<ResponseEntity<UploadChunkDto>> uploadChunk(@PathVariable Long sessionId,
+                                                            @PathVariable int chunkNumber,
+                                                            ServerHttpRequest request) {
+        long contentLength = request.getHeaders().getContentLength();
+
+        return chunkedUploadService.uploadChunk(sessionId, chunkNumber, request.getBody(),
+                        contentLength >= 0 ? contentLength : null)
+                .map(ResponseEntity::ok)
+                .onErrorMap(this::toResponseStatus);
+    }
+
+    @GetMapping("/{sessionId}")
+    public Mono<ResponseEntity<UploadSessionState>> getState(@PathVariable Long sessionId) {
+        return chunkedUploadService.getState(sessionId)
+                .map(ResponseEntity::ok)
+                .onErrorMap(this::toResponseStatus);
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public Mono<ResponseEntity<String>> complete(@PathVariable Long sessionId) {
+        return chunkedUploadService.complete(sessionId)
+                .map(file -> ResponseEntity.ok(file.id().toString()))
+                .onErrorMap(this::toResponseStatus);
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public Mono<ResponseEntity<Void>> abort(@PathVariable Long sessionId) {
+        return chunkedUploadService.abort(sessionId)
+                .then(Mono.just(ResponseEntity.noContent().<Void>build()))
+                .onErrorMap(this::toResponseStatus);
+    }
+
+    private Throwable toResponseStatus(Throwable error) {
+        HttpStatus status = switch (error) {
+            case ResourceNotFoundException ignored -> HttpStatus.NOT_FOUND;
+            case IllegalArgumentException ignored -> HttpStatus.BAD_REQUEST;
+            case IllegalStateException ignored -> HttpStatus.CONFLICT;
+            case FileScanException ignored -> HttpStatus.UNPROCESSABLE_ENTITY;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+        if (status == HttpStatus.INTERNAL_SERVER_ERROR) {
+            log.error("Chunked upload request failed: {}", error.getMessage(), error);
+        }
+        return new ResponseStatusException(status, error.getMessage(), error);
+    }
+}
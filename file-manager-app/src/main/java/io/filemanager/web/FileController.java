@@ -1,18 +1,41 @@
 package io.filemanager.web;
 
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileListCursor;
+import io.filemanager.metadata.dto.FileListFilter;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.scanner.ScanBatchFrames;
+import io.filemanager.service.AsyncUploadService;
+import io.filemanager.service.BatchUploadResult;
+import io.filemanager.service.BatchUploadService;
+import io.filemanager.service.FileChunk;
 import io.filemanager.service.FileDownloadService;
 import io.filemanager.service.FileUploadService;
+import io.filemanager.service.StatusChange;
+import io.filemanager.service.UploadStatus;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
 import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -21,22 +44,86 @@ public class FileController {
 
     private final FileUploadService fileUploadService;
     private final FileDownloadService fileDownloadService;
+    private final BatchUploadService batchUploadService;
+    private final AsyncUploadService asyncUploadService;
+    private final FileMetadataService metadataService;
+    private final Duration statusEventsHeartbeat;
+    private final Duration statusEventsMaxDuration;
 
-    public FileController(FileUploadService fileUploadService, FileDownloadService fileDownloadService) {
+    public FileController(FileUploadService fileUploadService, FileDownloadService fileDownloadService,
+                          BatchUploadService batchUploadService, AsyncUploadService asyncUploadService,
+                          FileMetadataService metadataService,
+                          @Value("${upload.status-events.heartbeat-seconds:15}") long statusEventsHeartbeatSeconds,
+                          @Value("${upload.status-events.max-duration-minutes:30}") long statusEventsMaxDurationMinutes) {
         this.fileUploadService = fileUploadService;
         this.fileDownloadService = fileDownloadService;
+        this.batchUploadService = batchUploadService;
+        this.asyncUploadService = asyncUploadService;
+        this.metadataService = metadataService;
+        this.statusEventsHeartbeat = Duration.ofSeconds(statusEventsHeartbeatSeconds);
+        this.statusEventsMaxDuration = Duration.ofMinutes(statusEventsMaxDurationMinutes);
+    }
+
+    /**
+     * Lists files, newest first, as one JSON line per file. Every filter is optional; the name
+     * prefix is matched literally.
+     * <p>
+     * At most {@code limit} files are returned. To get the next ones, pass the creation time and
+     * ID of the last file received as {@code after=<createdAt>,<id>}.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<FileMetadataDto> list(@RequestParam(required = false) Status status,
+                                      @RequestParam(required = false) StorageType storageType,
+                                      @RequestParam(required = false) String contentType,
+                                      @RequestParam(required = false) String namePrefix,
+                                      @RequestParam(required = false) String after,
+                                      @RequestParam(defaultValue = "1000") int limit) {
+        FileListCursor cursor;
+        try {
+            cursor = after != null ? FileListCursor.parse(after) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        return metadataService.list(new FileListFilter(status, storageType, contentType, namePrefix), cursor, limit);
     }
 
     /**
      * Endpoint 1: Accepts file upload and forwards to AV scanner
+     * <p>
+     * With {@code Prefer: respond-async} the file ID is returned with 202 Accepted as soon as the
+     * body has been received; the scan result is available from {@code /api/files/{id}/status},
+     * pushed by {@code /api/files/{id}/status/events} and, if {@code X-Callback-Url} is set,
+     * posted there once known.
+     * <p>
+     * A client that sends the SHA-256 of the content in {@code X-Content-SHA256} skips the scanner
+     * for content whose verdict is already known.
      */
     @PostMapping(value = "/upload", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
     public Mono<ResponseEntity<String>> upload(@RequestHeader("X-File-Name") String fileName,
+                                               @RequestHeader(value = "Prefer", required = false) String prefer,
+                                               @RequestHeader(value = "X-Callback-Url", required = false) String callbackUrl,
+                                               @RequestHeader(value = "X-Content-SHA256", required = false) String contentHash,
                                                ServerHttpRequest request) {
 
         Flux<DataBuffer> body = request.getBody();
 
-        return fileUploadService.processRawFileUpload(fileName, body)
+        if (prefer != null && prefer.contains("respond-async")) {
+            return asyncUploadService.accept(fileName, body, contentHash, callbackUrl)
+                    .map(fileDto -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                            .location(URI.create("/api/files/" + fileDto.id() + "/status"))
+                            .header("Preference-Applied", "respond-async")
+                            .body(fileDto.id().toString()))
+                    .onErrorResume(IllegalArgumentException.class, error ->
+                            Mono.just(ResponseEntity.badRequest().body(error.getMessage())))
+                    .onErrorResume(error ->
+                            Mono.just(ResponseEntity.status(500)
+                                    .body("Failed to receive file " + fileName + ": " + error.getMessage())));
+        }
+
+        return fileUploadService.processRawFileUpload(fileName, body, contentHash)
                 .flatMap(fileDto -> Mono.just(fileDto.id().toString()))
                 .map(ResponseEntity::ok)
                 .onErrorResume(error ->
@@ -44,6 +131,35 @@ public class FileController {
                                 .body("Failed to scan file " + fileName + ": " + error.getMessage())));
     }
 
+    /**
+     * Accepts many files in one streaming multipart/form-data request. Each file part is scanned
+     * and stored as it arrives; the outcome of every file is streamed back as one JSON line.
+     */
+    @PostMapping(value = "/upload-batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchUploadResult> uploadBatch(@RequestBody Flux<PartEvent> parts) {
+        Flux<Flux<FileChunk>> files = parts
+                .windowUntil(PartEvent::isLast)
+                .map(part -> part.handle((event, sink) -> {
+                    if (event instanceof FilePartEvent filePart) {
+                        sink.next(new FileChunk(filePart.filename(), filePart.content()));
+                    } else {
+                        // Plain form fields carry no file
+                        DataBufferUtils.release(event.content());
+                    }
+                }));
+
+        return batchUploadService.upload(files);
+    }
+
+    /**
+     * Same as the multipart variant, for clients that send a tar stream.
+     */
+    @PostMapping(value = "/upload-batch", consumes = "application/x-tar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchUploadResult> uploadTarBatch(ServerHttpRequest request) {
+        return batchUploadService.upload(batchUploadService.readTar(request.getBody()));
+    }
+
     /**
      * Endpoint 2: Accepts scanned file and uploads to S3
      */
@@ -67,6 +183,68 @@ public class FileController {
                         .body(error.getMessage())));
     }
 
+    /**
+     * Accepts the clean files of a batch scan, which the scanner sends back in one request.
+     */
+    @PostMapping(value = "/upload-scanned-batch", consumes = ScanBatchFrames.CONTENT_TYPE)
+    public Mono<ResponseEntity<String>> uploadScannedBatch(@RequestHeader("X-Marker") String marker,
+                                                           ServerHttpRequest request) {
+        log.info("Received scanned batch - Marker: {}", marker);
+
+        return fileUploadService.uploadScannedBatchToS3(request.getBody())
+                .map(count -> ResponseEntity.ok(String.format("Successfully uploaded %d files", count)))
+                .onErrorResume(error -> Mono.just(ResponseEntity.badRequest()
+                        .body(error.getMessage())));
+    }
+
+    /**
+     * The scan status of an upload, for clients that uploaded asynchronously.
+     */
+    @GetMapping("/{id}/status")
+    public Mono<ResponseEntity<UploadStatus>> uploadStatus(@PathVariable Long id) {
+        return asyncUploadService.getStatus(id)
+                .map(ResponseEntity::ok)
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Pushes the scan status of an upload as server-sent events, starting with the current one,
+     * until the file is no longer being scanned. Replaces polling {@code /api/files/{id}/status}.
+     * <p>
+     * While nothing changes, a comment is sent every {@code heartbeat-seconds}, so proxies don't
+     * close the stream as idle and a client that went away is noticed. A stream ends after
+     * {@code max-duration-minutes} at the latest; a client that reconnects gets the current
+     * status first again.
+     */
+    @GetMapping(value = "/{id}/status/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StatusChange>> uploadStatusEvents(@PathVariable Long id) {
+        return statusEvents(List.of(id));
+    }
+
+    /**
+     * Same as for a single upload, for a batch of them, e.g. {@code ?ids=1,2,3}. The stream ends
+     * once no file of the batch is being scanned anymore.
+     */
+    @GetMapping(value = "/status/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StatusChange>> batchStatusEvents(@RequestParam List<Long> ids) {
+        if (ids.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids must not be empty");
+        }
+        return statusEvents(ids);
+    }
+
+    private Flux<ServerSentEvent<StatusChange>> statusEvents(List<Long> ids) {
+        Flux<ServerSentEvent<StatusChange>> heartbeats = Flux.interval(statusEventsHeartbeat)
+                .map(tick -> ServerSentEvent.<StatusChange>builder().comment("heartbeat").build());
+        return metadataService.watchStatuses(ids)
+                .map(event -> ServerSentEvent.builder(StatusChange.of(event))
+                        .event("status")
+                        .build())
+                .take(statusEventsMaxDuration)
+                // The heartbeats stop with the statuses
+                .publish(statuses -> Flux.merge(statuses, heartbeats.takeUntilOther(statuses.then())));
+    }
+
     /**
      * Downloads a file by its database ID, setting the correct filename in the response header.
      *
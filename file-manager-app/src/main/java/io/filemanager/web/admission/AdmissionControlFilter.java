@@ -0,0 +1,91 @@
+package io.filemanager.web.admission;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Admits requests per {@link EndpointClass} before they reach a controller, and answers
+ * quickly with 429 or 503 and a {@code Retry-After} header when the class is saturated.
+ * <p>
+ * Each class has a priority. While the heap is under pressure, classes below
+ * {@code criticalPriority} are shed with 503 so the memory goes to the important ones.
+ */
+@Slf4j
+public class AdmissionControlFilter implements WebFilter {
+
+    /**
+     * The admission settings of one endpoint class.
+     *
+     * @param requestCostBytes Estimated memory a request holds while it runs. Uploads that
+     *                         announce a smaller Content-Length are charged that instead.
+     */
+    public record ClassPolicy(AdmissionController controller, long requestCostBytes, int priority, long retryAfterSeconds) {}
+
+    private final Map<EndpointClass, ClassPolicy> policies;
+    private final DoubleSupplier heapPressure;
+    private final double heapShedThreshold;
+    private final int criticalPriority;
+
+    public AdmissionControlFilter(Map<EndpointClass, ClassPolicy> policies, DoubleSupplier heapPressure,
+                                  double heapShedThreshold, int criticalPriority) {
+        this.policies = policies;
+        this.heapPressure = heapPressure;
+        this.heapShedThreshold = heapShedThreshold;
+        this.criticalPriority = criticalPriority;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ClassPolicy policy = EndpointClass.of(exchange.getRequest())
+                .map(policies::get)
+                .orElse(null);
+        if (policy == null) {
+            return chain.filter(exchange);
+        }
+
+        if (policy.priority() < criticalPriority && heapPressure.getAsDouble() > heapShedThreshold) {
+            policy.controller().recordRejection();
+            return reject(exchange, policy, new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Shedding " + policy.controller().getEndpointClass() + " requests under memory pressure"));
+        }
+
+        return policy.controller().admit(cost(exchange, policy))
+                .onErrorResume(AdmissionRejectedException.class, rejection -> reject(exchange, policy, rejection).then(Mono.empty()))
+                .flatMap(ticket -> chain.filter(exchange).doFinally(signal -> ticket.release()));
+    }
+
+    public Map<EndpointClass, ClassPolicy> getPolicies() {
+        return policies;
+    }
+
+    private long cost(ServerWebExchange exchange, ClassPolicy policy) {
+        long contentLength = exchange.getRequest().getHeaders().getContentLength();
+        if (policy.controller().getEndpointClass() == EndpointClass.UPLOAD && contentLength >= 0) {
+            return Math.min(contentLength, policy.requestCostBytes());
+        }
+        return policy.requestCostBytes();
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, ClassPolicy policy, AdmissionRejectedException rejection) {
+        log.debug("Rejected {} {}: {}", exchange.getRequest().getMethod(), exchange.getRequest().getPath(), rejection.getMessage());
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(rejection.getStatus());
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(policy.retryAfterSeconds()));
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        DataBuffer body = response.bufferFactory().wrap(rejection.getMessage().getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+}
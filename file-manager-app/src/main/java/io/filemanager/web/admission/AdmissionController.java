@@ -0,0 +1,184 @@
+package io.filemanager.web.admission;
+
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for one class of endpoints.
+ * <p>
+ * A request is admitted when both a slot under {@code maxInFlight} and its estimated memory
+ * cost under {@code memoryBudgetBytes} are free. Otherwise it waits in a bounded FIFO queue for
+ * at most {@code maxQueueTime}. A full queue is answered with 429 right away and a request that
+ * waited too long with 503, so clients back off instead of piling up behind a saturated server.
+ * Admitted requests thus see the latency of a server running at its limit, not beyond it.
+ */
+public class AdmissionController {
+    private final EndpointClass endpointClass;
+    private final int maxInFlight;
+    private final int maxQueueSize;
+    private final Duration maxQueueTime;
+    private final long memoryBudgetBytes;
+
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private int inFlight;
+    private long reservedBytes;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdmissionController(EndpointClass endpointClass, int maxInFlight, int maxQueueSize,
+                               Duration maxQueueTime, long memoryBudgetBytes) {
+        this.endpointClass = endpointClass;
+        this.maxInFlight = maxInFlight;
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueueTime = maxQueueTime;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public final class Ticket {
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Ticket(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdmissionController.this.release(bytes);
+            }
+        }
+    }
+
+    private final class Waiter {
+        private final MonoSink<Ticket> sink;
+        private final long bytes;
+        private Ticket ticket; // set under the lock when admitted
+
+        private Waiter(MonoSink<Ticket> sink, long bytes) {
+            this.sink = sink;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Emits a ticket once the request may run. The ticket must be released when the request has ended.
+     *
+     * @param bytes The estimated memory the request holds while it runs.
+     */
+    public Mono<Ticket> admit(long bytes) {
+        // A request bigger than the whole budget would block the queue forever.
+        long cost = Math.min(bytes, memoryBudgetBytes);
+        return Mono.<Ticket>create(sink -> {
+                    Waiter waiter = new Waiter(sink, cost);
+                    sink.onCancel(() -> cancel(waiter));
+
+                    Ticket immediate = null;
+                    boolean queueFull = false;
+                    synchronized (this) {
+                        if (waiters.isEmpty() && fits(cost)) {
+                            immediate = grant(waiter);
+                        } else if (waiters.size() >= maxQueueSize) {
+                            queueFull = true;
+                        } else {
+                            waiters.add(waiter);
+                        }
+                    }
+
+                    if (immediate != null) {
+                        admitted.incrementAndGet();
+                        sink.success(immediate);
+                    } else if (queueFull) {
+                        rejected.incrementAndGet();
+                        sink.error(new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                                "Too many " + endpointClass + " requests"));
+                    }
+                })
+                .timeout(maxQueueTime, Mono.error(() -> {
+                    rejected.incrementAndGet();
+                    return new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Timed out after " + maxQueueTime.toMillis() + " ms waiting to admit a " + endpointClass + " request");
+                }));
+    }
+
+    public EndpointClass getEndpointClass() {
+        return endpointClass;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Counts a request that was rejected before it reached this controller, e.g. to shed load.
+     */
+    void recordRejection() {
+        rejected.incrementAndGet();
+    }
+
+    private void release(long bytes) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            reservedBytes -= bytes;
+            while (!waiters.isEmpty() && fits(waiters.peek().bytes)) {
+                Waiter waiter = waiters.poll();
+                grant(waiter);
+                granted.add(waiter);
+            }
+        }
+        admitted.addAndGet(granted.size());
+        granted.forEach(waiter -> waiter.sink.success(waiter.ticket));
+    }
+
+    private void cancel(Waiter waiter) {
+        Ticket orphaned;
+        synchronized (this) {
+            if (waiters.remove(waiter)) {
+                return;
+            }
+            orphaned = waiter.ticket;
+        }
+        // Admitted while being cancelled, e.g. by the queue timeout: hand the slot back.
+        if (orphaned != null) {
+            orphaned.release();
+        }
+    }
+
+    // Called with the lock held
+    private boolean fits(long bytes) {
+        return inFlight < maxInFlight && reservedBytes + bytes <= memoryBudgetBytes;
+    }
+
+    // Called with the lock held
+    private Ticket grant(Waiter waiter) {
+        inFlight++;
+        reservedBytes += waiter.bytes;
+        waiter.ticket = new Ticket(waiter.bytes);
+        return waiter.ticket;
+    }
+}
@@ -0,0 +1,17 @@
+package io.filemanager.web.admission;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * A request was turned away because its endpoint class is saturated.
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+    private final HttpStatus status; // 429 or 503
+
+    public AdmissionRejectedException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
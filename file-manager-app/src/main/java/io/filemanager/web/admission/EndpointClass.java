@@ -0,0 +1,35 @@
+package io.filemanager.web.admission;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.util.Optional;
+
+/**
+ * Groups of endpoints that are admitted independently, so a spike in one can't starve the others.
+ */
+public enum EndpointClass {
+    UPLOAD, ARCHIVE, DOWNLOAD;
+
+    /**
+     * The class of a request, or empty for requests that are always admitted. The scanner's
+     * callbacks to /upload-scanned and /upload-scanned-batch belong to uploads that have already
+     * been admitted; holding them back could deadlock those uploads.
+     */
+    public static Optional<EndpointClass> of(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        HttpMethod method = request.getMethod();
+
+        if (path.startsWith("/api/archives/")) {
+            return Optional.of(ARCHIVE);
+        }
+        if (path.startsWith("/api/files/download/") && HttpMethod.GET.equals(method)) {
+            return Optional.of(DOWNLOAD);
+        }
+        if (path.equals("/api/files/upload") || path.equals("/api/files/upload-batch")
+                || path.startsWith("/api/files/uploads")) {
+            return Optional.of(UPLOAD);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,32 @@
+package io.filemanager.web.admission;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+/**
+ * How full the heap is, judged by what was left after the last collection of each heap pool.
+ * The current usage includes garbage that is about to be collected, so it would report pressure
+ * on a perfectly healthy heap.
+ */
+public class HeapPressure {
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported())
+            .toList();
+
+    /**
+     * @return The highest post-collection occupancy of a heap pool, between 0 and 1.
+     */
+    public double current() {
+        double highest = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null && usage.getMax() > 0) {
+                highest = Math.max(highest, (double) usage.getUsed() / usage.getMax());
+            }
+        }
+        return highest;
+    }
+}
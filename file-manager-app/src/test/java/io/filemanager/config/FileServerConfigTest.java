@@ -0,0 +1,70 @@
+package io.filemanager.config;
+
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileServerConfigTest {
+
+    private final FileServerConfig config = new FileServerConfig();
+
+    private MockWebServer mockWebServer;
+    private ConnectionProvider connectionProvider;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void fileServerProperties_whenH2WithoutSecure_shouldFailAtStartup() {
+        assertThatThrownBy(() -> properties(HttpProtocol.H2, false, 8080))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("file-server.secure");
+    }
+
+    @Test
+    void streamingWebClient_withH2C_shouldTalkHttp2WithPriorKnowledge() throws InterruptedException {
+        // Arrange
+        // The server only accepts HTTP/2 without an upgrade, so an HTTP/1.1 request would fail
+        mockWebServer.setProtocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+        mockWebServer.enqueue(new MockResponse().setBody("hello"));
+
+        FileServerProperties properties = properties(HttpProtocol.H2C, false, mockWebServer.getPort());
+        connectionProvider = config.fileServerConnectionProvider(properties);
+        WebClient webClient = config.streamingWebClient(properties, connectionProvider);
+
+        // Act & Assert
+        StepVerifier.create(webClient.get().uri("/download/file.txt").retrieve().bodyToMono(String.class))
+                .expectNext("hello")
+                .verifyComplete();
+
+        assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/download/file.txt");
+    }
+
+    private FileServerProperties properties(HttpProtocol protocol, boolean secure, int port) {
+        return config.fileServerProperties("localhost", port, secure, 1000, 10,
+                protocol, 10, 100, 100, false);
+    }
+}
@@ -0,0 +1,48 @@
+package io.filemanager.config;
+
+import io.filemanager.service.InlineScanner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InlineScannerConfigTest {
+
+    private final InlineScannerConfig config = new InlineScannerConfig();
+
+    @ParameterizedTest
+    @EnumSource(InlineScanner.Mode.class)
+    void inlineScanner_withoutSignaturesOrHashes_shouldFailAtStartup(InlineScanner.Mode mode) {
+        InlineScannerProperties properties = config.inlineScannerProperties(mode, "", "", false, 16384, false);
+
+        assertThatThrownBy(() -> config.inlineScanner(properties, new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("scanner.inline.eicar-signature");
+    }
+
+    @Test
+    void inlineScanner_withEmptyHashBlocklistOnly_shouldFailAtStartup(@TempDir Path directory) throws IOException {
+        Path blocklist = Files.writeString(directory.resolve("blocklist.txt"), "# nothing blocked yet\n");
+        InlineScannerProperties properties = config.inlineScannerProperties(InlineScanner.Mode.AUTHORITATIVE,
+                "", blocklist.toString(), false, 16384, false);
+
+        assertThatThrownBy(() -> config.inlineScanner(properties, new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void inlineScanner_withEicarSignature_shouldStart() throws IOException {
+        InlineScannerProperties properties = config.inlineScannerProperties(InlineScanner.Mode.AUTHORITATIVE,
+                "", "", true, 16384, false);
+
+        assertThat(config.inlineScanner(properties, new SimpleMeterRegistry())).isNotNull();
+    }
+}
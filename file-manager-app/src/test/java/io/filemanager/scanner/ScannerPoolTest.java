@@ -0,0 +1,159 @@
+package io.filemanager.scanner;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScannerPoolTest {
+
+    private final List<String> routedTo = new CopyOnWriteArrayList<>();
+
+    private static ScannerPool pool(String... endpoints) {
+        return new ScannerPool(List.of(endpoints).stream().map(URI::create).toList(),
+                3.0, 2, 3, Duration.ofMinutes(1));
+    }
+
+    private WebClient client(ScannerPool pool, ExchangeFunction scanners) {
+        return WebClient.builder()
+                .baseUrl("http://scanner-a:8080")
+                .filter(pool)
+                .exchangeFunction(request -> {
+                    routedTo.add(request.url().getHost());
+                    return scanners.exchange(request);
+                })
+                .build();
+    }
+
+    private static Mono<String> scan(WebClient client) {
+        return client.post().uri("/scan").bodyValue("content")
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().toString()));
+    }
+
+    @Test
+    void filter_shouldRouteToInstanceWithFewestOutstandingRequests() {
+        // Arrange: scanner-a holds on to its first request
+        ScannerPool pool = pool("http://scanner-a:8080", "http://scanner-b:8080");
+        Map<String, Sinks.Empty<Void>> pending = new ConcurrentHashMap<>();
+        WebClient client = client(pool, request -> {
+            Sinks.Empty<Void> answer = Sinks.empty();
+            pending.put(request.url().getHost() + pending.size(), answer);
+            // The scanner reads the whole body, then answers when the test says so
+            return request.writeTo(new MockClientHttpRequest(request.method(), request.url()), ExchangeStrategies.withDefaults())
+                    .then(answer.asMono())
+                    .thenReturn(ClientResponse.create(HttpStatus.OK).build());
+        });
+
+        // Act
+        scan(client).subscribe();
+        String busy = routedTo.getFirst();
+        scan(client).subscribe();
+
+        // Assert: the second request goes to the idle instance, with the path kept
+        assertThat(routedTo).hasSize(2).doesNotHaveDuplicates();
+        ScannerInstance busyInstance = pool.getInstances().stream()
+                .filter(instance -> instance.getBaseUri().getHost().equals(busy))
+                .findFirst().orElseThrow();
+        assertThat(busyInstance.getOutstandingRequests()).isEqualTo(1);
+        assertThat(busyInstance.getOutstandingBytes()).isEqualTo("content".length());
+
+        pending.values().forEach(Sinks.Empty::tryEmitEmpty);
+        assertThat(pool.getInstances()).allSatisfy(instance -> {
+            assertThat(instance.getOutstandingRequests()).isZero();
+            assertThat(instance.getOutstandingBytes()).isZero();
+        });
+    }
+
+    @Test
+    void filter_whenInstanceKeepsFailing_shouldEjectIt() {
+        // Arrange: scanner-a answers every request with 503
+        ScannerPool pool = pool("http://scanner-a:8080", "http://scanner-b:8080");
+        WebClient client = client(pool, request -> Mono.just(ClientResponse.create(
+                request.url().getHost().equals("scanner-a") ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK).build()));
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            scan(client).block();
+        }
+
+        // Assert: after three failures in a row, only scanner-b gets requests
+        assertThat(routedTo.stream().filter("scanner-a"::equals)).hasSize(3);
+        assertThat(pool.getInstances().getFirst().isEjected()).isTrue();
+        assertThat(routedTo.subList(routedTo.size() - 3, routedTo.size())).containsOnly("scanner-b");
+    }
+
+    @Test
+    void filter_whenInstanceIsMuchSlowerThanItsPeers_shouldEjectIt() {
+        ScannerPool pool = pool("http://scanner-a:8080", "http://scanner-b:8080");
+        WebClient client = client(pool, request -> Mono.delay(Duration.ofMillis(
+                        request.url().getHost().equals("scanner-a") ? 100 : 1))
+                .thenReturn(ClientResponse.create(HttpStatus.OK).build()));
+
+        for (int i = 0; i < 10; i++) {
+            scan(client).block();
+        }
+
+        assertThat(pool.getInstances().getFirst().isEjected()).isTrue();
+        assertThat(pool.getInstances().get(1).isEjected()).isFalse();
+    }
+
+    @Test
+    void filter_whenInstanceOnlyGetsLargeFiles_shouldNotEjectIt() {
+        // Arrange: both scanners take 10 ms per MiB, at least 8 ms
+        ScannerPool pool = pool("http://scanner-a:8080", "http://scanner-b:8080");
+        WebClient client = client(pool, request -> {
+            MockClientHttpRequest received = new MockClientHttpRequest(request.method(), request.url());
+            return request.writeTo(received, ExchangeStrategies.withDefaults())
+                    .then(Mono.defer(() -> DataBufferUtils.join(received.getBody())))
+                    .flatMap(body -> {
+                        long size = body.readableByteCount();
+                        DataBufferUtils.release(body);
+                        return Mono.delay(Duration.ofMillis(Math.max(8, 10 * size / (1024 * 1024))));
+                    })
+                    .thenReturn(ClientResponse.create(HttpStatus.OK).build());
+        });
+
+        // Act: requests alternate between the idle instances, so scanner-a gets every 16 MiB file
+        byte[] large = new byte[16 * 1024 * 1024];
+        byte[] small = new byte[1024];
+        for (int i = 0; i < 10; i++) {
+            client.post().uri("/scan").bodyValue(i % 2 == 0 ? large : small)
+                    .exchangeToMono(ClientResponse::releaseBody)
+                    .block();
+        }
+
+        // Assert: 160 ms against 8 ms per request, but the same time per MiB
+        assertThat(routedTo.subList(0, 4)).containsExactly("scanner-a", "scanner-b", "scanner-a", "scanner-b");
+        assertThat(pool.getInstances()).noneSatisfy(instance -> assertThat(instance.isEjected()).isTrue());
+        assertThat(pool.getInstances().getFirst().getMillisPerMibEwma()).isBetween(10.0, 20.0);
+    }
+
+    @Test
+    void filter_shouldNeverEjectTheLastAvailableInstance() {
+        ScannerPool pool = pool("http://scanner-a:8080");
+        WebClient client = client(pool, request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()));
+
+        for (int i = 0; i < 5; i++) {
+            scan(client).block();
+        }
+
+        assertThat(routedTo).hasSize(5).containsOnly("scanner-a");
+        assertThat(pool.getInstances().getFirst().isEjected()).isFalse();
+        assertThat(pool.getInstances().getFirst().getFailureCount()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,66 @@
+package io.filemanager.scanner.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SignatureScanEngineTest {
+
+    private static Map<String, byte[]> signatures(String... namesAndPatterns) {
+        Map<String, byte[]> signatures = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndPatterns.length; i += 2) {
+            signatures.put(namesAndPatterns[i], namesAndPatterns[i + 1].getBytes(StandardCharsets.US_ASCII));
+        }
+        return signatures;
+    }
+
+    private static EngineVerdict scan(ScanEngine engine, String... chunks) {
+        ScanSession session = engine.newSession();
+        for (String chunk : chunks) {
+            byte[] bytes = ("##" + chunk).getBytes(StandardCharsets.US_ASCII);
+            session.update(bytes, 2, bytes.length - 2);
+        }
+        return session.finish();
+    }
+
+    @Test
+    void scan_shouldFindSignaturesAcrossChunksAndInsideOtherPrefixes() {
+        // Arrange: "hers" shares its prefix with "he", "she" ends inside "ushers"
+        SignatureScanEngine engine = new SignatureScanEngine(
+                signatures("he", "he", "she", "she", "hers", "hers", "virus", "virus"), 1024);
+
+        // Act & Assert
+        assertThat(scan(engine, "no threat here")).isEqualTo(EngineVerdict.infected("he"));
+        assertThat(scan(engine, "a vi", "r", "us!")).isEqualTo(EngineVerdict.infected("virus"));
+        assertThat(scan(engine, "us", "hers")).isEqualTo(EngineVerdict.infected("she"));
+        assertThat(scan(engine, "a vir", "u clean file")).isEqualTo(EngineVerdict.CLEAN);
+    }
+
+    @Test
+    void scan_shouldReportInfectionAsSoonAsSignatureEnds() {
+        SignatureScanEngine engine = new SignatureScanEngine(signatures("bad", "bad"), 1024);
+        ScanSession session = engine.newSession();
+
+        session.update("ba".getBytes(StandardCharsets.US_ASCII), 0, 2);
+        assertThat(session.isInfected()).isFalse();
+        session.update("d".getBytes(StandardCharsets.US_ASCII), 0, 1);
+
+        assertThat(session.isInfected()).isTrue();
+    }
+
+    @Test
+    void parse_shouldReadHexSignaturesAndRejectTooManyStates() {
+        Map<String, byte[]> parsed = SignatureScanEngine.parse(List.of("# comment", "", "Test.Sig:00ff41"));
+
+        assertThat(parsed).containsOnlyKeys("Test.Sig");
+        assertThat(parsed.get("Test.Sig")).containsExactly(0x00, 0xff, 0x41);
+        assertThatThrownBy(() -> new SignatureScanEngine(signatures("long", "abcdef"), 4))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
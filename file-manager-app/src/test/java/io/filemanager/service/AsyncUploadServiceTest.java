@@ -0,0 +1,251 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.metadata.service.StatusConflictException;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.FileStorageDecorator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncUploadServiceTest {
+
+    @Mock
+    private FileUploadService fileUploadService;
+
+    @Mock
+    private FileMetadataService metadataService;
+
+    @Mock
+    private FileStorage fileStorage;
+
+    private final List<String> webhooks = new CopyOnWriteArrayList<>();
+
+    private final FileMetadataDto initial =
+            new FileMetadataDto(1L, "report.pdf", "application/pdf", "key-1", StorageType.S3, 0, Status.SCANNING, null);
+
+    private Flux<DataBuffer> content(String... parts) {
+        return Flux.fromArray(parts)
+                .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private FileMetadataDto withStatus(Status status, long size) {
+        return new FileMetadataDto(1L, "report.pdf", "application/pdf", "key-1", StorageType.S3, size, status, null);
+    }
+
+    private AsyncUploadService service(int maxPending) {
+        return service(maxPending, List.of("client.example"));
+    }
+
+    private AsyncUploadService service(int maxPending, List<String> allowedHosts) {
+        return new AsyncUploadService(fileUploadService, metadataService, webhookClient(), maxPending,
+                allowedHosts, 0, 1000);
+    }
+
+    private WebClient webhookClient() {
+        return WebClient.builder()
+                .exchangeFunction(request -> {
+                    MockClientHttpRequest sent = new MockClientHttpRequest(HttpMethod.POST, request.url());
+                    return request.writeTo(sent, ExchangeStrategies.withDefaults())
+                            .then(Mono.defer(sent::getBodyAsString))
+                            .doOnNext(body -> webhooks.add(request.url() + " " + body))
+                            .thenReturn(ClientResponse.create(HttpStatus.OK).build());
+                })
+                .build();
+    }
+
+    /**
+     * Reads the whole body, then waits for the scanner until the returned sink is completed.
+     */
+    private Sinks.Empty<Void> scannerVerdictPending() {
+        Sinks.Empty<Void> verdict = Sinks.empty();
+        when(fileUploadService.process(any(), any(), any())).thenAnswer(invocation -> {
+            Flux<DataBuffer> body = invocation.getArgument(1);
+            return body.doOnNext(DataBufferUtils::release)
+                    .then(verdict.asMono())
+                    .then(Mono.just(withStatus(Status.CLEAN, 11)));
+        });
+        return verdict;
+    }
+
+    @Test
+    void accept_shouldAcknowledgeOnceBodyIsReceivedAndNotifyWhenScanned() {
+        // Arrange
+        AsyncUploadService service = service(10);
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(metadataService.findById(1L)).thenReturn(Mono.just(withStatus(Status.CLEAN, 11)));
+        Sinks.Empty<Void> verdict = scannerVerdictPending();
+
+        // Act & Assert: the caller is released while the scan is still running
+        StepVerifier.create(service.accept("report.pdf", content("Hello ", "world"), null, "http://client.example/hook"))
+                .expectNext(initial)
+                .verifyComplete();
+        assertThat(service.getPendingCount()).isEqualTo(1);
+        assertThat(webhooks).isEmpty();
+
+        verdict.tryEmitEmpty();
+
+        assertThat(service.getPendingCount()).isZero();
+        assertThat(webhooks).singleElement().asString()
+                .startsWith("http://client.example/hook")
+                .contains("\"status\":\"CLEAN\"")
+                .contains("\"done\":true");
+    }
+
+    @Test
+    void accept_whenProcessingFailsAfterAcknowledgement_shouldMarkFileAsError() {
+        // Arrange
+        AsyncUploadService service = service(10);
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(fileUploadService.process(any(), any(), any())).thenAnswer(invocation -> {
+            Flux<DataBuffer> body = invocation.getArgument(1);
+            return body.doOnNext(DataBufferUtils::release)
+                    .then(Mono.error(new IllegalStateException("scanner went away")));
+        });
+        when(metadataService.updateStatus(1L, Status.ERROR, 0)).thenReturn(Mono.just(withStatus(Status.ERROR, 0)));
+
+        // Act & Assert: the body was received in full, so the upload is acknowledged
+        StepVerifier.create(service.accept("report.pdf", content("Hello"), null, "http://client.example/hook"))
+                .expectNext(initial)
+                .verifyComplete();
+
+        verify(metadataService).updateStatus(1L, Status.ERROR, 0);
+        assertThat(webhooks).singleElement().asString().contains("\"status\":\"ERROR\"");
+    }
+
+    @Test
+    void accept_whenScannerFindsForwardedFileInfected_shouldReportInfested() {
+        // Arrange: the default forwarding mode, where the scanner answers an infected file with a 400
+        WebClient scanner = WebClient.builder()
+                .baseUrl("http://scanner")
+                .exchangeFunction(request -> request.writeTo(new MockClientHttpRequest(HttpMethod.POST, request.url()),
+                                ExchangeStrategies.withDefaults())
+                        .thenReturn(ClientResponse.create(HttpStatus.BAD_REQUEST).body("INFECTED: Test virus detected").build()))
+                .build();
+        when(fileStorage.getStorageType()).thenReturn(StorageType.S3);
+        FileStorageRegistry storages = new FileStorageRegistry(List.of(fileStorage),
+                new StaticListableBeanFactory().getBeanProvider(FileStorageDecorator.class));
+        StaticListableBeanFactory none = new StaticListableBeanFactory();
+        FileUploadService forwarding = new FileUploadService(metadataService, storages, scanner, false,
+                none.getBeanProvider(ScanVerdictCache.class), none.getBeanProvider(ScanBatcher.class),
+                none.getBeanProvider(InlineScanner.class));
+        AsyncUploadService service = new AsyncUploadService(forwarding, metadataService, webhookClient(), 10,
+                List.of("client.example"), 0, 1000);
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(metadataService.updateStatus(1L, Status.INFESTED, 5)).thenReturn(Mono.just(withStatus(Status.INFESTED, 5)));
+        when(metadataService.updateStatus(1L, Status.ERROR, 0))
+                .thenReturn(Mono.error(new StatusConflictException(1L, Status.SCANNING, Status.INFESTED)));
+        when(metadataService.findById(1L)).thenReturn(Mono.just(withStatus(Status.INFESTED, 5)));
+
+        // Act
+        StepVerifier.create(service.accept("report.pdf", content("Hello"), null, "http://client.example/hook"))
+                .expectNext(initial)
+                .verifyComplete();
+
+        // Assert
+        verify(metadataService).updateStatus(1L, Status.INFESTED, 5);
+        assertThat(webhooks).singleElement().asString().contains("\"status\":\"INFESTED\"");
+    }
+
+    @Test
+    void accept_whenCallbackHostIsNotAllowed_shouldRejectBeforeCreatingRecord() {
+        AsyncUploadService service = service(10);
+
+        StepVerifier.create(service.accept("report.pdf", content("Hello"), null, "http://169.254.169.254/latest"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(metadataService, never()).createInitialRecord(anyString());
+    }
+
+    @Test
+    void accept_withoutAllowedHosts_shouldRefuseCallbacks() {
+        AsyncUploadService service = service(10, List.of());
+
+        StepVerifier.create(service.accept("report.pdf", content("Hello"), null, "http://client.example/hook"))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(metadataService, never()).createInitialRecord(anyString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"http://127.0.0.1/hook", "http://localhost:8080/hook", "http://169.254.169.254/latest",
+            "http://10.0.0.5/hook", "http://192.168.1.1/hook", "http://[::1]/hook", "http://[fd00::1]/hook",
+            "http://0.0.0.0/hook"})
+    void accept_withAnyPublicHost_shouldRejectInternalAddresses(String callbackUrl) {
+        AsyncUploadService service = service(10, List.of("*"));
+
+        StepVerifier.create(service.accept("report.pdf", content("Hello"), null, callbackUrl))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessageContaining("non-public"))
+                .verify();
+
+        verify(metadataService, never()).createInitialRecord(anyString());
+    }
+
+    @Test
+    void accept_withAnyPublicHost_shouldAcceptPublicAddresses() {
+        AsyncUploadService service = service(10, List.of("*"));
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        scannerVerdictPending();
+
+        StepVerifier.create(service.accept("report.pdf", content("Hello"), null, "http://93.184.216.34/hook"))
+                .expectNext(initial)
+                .verifyComplete();
+    }
+
+    @Test
+    void accept_whenTooManyUploadsArePending_shouldProcessInline() {
+        // Arrange
+        AsyncUploadService service = service(0);
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(metadataService.findById(1L)).thenReturn(Mono.just(withStatus(Status.CLEAN, 11)));
+        Sinks.Empty<Void> verdict = scannerVerdictPending();
+
+        // Act & Assert: the caller waits for the verdict
+        StepVerifier.create(service.accept("report.pdf", content("Hello ", "world"), null, null))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(verdict::tryEmitEmpty)
+                .expectNext(initial)
+                .verifyComplete();
+
+        assertThat(service.getProcessedInlineCount()).isEqualTo(1);
+        assertThat(webhooks).isEmpty();
+    }
+}
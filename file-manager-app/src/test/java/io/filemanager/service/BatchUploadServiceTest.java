@@ -0,0 +1,146 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.storage.api.exception.StorageConnectivityException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchUploadServiceTest {
+
+    @Mock
+    private FileMetadataService metadataService;
+
+    @Mock
+    private FileUploadService fileUploadService;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private FileMetadataDto prepared(String fileName) {
+        return new FileMetadataDto(null, fileName, "text/plain", "key-" + fileName, StorageType.S3, 0, Status.SCANNING, null);
+    }
+
+    private Flux<FileChunk> file(String fileName, String... parts) {
+        return Flux.fromArray(parts)
+                .map(part -> new FileChunk(fileName, DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private BatchUploadService service() {
+        when(metadataService.prepareRecord(anyString())).thenAnswer(invocation -> prepared(invocation.getArgument(0)));
+        // The records come back saved, with an ID
+        when(metadataService.createRecords(anyList())).thenAnswer(invocation -> {
+            List<FileMetadataDto> records = invocation.getArgument(0);
+            return Flux.fromIterable(records).map(record -> new FileMetadataDto(ids.incrementAndGet(), record.fileName(),
+                    record.contentType(), record.fileKey(), record.storageType(), record.size(), record.status(), null));
+        });
+        return new BatchUploadService(metadataService, fileUploadService, 4, 100, 50);
+    }
+
+    @Test
+    void upload_shouldReportEveryFileAndSaveRecordsInOneBatch() {
+        // Arrange
+        BatchUploadService service = service();
+        when(fileUploadService.storeAndScan(any(), any())).thenAnswer(invocation -> {
+            FileMetadataDto file = invocation.getArgument(0);
+            Flux<DataBuffer> content = invocation.getArgument(1);
+            Status verdict = file.fileName().equals("virus.exe") ? Status.INFESTED : Status.CLEAN;
+            return content.map(DataBuffer::readableByteCount).reduce(0L, Long::sum)
+                    .map(size -> new ScanOutcome(size, verdict));
+        });
+        when(fileUploadService.releaseQuarantined(any())).thenReturn(Mono.empty());
+        when(fileUploadService.dropQuarantined(any())).thenReturn(Mono.empty());
+
+        // Act
+        List<BatchUploadResult> results = service.upload(Flux.just(
+                        file("a.txt", "Hello ", "world"),
+                        file("virus.exe", "EICAR"),
+                        file("b.txt", "more")))
+                .collectList()
+                .block();
+
+        // Assert
+        assertThat(results).extracting(BatchUploadResult::fileName, BatchUploadResult::status, BatchUploadResult::size)
+                .containsExactlyInAnyOrder(
+                        tuple("a.txt", Status.CLEAN, 11L),
+                        tuple("virus.exe", Status.INFESTED, 5L),
+                        tuple("b.txt", Status.CLEAN, 4L));
+        assertThat(results).allSatisfy(result -> assertThat(result.fileId()).isNotNull());
+        verify(metadataService, times(1)).createRecords(anyList());
+        verify(fileUploadService, times(2)).releaseQuarantined(any());
+    }
+
+    @Test
+    void upload_whenOneFileFails_shouldStillProcessTheOthers() {
+        // Arrange
+        BatchUploadService service = service();
+        when(fileUploadService.storeAndScan(any(), any())).thenAnswer(invocation -> {
+            FileMetadataDto file = invocation.getArgument(0);
+            Flux<DataBuffer> content = invocation.getArgument(1);
+            return file.fileName().equals("broken.txt")
+                    ? Mono.error(new StorageConnectivityException("S3 unreachable", null))
+                    : content.then(Mono.just(new ScanOutcome(1, Status.CLEAN)));
+        });
+        when(fileUploadService.releaseQuarantined(any())).thenReturn(Mono.empty());
+        when(fileUploadService.dropQuarantined(any())).thenReturn(Mono.empty());
+
+        // Act & Assert
+        StepVerifier.create(service.upload(Flux.just(file("broken.txt", "x"), file("ok.txt", "y")))
+                        .map(result -> result.fileName() + ":" + result.status()))
+                .recordWith(ArrayList::new)
+                .expectNextCount(2)
+                .consumeRecordedWith(results -> assertThat(results).containsExactlyInAnyOrder("broken.txt:ERROR", "ok.txt:CLEAN"))
+                .verifyComplete();
+    }
+
+    @Test
+    void upload_whenRecordsCannotBeSaved_shouldDeleteReleasedFiles() {
+        // Arrange
+        when(metadataService.prepareRecord(anyString())).thenAnswer(invocation -> prepared(invocation.getArgument(0)));
+        when(metadataService.createRecords(anyList())).thenReturn(Flux.error(new IllegalStateException("database down")));
+        when(fileUploadService.storeAndScan(any(), any())).thenAnswer(invocation -> {
+            FileMetadataDto file = invocation.getArgument(0);
+            Flux<DataBuffer> content = invocation.getArgument(1);
+            Status verdict = file.fileName().equals("virus.exe") ? Status.INFESTED : Status.CLEAN;
+            return content.then(Mono.just(new ScanOutcome(1, verdict)));
+        });
+        when(fileUploadService.releaseQuarantined(any())).thenReturn(Mono.empty());
+        when(fileUploadService.dropQuarantined(any())).thenReturn(Mono.empty());
+        when(fileUploadService.dropReleased(any())).thenReturn(Mono.empty());
+        BatchUploadService service = new BatchUploadService(metadataService, fileUploadService, 4, 100, 50);
+
+        // Act & Assert
+        StepVerifier.create(service.upload(Flux.just(file("a.txt", "x"), file("virus.exe", "EICAR")))
+                        .map(BatchUploadResult::status))
+                .expectNext(Status.ERROR, Status.ERROR)
+                .verifyComplete();
+
+        // Only the clean file had been moved to its final key
+        verify(fileUploadService).dropReleased(argThat(file -> file.fileName().equals("a.txt")));
+        verify(fileUploadService, times(1)).dropReleased(any());
+    }
+}
@@ -0,0 +1,176 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.domain.UploadSessionStatus;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.dto.UploadChunkDto;
+import io.filemanager.metadata.dto.UploadSessionDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.metadata.service.UploadSessionService;
+import io.filemanager.storage.api.MultipartUploadStorage;
+import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.api.UploadedPart;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkedUploadServiceTest {
+    private static final long MB = 1024 * 1024;
+
+    @Mock
+    private FileMetadataService metadataService;
+
+    @Mock
+    private UploadSessionService sessionService;
+
+    @Mock
+    private MultipartUploadStorage storage;
+
+    @Mock
+    private FileUploadService fileUploadService;
+
+    private ChunkedUploadService service;
+
+    private final FileMetadataDto file =
+            new FileMetadataDto(1L, "video.mp4", "application/octet-stream", "key-1", StorageType.S3, 0, Status.SCANNING, null);
+
+    // 12MB in chunks of 5MB: 5MB, 5MB and a last chunk of 2MB
+    private final UploadSessionDto session =
+            new UploadSessionDto(7L, 1L, "upload-1", 5 * MB, 12 * MB, 3, UploadSessionStatus.OPEN, null);
+
+    @BeforeEach
+    void setUp() {
+        service = new ChunkedUploadService(metadataService, sessionService, storage, fileUploadService, 16);
+    }
+
+    @Test
+    void createSession_whenChunksAreTooSmallForS3_shouldRejectWithoutCreatingAnything() {
+        StepVerifier.create(service.createSession("video.mp4", 12 * MB, MB))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(metadataService, storage, sessionService);
+    }
+
+    @Test
+    void createSession_whenChunksAreTooLargeForS3_shouldRejectWithoutCreatingAnything() {
+        StepVerifier.create(service.createSession("video.mp4", 20_000 * MB, 5121 * MB))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verifyNoInteractions(metadataService, storage, sessionService);
+    }
+
+    @Test
+    void newService_whenDefaultChunkSizeIsTooLargeForS3_shouldFail() {
+        assertThatThrownBy(() -> new ChunkedUploadService(metadataService, sessionService, storage, fileUploadService, 5121))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void createSession_shouldStartMultipartUploadUnderQuarantineKey() {
+        // Arrange
+        when(metadataService.createInitialRecord("video.mp4")).thenReturn(Mono.just(file));
+        when(storage.initiateMultipartUpload("quarantine/key-1", "application/octet-stream")).thenReturn(Mono.just("upload-1"));
+        when(sessionService.createSession(1L, "upload-1", 5 * MB, 12 * MB)).thenReturn(Mono.just(session));
+
+        // Act & Assert
+        StepVerifier.create(service.createSession("video.mp4", 12 * MB, 5 * MB))
+                .expectNext(new UploadSessionState(7L, 1L, UploadSessionStatus.OPEN, 5 * MB, 12 * MB, 3, List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    void uploadChunk_shouldStoreLastChunkWithItsRemainingSize() {
+        // Arrange
+        Flux<DataBuffer> content = Flux.empty();
+        when(sessionService.findById(7L)).thenReturn(Mono.just(session));
+        when(metadataService.findById(1L)).thenReturn(Mono.just(file));
+        when(storage.uploadPart("quarantine/key-1", "upload-1", 3, content, 2 * MB))
+                .thenReturn(Mono.just(new UploadedPart(3, "etag-3", 2 * MB)));
+        when(sessionService.recordChunk(7L, 3, "etag-3", 2 * MB)).thenReturn(Mono.just(new UploadChunkDto(3, "etag-3", 2 * MB)));
+
+        // Act & Assert
+        StepVerifier.create(service.uploadChunk(7L, 3, content, null))
+                .expectNext(new UploadChunkDto(3, "etag-3", 2 * MB))
+                .verifyComplete();
+    }
+
+    @Test
+    void uploadChunk_whenContentLengthDoesNotMatchLayout_shouldReject() {
+        when(sessionService.findById(7L)).thenReturn(Mono.just(session));
+        when(metadataService.findById(1L)).thenReturn(Mono.just(file));
+
+        StepVerifier.create(service.uploadChunk(7L, 1, Flux.empty(), 4 * MB))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+
+        verify(storage, never()).uploadPart(anyString(), anyString(), anyInt(), any(), anyLong());
+    }
+
+    @Test
+    void complete_whenChunksAreMissing_shouldFailWithoutCompletingUpload() {
+        when(sessionService.findById(7L)).thenReturn(Mono.just(session));
+        when(sessionService.findChunks(7L)).thenReturn(Flux.just(new UploadChunkDto(1, "etag-1", 5 * MB)));
+
+        StepVerifier.create(service.complete(7L))
+                .expectErrorMessage("Upload session 7 is missing chunks [2, 3]")
+                .verify();
+
+        verify(storage, never()).completeMultipartUpload(anyString(), anyString(), any());
+    }
+
+    @Test
+    void complete_shouldAssemblePartsAndScanTheFile() {
+        // Arrange
+        List<UploadChunkDto> chunks = List.of(
+                new UploadChunkDto(1, "etag-1", 5 * MB),
+                new UploadChunkDto(2, "etag-2", 5 * MB),
+                new UploadChunkDto(3, "etag-3", 2 * MB));
+        FileMetadataDto clean =
+                new FileMetadataDto(1L, "video.mp4", "application/octet-stream", "key-1", StorageType.S3, 12 * MB, Status.CLEAN, null);
+        when(sessionService.findById(7L)).thenReturn(Mono.just(session));
+        when(sessionService.findChunks(7L)).thenReturn(Flux.fromIterable(chunks));
+        when(metadataService.findById(1L)).thenReturn(Mono.just(file));
+        when(storage.completeMultipartUpload(eq("quarantine/key-1"), eq("upload-1"), any()))
+                .thenReturn(Mono.just(new UploadResult("quarantine/key-1", "etag", 12 * MB)));
+        when(sessionService.close(7L, UploadSessionStatus.COMPLETED)).thenReturn(Mono.just(session));
+        when(fileUploadService.scanQuarantined(file, 12 * MB)).thenReturn(Mono.just(clean));
+
+        // Act & Assert
+        StepVerifier.create(service.complete(7L))
+                .expectNext(clean)
+                .verifyComplete();
+    }
+
+    @Test
+    void complete_whenSessionIsClosed_shouldReject() {
+        when(sessionService.findById(7L)).thenReturn(Mono.just(
+                new UploadSessionDto(7L, 1L, "upload-1", 5 * MB, 12 * MB, 3, UploadSessionStatus.COMPLETED, null)));
+
+        StepVerifier.create(service.complete(7L))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,361 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.metadata.service.StatusConflictException;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.FileStorageDecorator;
+import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.api.exception.StorageConnectivityException;
+import io.filemanager.storage.limiter.AdaptiveConcurrencyLimiter;
+import io.filemanager.storage.limiter.CircuitBreaker;
+import io.filemanager.storage.limiter.ConcurrencyLimitedFileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FileUploadServiceTest {
+
+    @Mock
+    private FileMetadataService metadataService;
+
+    @Mock
+    private FileStorage fileStorage;
+
+    private final AtomicReference<String> scannedBody = new AtomicReference<>();
+    private final AtomicReference<String> storedBody = new AtomicReference<>();
+    private final AtomicInteger scans = new AtomicInteger();
+
+    private final FileMetadataDto initial =
+            new FileMetadataDto(1L, "report.pdf", "application/pdf", "key-1", StorageType.S3, 0, Status.SCANNING, null);
+
+    private Flux<DataBuffer> content(String... parts) {
+        return Flux.fromArray(parts)
+                .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * A scanner that reads the whole body and then answers with the given status and verdict.
+     */
+    private WebClient scanner(HttpStatus status, String verdict) {
+        return WebClient.builder()
+                .baseUrl("http://scanner")
+                .exchangeFunction(request -> {
+                    assertThat(request.headers().containsHeader("X-Target-Url")).isFalse();
+                    MockClientHttpRequest sent = new MockClientHttpRequest(HttpMethod.POST, request.url());
+                    return request.writeTo(sent, ExchangeStrategies.withDefaults())
+                            .then(Mono.defer(sent::getBodyAsString))
+                            .doOnNext(scannedBody::set)
+                            .doOnNext(body -> scans.incrementAndGet())
+                            .map(body -> ClientResponse.create(status)
+                                    .header("X-Signature-Version", "sig-1")
+                                    .body(verdict)
+                                    .build());
+                })
+                .build();
+    }
+
+    private static <T> ObjectProvider<T> optional(Class<T> type, T bean) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        if (bean != null) {
+            beans.addBean(type.getSimpleName(), bean);
+        }
+        return beans.getBeanProvider(type);
+    }
+
+    private FileStorageRegistry storages(FileStorageDecorator... decorators) {
+        when(fileStorage.getStorageType()).thenReturn(StorageType.S3);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        for (int i = 0; i < decorators.length; i++) {
+            beans.addBean("decorator" + i, decorators[i]);
+        }
+        return new FileStorageRegistry(List.of(fileStorage), beans.getBeanProvider(FileStorageDecorator.class));
+    }
+
+    private FileUploadService service(WebClient scanner) {
+        return service(scanner, null);
+    }
+
+    private FileUploadService service(WebClient scanner, ScanVerdictCache cache) {
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(fileStorage.upload(eq("quarantine/key-1"), any(), eq("application/pdf"))).thenAnswer(invocation -> {
+            Flux<DataBuffer> stored = invocation.getArgument(1);
+            return DataBufferUtils.join(stored)
+                    .map(buffer -> {
+                        String body = buffer.toString(StandardCharsets.UTF_8);
+                        DataBufferUtils.release(buffer);
+                        storedBody.set(body);
+                        return new UploadResult("quarantine/key-1", "etag", body.length());
+                    });
+        });
+        return new FileUploadService(metadataService, storages(), scanner, true,
+                optional(ScanVerdictCache.class, cache), optional(ScanBatcher.class, null), optional(InlineScanner.class, null));
+    }
+
+    @Test
+    void processRawFileUpload_whenClean_shouldPromoteQuarantinedObject() {
+        // Arrange
+        FileUploadService service = service(scanner(HttpStatus.OK, "CLEAN: File scanned"));
+        FileMetadataDto finalized =
+                new FileMetadataDto(1L, "report.pdf", "application/pdf", "key-1", StorageType.S3, 11, Status.CLEAN, null);
+        when(fileStorage.move("quarantine/key-1", "key-1")).thenReturn(Mono.empty());
+        when(metadataService.finalizeUpload(1L, 11)).thenReturn(Mono.just(finalized));
+
+        // Act & Assert
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectNext(finalized)
+                .verifyComplete();
+
+        // Both sides saw the whole file from a single pass over the request body
+        assertThat(scannedBody).hasValue("Hello world");
+        assertThat(storedBody).hasValue("Hello world");
+        verify(fileStorage, never()).delete(anyString());
+    }
+
+    @Test
+    void processRawFileUpload_shouldGoThroughTheStorageDecorators() {
+        // Arrange: the same limiter the downloads of this backend go through
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("S3", 10, 1, 10, 10, Duration.ofSeconds(1));
+        FileStorageDecorator limit = storage ->
+                new ConcurrencyLimitedFileStorage(storage, limiter, new CircuitBreaker(5, Duration.ofSeconds(1)));
+        AtomicInteger inFlightWhileStoring = new AtomicInteger(-1);
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(fileStorage.upload(eq("quarantine/key-1"), any(), eq("application/pdf"))).thenAnswer(invocation ->
+                DataBufferUtils.join(invocation.<Flux<DataBuffer>>getArgument(1))
+                        .map(buffer -> {
+                            inFlightWhileStoring.set(limiter.getInFlight());
+                            int size = buffer.readableByteCount();
+                            DataBufferUtils.release(buffer);
+                            return new UploadResult("quarantine/key-1", "etag", size);
+                        }));
+        when(fileStorage.move("quarantine/key-1", "key-1")).thenReturn(Mono.empty());
+        when(metadataService.finalizeUpload(1L, 11)).thenReturn(Mono.just(initial));
+        FileUploadService service = new FileUploadService(metadataService, storages(limit),
+                scanner(HttpStatus.OK, "CLEAN: File scanned"), true,
+                optional(ScanVerdictCache.class, null), optional(ScanBatcher.class, null), optional(InlineScanner.class, null));
+
+        // Act
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // Assert: the upload held a permit while storing and gave it back afterwards
+        assertThat(inFlightWhileStoring).hasValue(1);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void processRawFileUpload_whenInfected_shouldDeleteQuarantinedObject() {
+        // Arrange
+        FileUploadService service = service(scanner(HttpStatus.BAD_REQUEST, "INFECTED: Test virus detected"));
+        when(fileStorage.delete("quarantine/key-1")).thenReturn(Mono.empty());
+        when(metadataService.updateStatus(1L, Status.INFESTED, 11)).thenReturn(Mono.just(initial));
+
+        // Act & Assert
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectError(FileScanException.class)
+                .verify();
+
+        verify(fileStorage, never()).move(anyString(), anyString());
+        verify(metadataService, never()).finalizeUpload(any(), anyLong());
+    }
+
+    @Test
+    void processRawFileUpload_whenStorageFails_shouldMarkFileAsError() {
+        // Arrange
+        FileUploadService service = new FileUploadService(metadataService, storages(),
+                scanner(HttpStatus.OK, "CLEAN: File scanned"), true,
+                optional(ScanVerdictCache.class, null), optional(ScanBatcher.class, null), optional(InlineScanner.class, null));
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(fileStorage.upload(eq("quarantine/key-1"), any(), any()))
+                .thenReturn(Mono.error(new StorageConnectivityException("S3 unreachable", null)));
+        when(fileStorage.delete("quarantine/key-1")).thenReturn(Mono.empty());
+        when(metadataService.updateStatus(1L, Status.ERROR, 0)).thenReturn(Mono.just(initial));
+
+        // Act & Assert
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectError(StorageConnectivityException.class)
+                .verify();
+
+        verify(metadataService).updateStatus(1L, Status.ERROR, 0);
+        verify(fileStorage, never()).move(anyString(), anyString());
+    }
+
+    @Test
+    void processRawFileUpload_whenReleaseFails_shouldMarkFileAsErrorAndDeleteQuarantinedObject() {
+        // Arrange: the scanner finds the file clean, but moving it out of quarantine fails
+        FileUploadService service = service(scanner(HttpStatus.OK, "CLEAN: File scanned"));
+        when(fileStorage.move("quarantine/key-1", "key-1"))
+                .thenReturn(Mono.error(new StorageConnectivityException("S3 unreachable", null)));
+        when(fileStorage.delete("quarantine/key-1")).thenReturn(Mono.empty());
+        when(metadataService.updateStatus(1L, Status.ERROR, 0)).thenReturn(Mono.just(initial));
+
+        // Act & Assert
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectError(StorageConnectivityException.class)
+                .verify();
+
+        verify(metadataService).updateStatus(1L, Status.ERROR, 0);
+        verify(fileStorage).delete("quarantine/key-1");
+        verify(fileStorage, never()).delete("key-1");
+        verify(metadataService, never()).finalizeUpload(any(), anyLong());
+    }
+
+    @Test
+    void processRawFileUpload_whenFinalizeConflicts_shouldDeleteTheReleasedObject() {
+        // Arrange: the file has been settled elsewhere by the time it is finalized
+        FileUploadService service = service(scanner(HttpStatus.OK, "CLEAN: File scanned"));
+        StatusConflictException conflict = new StatusConflictException(1L, Status.SCANNING, Status.ERROR);
+        when(fileStorage.move("quarantine/key-1", "key-1")).thenReturn(Mono.empty());
+        when(metadataService.finalizeUpload(1L, 11)).thenReturn(Mono.error(conflict));
+        when(fileStorage.delete(anyString())).thenReturn(Mono.empty());
+        when(metadataService.updateStatus(1L, Status.ERROR, 0)).thenReturn(Mono.error(conflict));
+
+        // Act & Assert: the caller learns about the conflict, not about the failed cleanup
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectErrorMatches(error -> error == conflict)
+                .verify();
+
+        verify(fileStorage).delete("quarantine/key-1");
+        verify(fileStorage).delete("key-1");
+    }
+
+    @Test
+    void processRawFileUpload_whenDeclaredHashHasCleanVerdict_shouldSkipScanner() throws Exception {
+        // Arrange: the first upload of the content is scanned and its verdict remembered
+        ScanVerdictCache cache = new ScanVerdictCache(100, Duration.ofHours(1));
+        FileUploadService service = service(scanner(HttpStatus.OK, "CLEAN: File scanned"), cache);
+        FileMetadataDto finalized =
+                new FileMetadataDto(1L, "report.pdf", "application/pdf", "key-1", StorageType.S3, 11, Status.CLEAN, null);
+        when(fileStorage.move("quarantine/key-1", "key-1")).thenReturn(Mono.empty());
+        when(metadataService.finalizeUpload(1L, 11)).thenReturn(Mono.just(finalized));
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest("Hello world".getBytes(StandardCharsets.UTF_8)));
+
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectNext(finalized)
+                .verifyComplete();
+        assertThat(cache.getSignatureVersion()).isEqualTo("sig-1");
+
+        // Act & Assert: the same content again, declared by its hash
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello", " world"), sha256))
+                .expectNext(finalized)
+                .verifyComplete();
+
+        assertThat(scans).hasValue(1);
+        verify(fileStorage, times(2)).move("quarantine/key-1", "key-1");
+    }
+
+    @Test
+    void processRawFileUpload_withBatching_shouldBatchOnlySmallFiles() {
+        // Arrange: a scanner that answers single and batch requests, and a limit of 8 bytes for batching
+        List<String> paths = new CopyOnWriteArrayList<>();
+        WebClient scanner = WebClient.builder()
+                .baseUrl("http://scanner")
+                .exchangeFunction(request -> {
+                    paths.add(request.url().getPath());
+                    MockClientHttpRequest sent = new MockClientHttpRequest(HttpMethod.POST, request.url());
+                    boolean batch = request.url().getPath().equals("/scan-batch");
+                    return request.writeTo(sent, ExchangeStrategies.withDefaults())
+                            .thenReturn(batch
+                                    ? ClientResponse.create(HttpStatus.OK)
+                                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                                            .body("{\"fileId\":\"1\",\"verdict\":\"CLEAN\"}\n")
+                                            .build()
+                                    : ClientResponse.create(HttpStatus.OK).body("CLEAN: File scanned").build());
+                })
+                .build();
+        ScanBatcher batcher = new ScanBatcher(scanner, null, 8, 10, 1024, Duration.ofMillis(10));
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        when(fileStorage.upload(eq("quarantine/key-1"), any(), eq("application/pdf"))).thenAnswer(invocation ->
+                DataBufferUtils.join(invocation.<Flux<DataBuffer>>getArgument(1))
+                        .map(buffer -> {
+                            int size = buffer.readableByteCount();
+                            DataBufferUtils.release(buffer);
+                            return new UploadResult("quarantine/key-1", "etag", size);
+                        }));
+        when(fileStorage.move("quarantine/key-1", "key-1")).thenReturn(Mono.empty());
+        when(metadataService.finalizeUpload(eq(1L), anyLong())).thenReturn(Mono.just(initial));
+        FileUploadService service = new FileUploadService(metadataService, storages(), scanner, true,
+                optional(ScanVerdictCache.class, null), optional(ScanBatcher.class, batcher), optional(InlineScanner.class, null));
+
+        // Act
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hello ", "world")))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(service.processRawFileUpload("report.pdf", content("Hi", "!")))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // Assert: the large file was scanned on its own, in full; the small one in a batch
+        assertThat(paths).containsExactly("/scan", "/scan-batch");
+        verify(metadataService).finalizeUpload(1L, 11);
+        verify(metadataService).finalizeUpload(1L, 3);
+    }
+
+    @Test
+    void processRawFileUpload_withBatching_whenBodyFailsBeforeTheLimit_shouldPassOnTheError() {
+        // Arrange: the client goes away after 2 bytes, below the limit of 8 bytes for batching
+        List<String> paths = new CopyOnWriteArrayList<>();
+        WebClient scanner = WebClient.builder()
+                .baseUrl("http://scanner")
+                .exchangeFunction(request -> {
+                    paths.add(request.url().getPath());
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                            .body("{\"fileId\":\"1\",\"verdict\":\"CLEAN\"}\n")
+                            .build());
+                })
+                .build();
+        ScanBatcher batcher = new ScanBatcher(scanner, "http://app/callback", 8, 10, 1024, Duration.ofMillis(10));
+        when(metadataService.createInitialRecord("report.pdf")).thenReturn(Mono.just(initial));
+        FileUploadService service = new FileUploadService(metadataService, storages(), scanner, false,
+                optional(ScanVerdictCache.class, null), optional(ScanBatcher.class, batcher), optional(InlineScanner.class, null));
+        Flux<DataBuffer> body = content("Hi").concatWith(Flux.error(new IllegalStateException("client went away")));
+
+        // Act & Assert: the error is not taken for an empty file that is sent to the scanner
+        StepVerifier.create(service.processRawFileUpload("report.pdf", body))
+                .expectErrorMessage("client went away")
+                .verify();
+        assertThat(paths).isEmpty();
+    }
+}
@@ -0,0 +1,96 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.scanner.engine.CompositeScanEngine;
+import io.filemanager.scanner.engine.HashBlocklistScanEngine;
+import io.filemanager.scanner.engine.SignatureScanEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InlineScannerTest {
+
+    private static final String BLOCKED = "known bad file";
+
+    private static InlineScanner inlineScanner(InlineScanner.Mode mode) throws Exception {
+        String blockedHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(BLOCKED.getBytes(StandardCharsets.UTF_8)));
+        return new InlineScanner(new CompositeScanEngine(List.of(
+                new SignatureScanEngine(Map.of("Test.Virus", "VIRUS".getBytes(StandardCharsets.US_ASCII)), 1024),
+                new HashBlocklistScanEngine(List.of(blockedHash)))),
+                mode, Schedulers.parallel());
+    }
+
+    private static Flux<DataBuffer> content(String... parts) {
+        return Flux.fromArray(parts)
+                .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void scan_inPrefilterMode_whenEngineFindsThreat_shouldCancelExternalScan() throws Exception {
+        // Arrange: an external scanner that never answers
+        InlineScanner scanner = inlineScanner(InlineScanner.Mode.PREFILTER);
+        AtomicBoolean externalCancelled = new AtomicBoolean();
+
+        // Act & Assert
+        StepVerifier.create(scanner.scan("a.bin", content("harmless ", "VIR", "US ", "rest"),
+                        toScanner -> toScanner.then(Mono.<ScannerVerdict>never())
+                                .doOnCancel(() -> externalCancelled.set(true))))
+                .expectNext(new ScannerVerdict(Status.INFESTED, null))
+                .verifyComplete();
+
+        assertThat(externalCancelled).isTrue();
+        assertThat(scanner.getDetectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void scan_inPrefilterMode_whenEngineFindsNothing_shouldUseExternalVerdict() throws Exception {
+        InlineScanner scanner = inlineScanner(InlineScanner.Mode.PREFILTER);
+        AtomicInteger scannedBytes = new AtomicInteger();
+
+        StepVerifier.create(scanner.scan("a.bin", content("harmless ", "file"),
+                        toScanner -> toScanner
+                                .doOnNext(buffer -> {
+                                    scannedBytes.addAndGet(buffer.readableByteCount());
+                                    DataBufferUtils.release(buffer);
+                                })
+                                .then(Mono.just(new ScannerVerdict(Status.CLEAN, "sig-1")))))
+                .expectNext(new ScannerVerdict(Status.CLEAN, "sig-1"))
+                .verifyComplete();
+
+        assertThat(scannedBytes).hasValue(13);
+    }
+
+    @Test
+    void scan_inAuthoritativeMode_shouldNotCallExternalScanner() throws Exception {
+        InlineScanner scanner = inlineScanner(InlineScanner.Mode.AUTHORITATIVE);
+        AtomicBoolean externalCalled = new AtomicBoolean();
+
+        StepVerifier.create(scanner.scan("a.bin", content("known ", "bad file"), toScanner -> {
+                    externalCalled.set(true);
+                    return Mono.empty();
+                }))
+                .assertNext(verdict -> assertThat(verdict.status()).isEqualTo(Status.INFESTED))
+                .verifyComplete();
+        StepVerifier.create(scanner.scan("b.bin", content("fine"), toScanner -> Mono.empty()))
+                .assertNext(verdict -> assertThat(verdict.status()).isEqualTo(Status.CLEAN))
+                .verifyComplete();
+
+        assertThat(externalCalled).isFalse();
+    }
+}
@@ -0,0 +1,162 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.scanner.ScanBatchFrames;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanBatcherTest {
+
+    private final List<List<ScanBatchFrames.Entry>> requests = new CopyOnWriteArrayList<>();
+    private final List<String> targets = new CopyOnWriteArrayList<>();
+
+    /**
+     * A scanner that finds files saying "virus" infected and leaves files saying "skip" out of its answer.
+     */
+    private WebClient scanner() {
+        return WebClient.builder()
+                .baseUrl("http://scanner")
+                .exchangeFunction(request -> {
+                    assertThat(request.url().getPath()).isEqualTo("/scan-batch");
+                    targets.add(String.valueOf(request.headers().getFirst("X-Target-Url")));
+                    MockClientHttpRequest sent = new MockClientHttpRequest(HttpMethod.POST, request.url());
+                    return request.writeTo(sent, ExchangeStrategies.withDefaults())
+                            .then(Mono.defer(() -> DataBufferUtils.join(sent.getBody())))
+                            .map(joined -> {
+                                ByteBuffer body = ByteBuffer.allocate(joined.readableByteCount());
+                                joined.toByteBuffer(joined.readPosition(), body, 0, body.capacity());
+                                return body;
+                            })
+                            .map(body -> {
+                                List<ScanBatchFrames.Entry> files = ScanBatchFrames.decode(body);
+                                requests.add(files);
+                                String lines = files.stream()
+                                        .filter(file -> !text(file).equals("skip"))
+                                        .map(file -> "{\"fileId\":\"" + file.fileId() + "\",\"verdict\":\""
+                                                + (text(file).equals("virus") ? "INFECTED" : "CLEAN") + "\"}\n")
+                                        .collect(Collectors.joining());
+                                return ClientResponse.create(HttpStatus.OK)
+                                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                                        .header("X-Signature-Version", "sig-1")
+                                        .body(lines)
+                                        .build();
+                            });
+                })
+                .build();
+    }
+
+    private static String text(ScanBatchFrames.Entry file) {
+        return new String(file.content(), StandardCharsets.UTF_8);
+    }
+
+    private static FileMetadataDto file(long id) {
+        return new FileMetadataDto(id, "file-" + id, "text/plain", "key-" + id, StorageType.S3, 0, Status.SCANNING, null);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void scan_shouldSendConcurrentFilesInOneRequestAndHandOutTheirVerdicts() {
+        // Arrange
+        ScanBatcher batcher = new ScanBatcher(scanner(), "http://app/upload-scanned-batch", 1024, 10, 1024 * 1024, Duration.ofMillis(50));
+
+        // Act
+        Mono<List<ScannerVerdict>> verdicts = Flux.merge(
+                        batcher.scan(file(1), bytes("hello")),
+                        batcher.scan(file(2), bytes("virus")),
+                        batcher.scan(file(3), bytes("skip")))
+                .collectList();
+
+        // Assert
+        StepVerifier.create(verdicts)
+                .assertNext(result -> assertThat(result).extracting(ScannerVerdict::status)
+                        .containsExactlyInAnyOrder(Status.CLEAN, Status.INFESTED, Status.ERROR))
+                .verifyComplete();
+        assertThat(requests).singleElement().satisfies(files ->
+                assertThat(files).extracting(ScanBatchFrames.Entry::fileId).containsExactly("1", "2", "3"));
+        // Files the caller stores itself are not forwarded
+        assertThat(targets).containsExactly("null");
+        assertThat(batcher.getBatchCount()).isEqualTo(1);
+    }
+
+    @Test
+    void scanAndForward_whenBatchIsFull_shouldSendItWithoutWaitingAndPassTheCallback() {
+        // Arrange: the timer alone would hold the batch for a minute
+        ScanBatcher batcher = new ScanBatcher(scanner(), "http://app/upload-scanned-batch", 1024, 2, 1024 * 1024, Duration.ofMinutes(1));
+
+        // Act & Assert
+        StepVerifier.create(Flux.merge(
+                                batcher.scanAndForward(file(1), bytes("a")),
+                                batcher.scanAndForward(file(2), bytes("b")))
+                        .map(ScannerVerdict::signatureVersion))
+                .expectNext("sig-1", "sig-1")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(targets).containsExactly("http://app/upload-scanned-batch");
+    }
+
+    @Test
+    void scan_whenCallerCancelsBeforeTheBatchIsSent_shouldLeaveTheFileOut() {
+        // Arrange
+        ScanBatcher batcher = new ScanBatcher(scanner(), "http://app/upload-scanned-batch", 1024, 10, 1024 * 1024, Duration.ofMillis(50));
+        Disposable cancelled = batcher.scan(file(1), bytes("gone")).subscribe();
+
+        // Act
+        cancelled.dispose();
+
+        // Assert
+        StepVerifier.create(batcher.scan(file(2), bytes("hello")).map(ScannerVerdict::status))
+                .expectNext(Status.CLEAN)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(requests).singleElement().satisfies(files ->
+                assertThat(files).extracting(ScanBatchFrames.Entry::fileId).containsExactly("2"));
+        assertThat(batcher.getFileCount()).isEqualTo(1);
+    }
+
+    @Test
+    void scan_whenEveryFileIsCancelled_shouldSendNothing() {
+        VirtualTimeScheduler time = VirtualTimeScheduler.getOrSet();
+        try {
+            // Arrange
+            ScanBatcher batcher = new ScanBatcher(scanner(), "http://app/upload-scanned-batch", 1024, 10, 1024 * 1024, Duration.ofMillis(50));
+            Disposable cancelled = batcher.scan(file(1), bytes("gone")).subscribe();
+
+            // Act
+            cancelled.dispose();
+            time.advanceTimeBy(Duration.ofSeconds(1));
+
+            // Assert
+            assertThat(requests).isEmpty();
+            assertThat(batcher.getBatchCount()).isZero();
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+}
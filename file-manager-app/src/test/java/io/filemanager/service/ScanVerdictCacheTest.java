@@ -0,0 +1,41 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.Status;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanVerdictCacheTest {
+
+    private static final String CLEAN_HASH = "a".repeat(64);
+    private static final String INFESTED_HASH = "b".repeat(64);
+
+    @Test
+    void lookup_afterSignatureUpdate_shouldForgetCleanButKeepInfestedVerdicts() {
+        // Arrange
+        ScanVerdictCache cache = new ScanVerdictCache(100, Duration.ofHours(1));
+        cache.record(CLEAN_HASH, Status.CLEAN, "sig-1");
+        cache.record(INFESTED_HASH, Status.INFESTED, "sig-1");
+        assertThat(cache.lookup(CLEAN_HASH.toUpperCase())).contains(Status.CLEAN);
+
+        // Act: the scanner reports newer signatures
+        cache.record("c".repeat(64), Status.CLEAN, "sig-2");
+
+        // Assert
+        assertThat(cache.lookup(CLEAN_HASH)).isEmpty();
+        assertThat(cache.lookup(INFESTED_HASH)).contains(Status.INFESTED);
+    }
+
+    @Test
+    void record_shouldIgnoreInconclusiveVerdicts() {
+        ScanVerdictCache cache = new ScanVerdictCache(100, Duration.ofHours(1));
+
+        cache.record(CLEAN_HASH, Status.ERROR, null);
+
+        assertThat(cache.lookup(CLEAN_HASH)).isEmpty();
+        assertThat(ScanVerdictCache.isSha256(CLEAN_HASH)).isTrue();
+        assertThat(ScanVerdictCache.isSha256("not-a-hash")).isFalse();
+    }
+}
@@ -0,0 +1,86 @@
+package io.filemanager.service;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmallObjectCacheTest {
+
+    private final AtomicInteger backendCalls = new AtomicInteger();
+
+    private Flux<ByteBuffer> backend(String data) {
+        return Flux.defer(() -> {
+            backendCalls.incrementAndGet();
+            return Flux.just(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+        });
+    }
+
+    private String read(Flux<ByteBuffer> content) {
+        return content.map(buffer -> StandardCharsets.UTF_8.decode(buffer).toString())
+                .reduce("", String::concat)
+                .block();
+    }
+
+    @Test
+    void get_shouldServeRepeatedRequestsFromMemory() {
+        SmallObjectCache cache = new SmallObjectCache(1024, 64, Duration.ofMinutes(1));
+        FileMetadataDto metadata = new FileMetadataDto(1L, "icon.png", "image/png", "key-1", StorageType.S3, 5, null, null);
+
+        assertThat(read(cache.get(metadata, () -> backend("hello")))).isEqualTo("hello");
+        assertThat(read(cache.get(metadata, () -> backend("hello")))).isEqualTo("hello");
+
+        assertThat(backendCalls).hasValue(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void get_shouldTreatNewFileKeyAsNewVersion() {
+        SmallObjectCache cache = new SmallObjectCache(1024, 64, Duration.ofMinutes(1));
+        FileMetadataDto v1 = new FileMetadataDto(1L, "icon.png", "image/png", "key-1", StorageType.S3, 2, null, null);
+        FileMetadataDto v2 = new FileMetadataDto(1L, "icon.png", "image/png", "key-2", StorageType.S3, 2, null, null);
+
+        read(cache.get(v1, () -> backend("v1")));
+
+        assertThat(read(cache.get(v2, () -> backend("v2")))).isEqualTo("v2");
+        assertThat(backendCalls).hasValue(2);
+    }
+
+    @Test
+    void get_whenObjectExceedsLimit_shouldPassThroughWithoutCaching() {
+        SmallObjectCache cache = new SmallObjectCache(1024, 4, Duration.ofMinutes(1));
+        FileMetadataDto metadata = new FileMetadataDto(1L, "doc.pdf", "application/pdf", "key-1", StorageType.S3, 0, null, null);
+
+        assertThat(read(cache.get(metadata, () -> backend("too large")))).isEqualTo("too large");
+        read(cache.get(metadata, () -> backend("too large")));
+
+        assertThat(backendCalls).hasValue(2);
+        assertThat(cache.weightedSize()).isZero();
+    }
+
+    @Test
+    void bindMetrics_shouldPublishHitsMissesAndSize() {
+        SmallObjectCache cache = new SmallObjectCache(1024, 64, Duration.ofMinutes(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindMetrics(registry);
+        FileMetadataDto metadata = new FileMetadataDto(1L, "icon.png", "image/png", "key-1", StorageType.S3, 5, null, null);
+
+        read(cache.get(metadata, () -> backend("hello")));
+        read(cache.get(metadata, () -> backend("hello")));
+
+        assertThat(registry.get("cache.gets").tag("cache", "small-objects").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "small-objects").tag("result", "miss").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("storage.cache.memory.size").gauge().value()).isEqualTo(5);
+    }
+}
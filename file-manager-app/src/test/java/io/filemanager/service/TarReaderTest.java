@@ -0,0 +1,126 @@
+package io.filemanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TarReaderTest {
+
+    private static byte[] header(String name, long size, char type) {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        put(header, 100, "0000644");
+        put(header, 124, String.format("%011o", size));
+        header[156] = (byte) type;
+        put(header, 257, "ustar");
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        put(header, 148, String.format("%06o", sum));
+        header[154] = 0;
+        return header;
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static void entry(ByteArrayOutputStream tar, String name, char type, String content) {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        tar.writeBytes(header(name, data.length, type));
+        tar.writeBytes(data);
+        tar.writeBytes(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    /**
+     * Delivers the archive in chunks of an odd size, so headers and contents straddle buffers.
+     */
+    private static Flux<DataBuffer> stream(byte[] tar, int chunkSize) {
+        return Flux.range(0, (tar.length + chunkSize - 1) / chunkSize)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(tar, i * chunkSize, Math.min(tar.length, (i + 1) * chunkSize))));
+    }
+
+    private static Flux<String> files(Flux<Flux<FileChunk>> files) {
+        // Like windowUntil, the reader may open an empty window before the first file.
+        return files.concatMap(file -> file.collectList().filter(chunks -> !chunks.isEmpty()).map(chunks -> {
+            StringBuilder content = new StringBuilder();
+            for (FileChunk chunk : chunks) {
+                content.append(chunk.data().toString(StandardCharsets.UTF_8));
+                DataBufferUtils.release(chunk.data());
+            }
+            return chunks.getFirst().fileName() + "=" + content;
+        }));
+    }
+
+    @Test
+    void read_shouldSplitArchiveIntoFilesAcrossBufferBoundaries() {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        entry(tar, "docs/", '5', "");
+        entry(tar, "docs/a.txt", '0', "first file");
+        entry(tar, "docs/empty.txt", '0', "");
+        entry(tar, "b.txt", '0', "x".repeat(1500));
+        tar.writeBytes(new byte[1024]);
+
+        StepVerifier.create(files(TarReader.read(stream(tar.toByteArray(), 77))))
+                .expectNext("docs/a.txt=first file", "docs/empty.txt=", "b.txt=" + "x".repeat(1500))
+                .verifyComplete();
+    }
+
+    @Test
+    void read_shouldApplyGnuLongNames() {
+        String longName = "nested/".repeat(20) + "file.txt";
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        entry(tar, "././@LongLink", 'L', longName + "\0");
+        entry(tar, longName.substring(0, 99), '0', "content");
+        tar.writeBytes(new byte[1024]);
+
+        List<String> result = files(TarReader.read(stream(tar.toByteArray(), 512))).collectList().block();
+
+        assertThat(result).containsExactly(longName + "=content");
+    }
+
+    @Test
+    void read_whenExtensionHeaderIsHuge_shouldFailBeforeBufferingIt() {
+        // Only the header: the reader must give up without waiting for 10MB of pax attributes
+        byte[] pax = header("PaxHeaders/a.txt", 10 * 1024 * 1024, 'x');
+
+        StepVerifier.create(files(TarReader.read(stream(pax, 512))))
+                .expectErrorMessage("Tar extension header of 10485760 bytes exceeds the limit of 65536 bytes")
+                .verify();
+    }
+
+    @Test
+    void read_whenStreamIsTruncated_shouldFail() {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        entry(tar, "a.txt", '0', "some content");
+        byte[] truncated = Arrays.copyOf(tar.toByteArray(), 520);
+
+        StepVerifier.create(files(TarReader.read(stream(truncated, 100))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void read_whenBodyIsNotTar_shouldFail() {
+        byte[] garbage = "this is not a tar archive".repeat(30).getBytes(StandardCharsets.UTF_8);
+
+        StepVerifier.create(files(TarReader.read(stream(garbage, 128))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,86 @@
+package io.filemanager.web;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.filemanager.metadata.service.FileMetadataService;
+import io.filemanager.service.AsyncUploadService;
+import io.filemanager.service.BatchUploadService;
+import io.filemanager.service.FileDownloadService;
+import io.filemanager.service.FileUploadService;
+import io.filemanager.service.StatusChange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FileControllerTest {
+
+    @Mock
+    private FileUploadService fileUploadService;
+    @Mock
+    private FileDownloadService fileDownloadService;
+    @Mock
+    private BatchUploadService batchUploadService;
+    @Mock
+    private AsyncUploadService asyncUploadService;
+    @Mock
+    private FileMetadataService metadataService;
+
+    private FileController controller() {
+        // Heartbeats every 15 s, streams end after 30 min
+        return new FileController(fileUploadService, fileDownloadService, batchUploadService,
+                asyncUploadService, metadataService, 15, 30);
+    }
+
+    @Test
+    void uploadStatusEvents_whileNothingChanges_shouldSendHeartbeats() {
+        // Arrange
+        TestPublisher<FileChangeEvent> changes = TestPublisher.create();
+        when(metadataService.watchStatuses(List.of(1L))).thenReturn(changes.flux());
+
+        // Act & Assert
+        StepVerifier.withVirtualTime(() -> controller().uploadStatusEvents(1L))
+                .then(() -> changes.next(new FileChangeEvent(1L, Status.SCANNING)))
+                .assertNext(event -> assertThat(event.event()).isEqualTo("status"))
+                .thenAwait(Duration.ofSeconds(15))
+                .assertNext(FileControllerTest::assertHeartbeat)
+                .thenAwait(Duration.ofSeconds(15))
+                .assertNext(FileControllerTest::assertHeartbeat)
+                .then(() -> changes.next(new FileChangeEvent(1L, Status.CLEAN)).complete())
+                .assertNext(event -> assertThat(event.data()).isEqualTo(StatusChange.of(new FileChangeEvent(1L, Status.CLEAN))))
+                // No heartbeat after the last status
+                .verifyComplete();
+    }
+
+    @Test
+    void batchStatusEvents_whenStillScanningAfterMaxDuration_shouldEndTheStream() {
+        // Arrange
+        TestPublisher<FileChangeEvent> changes = TestPublisher.create();
+        when(metadataService.watchStatuses(List.of(1L, 2L))).thenReturn(changes.flux());
+
+        // Act & Assert
+        StepVerifier.withVirtualTime(() -> controller().batchStatusEvents(List.of(1L, 2L))
+                        .filter(event -> event.event() != null))
+                .then(() -> changes.next(new FileChangeEvent(1L, Status.SCANNING), new FileChangeEvent(2L, Status.SCANNING)))
+                .expectNextCount(2)
+                .thenAwait(Duration.ofMinutes(30))
+                .verifyComplete();
+        changes.assertCancelled();
+    }
+
+    private static void assertHeartbeat(ServerSentEvent<StatusChange> event) {
+        assertThat(event.comment()).isEqualTo("heartbeat");
+        assertThat(event.data()).isNull();
+    }
+}
@@ -0,0 +1,87 @@
+package io.filemanager.web.admission;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlFilterTest {
+
+    private final AdmissionController uploads =
+            new AdmissionController(EndpointClass.UPLOAD, 1, 0, Duration.ofMillis(100), 1024);
+    private final AdmissionController archives =
+            new AdmissionController(EndpointClass.ARCHIVE, 10, 0, Duration.ofMillis(100), 1024);
+
+    private final AtomicInteger handled = new AtomicInteger();
+
+    private AdmissionControlFilter filter(double heapPressure) {
+        return new AdmissionControlFilter(Map.of(
+                EndpointClass.UPLOAD, new AdmissionControlFilter.ClassPolicy(uploads, 100, 10, 2),
+                EndpointClass.ARCHIVE, new AdmissionControlFilter.ClassPolicy(archives, 100, 1, 10)),
+                () -> heapPressure, 0.9, 10);
+    }
+
+    private WebFilterChain chain(Mono<Void> handling) {
+        return exchange -> handling.doOnSubscribe(subscription -> handled.incrementAndGet());
+    }
+
+    @Test
+    void filter_whenClassIsSaturated_shouldAnswer429WithRetryAfter() {
+        // Arrange: one upload is still running
+        AdmissionControlFilter filter = filter(0.1);
+        Sinks.Empty<Void> running = Sinks.empty();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/api/files/upload")), chain(running.asMono()))
+                .subscribe();
+
+        // Act
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.post("/api/files/upload"));
+        StepVerifier.create(filter.filter(second, chain(Mono.empty()))).verifyComplete();
+
+        // Assert
+        assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(second.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(handled).hasValue(1);
+
+        // The slot is handed back once the running upload ends
+        running.tryEmitEmpty();
+        assertThat(uploads.getInFlight()).isZero();
+    }
+
+    @Test
+    void filter_underHeapPressure_shouldShedLowPriorityClassesOnly() {
+        AdmissionControlFilter filter = filter(0.95);
+
+        MockServerWebExchange archive = MockServerWebExchange.from(MockServerHttpRequest.post("/api/archives/download-zip"));
+        StepVerifier.create(filter.filter(archive, chain(Mono.empty()))).verifyComplete();
+        MockServerWebExchange upload = MockServerWebExchange.from(MockServerHttpRequest.post("/api/files/upload"));
+        StepVerifier.create(filter.filter(upload, chain(Mono.empty()))).verifyComplete();
+
+        assertThat(archive.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(archive.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("10");
+        assertThat(upload.getResponse().getStatusCode()).isNull();
+        assertThat(handled).hasValue(1);
+    }
+
+    @Test
+    void filter_shouldNotHoldBackScannerCallbacks() {
+        AdmissionControlFilter filter = filter(0.1);
+        uploads.admit(1).block(); // uploads saturated
+
+        MockServerWebExchange callback = MockServerWebExchange.from(MockServerHttpRequest.post("/api/files/upload-scanned"));
+        StepVerifier.create(filter.filter(callback, chain(Mono.empty()))).verifyComplete();
+
+        assertThat(callback.getResponse().getStatusCode()).isNull();
+        assertThat(handled).hasValue(1);
+    }
+}
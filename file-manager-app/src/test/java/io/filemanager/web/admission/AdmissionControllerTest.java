@@ -0,0 +1,89 @@
+package io.filemanager.web.admission;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControllerTest {
+
+    private AdmissionController controller(int maxInFlight, int maxQueueSize, long memoryBudgetBytes) {
+        return new AdmissionController(EndpointClass.UPLOAD, maxInFlight, maxQueueSize, Duration.ofMillis(200), memoryBudgetBytes);
+    }
+
+    @Test
+    void admit_whenSlotIsFree_shouldAdmitImmediately() {
+        AdmissionController controller = controller(2, 1, 1000);
+
+        StepVerifier.create(controller.admit(10))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(controller.getInFlight()).isEqualTo(1);
+        assertThat(controller.getReservedBytes()).isEqualTo(10);
+    }
+
+    @Test
+    void admit_whenFull_shouldQueueUntilReleased() {
+        // Arrange: the only slot is taken
+        AdmissionController controller = controller(1, 1, 1000);
+        AdmissionController.Ticket first = controller.admit(10).block();
+
+        // Act & Assert: the second request runs once the first one ends
+        StepVerifier.create(controller.admit(10))
+                .then(() -> assertThat(controller.getQueued()).isEqualTo(1))
+                .then(first::release)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(controller.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void admit_whenQueueIsFull_shouldRejectWith429() {
+        AdmissionController controller = controller(1, 0, 1000);
+        controller.admit(10).block();
+
+        StepVerifier.create(controller.admit(10))
+                .expectErrorSatisfies(error -> assertThat(((AdmissionRejectedException) error).getStatus())
+                        .isEqualTo(HttpStatus.TOO_MANY_REQUESTS))
+                .verify();
+
+        assertThat(controller.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void admit_whenQueuedTooLong_shouldRejectWith503AndLeaveNoTrace() {
+        AdmissionController controller = controller(1, 5, 1000);
+        controller.admit(10).block();
+
+        StepVerifier.create(controller.admit(10))
+                .expectErrorSatisfies(error -> assertThat(((AdmissionRejectedException) error).getStatus())
+                        .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE))
+                .verify(Duration.ofSeconds(2));
+
+        assertThat(controller.getQueued()).isZero();
+        assertThat(controller.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void admit_whenMemoryBudgetIsUsedUp_shouldWaitForMemoryEvenWithFreeSlots() {
+        // Arrange: plenty of slots, but the first request takes most of the budget
+        AdmissionController controller = controller(10, 5, 100);
+        AdmissionController.Ticket big = controller.admit(80).block();
+        AtomicReference<AdmissionController.Ticket> second = new AtomicReference<>();
+
+        // Act
+        controller.admit(30).subscribe(second::set);
+        assertThat(second.get()).isNull();
+        big.release();
+
+        // Assert
+        assertThat(second.get()).isNotNull();
+        assertThat(controller.getReservedBytes()).isEqualTo(30);
+    }
+}
@@ -4,6 +4,8 @@ import io.filemanager.metadata.persistence.converter.StatusToStringConverter;
 import io.filemanager.metadata.persistence.converter.StorageTypeToStringConverter;
 import io.filemanager.metadata.persistence.converter.StringToStatusConverter;
 import io.filemanager.metadata.persistence.converter.StringToStorageTypeConverter;
+import io.filemanager.metadata.persistence.converter.StringToUploadSessionStatusConverter;
+import io.filemanager.metadata.persistence.converter.UploadSessionStatusToStringConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
@@ -16,7 +18,8 @@ public class R2dbcConfig {
     /**
      * Configures custom R2DBC conversions for the application.
      * This method registers converters for converting between
-     * Status enum and String, and StorageType enum and String.
+     * Status enum and String, StorageType enum and String, and
+     * UploadSessionStatus enum and String.
      *
      * @return R2dbcCustomConversions instance with the specified converters.
      */
@@ -29,7 +32,9 @@ public class R2dbcConfig {
                 new StatusToStringConverter(),
                 new StringToStatusConverter(),
                 new StorageTypeToStringConverter(),
-                new StringToStorageTypeConverter()
+                new StringToStorageTypeConverter(),
+                new UploadSessionStatusToStringConverter(),
+                new StringToUploadSessionStatusConverter()
         );
     }
 }
\ No newline at end of file
@@ -2,5 +2,6 @@ package io.filemanager.metadata.domain;
 
 public enum StorageType {
     S3,
-    HTTP
+    HTTP,
+    LOCAL
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package io.filemanager.metadata.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * A chunk of an upload session that has been stored.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("upload_chunk")
+public class UploadChunk {
+
+    @Id
+    private Long id;
+
+    @Column("session_id")
+    private Long sessionId;
+
+    @Column("chunk_number")
+    private int chunkNumber; // 1-based, like S3 part numbers
+
+    @Column("e_tag")
+    private String etag; // Needed to complete the multipart upload
+
+    private long size;
+
+    @Column("created_at")
+    private Instant createdAt;
+}
@@ -0,0 +1,50 @@
+package io.filemanager.metadata.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * A chunked upload in progress. Maps to one multipart upload in the storage backend.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("upload_session")
+public class UploadSession {
+
+    @Id
+    private Long id;
+
+    @Column("file_id")
+    private Long fileId; // The file record the upload will complete
+
+    @Column("upload_id")
+    private String uploadId; // Multipart upload ID assigned by the storage backend
+
+    @Column("chunk_size")
+    private long chunkSize; // Size of every chunk but the last one
+
+    @Column("total_size")
+    private long totalSize;
+
+    @Column("chunk_count")
+    private int chunkCount;
+
+    private UploadSessionStatus status;
+
+    @CreatedDate
+    @Column("created_at")
+    private Instant createdAt;
+
+    @LastModifiedDate
+    @Column("updated_at")
+    private Instant updatedAt;
+}
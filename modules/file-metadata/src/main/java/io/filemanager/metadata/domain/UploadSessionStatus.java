@@ -0,0 +1,5 @@
+package io.filemanager.metadata.domain;
+
+public enum UploadSessionStatus {
+    OPEN, COMPLETED, ABORTED;
+}
@@ -0,0 +1,17 @@
+package io.filemanager.metadata.dto;
+
+import io.filemanager.metadata.domain.Status;
+
+/**
+ * A change of a file record, as broadcast to all instances.
+ */
+public record FileChangeEvent(
+        Long fileId, // null if any record may have changed, e.g. after notifications were missed
+        Status status // the new status, null if the record was deleted
+) {
+    public static final FileChangeEvent ANY = new FileChangeEvent(null, null);
+
+    public boolean isAny() {
+        return fileId == null;
+    }
+}
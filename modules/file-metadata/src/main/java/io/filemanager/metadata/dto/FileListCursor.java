@@ -0,0 +1,38 @@
+package io.filemanager.metadata.dto;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Position in a listing of file records, which is ordered newest first by creation time and then
+ * by ID. A listing that continues after a cursor starts with the record right after it, however
+ * many records were added or deleted in the meantime.
+ * <p>
+ * In text form it is {@code <createdAt>,<id>}, e.g. {@code 2025-06-01T12:00:00.123456Z,42}.
+ */
+public record FileListCursor(Instant createdAt, long id) {
+
+    public static FileListCursor of(FileMetadataDto record) {
+        return new FileListCursor(record.createdAt(), record.id());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a cursor.
+     */
+    public static FileListCursor parse(String text) {
+        int comma = text.lastIndexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + text);
+        }
+        try {
+            return new FileListCursor(Instant.parse(text.substring(0, comma)), Long.parseLong(text.substring(comma + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + text, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createdAt + "," + id;
+    }
+}
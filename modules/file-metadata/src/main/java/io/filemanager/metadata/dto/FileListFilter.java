@@ -0,0 +1,16 @@
+package io.filemanager.metadata.dto;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+
+/**
+ * Criteria for listing file records. A null criterion matches every record.
+ */
+public record FileListFilter(
+        Status status,
+        StorageType storageType,
+        String contentType,
+        String namePrefix // matched literally, '%' and '_' included
+) {
+    public static final FileListFilter ALL = new FileListFilter(null, null, null, null);
+}
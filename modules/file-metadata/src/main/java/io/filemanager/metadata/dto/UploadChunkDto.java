@@ -0,0 +1,7 @@
+package io.filemanager.metadata.dto;
+
+public record UploadChunkDto(
+        int chunkNumber,
+        String etag,
+        long size
+) {}
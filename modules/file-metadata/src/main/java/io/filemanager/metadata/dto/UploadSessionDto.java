@@ -0,0 +1,16 @@
+package io.filemanager.metadata.dto;
+
+import io.filemanager.metadata.domain.UploadSessionStatus;
+
+import java.time.Instant;
+
+public record UploadSessionDto(
+        Long id,
+        Long fileId,
+        String uploadId,
+        long chunkSize,
+        long totalSize,
+        int chunkCount,
+        UploadSessionStatus status,
+        Instant createdAt
+) {}
@@ -0,0 +1,138 @@
+package io.filemanager.metadata.persistence;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Broadcasts changes of file records to all instances through Postgres LISTEN/NOTIFY.
+ * <p>
+ * Writes that change a record notify the {@value #CHANNEL} channel with {@code <id>:<status>},
+ * {@code <id>:DELETED} or {@code *}, within the statement that changes the record where
+ * possible (see {@link #NOTIFY_UPDATED}). {@link #changes()} listens on a connection of its own,
+ * opened with the first subscriber and shared by all of them. That connection is taken from the
+ * factory behind the pool, if any, so it is really closed when listening stops instead of going
+ * back to the pool still subscribed to the channel. After every (re)connect it first emits
+ * {@link FileChangeEvent#ANY}, since notifications sent in between are lost. Payloads it can't
+ * read are taken as {@link FileChangeEvent#ANY} as well.
+ */
+@Slf4j
+@Component
+public class FileChangeNotifications {
+    public static final String CHANNEL = "file_changed";
+
+    /**
+     * Selects the rows of a data-modifying CTE named {@code updated} and notifies the channel
+     * for each of them, so the notification costs no round trip of its own.
+     */
+    public static final String NOTIFY_UPDATED = """
+            SELECT updated.* FROM updated
+            CROSS JOIN LATERAL pg_notify('file_changed', concat(updated.id, ':', updated.status)) AS notified
+            """;
+
+    private static final String DELETED = "DELETED";
+    private static final String ALL = "*";
+
+    private final DatabaseClient databaseClient;
+    private final Flux<FileChangeEvent> changes;
+
+    public FileChangeNotifications(ConnectionFactory connectionFactory, DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+        ConnectionFactory unpooled = unpooled(connectionFactory);
+        this.changes = Flux.usingWhen(Mono.from(unpooled.create()), this::listen, Connection::close)
+                .doOnError(error -> log.warn("Listening on {} failed, reconnecting: {}", CHANNEL, error.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .share();
+    }
+
+    /**
+     * The changes of all instances, including this one, as long as there is a subscriber.
+     */
+    public Flux<FileChangeEvent> changes() {
+        return changes;
+    }
+
+    /**
+     * Notifies the change of a record for writes that can't do it in their own statement.
+     */
+    public Mono<Void> publish(Long fileId, Status status) {
+        return notifyChannel(fileId + ":" + (status != null ? status.name() : DELETED));
+    }
+
+    /**
+     * Notifies that any record may have changed, e.g. after all records have been deleted.
+     */
+    public Mono<Void> publishAll() {
+        return notifyChannel(ALL);
+    }
+
+    private Mono<Void> notifyChannel(String payload) {
+        return databaseClient.sql("SELECT pg_notify($1, $2)")
+                .bind("$1", CHANNEL)
+                .bind("$2", payload)
+                .then();
+    }
+
+    private Flux<FileChangeEvent> listen(Connection connection) {
+        PostgresqlConnection postgres = unwrap(connection);
+        return postgres.createStatement("LISTEN " + CHANNEL)
+                .execute()
+                .flatMap(result -> result.getRowsUpdated())
+                .then()
+                .doOnSuccess(ignored -> log.info("Listening for file changes on {}", CHANNEL))
+                .thenMany(Flux.just(FileChangeEvent.ANY).concatWith(postgres.getNotifications()
+                        .map(notification -> parse(notification.getParameter()))));
+    }
+
+    static FileChangeEvent parse(String payload) {
+        int separator = payload != null ? payload.indexOf(':') : -1;
+        if (separator < 0) {
+            return FileChangeEvent.ANY;
+        }
+        try {
+            Long fileId = Long.valueOf(payload.substring(0, separator));
+            String status = payload.substring(separator + 1);
+            return new FileChangeEvent(fileId, status.equals(DELETED) ? null : Status.valueOf(status));
+        } catch (IllegalArgumentException e) {
+            // E.g. a status this version doesn't know yet, or a NULL one notified as ''
+            log.warn("Unreadable notification '{}' on {}, dropping all cached records", payload, CHANNEL);
+            return FileChangeEvent.ANY;
+        }
+    }
+
+    /**
+     * The factory behind a pool, which opens connections of its own.
+     */
+    private static ConnectionFactory unpooled(ConnectionFactory connectionFactory) {
+        ConnectionFactory current = connectionFactory;
+        while (current instanceof Wrapped<?> wrapped && wrapped.unwrap() instanceof ConnectionFactory inner) {
+            current = inner;
+        }
+        return current;
+    }
+
+    /**
+     * The driver connection behind a wrapped one; LISTEN needs its notification stream.
+     */
+    private static PostgresqlConnection unwrap(Connection connection) {
+        Object current = connection;
+        while (!(current instanceof PostgresqlConnection) && current instanceof Wrapped<?> wrapped) {
+            current = wrapped.unwrap();
+        }
+        if (current instanceof PostgresqlConnection postgres) {
+            return postgres;
+        }
+        throw new IllegalStateException("LISTEN needs a Postgres connection, got " + connection.getClass().getName());
+    }
+}
@@ -0,0 +1,151 @@
+package io.filemanager.metadata.persistence;
+
+import io.filemanager.metadata.domain.FileMetadata;
+import io.filemanager.metadata.domain.Status;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes many file records with few round trips.
+ * <p>
+ * Records are taken in chunks of {@code chunkSize}. Each chunk is one R2DBC statement with a
+ * binding per record, which the driver sends in one go and answers with one result per binding.
+ * So a chunk costs one round trip instead of one per record. Up to {@code parallelism} chunks are
+ * in flight at once, each on its own connection. The saved records come back in input order,
+ * chunk after chunk, as soon as their chunk is done. Updates are broadcast through
+ * {@link FileChangeNotifications}.
+ */
+@Repository
+public class FileMetadataBulkRepository {
+
+    private static final String INSERT = """
+            INSERT INTO file (file_name, content_type, file_key, storage_type, size, status, created_at, updated_at)
+            VALUES ($1, $2, $3, $4, $5, $6, $7, NOW())
+            RETURNING *
+            """;
+
+    private static final String UPDATE = """
+            WITH updated AS (
+                UPDATE file
+                SET file_name = $1, content_type = $2, file_key = $3, storage_type = $4, size = $5, status = $6, updated_at = NOW()
+                WHERE id = $7
+                RETURNING *
+            )
+            """ + FileChangeNotifications.NOTIFY_UPDATED;
+
+    private static final String UPDATE_STATUS = """
+            WITH updated AS (
+                UPDATE file SET status = $1, updated_at = NOW()
+                WHERE id = ANY($2)
+                RETURNING *
+            )
+            """ + FileChangeNotifications.NOTIFY_UPDATED;
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+    private final int chunkSize;
+    private final int parallelism;
+
+    public FileMetadataBulkRepository(DatabaseClient databaseClient,
+                                      R2dbcConverter converter,
+                                      @Value("${metadata.bulk.chunk-size:500}") int chunkSize,
+                                      @Value("${metadata.bulk.parallelism:4}") int parallelism) {
+        this.databaseClient = databaseClient;
+        this.converter = converter;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Inserts new records. IDs are generated; a missing creation time is set to now.
+     *
+     * @return The inserted records with their IDs, in input order.
+     */
+    public Flux<FileMetadata> insertAll(Flux<FileMetadata> records) {
+        return inChunks(records, chunk -> batch(INSERT, chunk, (statement, record) -> {
+            bindCommon(statement, record);
+            statement.bind("$7", record.getCreatedAt() != null ? record.getCreatedAt() : Instant.now());
+        }));
+    }
+
+    /**
+     * Overwrites existing records by ID. Records that don't exist are left out of the result.
+     *
+     * @return The updated records, in input order.
+     */
+    public Flux<FileMetadata> updateAll(Flux<FileMetadata> records) {
+        return inChunks(records, chunk -> batch(UPDATE, chunk, (statement, record) -> {
+            bindCommon(statement, record);
+            statement.bind("$7", record.getId());
+        }));
+    }
+
+    /**
+     * Sets the status of many records, one statement per chunk of IDs.
+     *
+     * @return The updated records, in no particular order. IDs that don't exist are left out.
+     */
+    public Flux<FileMetadata> updateStatus(Flux<Long> ids, Status status) {
+        return ids.buffer(chunkSize)
+                .flatMap(chunk -> databaseClient.sql(UPDATE_STATUS)
+                        .bind("$1", status.name())
+                        .bind("$2", chunk.toArray(Long[]::new))
+                        .map(this::read)
+                        .all(), parallelism);
+    }
+
+    private interface Binder {
+        void bind(Statement statement, FileMetadata record);
+    }
+
+    private Flux<FileMetadata> inChunks(Flux<FileMetadata> records, Function<List<FileMetadata>, Flux<FileMetadata>> write) {
+        return records.buffer(chunkSize)
+                .flatMapSequential(write, parallelism);
+    }
+
+    private Flux<FileMetadata> batch(String sql, List<FileMetadata> chunk, Binder binder) {
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                binder.bind(statement, chunk.get(i));
+            }
+            // One result per binding, in binding order
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map(this::read));
+        });
+    }
+
+    private void bindCommon(Statement statement, FileMetadata record) {
+        bindNullable(statement, "$1", record.getFileName());
+        bindNullable(statement, "$2", record.getContentType());
+        bindNullable(statement, "$3", record.getFileKey());
+        bindNullable(statement, "$4", record.getStorageType() != null ? record.getStorageType().name() : null);
+        statement.bind("$5", record.getSize());
+        bindNullable(statement, "$6", record.getStatus() != null ? record.getStatus().name() : null);
+    }
+
+    private static void bindNullable(Statement statement, String name, String value) {
+        if (value != null) {
+            statement.bind(name, value);
+        } else {
+            statement.bindNull(name, String.class);
+        }
+    }
+
+    private FileMetadata read(Row row, RowMetadata metadata) {
+        return converter.read(FileMetadata.class, row, metadata);
+    }
+}
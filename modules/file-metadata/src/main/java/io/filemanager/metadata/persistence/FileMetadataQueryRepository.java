@@ -0,0 +1,163 @@
+package io.filemanager.metadata.persistence;
+
+import io.filemanager.metadata.domain.FileMetadata;
+import io.filemanager.metadata.dto.FileListCursor;
+import io.filemanager.metadata.dto.FileListFilter;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads many file records without loading them all at once.
+ * <p>
+ * Lookups of many IDs are split into chunks of {@code lookupChunkSize}. Each chunk is a single
+ * array parameter, {@code WHERE id = ANY($1)}, so the statement and its plan are the same
+ * however many IDs there are, unlike an {@code IN} list with one parameter per ID. Up to
+ * {@code lookupParallelism} chunks are queried at once, and the records come back in the order of
+ * the requested IDs.
+ * <p>
+ * Listings are ordered newest first by {@code (created_at, id)} and read in pages of
+ * {@code pageSize} with keyset pagination: each page continues after the last row of the
+ * previous one, {@code WHERE (created_at, id) < (last.created_at, last.id)}, instead of skipping
+ * rows with an OFFSET. With the indexes on {@code (..., created_at, id)} every page costs the
+ * same, however deep into the table it is. Rows are streamed as they arrive.
+ */
+@Repository
+public class FileMetadataQueryRepository {
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+    private final int pageSize;
+    private final int maxLimit;
+    private final int lookupChunkSize;
+    private final int lookupParallelism;
+
+    public FileMetadataQueryRepository(DatabaseClient databaseClient,
+                                       R2dbcConverter converter,
+                                       @Value("${metadata.listing.page-size:500}") int pageSize,
+                                       @Value("${metadata.listing.max-limit:10000}") int maxLimit,
+                                       @Value("${metadata.lookup.chunk-size:1000}") int lookupChunkSize,
+                                       @Value("${metadata.lookup.parallelism:4}") int lookupParallelism) {
+        this.databaseClient = databaseClient;
+        this.converter = converter;
+        this.pageSize = pageSize;
+        this.maxLimit = maxLimit;
+        this.lookupChunkSize = lookupChunkSize;
+        this.lookupParallelism = lookupParallelism;
+    }
+
+    /**
+     * Looks up records by ID, in chunks.
+     *
+     * @return The records in the order of the IDs, as soon as their chunk is done. IDs that
+     *         don't exist are left out; an ID given twice gives its record twice.
+     */
+    public Flux<FileMetadata> findAllById(List<Long> ids) {
+        return Flux.fromIterable(ids)
+                .buffer(lookupChunkSize)
+                .flatMapSequential(this::findChunk, lookupParallelism);
+    }
+
+    private Flux<FileMetadata> findChunk(List<Long> ids) {
+        return databaseClient.sql("SELECT * FROM file WHERE id = ANY($1)")
+                .bind("$1", ids.stream().distinct().toArray(Long[]::new))
+                .map(this::read)
+                .all()
+                .collectMap(FileMetadata::getId)
+                // The database returns the rows in any order
+                .flatMapIterable(found -> ids.stream()
+                        .map(found::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    /**
+     * Lists the records matching a filter, newest first.
+     *
+     * @param filter The criteria the records must match.
+     * @param after  Where a previous listing stopped, or null to start with the newest record.
+     * @param limit  The maximum number of records, capped at {@code maxLimit}.
+     */
+    public Flux<FileMetadata> list(FileListFilter filter, FileListCursor after, int limit) {
+        return pages(filter, after, Math.min(limit, maxLimit));
+    }
+
+    private Flux<FileMetadata> pages(FileListFilter filter, FileListCursor after, int remaining) {
+        if (remaining <= 0) {
+            return Flux.empty();
+        }
+        return Flux.defer(() -> {
+            int size = Math.min(remaining, pageSize);
+            AtomicInteger count = new AtomicInteger();
+            AtomicReference<FileMetadata> last = new AtomicReference<>();
+            return page(filter, after, size)
+                    .doOnNext(record -> {
+                        count.incrementAndGet();
+                        last.set(record);
+                    })
+                    // A short page is the last one
+                    .concatWith(Flux.defer(() -> count.get() < size
+                            ? Flux.empty()
+                            : pages(filter, new FileListCursor(last.get().getCreatedAt(), last.get().getId()),
+                                    remaining - size)));
+        });
+    }
+
+    private Flux<FileMetadata> page(FileListFilter filter, FileListCursor after, int size) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        if (filter.status() != null) {
+            values.add(filter.status().name());
+            conditions.add("status = $" + values.size());
+        }
+        if (filter.storageType() != null) {
+            values.add(filter.storageType().name());
+            conditions.add("storage_type = $" + values.size());
+        }
+        if (filter.contentType() != null) {
+            values.add(filter.contentType());
+            conditions.add("content_type = $" + values.size());
+        }
+        if (filter.namePrefix() != null && !filter.namePrefix().isEmpty()) {
+            values.add(escapeLike(filter.namePrefix()) + "%");
+            conditions.add("file_name LIKE $" + values.size());
+        }
+        if (after != null) {
+            values.add(after.createdAt());
+            values.add(after.id());
+            conditions.add("(created_at, id) < ($" + (values.size() - 1) + ", $" + values.size() + ")");
+        }
+        values.add(size);
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM file");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT $").append(values.size());
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int i = 0; i < values.size(); i++) {
+            spec = spec.bind("$" + (i + 1), values.get(i));
+        }
+        return spec.map(this::read).all();
+    }
+
+    // The default LIKE escape character is the backslash
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private FileMetadata read(Row row, RowMetadata metadata) {
+        return converter.read(FileMetadata.class, row, metadata);
+    }
+}
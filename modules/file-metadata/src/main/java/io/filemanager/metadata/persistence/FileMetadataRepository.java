@@ -1,9 +1,28 @@
 package io.filemanager.metadata.persistence;
 
 import io.filemanager.metadata.domain.FileMetadata;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
 
 @Repository
 public interface FileMetadataRepository extends ReactiveCrudRepository<FileMetadata, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Moves a file from one status to another and records its size, in one statement. Nothing
+     * changes if the file is not in the expected status, so of two concurrent transitions from
+     * the same status only one succeeds. The change is broadcast through
+     * {@link FileChangeNotifications}.
+     *
+     * @return The updated record, or empty if the file doesn't exist or is in another status.
+     */
+    @Query("""
+            WITH updated AS (
+                UPDATE file SET status = :status, size = :size, updated_at = NOW()
+                WHERE id = :id AND status = :expected
+                RETURNING *
+            )
+            """ + FileChangeNotifications.NOTIFY_UPDATED)
+    Mono<FileMetadata> transition(Long id, String expected, String status, long size);
+}
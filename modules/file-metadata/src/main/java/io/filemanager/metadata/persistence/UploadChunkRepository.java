@@ -0,0 +1,30 @@
+package io.filemanager.metadata.persistence;
+
+import io.filemanager.metadata.domain.UploadChunk;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface UploadChunkRepository extends ReactiveCrudRepository<UploadChunk, Long> {
+
+    Flux<UploadChunk> findBySessionIdOrderByChunkNumber(Long sessionId);
+
+    /**
+     * Records a stored chunk. A chunk that is sent again, e.g. after a lost response,
+     * replaces the earlier one.
+     */
+    @Modifying
+    @Query("""
+            INSERT INTO upload_chunk (session_id, chunk_number, e_tag, size, created_at)
+            VALUES (:sessionId, :chunkNumber, :eTag, :size, NOW())
+            ON CONFLICT (session_id, chunk_number)
+            DO UPDATE SET e_tag = EXCLUDED.e_tag, size = EXCLUDED.size, created_at = EXCLUDED.created_at
+            """)
+    Mono<Integer> upsert(Long sessionId, int chunkNumber, String eTag, long size);
+
+    Mono<Void> deleteBySessionId(Long sessionId);
+}
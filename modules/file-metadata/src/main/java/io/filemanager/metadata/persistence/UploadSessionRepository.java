@@ -0,0 +1,20 @@
+package io.filemanager.metadata.persistence;
+
+import io.filemanager.metadata.domain.UploadSession;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface UploadSessionRepository extends ReactiveCrudRepository<UploadSession, Long> {
+
+    /**
+     * Closes an open session in a single conditional update, so of two concurrent calls (e.g. a
+     * complete and an abort) only one succeeds.
+     *
+     * @return The closed session, or empty if it doesn't exist or is no longer open.
+     */
+    @Query("UPDATE upload_session SET status = :status WHERE id = :id AND status = 'OPEN' RETURNING *")
+    Mono<UploadSession> closeIfOpen(Long id, String status);
+}
@@ -0,0 +1,18 @@
+package io.filemanager.metadata.persistence.converter;
+
+import io.filemanager.metadata.domain.UploadSessionStatus;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+@ReadingConverter
+public class StringToUploadSessionStatusConverter implements Converter<String, UploadSessionStatus> {
+
+    @Override
+    public UploadSessionStatus convert(String source) {
+        try {
+            return UploadSessionStatus.valueOf(source.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.filemanager.metadata.persistence.converter;
+
+import io.filemanager.metadata.domain.UploadSessionStatus;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+
+@WritingConverter
+public class UploadSessionStatusToStringConverter implements Converter<UploadSessionStatus, String> {
+
+    @Override
+    public String convert(UploadSessionStatus source) {
+        return source.name();
+    }
+}
@@ -0,0 +1,147 @@
+package io.filemanager.metadata.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.persistence.FileChangeNotifications;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Near-cache of file records, in front of the database.
+ * <p>
+ * Only settled records are cached: a file in SCANNING is about to change. Records are dropped
+ * when any instance changes them, as broadcast by {@link FileChangeNotifications}, and otherwise
+ * expire after {@code ttl} as a safety net. While the notifications are reconnecting, the whole
+ * cache is dropped.
+ * <p>
+ * A record read from the database is only cached if it wasn't invalidated since the read started,
+ * so a slow read can't put back a record that has just changed. For that every record has a
+ * version that each invalidation of it bumps; to keep them bounded, records share the versions
+ * of {@value #VERSION_STRIPES} stripes, so a change of one record only rarely holds back the
+ * caching of another. Disabled unless
+ * {@code metadata.cache.enabled=true}; then nothing is cached and nothing is listened to.
+ */
+@Slf4j
+@Component
+public class FileMetadataCache implements DisposableBean {
+    private static final int VERSION_STRIPES = 4096;
+
+    private final Cache<Long, FileMetadataDto> cache; // null when disabled
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong epoch = new AtomicLong(); // bumped when the whole cache is dropped
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Disposable listening;
+
+    public FileMetadataCache(FileChangeNotifications notifications,
+                             @Value("${metadata.cache.enabled:false}") boolean enabled,
+                             @Value("${metadata.cache.max-entries:100000}") long maxEntries,
+                             @Value("${metadata.cache.ttl-seconds:600}") long ttlSeconds,
+                             @Value("${metadata.cache.metrics-enabled:false}") boolean metricsEnabled,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        if (!enabled) {
+            this.cache = null;
+            this.listening = null;
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.listening = notifications.changes().subscribe(this::apply);
+        MeterRegistry registry = metricsEnabled ? meterRegistry.getIfAvailable() : null;
+        if (registry != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, "file-metadata");
+            FunctionCounter.builder("metadata.cache.invalidations", invalidations, AtomicLong::get)
+                    .register(registry);
+        } else if (metricsEnabled) {
+            log.warn("No meter registry, metrics of the file record cache are not published");
+        }
+        log.info("Caching up to {} file records for {} s", maxEntries, ttlSeconds);
+    }
+
+    public Optional<FileMetadataDto> get(Long id) {
+        return cache != null ? Optional.ofNullable(cache.getIfPresent(id)) : Optional.empty();
+    }
+
+    /**
+     * Marks the start of a database read of a record, for {@link #put(FileMetadataDto, long)}.
+     */
+    public long stamp(Long id) {
+        // Both only ever grow, so the sum changes whenever either does
+        return epoch.get() + versions.get(stripe(id));
+    }
+
+    /**
+     * Caches a record read from the database, unless it is still being scanned or was
+     * invalidated since {@code stamp}.
+     */
+    public void put(FileMetadataDto record, long stamp) {
+        if (cache == null || record.status() == Status.SCANNING) {
+            return;
+        }
+        cache.put(record.id(), record);
+        // An invalidation may have slipped in between the check and the put
+        if (stamp(record.id()) != stamp) {
+            cache.invalidate(record.id());
+        }
+    }
+
+    public void invalidate(Long id) {
+        if (cache != null) {
+            versions.incrementAndGet(stripe(id));
+            invalidations.incrementAndGet();
+            cache.invalidate(id);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            epoch.incrementAndGet();
+            invalidations.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+
+    public long getHitCount() {
+        return cache != null ? cache.stats().hitCount() : 0;
+    }
+
+    public long getMissCount() {
+        return cache != null ? cache.stats().missCount() : 0;
+    }
+
+    @Override
+    public void destroy() {
+        if (listening != null) {
+            listening.dispose();
+        }
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id) & (VERSION_STRIPES - 1);
+    }
+
+    private void apply(FileChangeEvent change) {
+        if (change.isAny()) {
+            invalidateAll();
+        } else {
+            invalidate(change.fileId());
+        }
+    }
+}
@@ -3,80 +3,304 @@ package io.filemanager.metadata.service;
 import io.filemanager.metadata.domain.FileMetadata;
 import io.filemanager.metadata.domain.Status;
 import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.filemanager.metadata.dto.FileListCursor;
+import io.filemanager.metadata.dto.FileListFilter;
 import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.persistence.FileChangeNotifications;
+import io.filemanager.metadata.persistence.FileMetadataBulkRepository;
+import io.filemanager.metadata.persistence.FileMetadataQueryRepository;
 import io.filemanager.metadata.persistence.FileMetadataRepository;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @Service
 public class FileMetadataService {
 
     private final FileMetadataRepository fileMetadataRepository;
+    private final FileMetadataBulkRepository bulkRepository;
+    private final FileMetadataQueryRepository queryRepository;
+    private final FileMetadataCache cache;
+    private final FileChangeNotifications notifications;
 
-    public FileMetadataService(FileMetadataRepository fileMetadataRepository) {
+    public FileMetadataService(FileMetadataRepository fileMetadataRepository,
+                               FileMetadataBulkRepository bulkRepository,
+                               FileMetadataQueryRepository queryRepository,
+                               FileMetadataCache cache,
+                               FileChangeNotifications notifications) {
         this.fileMetadataRepository = fileMetadataRepository;
+        this.bulkRepository = bulkRepository;
+        this.queryRepository = queryRepository;
+        this.cache = cache;
+        this.notifications = notifications;
     }
 
 
+    /**
+     * Looks a record up in the near-cache first, if enabled, and in the database otherwise.
+     */
     public Mono<FileMetadataDto> findById(Long id) {
-        return fileMetadataRepository.findById(id)
-                .map(this::toDto);
+        return Mono.defer(() -> {
+            Optional<FileMetadataDto> cached = cache.get(id);
+            if (cached.isPresent()) {
+                return Mono.just(cached.get());
+            }
+            long stamp = cache.stamp(id);
+            return fileMetadataRepository.findById(id)
+                    .map(this::toDto)
+                    .doOnNext(dto -> cache.put(dto, stamp));
+        });
     }
 
+    /**
+     * Looks records up like {@link #findById(Long)}; only the ones not cached are read from the
+     * database, in chunks. Suited to very long lists of IDs.
+     *
+     * @return A Flux of the DTOs in the order of the IDs, without IDs that don't exist.
+     */
     public Flux<FileMetadataDto> findByIds(List<Long> ids) {
-        return fileMetadataRepository.findAllById(ids)
+        return Flux.defer(() -> {
+            Map<Long, FileMetadataDto> cached = new HashMap<>();
+            List<Long> missing = new ArrayList<>();
+            Map<Long, Long> stamps = new HashMap<>();
+            for (Long id : ids) {
+                if (!cached.containsKey(id)) {
+                    cache.get(id).ifPresentOrElse(dto -> cached.put(id, dto), () -> {
+                        missing.add(id);
+                        stamps.put(id, cache.stamp(id));
+                    });
+                }
+            }
+            if (missing.isEmpty()) {
+                return Flux.fromIterable(ids).mapNotNull(cached::get);
+            }
+            Flux<FileMetadataDto> loaded = queryRepository.findAllById(missing)
+                    .map(this::toDto)
+                    .doOnNext(dto -> cache.put(dto, stamps.get(dto.id())));
+            if (cached.isEmpty()) {
+                return loaded;
+            }
+            // Both streams follow the order of the IDs, so the cached records that come before
+            // a loaded one are emitted along with it.
+            AtomicInteger next = new AtomicInteger();
+            return loaded.concatMapIterable(dto -> {
+                        List<FileMetadataDto> out = new ArrayList<>();
+                        Long id = ids.get(next.getAndIncrement());
+                        while (!id.equals(dto.id())) {
+                            FileMetadataDto hit = cached.get(id);
+                            if (hit != null) {
+                                out.add(hit);
+                            }
+                            id = ids.get(next.getAndIncrement());
+                        }
+                        out.add(dto);
+                        return out;
+                    })
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(ids.subList(next.get(), ids.size()))
+                            .mapNotNull(cached::get)));
+        });
+    }
+
+    /**
+     * Lists the records matching a filter, newest first, in pages read one after the other.
+     * To continue a listing, pass the {@link FileListCursor#of(FileMetadataDto) cursor} of the
+     * last record received.
+     *
+     * @param filter The criteria the records must match.
+     * @param after  Where a previous listing stopped, or null to start with the newest record.
+     * @param limit  The maximum number of records.
+     * @return A Flux of the DTOs, streamed as they are read.
+     */
+    public Flux<FileMetadataDto> list(FileListFilter filter, FileListCursor after, int limit) {
+        return queryRepository.list(filter, after, limit)
                 .map(this::toDto);
     }
 
+    /**
+     * Streams the status of files as it changes, instead of having clients poll for it.
+     * <p>
+     * The current status of every file comes first, then each change as it is broadcast by any
+     * instance through {@link FileChangeNotifications}. When notifications may have been missed,
+     * e.g. after the listening connection was reset, the current status is read again. Every
+     * status is sent once per file; a status of null means the file doesn't exist (anymore).
+     *
+     * @param ids The IDs of the files, e.g. of one upload batch.
+     * @return A Flux of status changes that completes once no file is being scanned anymore.
+     */
+    public Flux<FileChangeEvent> watchStatuses(List<Long> ids) {
+        Set<Long> watched = new LinkedHashSet<>(ids);
+        if (watched.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.defer(() -> {
+            Map<Long, Status> sent = new HashMap<>();
+            // Subscribed to before the first read, so no change can slip in between
+            Flux<FileChangeEvent> changes = notifications.changes()
+                    .filter(event -> event.isAny() || watched.contains(event.fileId()))
+                    .concatMap(event -> event.isAny() ? readStatuses(watched) : Flux.just(event));
+            return Flux.merge(changes, readStatuses(watched))
+                    .filter(event -> {
+                        boolean known = sent.containsKey(event.fileId());
+                        Status previous = sent.get(event.fileId());
+                        // A read that started before a transition may finish after its notification.
+                        if (known && previous != Status.SCANNING && event.status() == Status.SCANNING) {
+                            return false;
+                        }
+                        sent.put(event.fileId(), event.status());
+                        return !known || previous != event.status();
+                    })
+                    .takeUntil(event -> watched.stream()
+                            .allMatch(id -> sent.containsKey(id) && sent.get(id) != Status.SCANNING));
+        });
+    }
+
+    private Flux<FileChangeEvent> readStatuses(Set<Long> ids) {
+        return Flux.defer(() -> {
+            Set<Long> missing = new LinkedHashSet<>(ids);
+            return queryRepository.findAllById(List.copyOf(ids))
+                    .doOnNext(record -> missing.remove(record.getId()))
+                    .map(record -> new FileChangeEvent(record.getId(), record.getStatus()))
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(missing)
+                            .map(id -> new FileChangeEvent(id, null))));
+        });
+    }
+
     public Mono<FileMetadataDto> createInitialRecord(String fileName) {
+        return fileMetadataRepository.save(toEntity(prepareRecord(fileName)))
+                .map(this::toDto);
+    }
+
+    /**
+     * Builds the record for a new upload, with a fresh storage key, without saving it.
+     * Useful when the file is stored before its record is created, e.g. in batches.
+     *
+     * @param fileName The name of the uploaded file.
+     * @return An unsaved DTO in status SCANNING.
+     */
+    public FileMetadataDto prepareRecord(String fileName) {
         String key = UUID.randomUUID().toString();
         String s3Key = key + "_" + fileName.trim().replace(" ", "_");
 
         String contentType = getContentType(fileName);
 
-        FileMetadata fileMetadata = new FileMetadata();
-        fileMetadata.setFileName(fileName);
-        fileMetadata.setContentType(contentType);
-        fileMetadata.setFileKey(s3Key);
-        fileMetadata.setStorageType(StorageType.S3);
-        fileMetadata.setSize(0L);
-        fileMetadata.setStatus(Status.SCANNING);
-        fileMetadata.setCreatedAt(Instant.now());
+        return new FileMetadataDto(null, fileName, contentType, s3Key, StorageType.S3, 0L, Status.SCANNING, Instant.now());
+    }
+
+    /**
+     * Saves several new records at once.
+     *
+     * @param records The records to save, e.g. from {@link #prepareRecord(String)}.
+     * @return A Flux of the saved DTOs, in the order of the input.
+     */
+    public Flux<FileMetadataDto> createRecords(List<FileMetadataDto> records) {
+        return createRecords(Flux.fromIterable(records));
+    }
 
-        return fileMetadataRepository.save(fileMetadata)
+    /**
+     * Saves a stream of new records in chunks, e.g. to register existing objects in bulk.
+     * Any ID of the input is ignored.
+     *
+     * @param records The records to save.
+     * @return A Flux of the saved DTOs with their generated IDs, in the order of the input.
+     */
+    public Flux<FileMetadataDto> createRecords(Flux<FileMetadataDto> records) {
+        return bulkRepository.insertAll(records.map(this::toEntity))
                 .map(this::toDto);
     }
 
+    /**
+     * Overwrites a stream of existing records in chunks. The creation time is kept.
+     *
+     * @param records The records to update, identified by their ID.
+     * @return A Flux of the updated DTOs in the order of the input, without records that don't exist.
+     */
+    public Flux<FileMetadataDto> updateRecords(Flux<FileMetadataDto> records) {
+        return bulkRepository.updateAll(records.map(this::toEntity))
+                .map(this::toDto)
+                .doOnNext(dto -> cache.invalidate(dto.id()));
+    }
+
+    /**
+     * Sets the status of many records in chunks, keeping their size.
+     *
+     * @param ids The IDs of the records.
+     * @param status The new status.
+     * @return A Flux of the updated DTOs, in no particular order.
+     */
+    public Flux<FileMetadataDto> updateStatuses(Flux<Long> ids, Status status) {
+        return bulkRepository.updateStatus(ids, status)
+                .map(this::toDto)
+                .doOnNext(dto -> cache.invalidate(dto.id()));
+    }
+
     /**
      * Finalizes the metadata record after a successful upload.
      *
      * @param id The ID of the metadata record.
      * @param size The size of the uploaded file.
-     * @return A Mono containing the DTO of the updated record.
+     * @return A Mono containing the DTO of the updated record, or a StatusConflictException if
+     *         the file is no longer being scanned.
      */
     public Mono<FileMetadataDto> finalizeUpload(Long id, long size) {
-        return fileMetadataRepository.findById(id)
-                .flatMap(metadata -> {
-                    metadata.setSize(size);
-                    metadata.setStatus(Status.CLEAN);
-                    // Optionally store the versionId if your schema supports it
-                    return fileMetadataRepository.save(metadata);
-                })
-                .map(this::toDto);
+        return updateStatus(id, Status.CLEAN, size);
+    }
+
+    /**
+     * Records the outcome of a scan together with the size of the stored file.
+     *
+     * @param id The ID of the metadata record.
+     * @param status The new status, e.g. CLEAN, INFESTED or ERROR.
+     * @param size The size of the file.
+     * @return A Mono containing the DTO of the updated record, empty if there is no such record,
+     *         or a StatusConflictException if the file is no longer being scanned.
+     */
+    public Mono<FileMetadataDto> updateStatus(Long id, Status status, long size) {
+        return transition(id, Status.SCANNING, status, size);
+    }
+
+    /**
+     * Moves a file from the expected status to a new one with a single conditional update, so a
+     * file that has been settled concurrently is not overwritten.
+     *
+     * @param id The ID of the metadata record.
+     * @param expected The status the file must be in.
+     * @param status The new status.
+     * @param size The size of the file.
+     * @return A Mono containing the DTO of the updated record, empty if there is no such record,
+     *         or a StatusConflictException if the file is in another status.
+     */
+    public Mono<FileMetadataDto> transition(Long id, Status expected, Status status, long size) {
+        return fileMetadataRepository.transition(id, expected.name(), status.name(), size)
+                .map(this::toDto)
+                .doOnNext(dto -> cache.invalidate(id))
+                // Only a failed transition pays for a second query, to tell why it failed
+                .switchIfEmpty(Mono.defer(() -> fileMetadataRepository.findById(id)
+                        .flatMap(current -> Mono.error(new StatusConflictException(id, expected, current.getStatus())))));
     }
 
     public Mono<Void> deleteById(Long id) {
-        return fileMetadataRepository.deleteById(id);
+        return fileMetadataRepository.deleteById(id)
+                .then(notifications.publish(id, null))
+                .doOnSuccess(ignored -> cache.invalidate(id));
     }
 
     public Mono<Void> deleteAll() {
-        return fileMetadataRepository.deleteAll();
+        return fileMetadataRepository.deleteAll()
+                .then(notifications.publishAll())
+                .doOnSuccess(ignored -> cache.invalidateAll());
     }
 
 
@@ -90,8 +314,15 @@ public class FileMetadataService {
      */
     public Mono<FileMetadataDto> save(FileMetadataDto metadataDto) {
         FileMetadata entity = toEntity(metadataDto);
-        return fileMetadataRepository.save(entity)
+        Mono<FileMetadataDto> saved = fileMetadataRepository.save(entity)
                 .map(this::toDto);
+        if (metadataDto.id() == null) {
+            return saved;
+        }
+        // An existing record was overwritten
+        return saved.flatMap(dto -> notifications.publish(dto.id(), dto.status())
+                .doOnSuccess(ignored -> cache.invalidate(dto.id()))
+                .thenReturn(dto));
     }
 
 
@@ -0,0 +1,27 @@
+package io.filemanager.metadata.service;
+
+import io.filemanager.metadata.domain.Status;
+
+/**
+ * Thrown when a file is not in the status a transition starts from, e.g. because a concurrent
+ * request has already settled it.
+ */
+public class StatusConflictException extends RuntimeException {
+
+    private final Long fileId;
+    private final Status currentStatus;
+
+    public StatusConflictException(Long fileId, Status expected, Status currentStatus) {
+        super("File " + fileId + " is " + currentStatus + ", not " + expected);
+        this.fileId = fileId;
+        this.currentStatus = currentStatus;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public Status getCurrentStatus() {
+        return currentStatus;
+    }
+}
@@ -0,0 +1,102 @@
+package io.filemanager.metadata.service;
+
+import io.filemanager.metadata.domain.UploadSession;
+import io.filemanager.metadata.domain.UploadSessionStatus;
+import io.filemanager.metadata.dto.UploadChunkDto;
+import io.filemanager.metadata.dto.UploadSessionDto;
+import io.filemanager.metadata.persistence.UploadChunkRepository;
+import io.filemanager.metadata.persistence.UploadSessionRepository;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Keeps the state of chunked upload sessions, so an upload can be continued
+ * by any instance and after a restart.
+ */
+@Service
+public class UploadSessionService {
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadChunkRepository chunkRepository;
+
+    public UploadSessionService(UploadSessionRepository sessionRepository, UploadChunkRepository chunkRepository) {
+        this.sessionRepository = sessionRepository;
+        this.chunkRepository = chunkRepository;
+    }
+
+    /**
+     * Opens a session for a file whose multipart upload has been started in the storage backend.
+     *
+     * @param fileId The ID of the file record the upload completes.
+     * @param uploadId The multipart upload ID assigned by the storage backend.
+     * @param chunkSize The size of every chunk but the last one.
+     * @param totalSize The size of the whole file.
+     * @return A Mono containing the DTO of the new session.
+     */
+    public Mono<UploadSessionDto> createSession(Long fileId, String uploadId, long chunkSize, long totalSize) {
+        UploadSession session = new UploadSession();
+        session.setFileId(fileId);
+        session.setUploadId(uploadId);
+        session.setChunkSize(chunkSize);
+        session.setTotalSize(totalSize);
+        session.setChunkCount((int) ((totalSize + chunkSize - 1) / chunkSize));
+        session.setStatus(UploadSessionStatus.OPEN);
+        session.setCreatedAt(Instant.now());
+
+        return sessionRepository.save(session)
+                .map(this::toDto);
+    }
+
+    public Mono<UploadSessionDto> findById(Long id) {
+        return sessionRepository.findById(id)
+                .map(this::toDto);
+    }
+
+    /**
+     * Records a stored chunk. Recording the same chunk number again replaces the earlier entry.
+     */
+    public Mono<UploadChunkDto> recordChunk(Long sessionId, int chunkNumber, String etag, long size) {
+        return chunkRepository.upsert(sessionId, chunkNumber, etag, size)
+                .thenReturn(new UploadChunkDto(chunkNumber, etag, size));
+    }
+
+    /**
+     * Returns the stored chunks of a session, ordered by chunk number.
+     */
+    public Flux<UploadChunkDto> findChunks(Long sessionId) {
+        return chunkRepository.findBySessionIdOrderByChunkNumber(sessionId)
+                .map(chunk -> new UploadChunkDto(chunk.getChunkNumber(), chunk.getEtag(), chunk.getSize()));
+    }
+
+    /**
+     * Closes an open session. The chunk records are no longer needed once the session is closed.
+     *
+     * @return A Mono containing the DTO of the closed session, empty if there is no such session,
+     *         or an IllegalStateException if the session has already been closed.
+     */
+    public Mono<UploadSessionDto> close(Long sessionId, UploadSessionStatus status) {
+        return sessionRepository.closeIfOpen(sessionId, status.name())
+                // Only a failed close pays for a second query, to tell why it failed
+                .switchIfEmpty(Mono.defer(() -> sessionRepository.findById(sessionId)
+                        .flatMap(current -> Mono.error(new IllegalStateException(
+                                "Upload session " + sessionId + " is " + current.getStatus())))))
+                .flatMap(session -> chunkRepository.deleteBySessionId(sessionId).thenReturn(session))
+                .map(this::toDto);
+    }
+
+    private UploadSessionDto toDto(UploadSession entity) {
+        return new UploadSessionDto(
+                entity.getId(),
+                entity.getFileId(),
+                entity.getUploadId(),
+                entity.getChunkSize(),
+                entity.getTotalSize(),
+                entity.getChunkCount(),
+                entity.getStatus(),
+                entity.getCreatedAt()
+        );
+    }
+}
@@ -0,0 +1,58 @@
+package io.filemanager.metadata.persistence;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileChangeNotificationsTest {
+
+    /**
+     * A pool, as far as the notifications can tell.
+     */
+    interface PooledConnectionFactory extends ConnectionFactory, Wrapped<ConnectionFactory> {
+    }
+
+    @Test
+    void parse_shouldReadChangesDeletionsAndWildcards() {
+        assertThat(FileChangeNotifications.parse("42:CLEAN")).isEqualTo(new FileChangeEvent(42L, Status.CLEAN));
+        assertThat(FileChangeNotifications.parse("42:DELETED")).isEqualTo(new FileChangeEvent(42L, null));
+        assertThat(FileChangeNotifications.parse("*")).isEqualTo(FileChangeEvent.ANY);
+    }
+
+    @Test
+    void parse_whenPayloadIsUnreadable_shouldTakeItAsAnyChange() {
+        assertThat(FileChangeNotifications.parse("42:")).isEqualTo(FileChangeEvent.ANY);
+        assertThat(FileChangeNotifications.parse("42:ARCHIVED")).isEqualTo(FileChangeEvent.ANY);
+        assertThat(FileChangeNotifications.parse(":CLEAN")).isEqualTo(FileChangeEvent.ANY);
+        assertThat(FileChangeNotifications.parse(null)).isEqualTo(FileChangeEvent.ANY);
+    }
+
+    @Test
+    void changes_shouldListenOnAConnectionFromBehindThePool() {
+        // Arrange
+        ConnectionFactory driver = mock(ConnectionFactory.class);
+        when(driver.create()).thenAnswer(invocation -> Mono.never());
+        PooledConnectionFactory pool = mock(PooledConnectionFactory.class);
+        when(pool.unwrap()).thenReturn(driver);
+        FileChangeNotifications notifications = new FileChangeNotifications(pool, mock(DatabaseClient.class));
+
+        // Act
+        Disposable listening = notifications.changes().subscribe();
+        listening.dispose();
+
+        // Assert
+        verify(driver).create();
+        verify(pool, never()).create();
+    }
+}
@@ -0,0 +1,109 @@
+package io.filemanager.metadata.service;
+
+import io.filemanager.metadata.MetadataTestApplication;
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.persistence.FileChangeNotifications;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A second instance, with a cache and notifications of its own, drops a record it has cached
+ * once this instance changes it in the database.
+ */
+@SpringBootTest(classes = MetadataTestApplication.class)
+@Testcontainers
+class FileMetadataCacheIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>("postgres:15.1-alpine")
+                    .withDatabaseName("testdb")
+                    .withUsername("testuser")
+                    .withPassword("testpass");
+
+    @DynamicPropertySource
+    private static void registerR2dbcProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> String.format("r2dbc:postgresql://%s:%d/%s",
+                postgresContainer.getHost(),
+                postgresContainer.getMappedPort(5432),
+                postgresContainer.getDatabaseName()));
+        registry.add("spring.r2dbc.username", postgresContainer::getUsername);
+        registry.add("spring.r2dbc.password", postgresContainer::getPassword);
+        registry.add("spring.sql.init.mode", () -> "always");
+        registry.add("spring.sql.init.schema-locations", () -> "classpath:schema.sql");
+    }
+
+    @Autowired
+    private FileMetadataService fileMetadataService;
+
+    private FileChangeNotifications otherNotifications;
+    private FileMetadataCache otherCache;
+
+    @BeforeEach
+    void startOtherInstance() throws Exception {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.builder()
+                .option(ConnectionFactoryOptions.DRIVER, "postgresql")
+                .option(ConnectionFactoryOptions.HOST, postgresContainer.getHost())
+                .option(ConnectionFactoryOptions.PORT, postgresContainer.getMappedPort(5432))
+                .option(ConnectionFactoryOptions.DATABASE, postgresContainer.getDatabaseName())
+                .option(ConnectionFactoryOptions.USER, postgresContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgresContainer.getPassword())
+                .build());
+        otherNotifications = new FileChangeNotifications(connectionFactory, DatabaseClient.create(connectionFactory));
+
+        // The first event comes once LISTEN is done; the cache subscribes before it arrives
+        CompletableFuture<FileChangeEvent> listening = otherNotifications.changes().next().toFuture();
+        otherCache = new FileMetadataCache(otherNotifications, true, 100, 60, false,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        assertThat(listening.get(10, TimeUnit.SECONDS)).isEqualTo(FileChangeEvent.ANY);
+    }
+
+    @AfterEach
+    void stopOtherInstance() {
+        otherCache.destroy();
+    }
+
+    @Test
+    void updateStatus_onThisInstance_shouldDropTheRecordFromTheCacheOfTheOther() throws Exception {
+        // Arrange: the other instance has read the clean record
+        FileMetadataDto created = fileMetadataService.createInitialRecord("report.pdf")
+                .flatMap(dto -> fileMetadataService.finalizeUpload(dto.id(), 10))
+                .block();
+        otherCache.put(created, otherCache.stamp(created.id()));
+        assertThat(otherCache.get(created.id())).contains(created);
+        CompletableFuture<FileChangeEvent> notified = otherNotifications.changes()
+                .filter(change -> created.id().equals(change.fileId()))
+                .next()
+                .timeout(Duration.ofSeconds(10))
+                .toFuture();
+
+        // Act
+        fileMetadataService.updateStatus(created.id(), Status.INFESTED, 10).block();
+
+        // Assert
+        assertThat(notified.get(10, TimeUnit.SECONDS)).isEqualTo(new FileChangeEvent(created.id(), Status.INFESTED));
+        assertThat(otherCache.get(created.id())).isEmpty();
+    }
+}
@@ -0,0 +1,128 @@
+package io.filemanager.metadata.service;
+
+import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.persistence.FileChangeNotifications;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FileMetadataCacheTest {
+
+    @Mock
+    private FileChangeNotifications notifications;
+
+    private final Sinks.Many<FileChangeEvent> changes = Sinks.many().multicast().directBestEffort();
+
+    private static FileMetadataDto record(Long id, Status status) {
+        return new FileMetadataDto(id, "a.pdf", "application/pdf", "key-" + id, StorageType.S3, 10, status, null);
+    }
+
+    private FileMetadataCache cache() {
+        when(notifications.changes()).thenReturn(changes.asFlux());
+        return new FileMetadataCache(notifications, true, 100, 60, false, registry(null));
+    }
+
+    private static ObjectProvider<MeterRegistry> registry(MeterRegistry registry) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        if (registry != null) {
+            beans.addBean("meterRegistry", registry);
+        }
+        return beans.getBeanProvider(MeterRegistry.class);
+    }
+
+    @Test
+    void put_shouldCacheSettledRecordsUntilAnyInstanceChangesThem() {
+        FileMetadataCache cache = cache();
+        cache.put(record(1L, Status.CLEAN), cache.stamp(1L));
+        cache.put(record(2L, Status.SCANNING), cache.stamp(2L));
+        cache.put(record(3L, Status.CLEAN), cache.stamp(3L));
+
+        assertThat(cache.get(1L)).contains(record(1L, Status.CLEAN));
+        assertThat(cache.get(2L)).isEmpty();
+
+        // A change of record 1 on another instance, then a reconnect of the notifications
+        changes.tryEmitNext(new FileChangeEvent(1L, Status.INFESTED));
+        assertThat(cache.get(1L)).isEmpty();
+        assertThat(cache.get(3L)).isPresent();
+        changes.tryEmitNext(FileChangeEvent.ANY);
+        assertThat(cache.get(3L)).isEmpty();
+
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(3);
+    }
+
+    @Test
+    void put_whenInvalidatedDuringRead_shouldNotCacheStaleRecord() {
+        FileMetadataCache cache = cache();
+
+        long stamp = cache.stamp(1L);
+        cache.invalidate(1L); // the record changes while it is being read
+        cache.put(record(1L, Status.CLEAN), stamp);
+
+        assertThat(cache.get(1L)).isEmpty();
+    }
+
+    @Test
+    void put_whenOtherRecordInvalidatedDuringRead_shouldStillCache() {
+        FileMetadataCache cache = cache();
+
+        long stamp = cache.stamp(1L);
+        cache.invalidate(2L); // an unrelated record changes meanwhile
+        cache.put(record(1L, Status.CLEAN), stamp);
+
+        assertThat(cache.get(1L)).isPresent();
+    }
+
+    @Test
+    void put_whenAllInvalidatedDuringRead_shouldNotCacheStaleRecord() {
+        FileMetadataCache cache = cache();
+
+        long stamp = cache.stamp(1L);
+        changes.tryEmitNext(FileChangeEvent.ANY); // the notifications reconnect while it is being read
+        cache.put(record(1L, Status.CLEAN), stamp);
+
+        assertThat(cache.get(1L)).isEmpty();
+    }
+
+    @Test
+    void get_withMetricsEnabled_shouldCountHitsInTheRegistry() {
+        // Arrange
+        MeterRegistry registry = new SimpleMeterRegistry();
+        when(notifications.changes()).thenReturn(changes.asFlux());
+        FileMetadataCache cache = new FileMetadataCache(notifications, true, 100, 60, true, registry(registry));
+        cache.put(record(1L, Status.CLEAN), cache.stamp(1L));
+
+        // Act
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(2L);
+
+        // Assert
+        assertThat(registry.get("cache.gets").tags("cache", "file-metadata", "result", "hit").functionCounter().count())
+                .isEqualTo(2);
+        assertThat(registry.get("cache.gets").tags("cache", "file-metadata", "result", "miss").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void get_whenDisabled_shouldNeverCache() {
+        FileMetadataCache cache = new FileMetadataCache(notifications, false, 100, 60, false, registry(null));
+
+        cache.put(record(1L, Status.CLEAN), cache.stamp(1L));
+
+        assertThat(cache.get(1L)).isEmpty();
+    }
+}
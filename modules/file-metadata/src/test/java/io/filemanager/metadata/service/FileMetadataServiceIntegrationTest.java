@@ -4,6 +4,8 @@ import io.filemanager.metadata.MetadataTestApplication;
 import io.filemanager.metadata.domain.FileMetadata;
 import io.filemanager.metadata.domain.Status;
 import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileListCursor;
+import io.filemanager.metadata.dto.FileListFilter;
 import io.filemanager.metadata.dto.FileMetadataDto;
 import io.filemanager.metadata.persistence.FileMetadataRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,12 +18,19 @@ import org.springframework.transaction.reactive.TransactionalOperator;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
-@SpringBootTest(classes = MetadataTestApplication.class)
+// Small chunks and pages, so a handful of records already spans several of them
+@SpringBootTest(classes = MetadataTestApplication.class,
+        properties = {"metadata.bulk.chunk-size=2", "metadata.listing.page-size=2", "metadata.lookup.chunk-size=2"})
 @Testcontainers
 class FileMetadataServiceIntegrationTest {
 
@@ -94,4 +103,92 @@ class FileMetadataServiceIntegrationTest {
                 })
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    void createRecords_inChunks_shouldReturnGeneratedIdsInInputOrder() {
+        List<FileMetadataDto> records = IntStream.range(0, 5)
+                .mapToObj(i -> fileMetadataService.prepareRecord("file-" + i + ".pdf"))
+                .toList();
+
+        List<FileMetadataDto> created = fileMetadataService.createRecords(Flux.fromIterable(records))
+                .collectList()
+                .block();
+
+        assertThat(created).extracting(FileMetadataDto::fileKey)
+                .containsExactlyElementsOf(records.stream().map(FileMetadataDto::fileKey).toList());
+        assertThat(created).allSatisfy(dto -> assertThat(dto.id()).isNotNull());
+        assertThat(created).extracting(FileMetadataDto::status).containsOnly(Status.SCANNING);
+    }
+
+    @Test
+    void updateRecordsAndStatuses_inChunks_shouldUpdateAllRecords() {
+        List<FileMetadataDto> created = fileMetadataService.createRecords(Flux.range(0, 3)
+                        .map(i -> fileMetadataService.prepareRecord("file-" + i + ".pdf")))
+                .collectList()
+                .block();
+
+        StepVerifier.create(fileMetadataService.updateRecords(Flux.fromIterable(created)
+                        .map(dto -> new FileMetadataDto(dto.id(), dto.fileName(), dto.contentType(), dto.fileKey(),
+                                dto.storageType(), 100, Status.CLEAN, dto.createdAt())))
+                        .map(FileMetadataDto::size))
+                .expectNext(100L, 100L, 100L)
+                .verifyComplete();
+
+        StepVerifier.create(fileMetadataService.updateStatuses(
+                        Flux.fromIterable(created).map(FileMetadataDto::id).concatWith(Flux.just(-1L)), Status.INFESTED)
+                        .map(FileMetadataDto::status))
+                .expectNext(Status.INFESTED, Status.INFESTED, Status.INFESTED)
+                .verifyComplete();
+    }
+
+    @Test
+    void list_shouldPageNewestFirstAndContinueAfterCursor() {
+        // Records created at the same time are told apart by their ID
+        Instant now = Instant.parse("2025-06-01T12:00:00Z");
+        List<FileMetadataDto> created = fileMetadataService.createRecords(Flux.range(0, 5)
+                        .map(i -> {
+                            FileMetadataDto dto = fileMetadataService.prepareRecord("file-" + i + ".pdf");
+                            return new FileMetadataDto(null, dto.fileName(), dto.contentType(), dto.fileKey(),
+                                    dto.storageType(), 0, dto.status(), now.plusSeconds(i < 3 ? 0 : 1));
+                        }))
+                .collectList()
+                .block();
+        List<Long> newestFirst = List.of(created.get(4).id(), created.get(3).id(),
+                created.get(2).id(), created.get(1).id(), created.get(0).id());
+
+        List<FileMetadataDto> first = fileMetadataService.list(FileListFilter.ALL, null, 3).collectList().block();
+        assertThat(first).extracting(FileMetadataDto::id).containsExactlyElementsOf(newestFirst.subList(0, 3));
+
+        StepVerifier.create(fileMetadataService.list(FileListFilter.ALL, FileListCursor.of(first.get(2)), 10)
+                        .map(FileMetadataDto::id))
+                .expectNextSequence(newestFirst.subList(3, 5))
+                .verifyComplete();
+    }
+
+    @Test
+    void list_withFilters_shouldReturnMatchingRecordsOnly() {
+        fileMetadataService.createRecords(Flux.just("a_1.pdf", "a_2.png", "ab.pdf", "b.pdf")
+                        .map(fileMetadataService::prepareRecord))
+                .blockLast();
+
+        // '_' in the prefix is not a wildcard, so "ab.pdf" doesn't match
+        StepVerifier.create(fileMetadataService.list(new FileListFilter(Status.SCANNING, StorageType.S3, "application/pdf", "a_"), null, 10)
+                        .map(FileMetadataDto::fileName))
+                .expectNext("a_1.pdf")
+                .verifyComplete();
+    }
+
+    @Test
+    void findByIds_inChunks_shouldReturnRecordsInRequestOrder() {
+        List<Long> ids = fileMetadataService.createRecords(Flux.range(0, 5)
+                        .map(i -> fileMetadataService.prepareRecord("file-" + i + ".pdf")))
+                .map(FileMetadataDto::id)
+                .collectList()
+                .block();
+
+        StepVerifier.create(fileMetadataService.findByIds(List.of(ids.get(4), -1L, ids.get(0), ids.get(3), ids.get(1), ids.get(0)))
+                        .map(FileMetadataDto::id))
+                .expectNext(ids.get(4), ids.get(0), ids.get(3), ids.get(1), ids.get(0))
+                .verifyComplete();
+    }
+}
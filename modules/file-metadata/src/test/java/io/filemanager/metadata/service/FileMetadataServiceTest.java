@@ -2,16 +2,28 @@ package io.filemanager.metadata.service;
 
 import io.filemanager.metadata.domain.FileMetadata;
 import io.filemanager.metadata.domain.Status;
+import io.filemanager.metadata.dto.FileChangeEvent;
+import io.filemanager.metadata.dto.FileListCursor;
+import io.filemanager.metadata.dto.FileListFilter;
 import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.metadata.persistence.FileChangeNotifications;
+import io.filemanager.metadata.persistence.FileMetadataBulkRepository;
+import io.filemanager.metadata.persistence.FileMetadataQueryRepository;
 import io.filemanager.metadata.persistence.FileMetadataRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -22,6 +34,18 @@ class FileMetadataServiceTest {
     @Mock
     private FileMetadataRepository fileMetadataRepository; // Create a mock repository
 
+    @Mock
+    private FileMetadataBulkRepository bulkRepository;
+
+    @Mock
+    private FileMetadataQueryRepository queryRepository;
+
+    @Mock
+    private FileMetadataCache cache;
+
+    @Mock
+    private FileChangeNotifications notifications;
+
     @InjectMocks
     private FileMetadataService fileMetadataService; // Inject the mock into our service
 
@@ -61,16 +85,14 @@ class FileMetadataServiceTest {
         // Given: An existing file record and a new size
         Long fileId = 42L;
         long newSize = 1024L;
-        FileMetadata existingFile = new FileMetadata();
-        existingFile.setId(fileId);
-        existingFile.setStatus(Status.SCANNING);
-        existingFile.setSize(0L);
+        FileMetadata updatedFile = new FileMetadata();
+        updatedFile.setId(fileId);
+        updatedFile.setStatus(Status.CLEAN);
+        updatedFile.setSize(newSize);
 
-        // When: The repository finds the file and saves it...
-        when(fileMetadataRepository.findById(fileId)).thenReturn(Mono.just(existingFile));
-        // We can mock the save call to return the modified object
-        when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
-                Mono.just(invocation.getArgument(0, FileMetadata.class)));
+        // When: The file is moved from SCANNING to CLEAN in a single conditional update...
+        when(fileMetadataRepository.transition(fileId, "SCANNING", "CLEAN", newSize))
+                .thenReturn(Mono.just(updatedFile));
 
         // Then: Call the service method
         Mono<FileMetadataDto> result = fileMetadataService.finalizeUpload(fileId, newSize);
@@ -84,4 +106,136 @@ class FileMetadataServiceTest {
                 })
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateStatus_shouldStoreScanVerdictAndSize() {
+        // Given: A file that is still being scanned
+        Long fileId = 43L;
+        FileMetadata updatedFile = new FileMetadata();
+        updatedFile.setId(fileId);
+        updatedFile.setStatus(Status.INFESTED);
+        updatedFile.setSize(2048L);
+
+        when(fileMetadataRepository.transition(fileId, "SCANNING", "INFESTED", 2048L))
+                .thenReturn(Mono.just(updatedFile));
+
+        // Then: The verdict is stored
+        StepVerifier.create(fileMetadataService.updateStatus(fileId, Status.INFESTED, 2048L))
+                .assertNext(dto -> {
+                    assertThat(dto.status()).isEqualTo(Status.INFESTED);
+                    assertThat(dto.size()).isEqualTo(2048L);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void updateStatus_whenFileIsNoLongerScanning_shouldFailWithConflict() {
+        // Given: A file that a concurrent request has already finalized
+        Long fileId = 44L;
+        FileMetadata settledFile = new FileMetadata();
+        settledFile.setId(fileId);
+        settledFile.setStatus(Status.CLEAN);
+
+        when(fileMetadataRepository.transition(fileId, "SCANNING", "ERROR", 0L)).thenReturn(Mono.empty());
+        when(fileMetadataRepository.findById(fileId)).thenReturn(Mono.just(settledFile));
+
+        // Then: The file keeps its status and the caller learns why
+        StepVerifier.create(fileMetadataService.updateStatus(fileId, Status.ERROR, 0L))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOfSatisfying(StatusConflictException.class,
+                                conflict -> assertThat(conflict.getCurrentStatus()).isEqualTo(Status.CLEAN)))
+                .verify();
+    }
+
+    @Test
+    void updateStatus_whenFileDoesNotExist_shouldCompleteEmpty() {
+        when(fileMetadataRepository.transition(45L, "SCANNING", "ERROR", 0L)).thenReturn(Mono.empty());
+        when(fileMetadataRepository.findById(45L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(fileMetadataService.updateStatus(45L, Status.ERROR, 0L))
+                .verifyComplete();
+    }
+
+    @Test
+    void createRecords_shouldInsertThroughBulkRepositoryInInputOrder() {
+        // Given: The bulk insert assigns IDs in input order
+        when(bulkRepository.insertAll(any())).thenAnswer(invocation -> {
+            Flux<FileMetadata> records = invocation.getArgument(0);
+            return records.index().map(indexed -> {
+                indexed.getT2().setId(indexed.getT1() + 1);
+                return indexed.getT2();
+            });
+        });
+        List<FileMetadataDto> records = List.of(
+                fileMetadataService.prepareRecord("a.pdf"),
+                fileMetadataService.prepareRecord("b.png"));
+
+        // Then: The DTOs come back with their IDs, in order
+        StepVerifier.create(fileMetadataService.createRecords(records))
+                .assertNext(dto -> assertThat(dto).extracting(FileMetadataDto::id, FileMetadataDto::fileName)
+                        .containsExactly(1L, "a.pdf"))
+                .assertNext(dto -> assertThat(dto).extracting(FileMetadataDto::id, FileMetadataDto::contentType)
+                        .containsExactly(2L, "image/png"))
+                .verifyComplete();
+    }
+
+    @Test
+    void list_shouldStreamRecordsAndTheirCursors() {
+        // Given: A page of records after a cursor
+        FileListCursor after = FileListCursor.parse("2025-06-01T12:00:00.123456Z,42");
+        FileMetadata record = new FileMetadata();
+        record.setId(41L);
+        record.setStatus(Status.CLEAN);
+        record.setCreatedAt(Instant.parse("2025-06-01T12:00:00.123456Z"));
+        FileListFilter filter = new FileListFilter(Status.CLEAN, null, null, "report");
+        when(queryRepository.list(filter, after, 10)).thenReturn(Flux.just(record));
+
+        // Then: The next cursor continues right after the record
+        StepVerifier.create(fileMetadataService.list(filter, after, 10).map(FileListCursor::of))
+                .assertNext(cursor -> assertThat(cursor).hasToString("2025-06-01T12:00:00.123456Z,41"))
+                .verifyComplete();
+    }
+
+    @Test
+    void findByIds_shouldMergeCachedAndLoadedRecordsInRequestOrder() {
+        // Given: IDs 2 and 5 are cached, 1 and 4 are in the database and 3 doesn't exist
+        FileMetadataDto two = new FileMetadataDto(2L, "two.pdf", null, null, null, 0, Status.CLEAN, null);
+        FileMetadataDto five = new FileMetadataDto(5L, "five.pdf", null, null, null, 0, Status.CLEAN, null);
+        when(cache.get(any())).thenReturn(Optional.empty());
+        when(cache.get(2L)).thenReturn(Optional.of(two));
+        when(cache.get(5L)).thenReturn(Optional.of(five));
+        FileMetadata one = new FileMetadata();
+        one.setId(1L);
+        FileMetadata four = new FileMetadata();
+        four.setId(4L);
+        when(queryRepository.findAllById(List.of(1L, 3L, 4L))).thenReturn(Flux.just(one, four));
+
+        // Then: Everything comes back in the order asked for
+        StepVerifier.create(fileMetadataService.findByIds(List.of(5L, 1L, 2L, 3L, 4L)).map(FileMetadataDto::id))
+                .expectNext(5L, 1L, 2L, 4L)
+                .verifyComplete();
+    }
+
+    @Test
+    void watchStatuses_shouldSendCurrentStatusThenChangesUntilSettled() {
+        // Given: File 1 is being scanned and file 3 doesn't exist
+        Sinks.Many<FileChangeEvent> changes = Sinks.many().multicast().directBestEffort();
+        when(notifications.changes()).thenReturn(changes.asFlux());
+        FileMetadata scanning = new FileMetadata();
+        scanning.setId(1L);
+        scanning.setStatus(Status.SCANNING);
+        when(queryRepository.findAllById(List.of(1L, 3L))).thenReturn(Flux.just(scanning));
+
+        // Then: Changes of other files and repeated statuses are not sent, and the stream ends
+        // once file 1 is settled
+        StepVerifier.create(fileMetadataService.watchStatuses(List.of(1L, 3L, 1L)))
+                .expectNext(new FileChangeEvent(1L, Status.SCANNING), new FileChangeEvent(3L, null))
+                .then(() -> {
+                    changes.tryEmitNext(new FileChangeEvent(2L, Status.CLEAN));
+                    changes.tryEmitNext(new FileChangeEvent(1L, Status.SCANNING));
+                    changes.tryEmitNext(new FileChangeEvent(1L, Status.INFESTED));
+                })
+                .expectNext(new FileChangeEvent(1L, Status.INFESTED))
+                .verifyComplete();
+    }
+}
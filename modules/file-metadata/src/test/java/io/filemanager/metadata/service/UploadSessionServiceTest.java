@@ -0,0 +1,94 @@
+package io.filemanager.metadata.service;
+
+import io.filemanager.metadata.domain.UploadSession;
+import io.filemanager.metadata.domain.UploadSessionStatus;
+import io.filemanager.metadata.persistence.UploadChunkRepository;
+import io.filemanager.metadata.persistence.UploadSessionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UploadSessionServiceTest {
+
+    @Mock
+    private UploadSessionRepository sessionRepository;
+
+    @Mock
+    private UploadChunkRepository chunkRepository;
+
+    @InjectMocks
+    private UploadSessionService uploadSessionService;
+
+    @Test
+    void createSession_shouldRoundUpChunkCountForShortLastChunk() {
+        // Given: the repository hands back what it was asked to save
+        when(sessionRepository.save(any(UploadSession.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        // Then: 25 bytes in chunks of 10 are 3 chunks, the last one 5 bytes
+        StepVerifier.create(uploadSessionService.createSession(1L, "upload-1", 10, 25))
+                .assertNext(dto -> {
+                    assertThat(dto.chunkCount()).isEqualTo(3);
+                    assertThat(dto.status()).isEqualTo(UploadSessionStatus.OPEN);
+                    assertThat(dto.uploadId()).isEqualTo("upload-1");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void close_shouldStoreStatusAndDropChunkRecords() {
+        // Given: an open session
+        when(sessionRepository.closeIfOpen(7L, "COMPLETED")).thenReturn(Mono.just(session(UploadSessionStatus.COMPLETED)));
+        when(chunkRepository.deleteBySessionId(7L)).thenReturn(Mono.empty());
+
+        // Then
+        StepVerifier.create(uploadSessionService.close(7L, UploadSessionStatus.COMPLETED))
+                .assertNext(dto -> assertThat(dto.status()).isEqualTo(UploadSessionStatus.COMPLETED))
+                .verifyComplete();
+
+        verify(chunkRepository).deleteBySessionId(7L);
+    }
+
+    @Test
+    void close_whenSessionIsAlreadyClosed_shouldFailWithoutTouchingChunks() {
+        // Given: a concurrent abort closed the session first
+        when(sessionRepository.closeIfOpen(7L, "COMPLETED")).thenReturn(Mono.empty());
+        when(sessionRepository.findById(7L)).thenReturn(Mono.just(session(UploadSessionStatus.ABORTED)));
+
+        // Then
+        StepVerifier.create(uploadSessionService.close(7L, UploadSessionStatus.COMPLETED))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessageContaining("ABORTED"))
+                .verify();
+
+        verify(chunkRepository, never()).deleteBySessionId(any());
+    }
+
+    @Test
+    void close_whenSessionDoesNotExist_shouldBeEmpty() {
+        when(sessionRepository.closeIfOpen(7L, "ABORTED")).thenReturn(Mono.empty());
+        when(sessionRepository.findById(7L)).thenReturn(Mono.empty());
+
+        StepVerifier.create(uploadSessionService.close(7L, UploadSessionStatus.ABORTED))
+                .verifyComplete();
+    }
+
+    private UploadSession session(UploadSessionStatus status) {
+        UploadSession session = new UploadSession();
+        session.setId(7L);
+        session.setStatus(status);
+        return session;
+    }
+}
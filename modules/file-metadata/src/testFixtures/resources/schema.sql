@@ -10,6 +10,36 @@ CREATE TABLE IF NOT EXISTS file (
     updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
 );
 
+-- Listings are ordered by (created_at, id) and paged by keyset; each filter has its own index in that order.
+CREATE INDEX IF NOT EXISTS file_created_at_id_idx ON file (created_at, id);
+CREATE INDEX IF NOT EXISTS file_status_created_at_id_idx ON file (status, created_at, id);
+CREATE INDEX IF NOT EXISTS file_storage_type_created_at_id_idx ON file (storage_type, created_at, id);
+CREATE INDEX IF NOT EXISTS file_content_type_created_at_id_idx ON file (content_type, created_at, id);
+-- Name prefixes are matched with LIKE 'prefix%', which needs pattern ops unless the collation is C.
+CREATE INDEX IF NOT EXISTS file_file_name_pattern_idx ON file (file_name text_pattern_ops);
+
+CREATE TABLE IF NOT EXISTS upload_session (
+    id BIGSERIAL PRIMARY KEY,
+    file_id BIGINT NOT NULL REFERENCES file (id) ON DELETE CASCADE,
+    upload_id VARCHAR(1024) NOT NULL,
+    chunk_size BIGINT NOT NULL,
+    total_size BIGINT NOT NULL,
+    chunk_count INT NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE TABLE IF NOT EXISTS upload_chunk (
+    id BIGSERIAL PRIMARY KEY,
+    session_id BIGINT NOT NULL REFERENCES upload_session (id) ON DELETE CASCADE,
+    chunk_number INT NOT NULL,
+    e_tag VARCHAR(255) NOT NULL,
+    size BIGINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    UNIQUE (session_id, chunk_number)
+);
+
 -- Insert test data
 INSERT INTO file (file_name, content_type, file_key, storage_type, size, status)
 VALUES
@@ -2,6 +2,7 @@ package io.filemanager.storage.api;
 
 import io.filemanager.metadata.domain.StorageType;
 import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.support.ByteStreams;
 import org.springframework.core.io.buffer.DataBuffer;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -25,6 +26,39 @@ public interface FileStorage {
      */
     Flux<ByteBuffer> download(FileMetadataDto metadata);
 
+    /**
+     * Downloads a file from storage starting at the given byte offset, e.g. to resume an
+     * interrupted download. The default skips the leading bytes of a full download; adapters
+     * that can request a range from their backend override it.
+     * @param metadata The DTO containing information about the file.
+     * @param offset The number of leading bytes to leave out.
+     * @return A reactive stream of the file's content from the offset on.
+     */
+    default Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        return ByteStreams.skip(download(metadata), offset);
+    }
+
+    /**
+     * Moves an object to another key of the same storage, e.g. to release it from quarantine.
+     * Storages that can't do that without streaming the content through the application
+     * don't support it.
+     * @param sourceKey The current key of the object.
+     * @param targetKey The key the object should end up under.
+     * @return A Mono that completes once the object is only available under the target key.
+     */
+    default Mono<Void> move(String sourceKey, String targetKey) {
+        return Mono.error(new UnsupportedOperationException(getStorageType() + " storage does not support moving objects"));
+    }
+
+    /**
+     * Deletes an object from storage. Deleting a key that doesn't exist is not an error.
+     * @param key The key of the object.
+     * @return A Mono that completes once the object is gone.
+     */
+    default Mono<Void> delete(String key) {
+        return Mono.error(new UnsupportedOperationException(getStorageType() + " storage does not support deleting objects"));
+    }
+
     /**
      * Retrieves the storage type of this file storage implementation.
      * @return The storage type as an enum.
@@ -0,0 +1,15 @@
+package io.filemanager.storage.api;
+
+/**
+ * Wraps a storage adapter with additional behaviour (caching, limiting, ...) without changing
+ * the adapter lookup by {@link io.filemanager.metadata.domain.StorageType}.
+ * Decorators are applied in their {@code @Order}; the lowest order ends up closest to the adapter.
+ */
+@FunctionalInterface
+public interface FileStorageDecorator {
+    /**
+     * @param storage The adapter (or an already decorated adapter) to wrap.
+     * @return A FileStorage reporting the same storage type as the given one.
+     */
+    FileStorage decorate(FileStorage storage);
+}
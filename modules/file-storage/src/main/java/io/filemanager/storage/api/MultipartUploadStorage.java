@@ -0,0 +1,49 @@
+package io.filemanager.storage.api;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * A storage that can assemble an object from parts uploaded independently, in any order and
+ * in parallel. The parts are only visible as an object once the upload is completed.
+ */
+public interface MultipartUploadStorage {
+    /**
+     * Starts a multipart upload.
+     * @param key The key the assembled object will be stored under.
+     * @param contentType The MIME type of the object.
+     * @return A Mono containing the upload ID to pass to the other methods.
+     */
+    Mono<String> initiateMultipartUpload(String key, String contentType);
+
+    /**
+     * Uploads one part. Uploading a part number again replaces the earlier part.
+     * @param key The key of the upload.
+     * @param uploadId The ID returned by {@link #initiateMultipartUpload(String, String)}.
+     * @param partNumber The 1-based position of the part in the object.
+     * @param content The content of the part; it is streamed, not buffered.
+     * @param size The exact number of bytes in the content.
+     * @return A Mono containing the stored part.
+     */
+    Mono<UploadedPart> uploadPart(String key, String uploadId, int partNumber, Flux<DataBuffer> content, long size);
+
+    /**
+     * Assembles the uploaded parts into the object.
+     * @param key The key of the upload.
+     * @param uploadId The ID of the upload.
+     * @param parts All parts of the object, in any order.
+     * @return A Mono containing the result of the upload.
+     */
+    Mono<UploadResult> completeMultipartUpload(String key, String uploadId, List<UploadedPart> parts);
+
+    /**
+     * Aborts an upload and frees the space taken by its parts.
+     * @param key The key of the upload.
+     * @param uploadId The ID of the upload.
+     * @return A Mono that completes once the upload is aborted.
+     */
+    Mono<Void> abortMultipartUpload(String key, String uploadId);
+}
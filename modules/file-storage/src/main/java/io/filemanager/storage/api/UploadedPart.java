@@ -0,0 +1,7 @@
+package io.filemanager.storage.api;
+
+public record UploadedPart(
+        int partNumber, // 1-based
+        String eTag,
+        long size
+) {}
@@ -0,0 +1,10 @@
+package io.filemanager.storage.api.exception;
+
+/**
+ * Thrown without contacting the backend when it is saturated or its circuit breaker is open.
+ */
+public class StorageOverloadedException extends StorageConnectivityException {
+    public StorageOverloadedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,204 @@
+package io.filemanager.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded LRU index over complete cache files in a local directory.
+ * Entries are filled into a ".part" file and only become visible after an atomic rename,
+ * so readers never see a partially written object. A fill that is overtaken by an invalidation
+ * of its entry is discarded instead of published, since it may hold the old content.
+ */
+@Slf4j
+public class DiskCache {
+    private static final String PART_SUFFIX = ".part";
+    // Entry names are hex SHA-256 digests; nothing else in the directory is ours to delete.
+    private static final Pattern ENTRY_FILE = Pattern.compile("[0-9a-f]{64}(" + Pattern.quote(PART_SUFFIX) + ")?");
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final long maxEntryBytes;
+
+    // Access-ordered, so iteration starts at the least recently used entry.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Entries being filled, with the generation of their entry, bumped by every invalidation.
+    private final Map<String, Long> filling = new ConcurrentHashMap<>();
+    private long currentSizeBytes;
+
+    public DiskCache(Path directory, long maxSizeBytes, long maxEntryBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxSizeBytes);
+        initDirectory();
+    }
+
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public synchronized long getCurrentSizeBytes() {
+        return currentSizeBytes;
+    }
+
+    /**
+     * Derives a file-system safe entry name from the storage coordinates of an object.
+     */
+    public String entryName(String storageType, String fileKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((storageType + ":" + fileKey).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the path of a complete entry and marks it as recently used.
+     */
+    public synchronized Optional<Path> lookup(String entryName) {
+        if (entries.get(entryName) == null) {
+            return Optional.empty();
+        }
+        return Optional.of(directory.resolve(entryName));
+    }
+
+    /**
+     * Reserves the entry for filling. Only one stream fills a given entry at a time;
+     * concurrent readers of the same object simply pass through to the backend.
+     *
+     * @return The temporary file to write to, or empty if the entry is cached or already being filled.
+     */
+    public Optional<Path> beginFill(String entryName) {
+        synchronized (this) {
+            if (entries.containsKey(entryName)) {
+                return Optional.empty();
+            }
+        }
+        if (filling.putIfAbsent(entryName, 0L) != null) {
+            return Optional.empty();
+        }
+        return Optional.of(directory.resolve(entryName + PART_SUFFIX));
+    }
+
+    /**
+     * Publishes a completely written temporary file and evicts least recently used entries
+     * until the cache is back under its size cap. The file is discarded if the entry was
+     * invalidated since the fill began.
+     */
+    public void commitFill(String entryName, Path tempFile, long size) {
+        try {
+            if (size > maxEntryBytes) {
+                deleteQuietly(tempFile);
+                return;
+            }
+            // Checked and published under the lock that invalidate() takes, so none can slip in between.
+            synchronized (this) {
+                if (filling.getOrDefault(entryName, 0L) != 0L) {
+                    log.debug("Dropped fill of entry {}, invalidated while filling", entryName);
+                    deleteQuietly(tempFile);
+                    return;
+                }
+                Files.move(tempFile, directory.resolve(entryName), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                Long previous = entries.put(entryName, size);
+                currentSizeBytes += size - (previous != null ? previous : 0);
+                evictIfNeeded();
+            }
+            log.debug("Cached entry {} ({} bytes)", entryName, size);
+        } catch (IOException e) {
+            log.warn("Failed to commit cache entry {}: {}", entryName, e.getMessage());
+            deleteQuietly(tempFile);
+        } finally {
+            filling.remove(entryName);
+        }
+    }
+
+    /**
+     * Discards a partially written entry (error, cancellation or oversize object).
+     */
+    public void abortFill(String entryName, Path tempFile) {
+        deleteQuietly(tempFile);
+        filling.remove(entryName);
+    }
+
+    /**
+     * Removes an entry and makes a fill of it that is still running discard its file.
+     */
+    public void invalidate(String entryName) {
+        synchronized (this) {
+            filling.computeIfPresent(entryName, (name, generation) -> generation + 1);
+            Long size = entries.remove(entryName);
+            if (size == null) {
+                return;
+            }
+            currentSizeBytes -= size;
+        }
+        deleteQuietly(directory.resolve(entryName));
+    }
+
+    /**
+     * Called when a looked-up file has disappeared underneath us (e.g. removed externally).
+     */
+    public void forget(String entryName) {
+        synchronized (this) {
+            Long size = entries.remove(entryName);
+            if (size != null) {
+                currentSizeBytes -= size;
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (currentSizeBytes > maxSizeBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            currentSizeBytes -= eldest.getValue();
+            // Readers that already opened the file keep a valid handle on POSIX systems.
+            deleteQuietly(directory.resolve(eldest.getKey()));
+            log.debug("Evicted cache entry {} ({} bytes)", eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * The index lives in memory only, so the entries left from a previous run are discarded.
+     * Other files are left alone, in case the directory is shared by mistake.
+     */
+    private void initDirectory() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(Files::isRegularFile)
+                        .filter(file -> ENTRY_FILE.matcher(file.getFileName().toString()).matches())
+                        .forEach(this::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not initialize disk cache directory " + directory, e);
+        }
+        log.info("Initialized disk cache at {} with a cap of {} bytes", directory, maxSizeBytes);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cache file {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package io.filemanager.storage.cache;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.support.FileChannelSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FileStorage decorator that keeps hot objects on local disk.
+ * <p>
+ * On a miss the backend stream is passed through unchanged while every chunk is also written to
+ * a temporary cache file. The entry is only published when the backend stream completes; errors,
+ * cancellations and objects over the entry limit discard the partial file.
+ * <p>
+ * On a hit the file is memory-mapped chunk by chunk. The mapped buffers are wrapped (not copied)
+ * by Netty, so the bytes go from the page cache to the socket without passing through the heap.
+ */
+@Slf4j
+public class DiskCachingFileStorage implements FileStorage {
+    private static final int READ_CHUNK_SIZE = 1024 * 1024; // 1MB per mapped region
+
+    private final FileStorage delegate;
+    private final DiskCache diskCache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DiskCachingFileStorage(FileStorage delegate, DiskCache diskCache) {
+        this.delegate = delegate;
+        this.diskCache = diskCache;
+    }
+
+    @Override
+    public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
+        // Overwriting a key must not leave a stale copy behind.
+        return delegate.upload(key, fileContent, contentType)
+                .doOnSuccess(result -> diskCache.invalidate(entryName(key)));
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata) {
+        return Flux.defer(() -> {
+            String entryName = entryName(metadata.fileKey());
+
+            Optional<Path> cachedFile = diskCache.lookup(entryName);
+            if (cachedFile.isPresent()) {
+                hits.incrementAndGet();
+                log.debug("Disk cache hit for key: {}", metadata.fileKey());
+                return FileChannelSupport.readMapped(cachedFile.get(), READ_CHUNK_SIZE)
+                        // The entry may have been evicted between lookup and open.
+                        .onErrorResume(NoSuchFileException.class, e -> {
+                            diskCache.forget(entryName);
+                            return delegate.download(metadata);
+                        });
+            }
+
+            misses.incrementAndGet();
+            if (metadata.size() > diskCache.getMaxEntryBytes()) {
+                return delegate.download(metadata);
+            }
+            return diskCache.beginFill(entryName)
+                    .map(tempFile -> downloadAndFill(metadata, entryName, tempFile))
+                    .orElseGet(() -> delegate.download(metadata));
+        });
+    }
+
+    /**
+     * Ranged reads are served from a cached copy if there is one, but never fill the cache.
+     */
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        if (offset == 0) {
+            return download(metadata);
+        }
+        return Flux.defer(() -> {
+            String entryName = entryName(metadata.fileKey());
+            return diskCache.lookup(entryName)
+                    .map(cachedFile -> FileChannelSupport.readMapped(cachedFile, READ_CHUNK_SIZE, offset)
+                            .onErrorResume(NoSuchFileException.class, e -> {
+                                diskCache.forget(entryName);
+                                return delegate.download(metadata, offset);
+                            }))
+                    .orElseGet(() -> delegate.download(metadata, offset));
+        });
+    }
+
+    @Override
+    public Mono<Void> move(String sourceKey, String targetKey) {
+        return delegate.move(sourceKey, targetKey)
+                .doOnSuccess(ignored -> {
+                    diskCache.invalidate(entryName(sourceKey));
+                    diskCache.invalidate(entryName(targetKey));
+                });
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return delegate.delete(key)
+                .doOnSuccess(ignored -> diskCache.invalidate(entryName(key)));
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return delegate.getStorageType();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private String entryName(String fileKey) {
+        return diskCache.entryName(delegate.getStorageType().name(), fileKey);
+    }
+
+    private Flux<ByteBuffer> downloadAndFill(FileMetadataDto metadata, String entryName, Path tempFile) {
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(tempFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Could not open cache file for key {}: {}", metadata.fileKey(), e.getMessage());
+            diskCache.abortFill(entryName, tempFile);
+            return delegate.download(metadata);
+        }
+
+        final AtomicLong written = new AtomicLong(0);
+        final AtomicBoolean fillFailed = new AtomicBoolean(false);
+
+        return delegate.download(metadata)
+                // concatMap keeps the positional writes ordered and lets the disk pace the stream.
+                // Errors are delayed so a chunk whose write is in flight still reaches the reader.
+                .concatMapDelayError(buffer -> {
+                    if (fillFailed.get()) {
+                        return Mono.just(buffer);
+                    }
+                    long position = written.getAndAdd(buffer.remaining());
+                    if (position + buffer.remaining() > diskCache.getMaxEntryBytes()) {
+                        fillFailed.set(true);
+                        return Mono.just(buffer);
+                    }
+                    // Write a duplicate so the position of the buffer handed downstream is untouched.
+                    return FileChannelSupport.writeFully(channel, buffer.duplicate(), position)
+                            .onErrorResume(e -> {
+                                log.warn("Disk cache write failed for key {}: {}", metadata.fileKey(), e.getMessage());
+                                fillFailed.set(true);
+                                return Mono.empty();
+                            })
+                            .thenReturn(buffer);
+                })
+                // Publish the entry before completion reaches the reader, so a request issued right
+                // after this one already sees it.
+                .doOnComplete(() -> finishFill(entryName, tempFile, channel, !fillFailed.get(), written.get()))
+                .doOnError(error -> finishFill(entryName, tempFile, channel, false, 0))
+                .doOnCancel(() -> finishFill(entryName, tempFile, channel, false, 0));
+    }
+
+    private void finishFill(String entryName, Path tempFile, AsynchronousFileChannel channel, boolean commit, long size) {
+        FileChannelSupport.closeQuietly(channel, tempFile);
+        if (commit) {
+            diskCache.commitFill(entryName, tempFile, size);
+        } else {
+            diskCache.abortFill(entryName, tempFile);
+        }
+    }
+}
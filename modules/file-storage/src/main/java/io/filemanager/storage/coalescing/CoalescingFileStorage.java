@@ -0,0 +1,130 @@
+package io.filemanager.storage.coalescing;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * FileStorage decorator that coalesces concurrent downloads of the same object into one
+ * backend stream ("single flight").
+ * <p>
+ * The first reader of a key opens the backend stream; readers arriving while it is running
+ * share it through a replay buffer of the last {@code replayChunks} chunks. The shared stream is
+ * paced by its slowest reader. A reader arriving after the head of the object has already left
+ * the buffer cannot be served from it and opens its own backend stream instead.
+ */
+@Slf4j
+public class CoalescingFileStorage implements FileStorage {
+
+    private record Chunk(long sequence, ByteBuffer buffer) {}
+
+    private final FileStorage delegate;
+    private final int replayChunks;
+    private final ConcurrentHashMap<String, Flux<Chunk>> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong backendStreams = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong lateJoinerFallbacks = new AtomicLong();
+
+    public CoalescingFileStorage(FileStorage delegate, int replayChunks) {
+        this.delegate = delegate;
+        this.replayChunks = replayChunks;
+    }
+
+    @Override
+    public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
+        return delegate.upload(key, fileContent, contentType);
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata) {
+        return Flux.defer(() -> {
+            String key = metadata.fileKey();
+            boolean[] leader = {false};
+            Flux<Chunk> flight = flights.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                return newFlight(k, metadata);
+            });
+            if (!leader[0]) {
+                coalescedRequests.incrementAndGet();
+                log.debug("Joining in-flight download for key: {}", key);
+            }
+
+            return flight.switchOnFirst((first, chunks) -> {
+                if (first.hasValue() && first.get().sequence() != 0) {
+                    // Joined too late: the start of the object is no longer in the replay buffer.
+                    // Leave the flight right away so we don't hold back the other readers.
+                    lateJoinerFallbacks.incrementAndGet();
+                    return chunks.take(0).thenMany(Flux.defer(() -> fetch(metadata)));
+                }
+                // Every reader gets its own view, so positions don't interfere.
+                return chunks.map(chunk -> chunk.buffer().duplicate());
+            });
+        });
+    }
+
+    /**
+     * Ranged reads resume one reader's interrupted download and are not shared.
+     */
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        return offset == 0 ? download(metadata) : delegate.download(metadata, offset);
+    }
+
+    @Override
+    public Mono<Void> move(String sourceKey, String targetKey) {
+        return delegate.move(sourceKey, targetKey);
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return delegate.getStorageType();
+    }
+
+    public long getBackendStreamCount() {
+        return backendStreams.get();
+    }
+
+    public long getCoalescedRequestCount() {
+        return coalescedRequests.get();
+    }
+
+    public long getLateJoinerFallbackCount() {
+        return lateJoinerFallbacks.get();
+    }
+
+    private Flux<Chunk> newFlight(String key, FileMetadataDto metadata) {
+        AtomicReference<Flux<Chunk>> self = new AtomicReference<>();
+        Flux<Chunk> flight = Flux.defer(() -> {
+                    AtomicLong sequence = new AtomicLong();
+                    return fetch(metadata).map(buffer -> new Chunk(sequence.getAndIncrement(), buffer));
+                })
+                // Once the backend stream is over, new readers must start a fresh flight.
+                .doFinally(signalType -> flights.remove(key, self.get()))
+                .replay(replayChunks)
+                // Cancel the backend stream only when the last reader has gone.
+                .refCount(1);
+        self.set(flight);
+        return flight;
+    }
+
+    private Flux<ByteBuffer> fetch(FileMetadataDto metadata) {
+        backendStreams.incrementAndGet();
+        return delegate.download(metadata);
+    }
+}
@@ -0,0 +1,167 @@
+package io.filemanager.storage.hedging;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * FileStorage decorator that hedges slow downloads.
+ * <p>
+ * The time to first byte of every download is recorded per backend. When the first byte of a
+ * download hasn't arrived within the learned {@code percentile} of that latency, a second
+ * identical request is sent. Whichever stream produces its first signal first is used and the
+ * other one is cancelled.
+ * <p>
+ * Hedges are capped by a budget: every download earns {@code budgetRatio} of a hedge, so with
+ * a ratio of 0.05 at most about 5% extra requests reach the backend, even when it is slow overall.
+ */
+@Slf4j
+public class HedgingFileStorage implements FileStorage {
+    // Unused budget can pile up to this many hedges, enough to absorb a short burst of slow reads.
+    private static final double MAX_BUDGET = 10;
+
+    private final FileStorage delegate;
+    private final LatencyTracker latencyTracker;
+    private final double percentile;
+    private final double budgetRatio;
+    private final Duration minDelay;
+
+    private double budget;
+
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgesDenied = new AtomicLong();
+
+    public HedgingFileStorage(FileStorage delegate, LatencyTracker latencyTracker,
+                              double percentile, double budgetRatio, Duration minDelay) {
+        this.delegate = delegate;
+        this.latencyTracker = latencyTracker;
+        this.percentile = percentile;
+        this.budgetRatio = budgetRatio;
+        this.minDelay = minDelay;
+    }
+
+    @Override
+    public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
+        // The content can only be consumed once, so uploads are never hedged.
+        return delegate.upload(key, fileContent, contentType);
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata) {
+        return hedged(metadata, () -> delegate.download(metadata));
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        return hedged(metadata, () -> delegate.download(metadata, offset));
+    }
+
+    @Override
+    public Mono<Void> move(String sourceKey, String targetKey) {
+        return delegate.move(sourceKey, targetKey);
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return delegate.getStorageType();
+    }
+
+    public long getDownloadCount() {
+        return downloads.get();
+    }
+
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    public long getHedgeDeniedCount() {
+        return hedgesDenied.get();
+    }
+
+    private Flux<ByteBuffer> hedged(FileMetadataDto metadata, Supplier<Flux<ByteBuffer>> request) {
+        return Flux.defer(() -> {
+            downloads.incrementAndGet();
+            depositBudget();
+
+            Flux<ByteBuffer> primary = timed(request, true);
+            Optional<Duration> hedgeDelay = latencyTracker.percentile(percentile);
+            if (hedgeDelay.isEmpty()) {
+                // Not enough samples yet to know what "slow" means for this backend.
+                return primary;
+            }
+
+            Duration delay = hedgeDelay.get().compareTo(minDelay) < 0 ? minDelay : hedgeDelay.get();
+            Flux<ByteBuffer> hedge = Mono.delay(delay)
+                    .flatMapMany(tick -> {
+                        if (!withdrawBudget()) {
+                            hedgesDenied.incrementAndGet();
+                            return Flux.never();
+                        }
+                        hedges.incrementAndGet();
+                        log.debug("No first byte for key {} after {} ms, sending hedged request",
+                                metadata.fileKey(), delay.toMillis());
+                        return timed(request, false)
+                                // A hedge that fails straight away must not win over a primary that is still on its way.
+                                .switchOnFirst((first, stream) -> first.isOnError() ? Flux.never() : stream);
+                    });
+
+            return Flux.firstWithSignal(primary, hedge);
+        });
+    }
+
+    /**
+     * @param recordCancel Whether a request cancelled before its first byte still records how long
+     *                     it had been waiting. A primary that loses to its hedge is exactly the slow
+     *                     request the percentile has to learn about; leaving it out would only keep
+     *                     the fast ones and pull the hedge delay down. The time waited is a lower
+     *                     bound of its real latency. A losing hedge started late, so its time says
+     *                     nothing about the backend and is dropped.
+     */
+    private Flux<ByteBuffer> timed(Supplier<Flux<ByteBuffer>> request, boolean recordCancel) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean(false);
+            Flux<ByteBuffer> timed = request.get()
+                    .doOnNext(buffer -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            latencyTracker.record(Duration.ofNanos(System.nanoTime() - start));
+                        }
+                    });
+            return !recordCancel ? timed : timed.doOnCancel(() -> {
+                if (recorded.compareAndSet(false, true)) {
+                    latencyTracker.record(Duration.ofNanos(System.nanoTime() - start));
+                }
+            });
+        });
+    }
+
+    private synchronized void depositBudget() {
+        budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+}
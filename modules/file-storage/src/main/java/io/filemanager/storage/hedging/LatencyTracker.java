@@ -0,0 +1,54 @@
+package io.filemanager.storage.hedging;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Keeps the last {@code windowSize} latency samples of one backend and answers percentile
+ * queries over them. The percentile is recomputed every {@code windowSize / 10} samples rather
+ * than on every query, so the read path only takes a lock and reads a field.
+ */
+public class LatencyTracker {
+    private final long[] samples;
+    private final int minSamples;
+    private final int refreshInterval;
+
+    private int next;
+    private int count;
+    private int sinceRefresh;
+    private long[] sorted = new long[0];
+
+    public LatencyTracker(int windowSize, int minSamples) {
+        if (windowSize <= 0 || minSamples <= 0 || minSamples > windowSize) {
+            throw new IllegalArgumentException("Invalid latency window: " + windowSize + " / " + minSamples);
+        }
+        this.samples = new long[windowSize];
+        this.minSamples = minSamples;
+        this.refreshInterval = Math.max(1, windowSize / 10);
+    }
+
+    public synchronized void record(Duration latency) {
+        samples[next] = latency.toNanos();
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (++sinceRefresh >= refreshInterval || sorted.length < minSamples) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceRefresh = 0;
+        }
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. 0.95
+     * @return the latency below which the given share of recent samples fall, or empty while
+     * fewer than {@code minSamples} samples have been recorded
+     */
+    public synchronized Optional<Duration> percentile(double percentile) {
+        if (sorted.length < minSamples) {
+            return Optional.empty();
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return Optional.of(Duration.ofNanos(sorted[Math.clamp(index, 0, sorted.length - 1)]));
+    }
+}
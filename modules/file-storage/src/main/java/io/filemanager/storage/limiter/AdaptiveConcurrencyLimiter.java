@@ -0,0 +1,212 @@
+package io.filemanager.storage.limiter;
+
+import io.filemanager.storage.api.exception.StorageOverloadedException;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit for one backend that adapts to its latency, after TCP Vegas.
+ * <p>
+ * The lowest latency seen is taken as the latency of an idle backend. From a new sample the
+ * number of requests queued at the backend is estimated as {@code limit * (1 - noLoad / sample)}.
+ * While that estimate is below {@link #ALPHA} the limit grows by one, above {@link #BETA} it
+ * shrinks by one, and failures cut it by {@link #DROP_FACTOR}. So when the backend slows down
+ * fewer requests are sent to it instead of more piling up and timing out.
+ * <p>
+ * Requests over the limit wait in a bounded FIFO queue for at most {@code maxWait}. When the
+ * queue is full or the wait times out they fail fast with {@link StorageOverloadedException}.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+    static final int ALPHA = 3;
+    static final int BETA = 6;
+    static final double DROP_FACTOR = 0.9;
+    // The idle latency is re-learned now and then, so a backend that got slower for good
+    // doesn't keep the limit at its minimum forever.
+    private static final int NO_LOAD_RESET_INTERVAL = 1000;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final Duration maxWait;
+
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long noLoadLatencyNanos;
+    private int samplesSinceReset;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      int maxQueueSize, Duration maxWait) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueSize = maxQueueSize;
+        this.maxWait = maxWait;
+    }
+
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit() {
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release();
+            }
+        }
+    }
+
+    private final class Waiter {
+        private final MonoSink<Permit> sink;
+        private Permit permit; // set under the limiter lock when granted
+
+        private Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Emits a permit as soon as a slot under the current limit is free. The permit must be
+     * released exactly when the request to the backend has ended.
+     */
+    public Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+                    Waiter waiter = new Waiter(sink);
+                    sink.onCancel(() -> cancel(waiter));
+
+                    Permit immediate = null;
+                    boolean queueFull = false;
+                    synchronized (this) {
+                        if (waiters.isEmpty() && inFlight < currentLimit()) {
+                            inFlight++;
+                            immediate = new Permit();
+                            waiter.permit = immediate;
+                        } else if (waiters.size() >= maxQueueSize) {
+                            queueFull = true;
+                        } else {
+                            waiters.add(waiter);
+                        }
+                    }
+
+                    if (immediate != null) {
+                        sink.success(immediate);
+                    } else if (queueFull) {
+                        rejected.incrementAndGet();
+                        sink.error(new StorageOverloadedException(
+                                "Too many requests waiting for " + name + " (limit " + getLimit() + ")", null));
+                    }
+                })
+                .timeout(maxWait, Mono.error(() -> {
+                    rejected.incrementAndGet();
+                    return new StorageOverloadedException(
+                            "Timed out after " + maxWait.toMillis() + " ms waiting for " + name + " (limit " + getLimit() + ")", null);
+                }));
+    }
+
+    /**
+     * Feeds the latency of a successful request into the limit.
+     */
+    public void onSample(Duration latency) {
+        long sampleNanos = Math.max(1, latency.toNanos());
+        List<Waiter> granted;
+        synchronized (this) {
+            if (noLoadLatencyNanos == 0 || sampleNanos < noLoadLatencyNanos || ++samplesSinceReset >= NO_LOAD_RESET_INTERVAL) {
+                noLoadLatencyNanos = sampleNanos;
+                samplesSinceReset = 0;
+            }
+            double queued = limit * (1 - (double) noLoadLatencyNanos / sampleNanos);
+            // Only grow when the current limit is actually in use, or an idle backend would
+            // collect an arbitrary high limit.
+            if (queued < ALPHA && inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            } else if (queued > BETA) {
+                limit = Math.max(minLimit, limit - 1);
+            }
+            granted = grantWaiters();
+        }
+        signal(granted);
+    }
+
+    /**
+     * Records a failed or timed out request, which shrinks the limit multiplicatively.
+     */
+    public void onDrop() {
+        synchronized (this) {
+            limit = Math.max(minLimit, limit * DROP_FACTOR);
+        }
+        log.debug("Backend {} failed a request, concurrency limit now {}", name, getLimit());
+    }
+
+    public synchronized int getLimit() {
+        return currentLimit();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void release() {
+        List<Waiter> granted;
+        synchronized (this) {
+            inFlight--;
+            granted = grantWaiters();
+        }
+        signal(granted);
+    }
+
+    private void cancel(Waiter waiter) {
+        Permit orphaned;
+        synchronized (this) {
+            if (waiters.remove(waiter)) {
+                return;
+            }
+            orphaned = waiter.permit;
+        }
+        // Granted while being cancelled: the subscriber never got the permit, so give it back.
+        if (orphaned != null) {
+            orphaned.release();
+        }
+    }
+
+    // Called with the lock held; the sinks are signalled after it is released.
+    private List<Waiter> grantWaiters() {
+        List<Waiter> granted = new ArrayList<>();
+        while (!waiters.isEmpty() && inFlight < currentLimit()) {
+            Waiter waiter = waiters.poll();
+            inFlight++;
+            waiter.permit = new Permit();
+            granted.add(waiter);
+        }
+        return granted;
+    }
+
+    private void signal(List<Waiter> granted) {
+        granted.forEach(waiter -> waiter.sink.success(waiter.permit));
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+}
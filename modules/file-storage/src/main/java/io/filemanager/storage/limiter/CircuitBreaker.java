@@ -0,0 +1,111 @@
+package io.filemanager.storage.limiter;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker.
+ * <p>
+ * After {@code failureThreshold} backend failures in a row the circuit opens and requests are
+ * rejected for {@code openDuration}. After that a single probe request is let through: if it
+ * succeeds the circuit closes, if it fails the circuit opens again.
+ * <p>
+ * Every time the circuit opens or closes it starts a new generation. Outcomes are reported with
+ * the {@link Permit} a request was admitted with, and those of an earlier generation are ignored:
+ * a slow request admitted before the circuit opened can neither close it nor free the probe slot.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier nanoTime) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    public static final class Permit {
+        private final long generation;
+        private final boolean probe;
+
+        private Permit(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+    }
+
+    /**
+     * @return the permit to report the outcome of the request with, or null if it must not be
+     * sent to the backend now
+     */
+    public synchronized Permit tryAcquire() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        return switch (state) {
+            case CLOSED -> new Permit(generation, false);
+            case OPEN -> null;
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield null;
+                }
+                probeInFlight = true;
+                yield new Permit(generation, true);
+            }
+        };
+    }
+
+    public synchronized void onSuccess(Permit permit) {
+        if (permit.generation != generation) {
+            return;
+        }
+        consecutiveFailures = 0;
+        if (permit.probe) {
+            state = State.CLOSED;
+            generation++;
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized void onFailure(Permit permit) {
+        if (permit.generation != generation) {
+            return;
+        }
+        consecutiveFailures++;
+        if (permit.probe || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            generation++;
+            openedAt = nanoTime.getAsLong();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Releases the probe slot of a request that ended without telling anything about the backend
+     * (e.g. cancelled by the client).
+     */
+    public synchronized void onIgnored(Permit permit) {
+        if (permit.probe && permit.generation == generation) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,127 @@
+package io.filemanager.storage.limiter;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.api.exception.StorageException;
+import io.filemanager.storage.api.exception.StorageOverloadedException;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * FileStorage decorator that puts an {@link AdaptiveConcurrencyLimiter} and a
+ * {@link CircuitBreaker} in front of one backend.
+ * <p>
+ * Every download and upload holds a permit while it talks to the backend. The time to first
+ * byte of downloads drives the limit; uploads only count towards it and report failures.
+ * While the circuit is open requests fail immediately with {@link StorageOverloadedException}.
+ */
+public class ConcurrencyLimitedFileStorage implements FileStorage {
+
+    private final FileStorage delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+
+    public ConcurrencyLimitedFileStorage(FileStorage delegate, AdaptiveConcurrencyLimiter limiter, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
+        return guarded(() -> delegate.upload(key, fileContent, contentType).flux(), false).next();
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata) {
+        return guarded(() -> delegate.download(metadata), true);
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        return guarded(() -> delegate.download(metadata, offset), true);
+    }
+
+    @Override
+    public Mono<Void> move(String sourceKey, String targetKey) {
+        return delegate.move(sourceKey, targetKey);
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return delegate.getStorageType();
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    private <T> Flux<T> guarded(Supplier<Flux<T>> request, boolean sampleLatency) {
+        return Flux.defer(() -> {
+            CircuitBreaker.Permit admission = circuitBreaker.tryAcquire();
+            if (admission == null) {
+                return Flux.error(new StorageOverloadedException("Circuit breaker open for " + getStorageType(), null));
+            }
+            // Whether this request told the circuit breaker anything; if not, its probe slot is freed.
+            AtomicBoolean outcomeRecorded = new AtomicBoolean(false);
+
+            return limiter.acquire()
+                    .flatMapMany(permit -> {
+                        long start = System.nanoTime();
+                        AtomicBoolean firstSignal = new AtomicBoolean(true);
+                        return request.get()
+                                .doOnNext(item -> {
+                                    if (firstSignal.compareAndSet(true, false)) {
+                                        outcomeRecorded.set(true);
+                                        circuitBreaker.onSuccess(admission);
+                                        if (sampleLatency) {
+                                            limiter.onSample(Duration.ofNanos(System.nanoTime() - start));
+                                        }
+                                    }
+                                })
+                                .doOnComplete(() -> {
+                                    if (outcomeRecorded.compareAndSet(false, true)) {
+                                        circuitBreaker.onSuccess(admission);
+                                    }
+                                })
+                                .doOnError(error -> {
+                                    if (isBackendFailure(error)) {
+                                        outcomeRecorded.set(true);
+                                        circuitBreaker.onFailure(admission);
+                                        limiter.onDrop();
+                                    }
+                                })
+                                .doFinally(signalType -> permit.release());
+                    })
+                    .doFinally(signalType -> {
+                        if (!outcomeRecorded.get()) {
+                            circuitBreaker.onIgnored(admission);
+                        }
+                    });
+        });
+    }
+
+    private boolean isBackendFailure(Throwable error) {
+        // Missing files and our own rejections say nothing about the health of the backend.
+        return (error instanceof StorageException && !(error instanceof StorageOverloadedException))
+                || error instanceof TimeoutException;
+    }
+}
@@ -0,0 +1,197 @@
+package io.filemanager.storage.local;
+
+import io.filemanager.common.exception.ResourceNotFoundException;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.api.exception.StorageException;
+import io.filemanager.storage.support.FileChannelSupport;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores files on a local or network mounted file system (NVMe, NFS) below a root directory.
+ * Only created when {@code local-storage.root-directory} is configured.
+ */
+@Slf4j
+@Component("localFileStorageAdapter")
+@ConditionalOnProperty(name = "local-storage.root-directory")
+public class LocalFileStorageAdapter implements FileStorage {
+    private static final int MAPPED_CHUNK_SIZE = 1024 * 1024; // 1MB per mapped region
+
+    private final Path rootDirectory;
+    private final boolean zeroCopy;
+    private final int readBufferSize;
+    // Read buffers come from Netty's pool and are returned as soon as their bytes are copied out.
+    private final NettyDataBufferFactory pooledBufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    public LocalFileStorageAdapter(@Value("${local-storage.root-directory}") String rootDirectory,
+                                   @Value("${local-storage.zero-copy:true}") boolean zeroCopy,
+                                   @Value("${local-storage.read-buffer-size:65536}") int readBufferSize) {
+        this.rootDirectory = Path.of(rootDirectory).toAbsolutePath().normalize();
+        this.zeroCopy = zeroCopy;
+        this.readBufferSize = readBufferSize;
+        try {
+            Files.createDirectories(this.rootDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create local storage root " + this.rootDirectory, e);
+        }
+        log.info("Local storage at {} (zero-copy: {})", this.rootDirectory, zeroCopy);
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return StorageType.LOCAL;
+    }
+
+    /**
+     * Writes the stream with positional writes into a temporary file next to the target and
+     * moves it into place once complete, so readers never see a half written file.
+     */
+    @Override
+    public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
+        return Mono.defer(() -> {
+            Path target = resolve(key);
+            Path tempFile = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".part");
+            final AtomicLong totalSize = new AtomicLong(0);
+
+            Flux<DataBuffer> countedContent = fileContent
+                    .doOnNext(dataBuffer -> totalSize.addAndGet(dataBuffer.readableByteCount()));
+
+            return Mono.using(
+                            () -> {
+                                Files.createDirectories(target.getParent());
+                                return AsynchronousFileChannel.open(tempFile,
+                                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                            },
+                            channel -> DataBufferUtils.write(countedContent, channel, 0)
+                                    .map(DataBufferUtils::release)
+                                    // fsync and rename are blocking, so keep them off the event loop.
+                                    .then(Mono.fromCallable(() -> {
+                                        channel.force(false);
+                                        return channel;
+                                    }).subscribeOn(Schedulers.boundedElastic())),
+                            channel -> FileChannelSupport.closeQuietly(channel, tempFile))
+                    .then(Mono.fromCallable(() -> {
+                        Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        return new UploadResult(key, null, totalSize.get());
+                    }).subscribeOn(Schedulers.boundedElastic()))
+                    .doOnSuccess(result -> log.info("Stored {} bytes at {}", result.size(), target))
+                    .doOnError(error -> {
+                        log.error("Upload to local storage failed for key {}: {}", key, error.getMessage());
+                        deleteQuietly(tempFile);
+                    })
+                    .onErrorMap(IOException.class, e -> new StorageException("Could not write local file for key: " + key, e));
+        });
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata) {
+        return download(metadata, 0);
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        return Flux.defer(() -> {
+            Path file = resolve(metadata.fileKey());
+            // Memory mapping is not safe on every file system (e.g. NFS with concurrent truncation),
+            // so it can be switched off in favour of asynchronous reads into pooled buffers.
+            if (zeroCopy) {
+                return FileChannelSupport.readMapped(file, MAPPED_CHUNK_SIZE, offset);
+            }
+            return DataBufferUtils.readAsynchronousFileChannel(
+                            () -> AsynchronousFileChannel.open(file, StandardOpenOption.READ),
+                            offset, pooledBufferFactory, readBufferSize)
+                    .map(this::convertToByteBuffer);
+        }).onErrorMap(throwable -> {
+            if (throwable instanceof NoSuchFileException) {
+                return new ResourceNotFoundException("File not found in local storage with key: " + metadata.fileKey(), throwable);
+            }
+            if (throwable instanceof StorageException) {
+                return throwable;
+            }
+            return new StorageException("Could not read local file for key: " + metadata.fileKey(), throwable);
+        });
+    }
+
+    /**
+     * Renames the file, which is atomic as long as both keys are on the same file system (they
+     * share the root directory). An existing file under the target key is replaced.
+     */
+    @Override
+    public Mono<Void> move(String sourceKey, String targetKey) {
+        return Mono.fromCallable(() -> {
+                    Path source = resolve(sourceKey);
+                    Path target = resolve(targetKey);
+                    Files.createDirectories(target.getParent());
+                    Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    return target;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(target -> log.info("Moved {} to {}", sourceKey, target))
+                .onErrorMap(IOException.class, e -> e instanceof NoSuchFileException
+                        ? new ResourceNotFoundException("File not found in local storage with key: " + sourceKey, e)
+                        : new StorageException("Could not move local file " + sourceKey + " to " + targetKey, e))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(resolve(key)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(IOException.class, e -> new StorageException("Could not delete local file for key: " + key, e))
+                .then();
+    }
+
+    /**
+     * Resolves a storage key below the root directory and rejects keys escaping it.
+     */
+    private Path resolve(String key) {
+        Path path = rootDirectory.resolve(key).normalize();
+        if (!path.startsWith(rootDirectory) || path.equals(rootDirectory)) {
+            throw new StorageException("Invalid key for local storage: " + key, null);
+        }
+        return path;
+    }
+
+    private ByteBuffer convertToByteBuffer(DataBuffer dataBuffer) {
+        try {
+            byte[] bytes = new byte[dataBuffer.readableByteCount()];
+            dataBuffer.read(bytes);
+            return ByteBuffer.wrap(bytes);
+        } finally {
+            // Return the pooled buffer right away
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -7,18 +7,24 @@ import io.filemanager.storage.api.FileStorage;
 import io.filemanager.storage.api.UploadResult;
 import io.filemanager.storage.api.exception.StorageConnectivityException;
 import io.filemanager.storage.api.exception.StorageException;
+import io.filemanager.storage.support.ByteStreams;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.PrematureCloseException;
 
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.springframework.http.HttpStatus.*;
 
@@ -32,54 +38,71 @@ public class RemoteHttpStorageAdapter implements FileStorage {
         this.webClient = webClient;
     }
 
+    /**
+     * Streams the content to the remote file server with a single chunked PUT.
+     * The body is written as it arrives, so the request is paced by the socket (backpressure)
+     * and nothing is buffered beyond the chunks in flight. DataBuffers are released by the encoder.
+     * Over HTTP/2 the same body is sent as DATA frames on one stream of a shared connection,
+     * paced by the stream's flow-control window.
+     */
     @Override
     public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
-        return Mono.error(new RuntimeException("not implemented yet"));
+        String uploadUrl = extractUploadUrl(key);
+        final AtomicLong totalSize = new AtomicLong(0);
+
+        log.info("Starting upload to URL: {}", uploadUrl);
+
+        Flux<DataBuffer> countedContent = fileContent
+                .doOnNext(dataBuffer -> totalSize.addAndGet(dataBuffer.readableByteCount()));
+
+        return webClient.put()
+                .uri(uploadUrl)
+                .contentType(contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM)
+                .body(countedContent, DataBuffer.class)
+                .retrieve()
+                .toBodilessEntity()
+                // The ETag is optional; file servers that don't send one leave it null.
+                .map(response -> new UploadResult(key, response.getHeaders().getETag(), totalSize.get()))
+                .doOnSuccess(result -> log.info("Completed upload for key: {} ({} bytes)", key, result.size()))
+                .doOnError(error -> log.error("Error uploading file {}: {}", key, error.getMessage()))
+                .onErrorMap(throwable -> mapException(throwable, uploadUrl, "uploading to"));
     }
 
     @Override
     public Flux<ByteBuffer> download(FileMetadataDto metadata) {
+        return download(metadata, 0);
+    }
+
+    /**
+     * Requests the file from the offset on with a Range header. A server that doesn't support
+     * ranges answers 200 with the whole file, in which case the leading bytes are skipped here.
+     */
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
         String downloadUrl = extractDownloadUrl(metadata);
 
-        log.info("Starting download from URL: {}", downloadUrl);
+        log.info("Starting download from URL: {} at offset {}", downloadUrl, offset);
 
         return webClient.get()
                 .uri(downloadUrl)
+                .headers(headers -> {
+                    if (offset > 0) {
+                        headers.setRange(List.of(HttpRange.createByteRange(offset)));
+                    }
+                })
                 .retrieve()
-                .bodyToFlux(DataBuffer.class)
-                .map(this::convertToByteBuffer)
+                .toEntityFlux(DataBuffer.class)
+                .flatMapMany(response -> {
+                    Flux<ByteBuffer> body = response.getBody().map(this::convertToByteBuffer);
+                    return offset > 0 && !response.getStatusCode().isSameCodeAs(PARTIAL_CONTENT)
+                            ? ByteStreams.skip(body, offset)
+                            : body;
+                })
                 .doOnSubscribe(subscription -> log.debug("Started streaming file: {}", metadata.fileName()))
                 .doOnNext(buffer -> log.trace("Received chunk of {} bytes", buffer.remaining()))
                 .doOnComplete(() -> log.info("Completed download for file: {}", metadata.fileName()))
                 .doOnError(error -> log.error("Error downloading file {}: {}", metadata.fileName(), error.getMessage()))
-                .onErrorMap(throwable -> {
-                    // Case 1: The server responded with an error status code (4xx/5xx)
-                    if (throwable instanceof WebClientResponseException ex) {
-                        String errorMessage = "Remote server returned error for URL " + downloadUrl + ": " + ex.getStatusCode();
-
-                        // Map specific HTTP status codes to our custom exceptions
-                        return switch (ex.getStatusCode()) {
-                            // 404 Not Found is a clear case for our generic not found exception.
-                            case NOT_FOUND -> new ResourceNotFoundException(errorMessage, ex);
-
-                            // Server availability issues map well to connectivity problems.
-                            case SERVICE_UNAVAILABLE, BAD_GATEWAY, GATEWAY_TIMEOUT ->
-                                    new StorageConnectivityException(errorMessage, ex);
-
-                            // Any other server error is a general StorageException.
-                            default -> new StorageException(errorMessage, ex);
-                        };
-                    }
-
-                    // Case 2: A network error occurred before getting a response (e.g., timeout, DNS)
-                    if (throwable instanceof WebClientRequestException ex) {
-                        String errorMessage = "Network error while trying to reach remote file at " + downloadUrl;
-                        return new StorageConnectivityException(errorMessage, ex);
-                    }
-
-                    // Case 3: A fallback for any other unexpected exception
-                    return new StorageException("An unexpected error occurred while downloading from " + downloadUrl, throwable);
-                });
+                .onErrorMap(throwable -> mapException(throwable, downloadUrl, "downloading from"));
     }
 
     @Override
@@ -91,6 +114,57 @@ public class RemoteHttpStorageAdapter implements FileStorage {
         return "/download/" + metadata.fileKey();
     }
 
+    private String extractUploadUrl(String key) {
+        return "/upload/" + key;
+    }
+
+    private Throwable mapException(Throwable throwable, String url, String action) {
+        // Case 1: The connection was closed (HTTP/1.1) or the stream reset (HTTP/2) mid-response.
+        // WebClient reports a body that breaks off as a response exception carrying the status
+        // line it already received, so look for the cause before looking at the status.
+        PrematureCloseException prematureClose = findCause(throwable, PrematureCloseException.class);
+        if (prematureClose != null) {
+            String errorMessage = "Connection closed prematurely while " + action + " " + url;
+            return new StorageConnectivityException(errorMessage, prematureClose);
+        }
+
+        // Case 2: The server responded with an error status code (4xx/5xx)
+        if (throwable instanceof WebClientResponseException ex) {
+            String errorMessage = "Remote server returned error for URL " + url + ": " + ex.getStatusCode();
+
+            // Map specific HTTP status codes to our custom exceptions
+            return switch (ex.getStatusCode()) {
+                // 404 Not Found is a clear case for our generic not found exception.
+                case NOT_FOUND -> new ResourceNotFoundException(errorMessage, ex);
+
+                // Server availability issues map well to connectivity problems.
+                case SERVICE_UNAVAILABLE, BAD_GATEWAY, GATEWAY_TIMEOUT ->
+                        new StorageConnectivityException(errorMessage, ex);
+
+                // Any other server error is a general StorageException.
+                default -> new StorageException(errorMessage, ex);
+            };
+        }
+
+        // Case 3: A network error occurred before getting a response (e.g., timeout, DNS)
+        if (throwable instanceof WebClientRequestException ex) {
+            String errorMessage = "Network error while trying to reach remote file at " + url;
+            return new StorageConnectivityException(errorMessage, ex);
+        }
+
+        // Case 4: A fallback for any other unexpected exception
+        return new StorageException("An unexpected error occurred while " + action + " " + url, throwable);
+    }
+
+    private static <T extends Throwable> T findCause(Throwable throwable, Class<T> type) {
+        for (Throwable current = throwable; current != null; current = current.getCause()) {
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+        }
+        return null;
+    }
+
     private ByteBuffer convertToByteBuffer(DataBuffer dataBuffer) {
         try {
             // Get all available bytes from the DataBuffer
@@ -0,0 +1,121 @@
+package io.filemanager.storage.resume;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.api.exception.StorageConnectivityException;
+import io.filemanager.storage.api.exception.StorageOverloadedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FileStorage decorator that resumes interrupted downloads.
+ * <p>
+ * The number of bytes handed downstream is tracked. When the backend stream fails with a
+ * retryable error, the rest of the object is requested again from that offset with
+ * {@link FileStorage#download(FileMetadataDto, long)}, after an exponential backoff. The
+ * consumer sees one continuous stream. Retries are counted per outage: once bytes flow again
+ * the budget of {@code maxRetries} is restored, so a long download can survive several resets.
+ */
+@Slf4j
+public class ResumingFileStorage implements FileStorage {
+
+    private final FileStorage delegate;
+    private final int maxRetries;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+
+    private final AtomicLong resumes = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public ResumingFileStorage(FileStorage delegate, int maxRetries, Duration minBackoff, Duration maxBackoff) {
+        this.delegate = delegate;
+        this.maxRetries = maxRetries;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    @Override
+    public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
+        return delegate.upload(key, fileContent, contentType);
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata) {
+        return download(metadata, 0);
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        return Flux.defer(() -> {
+            AtomicLong position = new AtomicLong(offset);
+            AtomicLong attemptStart = new AtomicLong(offset);
+            return Flux.defer(() -> {
+                        attemptStart.set(position.get());
+                        return fetchFrom(metadata, position.get());
+                    })
+                    // Counted before the buffer goes downstream, where its position may be consumed.
+                    .doOnNext(buffer -> position.addAndGet(buffer.remaining()))
+                    .retryWhen(Retry.backoff(maxRetries, minBackoff)
+                            .maxBackoff(maxBackoff)
+                            .transientErrors(true)
+                            .filter(this::isRetryable)
+                            .doBeforeRetry(signal -> {
+                                resumes.incrementAndGet();
+                                bytesSaved.addAndGet(position.get() - attemptStart.get());
+                                log.warn("Download of key {} interrupted at byte {} ({}), resuming",
+                                        metadata.fileKey(), position.get(), signal.failure().getMessage());
+                            })
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        });
+    }
+
+    @Override
+    public Mono<Void> move(String sourceKey, String targetKey) {
+        return delegate.move(sourceKey, targetKey);
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return delegate.getStorageType();
+    }
+
+    public long getResumeCount() {
+        return resumes.get();
+    }
+
+    /**
+     * Bytes that did not have to be downloaded again thanks to resuming.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    private Flux<ByteBuffer> fetchFrom(FileMetadataDto metadata, long position) {
+        // The stream broke after the last byte; asking for an empty range would be rejected.
+        if (position > 0 && metadata.size() > 0 && position >= metadata.size()) {
+            return Flux.empty();
+        }
+        return delegate.download(metadata, position);
+    }
+
+    private boolean isRetryable(Throwable error) {
+        // A saturated backend must not be hit again right away.
+        return (error instanceof StorageConnectivityException && !(error instanceof StorageOverloadedException))
+                || error instanceof TimeoutException;
+    }
+}
@@ -4,7 +4,9 @@ import io.filemanager.common.exception.ResourceNotFoundException;
 import io.filemanager.metadata.domain.StorageType;
 import io.filemanager.metadata.dto.FileMetadataDto;
 import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.MultipartUploadStorage;
 import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.api.UploadedPart;
 import io.filemanager.storage.api.exception.StorageConnectivityException;
 import io.filemanager.storage.api.exception.StorageException;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +22,7 @@ import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -28,11 +31,15 @@ import java.util.List;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component("s3FileStorageAdapter")
-public class S3FileStorageAdapter implements FileStorage {
+public class S3FileStorageAdapter implements FileStorage, MultipartUploadStorage {
     private static final int MIN_PART_SIZE_BYTES = 5 * 1024 * 1024; // 5MB
+    private static final long MAX_COPY_OBJECT_BYTES = 5L * 1024 * 1024 * 1024; // 5GB, the CopyObject limit
+    private static final long COPY_PART_SIZE_BYTES = 512L * 1024 * 1024; // 512MB
+    private static final int COPY_PART_CONCURRENCY = 4;
 
     private final S3AsyncClient s3AsyncClient;
     private final String bucketName;
@@ -49,36 +56,192 @@ public class S3FileStorageAdapter implements FileStorage {
 
     @Override
     public Flux<ByteBuffer> download(FileMetadataDto metadata) {
-        GetObjectRequest request = GetObjectRequest.builder()
+        return download(metadata, 0);
+    }
+
+    @Override
+    public Flux<ByteBuffer> download(FileMetadataDto metadata, long offset) {
+        GetObjectRequest.Builder requestBuilder = GetObjectRequest.builder()
                 .bucket(bucketName)
-                .key(metadata.fileKey())
-                .build();
+                .key(metadata.fileKey());
+        if (offset > 0) {
+            requestBuilder.range("bytes=" + offset + "-");
+        }
+        GetObjectRequest request = requestBuilder.build();
 
         // This is the correct, idiomatic way to get a reactive stream from the S3 Async Client.
         return Mono.fromFuture(s3AsyncClient.getObject(request, AsyncResponseTransformer.toPublisher()))
                 .flatMapMany(Flux::from)
                 // The error mapping is applied to the final Flux.
-                .onErrorMap(throwable -> {
-                    // Because we use Mono.fromFuture, we must check for CompletionException.
-                    Throwable cause = (throwable instanceof CompletionException) ? throwable.getCause() : throwable;
-
-                    if (cause instanceof NoSuchKeyException) {
-                        return new ResourceNotFoundException(
-                                "File not found in S3 with key: " + metadata.fileKey(), cause
-                        );
-                    }
-                    if (cause instanceof SdkClientException) {
-                        return new StorageConnectivityException(
-                                "Could not connect to S3 to download key: " + metadata.fileKey(), cause
-                        );
-                    }
-                    // Fallback for other errors.
-                    return new StorageException(
-                            "An unexpected S3 error occurred for key: " + metadata.fileKey(), throwable
-                    );
+                .onErrorMap(throwable -> mapException(throwable, metadata.fileKey(), "download"));
+    }
+
+    /**
+     * Copies the object server-side and deletes the source, so no content passes through the
+     * application. Objects above the 5GB limit of CopyObject are copied part by part.
+     */
+    @Override
+    public Mono<Void> move(String sourceKey, String targetKey) {
+        HeadObjectRequest headRequest = HeadObjectRequest.builder().bucket(bucketName).key(sourceKey).build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.headObject(headRequest))
+                .flatMap(head -> head.contentLength() <= MAX_COPY_OBJECT_BYTES
+                        ? copyObject(sourceKey, targetKey)
+                        : multipartCopy(sourceKey, targetKey, head))
+                .then(Mono.defer(() -> delete(sourceKey)))
+                .doOnSuccess(ignored -> log.info("Moved {} to {}", sourceKey, targetKey))
+                .onErrorMap(throwable -> throwable instanceof StorageException || throwable instanceof ResourceNotFoundException
+                        ? throwable
+                        : mapException(throwable, sourceKey, "move"));
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        DeleteObjectRequest request = DeleteObjectRequest.builder().bucket(bucketName).key(key).build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.deleteObject(request))
+                .then()
+                .onErrorMap(throwable -> mapException(throwable, key, "delete"));
+    }
+
+    @Override
+    public Mono<String> initiateMultipartUpload(String key, String contentType) {
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucketName).key(key).contentType(contentType).build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(createRequest))
+                .map(CreateMultipartUploadResponse::uploadId)
+                .onErrorMap(throwable -> mapException(throwable, key, "start upload of"));
+    }
+
+    /**
+     * Streams the part to S3 without collecting it in memory first. Each buffer is copied once,
+     * since the SDK may still hold on to it after the DataBuffer would be released.
+     */
+    @Override
+    public Mono<UploadedPart> uploadPart(String key, String uploadId, int partNumber, Flux<DataBuffer> content, long size) {
+        UploadPartRequest partRequest = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(size)
+                .build();
+
+        Flux<ByteBuffer> body = content.map(dataBuffer -> {
+            ByteBuffer copy = ByteBuffer.allocate(dataBuffer.readableByteCount());
+            dataBuffer.toByteBuffer(dataBuffer.readPosition(), copy, 0, copy.capacity());
+            DataBufferUtils.release(dataBuffer);
+            return copy;
+        });
+
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPart(partRequest, AsyncRequestBody.fromPublisher(body)))
+                .map(response -> new UploadedPart(partNumber, response.eTag(), size))
+                .onErrorMap(throwable -> mapException(throwable, key, "upload part " + partNumber + " of"));
+    }
+
+    @Override
+    public Mono<UploadResult> completeMultipartUpload(String key, String uploadId, List<UploadedPart> parts) {
+        List<CompletedPart> completedParts = parts.stream()
+                .map(part -> CompletedPart.builder().partNumber(part.partNumber()).eTag(part.eTag()).build())
+                .collect(Collectors.toCollection(ArrayList::new));
+        long size = parts.stream().mapToLong(UploadedPart::size).sum();
+
+        return completeUpload(uploadId, key, completedParts)
+                .map(response -> new UploadResult(key, response.eTag(), size))
+                .onErrorMap(throwable -> throwable instanceof IllegalStateException
+                        ? throwable
+                        : mapException(throwable, key, "complete upload of"));
+    }
+
+    @Override
+    public Mono<Void> abortMultipartUpload(String key, String uploadId) {
+        AbortMultipartUploadRequest abortRequest = AbortMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.abortMultipartUpload(abortRequest))
+                .then()
+                .onErrorMap(throwable -> mapException(throwable, key, "abort upload of"));
+    }
+
+    private Mono<Void> copyObject(String sourceKey, String targetKey) {
+        CopyObjectRequest request = CopyObjectRequest.builder()
+                .sourceBucket(bucketName)
+                .sourceKey(sourceKey)
+                .destinationBucket(bucketName)
+                .destinationKey(targetKey)
+                .build();
+        return Mono.fromFuture(() -> s3AsyncClient.copyObject(request)).then();
+    }
+
+    private Mono<Void> multipartCopy(String sourceKey, String targetKey, HeadObjectResponse head) {
+        long size = head.contentLength();
+        // Unlike CopyObject, a multipart upload doesn't take over anything from the source object,
+        // so the content type and user metadata have to be passed on explicitly.
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucketName).key(targetKey)
+                .contentType(head.contentType())
+                .metadata(head.metadata())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(createRequest))
+                .flatMap(createResponse -> {
+                    String uploadId = createResponse.uploadId();
+                    int partCount = (int) ((size + COPY_PART_SIZE_BYTES - 1) / COPY_PART_SIZE_BYTES);
+
+                    return Flux.range(1, partCount)
+                            .flatMap(partNumber -> {
+                                long start = (partNumber - 1) * COPY_PART_SIZE_BYTES;
+                                long end = Math.min(start + COPY_PART_SIZE_BYTES, size) - 1;
+                                UploadPartCopyRequest partRequest = UploadPartCopyRequest.builder()
+                                        .sourceBucket(bucketName)
+                                        .sourceKey(sourceKey)
+                                        .destinationBucket(bucketName)
+                                        .destinationKey(targetKey)
+                                        .uploadId(uploadId)
+                                        .partNumber(partNumber)
+                                        .copySourceRange("bytes=" + start + "-" + end)
+                                        .build();
+                                return Mono.fromFuture(() -> s3AsyncClient.uploadPartCopy(partRequest))
+                                        .map(response -> CompletedPart.builder()
+                                                .partNumber(partNumber)
+                                                .eTag(response.copyPartResult().eTag())
+                                                .build());
+                            }, COPY_PART_CONCURRENCY)
+                            .collectList()
+                            .flatMap(parts -> completeUpload(uploadId, targetKey, parts))
+                            .doOnError(ex -> {
+                                log.error("Multipart copy of {} failed: {}", sourceKey, ex.getMessage());
+                                abortUpload(uploadId, targetKey);
+                            })
+                            .then();
                 });
     }
 
+    private Throwable mapException(Throwable throwable, String key, String action) {
+        // Because we use Mono.fromFuture, we must check for CompletionException.
+        Throwable cause = (throwable instanceof CompletionException) ? throwable.getCause() : throwable;
+
+        if (cause instanceof NoSuchKeyException) {
+            return new ResourceNotFoundException(
+                    "File not found in S3 with key: " + key, cause
+            );
+        }
+        // A connection reset while streaming the body surfaces as a plain IOException.
+        if (cause instanceof SdkClientException || cause instanceof IOException) {
+            return new StorageConnectivityException(
+                    "Could not connect to S3 to " + action + " key: " + key, cause
+            );
+        }
+        // Fallback for other errors.
+        return new StorageException(
+                "An unexpected S3 error occurred for key: " + key, throwable
+        );
+    }
+
 
     @Override
     public Mono<UploadResult> upload(String key, Flux<DataBuffer> fileContent, String contentType) {
@@ -105,7 +268,9 @@ public class S3FileStorageAdapter implements FileStorage {
                             .doOnError(ex -> {
                                 log.error("Upload failed: {}", ex.getMessage());
                                 abortUpload(uploadId, key);
-                            });
+                            })
+                            // e.g. the scanner rejected the file while it was still being stored
+                            .doOnCancel(() -> abortUpload(uploadId, key));
                 });
     }
 
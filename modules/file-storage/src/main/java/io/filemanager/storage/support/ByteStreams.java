@@ -0,0 +1,38 @@
+package io.filemanager.storage.support;
+
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for streams of ByteBuffers.
+ */
+public final class ByteStreams {
+
+    private ByteStreams() {
+    }
+
+    /**
+     * Leaves out the first {@code bytes} bytes of the stream. Buffers that fall entirely inside
+     * the skipped part are dropped, the one straddling the boundary is advanced in place.
+     */
+    public static Flux<ByteBuffer> skip(Flux<ByteBuffer> source, long bytes) {
+        if (bytes <= 0) {
+            return source;
+        }
+        return Flux.defer(() -> {
+            long[] remaining = {bytes};
+            return source.handle((buffer, sink) -> {
+                if (remaining[0] == 0) {
+                    sink.next(buffer);
+                } else if (remaining[0] >= buffer.remaining()) {
+                    remaining[0] -= buffer.remaining();
+                } else {
+                    buffer.position(buffer.position() + (int) remaining[0]);
+                    remaining[0] = 0;
+                    sink.next(buffer);
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package io.filemanager.storage.support;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reactive helpers around NIO file channels shared by the file based storage components.
+ */
+@Slf4j
+public final class FileChannelSupport {
+
+    private FileChannelSupport() {
+    }
+
+    /**
+     * Streams a file as read-only memory-mapped regions of at most {@code chunkSize} bytes.
+     * Netty wraps the mapped buffers instead of copying them, so the bytes go from the page cache
+     * to the socket without passing through the heap.
+     */
+    public static Flux<ByteBuffer> readMapped(Path file, int chunkSize) {
+        return readMapped(file, chunkSize, 0);
+    }
+
+    /**
+     * Like {@link #readMapped(Path, int)}, starting at {@code startOffset} bytes into the file.
+     */
+    public static Flux<ByteBuffer> readMapped(Path file, int chunkSize, long startOffset) {
+        return Flux.using(
+                () -> FileChannel.open(file, StandardOpenOption.READ),
+                channel -> Flux.<ByteBuffer, Long>generate(() -> startOffset, (offset, sink) -> {
+                    try {
+                        long size = channel.size();
+                        if (offset >= size) {
+                            sink.complete();
+                            return offset;
+                        }
+                        long length = Math.min(chunkSize, size - offset);
+                        // The mapping stays valid after the channel is closed.
+                        sink.next(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+                        return offset + length;
+                    } catch (IOException e) {
+                        sink.error(e);
+                        return offset;
+                    }
+                }),
+                channel -> closeQuietly(channel, file));
+    }
+
+    /**
+     * Writes the whole buffer at the given position, continuing after partial writes.
+     */
+    public static Mono<Void> writeFully(AsynchronousFileChannel channel, ByteBuffer buffer, long position) {
+        if (!buffer.hasRemaining()) {
+            return Mono.empty();
+        }
+        return Mono.<Integer>create(sink -> channel.write(buffer, position, null, new CompletionHandler<Integer, Void>() {
+                    @Override
+                    public void completed(Integer result, Void attachment) {
+                        sink.success(result);
+                    }
+
+                    @Override
+                    public void failed(Throwable exc, Void attachment) {
+                        sink.error(exc);
+                    }
+                }))
+                .flatMap(bytesWritten -> writeFully(channel, buffer, position + bytesWritten));
+    }
+
+    public static void closeQuietly(Channel channel, Path file) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close channel for {}: {}", file, e.getMessage());
+        }
+    }
+}
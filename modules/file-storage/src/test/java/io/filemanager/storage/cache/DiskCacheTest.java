@@ -0,0 +1,32 @@
+package io.filemanager.storage.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskCacheTest {
+
+    @TempDir
+    private Path cacheDir;
+
+    @Test
+    void newDiskCache_shouldOnlyDeleteFilesThatLookLikeEntries() throws Exception {
+        // Arrange: a leftover entry, a leftover partial fill and an unrelated file
+        String entry = "a".repeat(64);
+        Files.writeString(cacheDir.resolve(entry), "old");
+        Files.writeString(cacheDir.resolve(entry + ".part"), "old");
+        Files.writeString(cacheDir.resolve("notes.txt"), "keep me");
+
+        // Act
+        new DiskCache(cacheDir, 1024, 1024);
+
+        // Assert
+        assertThat(cacheDir.resolve(entry)).doesNotExist();
+        assertThat(cacheDir.resolve(entry + ".part")).doesNotExist();
+        assertThat(cacheDir.resolve("notes.txt")).hasContent("keep me");
+    }
+}
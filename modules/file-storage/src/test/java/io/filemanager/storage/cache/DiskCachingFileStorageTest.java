@@ -0,0 +1,138 @@
+package io.filemanager.storage.cache;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.UploadResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DiskCachingFileStorageTest {
+
+    @Mock
+    private FileStorage backend;
+
+    @TempDir
+    private Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        when(backend.getStorageType()).thenReturn(StorageType.S3);
+    }
+
+    private FileMetadataDto metadata(String key) {
+        return new FileMetadataDto(1L, key, "text/plain", key, StorageType.S3, 0, null, null);
+    }
+
+    private Flux<ByteBuffer> content(String... parts) {
+        return Flux.fromArray(parts).map(part -> ByteBuffer.wrap(part.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String asString(Flux<ByteBuffer> flux) {
+        return flux.map(buffer -> StandardCharsets.UTF_8.decode(buffer).toString())
+                .reduce("", String::concat)
+                .block();
+    }
+
+    @Test
+    void download_secondRequestShouldBeServedFromDisk() {
+        // Arrange
+        DiskCachingFileStorage storage = new DiskCachingFileStorage(backend, new DiskCache(cacheDir, 1024, 1024));
+        when(backend.download(any())).thenReturn(content("Hello ", "cached ", "world"));
+
+        // Act
+        String first = asString(storage.download(metadata("a.txt")));
+        String second = asString(storage.download(metadata("a.txt")));
+
+        // Assert
+        assertThat(first).isEqualTo("Hello cached world");
+        assertThat(second).isEqualTo("Hello cached world");
+        verify(backend, times(1)).download(any());
+        assertThat(storage.getHitCount()).isEqualTo(1);
+        assertThat(storage.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void download_whenBackendFailsMidStream_shouldNotPublishPartialEntry() {
+        // Arrange
+        DiskCache diskCache = new DiskCache(cacheDir, 1024, 1024);
+        DiskCachingFileStorage storage = new DiskCachingFileStorage(backend, diskCache);
+        when(backend.download(any()))
+                .thenReturn(content("partial").concatWith(Flux.error(new IllegalStateException("connection reset"))))
+                .thenReturn(content("complete"));
+
+        // Act & Assert
+        StepVerifier.create(storage.download(metadata("b.txt")))
+                .expectNextCount(1)
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        assertThat(diskCache.getCurrentSizeBytes()).isZero();
+        assertThat(asString(storage.download(metadata("b.txt")))).isEqualTo("complete");
+        verify(backend, times(2)).download(any());
+    }
+
+    @Test
+    void download_whenCapIsExceeded_shouldEvictLeastRecentlyUsedEntry() {
+        // Arrange: room for two 10-byte entries only
+        DiskCache diskCache = new DiskCache(cacheDir, 20, 20);
+        DiskCachingFileStorage storage = new DiskCachingFileStorage(backend, diskCache);
+        when(backend.download(any())).thenAnswer(invocation -> content("0123456789"));
+
+        // Act
+        asString(storage.download(metadata("first")));
+        asString(storage.download(metadata("second")));
+        asString(storage.download(metadata("first"))); // hit, makes "second" the eldest
+        asString(storage.download(metadata("third"))); // evicts "second"
+
+        // Assert
+        assertThat(diskCache.getCurrentSizeBytes()).isEqualTo(20);
+        assertThat(diskCache.lookup(diskCache.entryName("S3", "first"))).isPresent();
+        assertThat(diskCache.lookup(diskCache.entryName("S3", "second"))).isEmpty();
+        assertThat(diskCache.lookup(diskCache.entryName("S3", "third"))).isPresent();
+    }
+
+    @Test
+    void download_whenKeyIsOverwrittenWhileFilling_shouldNotPublishOldContent() {
+        // Arrange: the first download is still running when the key is overwritten
+        DiskCache diskCache = new DiskCache(cacheDir, 1024, 1024);
+        DiskCachingFileStorage storage = new DiskCachingFileStorage(backend, diskCache);
+        Sinks.Many<ByteBuffer> oldContent = Sinks.many().unicast().onBackpressureBuffer();
+        when(backend.download(any()))
+                .thenReturn(oldContent.asFlux())
+                .thenReturn(content("new"));
+        when(backend.upload(eq("c.txt"), any(), any())).thenReturn(Mono.just(new UploadResult("c.txt", "etag", 3)));
+
+        // Act
+        StepVerifier.create(storage.download(metadata("c.txt")).map(buffer -> StandardCharsets.UTF_8.decode(buffer).toString()))
+                .then(() -> oldContent.tryEmitNext(ByteBuffer.wrap("old".getBytes(StandardCharsets.UTF_8))))
+                .expectNext("old")
+                .then(() -> storage.upload("c.txt", Flux.empty(), "text/plain").block())
+                .then(oldContent::tryEmitComplete)
+                .verifyComplete();
+
+        // Assert: the stale fill was dropped, so the next download goes to the backend
+        assertThat(diskCache.getCurrentSizeBytes()).isZero();
+        assertThat(asString(storage.download(metadata("c.txt")))).isEqualTo("new");
+    }
+}
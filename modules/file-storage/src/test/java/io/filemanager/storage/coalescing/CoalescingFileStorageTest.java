@@ -0,0 +1,110 @@
+package io.filemanager.storage.coalescing;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingFileStorageTest {
+
+    @Mock
+    private FileStorage backend;
+
+    private final FileMetadataDto metadata =
+            new FileMetadataDto(1L, "file.txt", "text/plain", "key-1", StorageType.S3, 0, null, null);
+
+    private ByteBuffer chunk(String data) {
+        return ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String asString(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    @Test
+    void download_concurrentReadersShouldShareOneBackendStream() {
+        // Arrange: a backend stream we control chunk by chunk
+        Sinks.Many<ByteBuffer> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        when(backend.download(any())).thenReturn(upstream.asFlux());
+        CoalescingFileStorage storage = new CoalescingFileStorage(backend, 16);
+
+        // Act & Assert
+        StepVerifier first = StepVerifier.create(storage.download(metadata).map(this::asString))
+                .expectNext("a", "b", "c")
+                .expectComplete()
+                .verifyLater();
+
+        upstream.tryEmitNext(chunk("a"));
+
+        // The second reader joins after the first chunk and still receives the whole object.
+        StepVerifier second = StepVerifier.create(storage.download(metadata).map(this::asString))
+                .expectNext("a", "b", "c")
+                .expectComplete()
+                .verifyLater();
+
+        upstream.tryEmitNext(chunk("b"));
+        upstream.tryEmitNext(chunk("c"));
+        upstream.tryEmitComplete();
+
+        first.verify();
+        second.verify();
+        assertThat(storage.getBackendStreamCount()).isEqualTo(1);
+        assertThat(storage.getCoalescedRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void download_lateJoinerBeyondReplayBufferShouldFetchOnItsOwn() {
+        // Arrange: a replay buffer of a single chunk
+        Sinks.Many<ByteBuffer> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        when(backend.download(any()))
+                .thenReturn(upstream.asFlux())
+                .thenReturn(Flux.just(chunk("a"), chunk("b"), chunk("c")));
+        CoalescingFileStorage storage = new CoalescingFileStorage(backend, 1);
+
+        StepVerifier first = StepVerifier.create(storage.download(metadata).map(this::asString))
+                .expectNext("a", "b", "c")
+                .expectComplete()
+                .verifyLater();
+
+        upstream.tryEmitNext(chunk("a"));
+        upstream.tryEmitNext(chunk("b"));
+
+        // Act & Assert: "a" has left the buffer, so the late reader must not start at "b"
+        StepVerifier.create(storage.download(metadata).map(this::asString))
+                .expectNext("a", "b", "c")
+                .verifyComplete();
+
+        upstream.tryEmitNext(chunk("c"));
+        upstream.tryEmitComplete();
+
+        first.verify();
+        assertThat(storage.getBackendStreamCount()).isEqualTo(2);
+        assertThat(storage.getLateJoinerFallbackCount()).isEqualTo(1);
+    }
+
+    @Test
+    void download_afterFlightCompletes_shouldStartANewBackendStream() {
+        when(backend.download(any())).thenAnswer(invocation -> Flux.just(chunk("x")));
+        CoalescingFileStorage storage = new CoalescingFileStorage(backend, 16);
+
+        StepVerifier.create(storage.download(metadata)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(storage.download(metadata)).expectNextCount(1).verifyComplete();
+
+        assertThat(storage.getBackendStreamCount()).isEqualTo(2);
+        assertThat(storage.getCoalescedRequestCount()).isZero();
+    }
+}
@@ -0,0 +1,156 @@
+package io.filemanager.storage.hedging;
+
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HedgingFileStorageTest {
+
+    private static final Duration MIN_DELAY = Duration.ofMillis(50);
+
+    @Mock
+    private FileStorage backend;
+
+    private final FileMetadataDto metadata =
+            new FileMetadataDto(1L, "file.txt", "text/plain", "key-1", StorageType.S3, 0, null, null);
+
+    private Flux<ByteBuffer> content(String data) {
+        return Flux.just(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String asString(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private LatencyTracker warmTracker() {
+        LatencyTracker tracker = new LatencyTracker(10, 5);
+        for (int i = 0; i < 5; i++) {
+            tracker.record(Duration.ofMillis(1));
+        }
+        return tracker;
+    }
+
+    @Test
+    void download_withoutEnoughSamples_shouldNotHedge() {
+        when(backend.download(any())).thenReturn(content("data"));
+        HedgingFileStorage storage = new HedgingFileStorage(backend, new LatencyTracker(10, 5), 0.95, 1.0, MIN_DELAY);
+
+        StepVerifier.create(storage.download(metadata).map(this::asString))
+                .expectNext("data")
+                .verifyComplete();
+
+        verify(backend, times(1)).download(any());
+        assertThat(storage.getHedgeCount()).isZero();
+    }
+
+    @Test
+    void download_whenPrimaryIsSlow_shouldUseHedgeAndCancelPrimary() {
+        // Arrange: the primary never sends a byte, the hedge answers right away
+        AtomicBoolean primaryCancelled = new AtomicBoolean(false);
+        when(backend.download(any()))
+                .thenReturn(Flux.<ByteBuffer>never().doOnCancel(() -> primaryCancelled.set(true)))
+                .thenReturn(content("hedged"));
+        HedgingFileStorage storage = new HedgingFileStorage(backend, warmTracker(), 0.95, 1.0, MIN_DELAY);
+
+        // Act & Assert
+        StepVerifier.withVirtualTime(() -> storage.download(metadata).map(this::asString))
+                .expectSubscription()
+                .expectNoEvent(MIN_DELAY.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("hedged")
+                .verifyComplete();
+
+        verify(backend, times(2)).download(any());
+        assertThat(primaryCancelled).isTrue();
+        assertThat(storage.getHedgeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void download_whenPrimaryLosesToHedge_shouldRecordItsWaitAsLatency() {
+        // Arrange: real time, since the latency is measured with the system clock
+        LatencyTracker tracker = mock(LatencyTracker.class);
+        when(tracker.percentile(0.95)).thenReturn(Optional.of(MIN_DELAY));
+        when(backend.download(any()))
+                .thenReturn(Flux.never())
+                .thenReturn(content("hedged"));
+        HedgingFileStorage storage = new HedgingFileStorage(backend, tracker, 0.95, 1.0, MIN_DELAY);
+
+        // Act
+        StepVerifier.create(storage.download(metadata).map(this::asString))
+                .expectNext("hedged")
+                .verifyComplete();
+
+        // Assert: the hedge's first byte and, as a lower bound, the cancelled primary's wait
+        ArgumentCaptor<Duration> latencies = ArgumentCaptor.forClass(Duration.class);
+        verify(tracker, times(2)).record(latencies.capture());
+        assertThat(latencies.getAllValues())
+                .anySatisfy(latency -> assertThat(latency).isGreaterThanOrEqualTo(MIN_DELAY));
+    }
+
+    @Test
+    void download_whenBudgetIsExhausted_shouldWaitForPrimary() {
+        // Arrange: a ratio of 0.5 only earns a hedge every second download
+        when(backend.download(any())).thenReturn(content("slow").delaySubscription(Duration.ofSeconds(1)));
+        HedgingFileStorage storage = new HedgingFileStorage(backend, warmTracker(), 0.95, 0.5, MIN_DELAY);
+
+        // Act & Assert
+        StepVerifier.withVirtualTime(() -> storage.download(metadata).map(this::asString))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("slow")
+                .verifyComplete();
+
+        verify(backend, times(1)).download(any());
+        assertThat(storage.getHedgeCount()).isZero();
+        assertThat(storage.getHedgeDeniedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void download_whenHedgeFailsImmediately_shouldKeepWaitingForPrimary() {
+        when(backend.download(any()))
+                .thenReturn(content("primary").delaySubscription(Duration.ofSeconds(1)))
+                .thenReturn(Flux.error(new IllegalStateException("throttled")));
+        HedgingFileStorage storage = new HedgingFileStorage(backend, warmTracker(), 0.95, 1.0, MIN_DELAY);
+
+        StepVerifier.withVirtualTime(() -> storage.download(metadata).map(this::asString))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("primary")
+                .verifyComplete();
+
+        assertThat(storage.getHedgeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void latencyTracker_shouldReportPercentileOfRecentSamples() {
+        LatencyTracker tracker = new LatencyTracker(100, 10);
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(Duration.ofMillis(i));
+        }
+
+        assertThat(tracker.percentile(0.5)).contains(Duration.ofMillis(50));
+        assertThat(tracker.percentile(0.95)).contains(Duration.ofMillis(95));
+        assertThat(new LatencyTracker(100, 10).percentile(0.95)).isEmpty();
+    }
+}
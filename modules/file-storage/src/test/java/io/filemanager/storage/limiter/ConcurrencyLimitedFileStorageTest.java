@@ -0,0 +1,217 @@
+package io.filemanager.storage.limiter;
+
+import io.filemanager.common.exception.ResourceNotFoundException;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.exception.StorageConnectivityException;
+import io.filemanager.storage.api.exception.StorageOverloadedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitedFileStorageTest {
+
+    @Mock
+    private FileStorage backend;
+
+    private final FileMetadataDto metadata =
+            new FileMetadataDto(1L, "file.txt", "text/plain", "key-1", StorageType.S3, 0, null, null);
+
+    private Flux<ByteBuffer> content() {
+        return Flux.just(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void download_overTheLimit_shouldWaitForAPermit() {
+        // Arrange: a limit of one, the first download is held open
+        Sinks.Many<ByteBuffer> first = Sinks.many().unicast().onBackpressureBuffer();
+        when(backend.download(any())).thenReturn(first.asFlux()).thenReturn(content());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("S3", 1, 1, 1, 10, Duration.ofSeconds(5));
+        ConcurrencyLimitedFileStorage storage =
+                new ConcurrencyLimitedFileStorage(backend, limiter, new CircuitBreaker(5, Duration.ofSeconds(10)));
+
+        StepVerifier firstDownload = StepVerifier.create(storage.download(metadata))
+                .expectNextCount(1)
+                .expectComplete()
+                .verifyLater();
+
+        // Act: the second download queues behind the first
+        StepVerifier secondDownload = StepVerifier.create(storage.download(metadata))
+                .expectNextCount(1)
+                .expectComplete()
+                .verifyLater();
+        assertThat(limiter.getQueued()).isEqualTo(1);
+        verify(backend, times(1)).download(any());
+
+        first.tryEmitNext(ByteBuffer.allocate(1));
+        first.tryEmitComplete();
+
+        // Assert
+        firstDownload.verify();
+        secondDownload.verify();
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.getQueued()).isZero();
+    }
+
+    @Test
+    void download_whenQueueIsFull_shouldFailFast() {
+        when(backend.download(any())).thenReturn(Flux.never());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("S3", 1, 1, 1, 0, Duration.ofSeconds(5));
+        ConcurrencyLimitedFileStorage storage =
+                new ConcurrencyLimitedFileStorage(backend, limiter, new CircuitBreaker(5, Duration.ofSeconds(10)));
+
+        storage.download(metadata).subscribe();
+
+        StepVerifier.create(storage.download(metadata))
+                .expectError(StorageOverloadedException.class)
+                .verify();
+        assertThat(limiter.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void download_whenWaitingTooLong_shouldFailAndLeaveQueue() {
+        when(backend.download(any())).thenReturn(Flux.never());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("S3", 1, 1, 1, 10, Duration.ofMillis(100));
+        ConcurrencyLimitedFileStorage storage =
+                new ConcurrencyLimitedFileStorage(backend, limiter, new CircuitBreaker(5, Duration.ofSeconds(10)));
+
+        StepVerifier.withVirtualTime(() -> {
+                    storage.download(metadata).subscribe();
+                    return storage.download(metadata);
+                })
+                .expectSubscription()
+                .thenAwait(Duration.ofMillis(100))
+                .expectError(StorageOverloadedException.class)
+                .verify();
+        assertThat(limiter.getQueued()).isZero();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void download_afterConsecutiveFailures_shouldOpenCircuitAndFailFast() {
+        when(backend.download(any())).thenReturn(Flux.error(new StorageConnectivityException("503", null)));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("S3", 10, 1, 10, 10, Duration.ofSeconds(5));
+        ConcurrencyLimitedFileStorage storage =
+                new ConcurrencyLimitedFileStorage(backend, limiter, new CircuitBreaker(2, Duration.ofSeconds(10)));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(storage.download(metadata))
+                    .expectError(StorageConnectivityException.class)
+                    .verify();
+        }
+
+        StepVerifier.create(storage.download(metadata))
+                .expectError(StorageOverloadedException.class)
+                .verify();
+        verify(backend, times(2)).download(any());
+        assertThat(storage.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(limiter.getLimit()).isLessThan(10);
+    }
+
+    @Test
+    void download_notFound_shouldNotCountAsBackendFailure() {
+        when(backend.download(any())).thenReturn(Flux.error(new ResourceNotFoundException("missing", null)));
+        ConcurrencyLimitedFileStorage storage = new ConcurrencyLimitedFileStorage(backend,
+                new AdaptiveConcurrencyLimiter("S3", 10, 1, 10, 10, Duration.ofSeconds(5)),
+                new CircuitBreaker(1, Duration.ofSeconds(10)));
+
+        StepVerifier.create(storage.download(metadata)).expectError(ResourceNotFoundException.class).verify();
+
+        assertThat(storage.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void circuitBreaker_shouldLetOneProbeThroughAfterOpenDuration() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(10), now::get);
+
+        breaker.onFailure(breaker.tryAcquire());
+        assertThat(breaker.tryAcquire()).isNull();
+
+        now.set(Duration.ofSeconds(10).toNanos());
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertThat(probe).isNotNull();
+        assertThat(breaker.tryAcquire()).isNull(); // only one probe at a time
+
+        breaker.onSuccess(probe);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void circuitBreaker_whenRequestAdmittedBeforeItOpenedEnds_shouldLeaveTheCircuitToTheProbe() {
+        // Arrange: a slow request is admitted while closed, then another one trips the circuit
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(10), now::get);
+        CircuitBreaker.Permit slow = breaker.tryAcquire();
+        CircuitBreaker.Permit slowCancelled = breaker.tryAcquire();
+        breaker.onFailure(breaker.tryAcquire());
+
+        // Act & Assert: while open the slow request can't close the circuit
+        breaker.onSuccess(slow);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        // Nor free the slot of the probe once it is half open
+        now.set(Duration.ofSeconds(10).toNanos());
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertThat(probe).isNotNull();
+        breaker.onIgnored(slowCancelled);
+        breaker.onSuccess(slow);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        // Only the probe decides
+        breaker.onFailure(probe);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void limiter_shouldGrowWhileLatencyIsFlatAndShrinkWhenItRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("S3", 10, 1, 100, 10, Duration.ofSeconds(5));
+        // Keep the limit in use, otherwise it isn't allowed to grow
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire().block();
+        }
+
+        limiter.onSample(Duration.ofMillis(10));
+        limiter.onSample(Duration.ofMillis(10));
+        assertThat(limiter.getLimit()).isEqualTo(12);
+
+        // Three times the idle latency means about two thirds of the requests are queued at the backend
+        limiter.onSample(Duration.ofMillis(30));
+        assertThat(limiter.getLimit()).isEqualTo(11);
+
+        limiter.onDrop();
+        assertThat(limiter.getLimit()).isLessThan(11);
+    }
+
+    @Test
+    void download_whenCircuitIsOpen_shouldNotContactBackend() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(10));
+        breaker.onFailure(breaker.tryAcquire());
+        ConcurrencyLimitedFileStorage storage = new ConcurrencyLimitedFileStorage(backend,
+                new AdaptiveConcurrencyLimiter("S3", 10, 1, 10, 10, Duration.ofSeconds(5)), breaker);
+
+        StepVerifier.create(storage.download(metadata)).expectError(StorageOverloadedException.class).verify();
+
+        verify(backend, never()).download(any());
+    }
+}
@@ -0,0 +1,143 @@
+package io.filemanager.storage.local;
+
+import io.filemanager.common.exception.ResourceNotFoundException;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.exception.StorageException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalFileStorageAdapterTest {
+
+    @TempDir
+    private Path root;
+
+    private Flux<DataBuffer> content(String... parts) {
+        return Flux.fromArray(parts)
+                .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private FileMetadataDto metadata(String key) {
+        return new FileMetadataDto(1L, "file.txt", "text/plain", key, StorageType.LOCAL, 0, null, null);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void upload_thenDownload_shouldRoundTripContent(boolean zeroCopy) {
+        // Arrange: a small read buffer forces several chunks on the pooled read path
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), zeroCopy, 4);
+
+        // Act & Assert
+        StepVerifier.create(adapter.upload("dir/my-file.txt", content("Hello ", "local ", "storage"), "text/plain"))
+                .assertNext(result -> {
+                    assertThat(result.fileKey()).isEqualTo("dir/my-file.txt");
+                    assertThat(result.size()).isEqualTo(19L);
+                })
+                .verifyComplete();
+
+        String downloaded = adapter.download(metadata("dir/my-file.txt"))
+                .map(buffer -> StandardCharsets.UTF_8.decode(buffer).toString())
+                .reduce("", String::concat)
+                .block();
+
+        assertThat(downloaded).isEqualTo("Hello local storage");
+        assertThat(root.resolve("dir")).isDirectoryContaining(path -> path.getFileName().toString().equals("my-file.txt"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void download_fromOffset_shouldSkipLeadingBytes(boolean zeroCopy) {
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), zeroCopy, 4);
+        adapter.upload("offset.txt", content("Hello ", "local ", "storage"), "text/plain").block();
+
+        String downloaded = adapter.download(metadata("offset.txt"), 6)
+                .map(buffer -> StandardCharsets.UTF_8.decode(buffer).toString())
+                .reduce("", String::concat)
+                .block();
+
+        assertThat(downloaded).isEqualTo("local storage");
+    }
+
+    @Test
+    void upload_whenStreamFails_shouldNotLeaveAnyFileBehind() throws Exception {
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), true, 1024);
+
+        StepVerifier.create(adapter.upload("broken.txt",
+                        content("partial").concatWith(Flux.error(new IllegalStateException("client went away"))),
+                        "text/plain"))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        try (var files = Files.list(root)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void download_whenFileIsMissing_shouldThrowResourceNotFoundException() {
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), true, 1024);
+
+        Flux<ByteBuffer> result = adapter.download(metadata("missing.txt"));
+
+        StepVerifier.create(result)
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void download_whenKeyEscapesRoot_shouldBeRejected() {
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), true, 1024);
+
+        StepVerifier.create(adapter.download(metadata("../outside.txt")))
+                .expectError(StorageException.class)
+                .verify();
+    }
+
+    @Test
+    void move_shouldReplaceTargetAndRemoveSource() throws Exception {
+        // Arrange
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), true, 1024);
+        adapter.upload("quarantine/key-1", content("new"), "text/plain").block();
+        adapter.upload("key-1", content("old"), "text/plain").block();
+
+        // Act & Assert
+        StepVerifier.create(adapter.move("quarantine/key-1", "key-1"))
+                .verifyComplete();
+
+        assertThat(root.resolve("quarantine/key-1")).doesNotExist();
+        assertThat(Files.readString(root.resolve("key-1"))).isEqualTo("new");
+    }
+
+    @Test
+    void move_whenSourceIsMissing_shouldThrowResourceNotFoundException() {
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), true, 1024);
+
+        StepVerifier.create(adapter.move("quarantine/missing", "missing"))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void delete_shouldRemoveFileAndIgnoreMissingOnes() {
+        LocalFileStorageAdapter adapter = new LocalFileStorageAdapter(root.toString(), true, 1024);
+        adapter.upload("key-1", content("data"), "text/plain").block();
+
+        StepVerifier.create(adapter.delete("key-1").then(adapter.delete("key-1")))
+                .verifyComplete();
+
+        assertThat(root.resolve("key-1")).doesNotExist();
+    }
+}
@@ -2,31 +2,43 @@ package io.filemanager.storage.remotehttp;
 
 import io.filemanager.common.exception.ResourceNotFoundException;
 import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.UploadResult;
+import io.filemanager.storage.api.exception.StorageConnectivityException;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
-import org.junit.jupiter.api.AfterAll;
-import org.junit.jupiter.api.BeforeAll;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.PrematureCloseException;
 import reactor.test.StepVerifier;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 class RemoteHttpStorageAdapterTest {
 
-    private static MockWebServer mockWebServer;
+    private MockWebServer mockWebServer;
     private RemoteHttpStorageAdapter adapter;
 
-    @BeforeAll
-    static void setUp() throws IOException {
+    @BeforeEach
+    void setUp() throws IOException {
         mockWebServer = new MockWebServer();
         mockWebServer.start();
     }
 
-    @AfterAll
-    static void tearDown() throws IOException {
+    @AfterEach
+    void tearDown() throws IOException {
         mockWebServer.shutdown();
     }
 
@@ -51,4 +63,118 @@ class RemoteHttpStorageAdapterTest {
                 .expectError(ResourceNotFoundException.class)
                 .verify();
     }
-}
\ No newline at end of file
+
+    @Test
+    void upload_shouldStreamBodyWithPutAndReturnSizeAndETag() throws InterruptedException {
+        // Arrange
+        WebClient webClient = WebClient.builder()
+                .baseUrl(mockWebServer.url("/").toString())
+                .build();
+        adapter = new RemoteHttpStorageAdapter(webClient);
+
+        mockWebServer.enqueue(new MockResponse().setResponseCode(201).setHeader("ETag", "\"abc123\""));
+
+        Flux<DataBuffer> content = Flux.just("Hello ", "remote ", "file server!")
+                .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        Mono<UploadResult> result = adapter.upload("my-key.txt", content, "text/plain");
+
+        // Assert
+        StepVerifier.create(result)
+                .assertNext(uploadResult -> {
+                    assertThat(uploadResult.fileKey()).isEqualTo("my-key.txt");
+                    assertThat(uploadResult.eTag()).isEqualTo("\"abc123\"");
+                    assertThat(uploadResult.size()).isEqualTo(25L);
+                })
+                .verifyComplete();
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getMethod()).isEqualTo("PUT");
+        assertThat(request.getPath()).isEqualTo("/upload/my-key.txt");
+        assertThat(request.getBody().readUtf8()).isEqualTo("Hello remote file server!");
+    }
+
+    @Test
+    void upload_whenServerReturns503_shouldThrowStorageConnectivityException() {
+        // Arrange
+        WebClient webClient = WebClient.builder()
+                .baseUrl(mockWebServer.url("/").toString())
+                .build();
+        adapter = new RemoteHttpStorageAdapter(webClient);
+
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+
+        Flux<DataBuffer> content = Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(new byte[16]));
+
+        // Act & Assert
+        StepVerifier.create(adapter.upload("my-key.txt", content, null))
+                .expectError(StorageConnectivityException.class)
+                .verify();
+    }
+
+    @Test
+    void download_fromOffset_shouldSendRangeHeader() throws InterruptedException {
+        // Arrange
+        WebClient webClient = WebClient.builder()
+                .baseUrl(mockWebServer.url("/").toString())
+                .build();
+        adapter = new RemoteHttpStorageAdapter(webClient);
+
+        mockWebServer.enqueue(new MockResponse().setResponseCode(206).setBody("world"));
+
+        FileMetadataDto metadata = new FileMetadataDto(1L, "file.txt", "text/plain", "file.txt", null, 11, null, null);
+
+        // Act & Assert
+        StepVerifier.create(adapter.download(metadata, 6).map(buffer -> StandardCharsets.UTF_8.decode(buffer).toString()))
+                .expectNext("world")
+                .verifyComplete();
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("Range")).isEqualTo("bytes=6-");
+    }
+
+    @Test
+    void download_fromOffset_whenServerIgnoresRange_shouldSkipLeadingBytes() {
+        // Arrange
+        WebClient webClient = WebClient.builder()
+                .baseUrl(mockWebServer.url("/").toString())
+                .build();
+        adapter = new RemoteHttpStorageAdapter(webClient);
+
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("hello world"));
+
+        FileMetadataDto metadata = new FileMetadataDto(1L, "file.txt", "text/plain", "file.txt", null, 11, null, null);
+
+        // Act & Assert
+        StepVerifier.create(adapter.download(metadata, 6)
+                        .map(buffer -> StandardCharsets.UTF_8.decode(buffer).toString())
+                        .reduce("", String::concat))
+                .expectNext("world")
+                .verifyComplete();
+    }
+
+    @Test
+    void download_whenConnectionClosesMidBody_shouldThrowStorageConnectivityException() {
+        // Arrange
+        WebClient webClient = WebClient.builder()
+                .baseUrl(mockWebServer.url("/").toString())
+                .build();
+        adapter = new RemoteHttpStorageAdapter(webClient);
+
+        // Sends half of the announced body, then closes the connection
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200)
+                .setBody(new Buffer().write(new byte[64 * 1024]))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+
+        FileMetadataDto metadata = new FileMetadataDto(1L, "file.txt", "text/plain", "file.txt", null, 64 * 1024, null, null);
+
+        // Act & Assert
+        StepVerifier.create(adapter.download(metadata))
+                .thenConsumeWhile(buffer -> true)
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(StorageConnectivityException.class)
+                        .hasCauseInstanceOf(PrematureCloseException.class))
+                .verify();
+    }
+}
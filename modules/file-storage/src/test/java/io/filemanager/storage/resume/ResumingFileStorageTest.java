@@ -0,0 +1,114 @@
+package io.filemanager.storage.resume;
+
+import io.filemanager.common.exception.ResourceNotFoundException;
+import io.filemanager.metadata.domain.StorageType;
+import io.filemanager.metadata.dto.FileMetadataDto;
+import io.filemanager.storage.api.FileStorage;
+import io.filemanager.storage.api.exception.StorageConnectivityException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ResumingFileStorageTest {
+
+    @Mock
+    private FileStorage backend;
+
+    private final FileMetadataDto metadata =
+            new FileMetadataDto(1L, "file.txt", "text/plain", "key-1", StorageType.S3, 12, null, null);
+
+    private Flux<ByteBuffer> content(String... parts) {
+        return Flux.fromArray(parts).map(part -> ByteBuffer.wrap(part.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Flux<ByteBuffer> reset() {
+        return Flux.error(new StorageConnectivityException("connection reset", null));
+    }
+
+    private String asString(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    private ResumingFileStorage storage(int maxRetries) {
+        return new ResumingFileStorage(backend, maxRetries, Duration.ofMillis(1), Duration.ofMillis(10));
+    }
+
+    @Test
+    void download_whenStreamBreaks_shouldResumeFromLastOffset() {
+        // Arrange
+        when(backend.download(any(), eq(0L))).thenReturn(content("Hello ").concatWith(reset()));
+        when(backend.download(any(), eq(6L))).thenReturn(content("world!"));
+        ResumingFileStorage storage = storage(3);
+
+        // Act & Assert: the consumer sees one continuous stream
+        StepVerifier.create(storage.download(metadata).map(this::asString))
+                .expectNext("Hello ", "world!")
+                .verifyComplete();
+
+        assertThat(storage.getResumeCount()).isEqualTo(1);
+        assertThat(storage.getBytesSaved()).isEqualTo(6);
+    }
+
+    @Test
+    void download_shouldRestoreRetriesOnceBytesFlowAgain() {
+        // Arrange: three resets in one download, each after some progress
+        when(backend.download(any(), eq(0L))).thenReturn(content("abc").concatWith(reset()));
+        when(backend.download(any(), eq(3L))).thenReturn(content("def").concatWith(reset()));
+        when(backend.download(any(), eq(6L))).thenReturn(content("ghi").concatWith(reset()));
+        when(backend.download(any(), eq(9L))).thenReturn(content("jkl"));
+
+        // Act & Assert
+        StepVerifier.create(storage(1).download(metadata).map(this::asString))
+                .expectNext("abc", "def", "ghi", "jkl")
+                .verifyComplete();
+    }
+
+    @Test
+    void download_whenRetriesAreExhausted_shouldPropagateTheError() {
+        when(backend.download(any(), anyLong())).thenReturn(reset());
+
+        StepVerifier.create(storage(2).download(metadata))
+                .expectError(StorageConnectivityException.class)
+                .verify();
+
+        verify(backend, times(3)).download(any(), anyLong());
+    }
+
+    @Test
+    void download_whenErrorIsNotRetryable_shouldNotRetry() {
+        when(backend.download(any(), anyLong())).thenReturn(Flux.error(new ResourceNotFoundException("missing", null)));
+
+        StepVerifier.create(storage(3).download(metadata))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+
+        verify(backend, times(1)).download(any(), anyLong());
+    }
+
+    @Test
+    void download_whenStreamBreaksAfterLastByte_shouldCompleteWithoutRefetch() {
+        when(backend.download(any(), eq(0L))).thenReturn(content("Hello world!").concatWith(reset()));
+
+        StepVerifier.create(storage(3).download(metadata).map(this::asString))
+                .expectNext("Hello world!")
+                .verifyComplete();
+
+        verify(backend, times(1)).download(any(), anyLong());
+    }
+}
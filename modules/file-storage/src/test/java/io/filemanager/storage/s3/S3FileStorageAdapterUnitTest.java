@@ -2,6 +2,7 @@ package io.filemanager.storage.s3;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -11,11 +12,20 @@ import org.springframework.util.ReflectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class S3FileStorageAdapterUnitTest {
@@ -73,4 +83,30 @@ class S3FileStorageAdapterUnitTest {
                 })
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    void move_aboveCopyObjectLimit_shouldKeepContentTypeOfSource() {
+        // Arrange
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                HeadObjectResponse.builder()
+                        .contentLength(6L * 1024 * 1024 * 1024)
+                        .contentType("video/mp4")
+                        .metadata(Map.of("origin", "upload"))
+                        .build()));
+        // Stops the move right after the multipart upload is requested
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().message("stop").build()));
+
+        // Act
+        StepVerifier.create(adapter.move("quarantine/key-1", "key-1"))
+                .expectError()
+                .verify();
+
+        // Assert
+        ArgumentCaptor<CreateMultipartUploadRequest> request = ArgumentCaptor.forClass(CreateMultipartUploadRequest.class);
+        verify(s3AsyncClient).createMultipartUpload(request.capture());
+        assertThat(request.getValue().key()).isEqualTo("key-1");
+        assertThat(request.getValue().contentType()).isEqualTo("video/mp4");
+        assertThat(request.getValue().metadata()).containsEntry("origin", "upload");
+    }
+}
@@ -0,0 +1,91 @@
+package io.filemanager;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lets at most {@code maxConcurrency} scans run at once; up to {@code maxQueue} more wait in
+ * line, in order of arrival. A scan that finds the line full fails with {@link BusyException}.
+ */
+class ConcurrencyGate {
+    private static final int WAITING = 0, GRANTED = 1, CANCELLED = 2;
+
+    private final int maxConcurrency;
+    private final int maxQueue;
+    private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+    private int active;
+
+    static class BusyException extends RuntimeException {
+        BusyException() {
+            super("Scanner is busy", null, false, false);
+        }
+    }
+
+    private record Waiter(MonoSink<Boolean> sink, AtomicInteger state) {}
+
+    ConcurrencyGate(int maxConcurrency, int maxQueue) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueue = maxQueue;
+    }
+
+    <T> Mono<T> run(Supplier<Mono<T>> scan) {
+        return Mono.usingWhen(acquire(), permit -> scan.get(), permit -> Mono.fromRunnable(this::release));
+    }
+
+    synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    private Mono<Boolean> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink, new AtomicInteger(WAITING));
+            synchronized (this) {
+                if (active < maxConcurrency) {
+                    active++;
+                    waiter.state().set(GRANTED);
+                } else if (waiting.size() < maxQueue) {
+                    waiting.add(waiter);
+                } else {
+                    sink.error(new BusyException());
+                    return;
+                }
+            }
+            if (waiter.state().get() == GRANTED) {
+                sink.success(true);
+                return;
+            }
+            sink.onCancel(() -> {
+                if (!waiter.state().compareAndSet(WAITING, CANCELLED)) {
+                    // Granted just as it was cancelled: the slot was never used
+                    release();
+                } else {
+                    synchronized (this) {
+                        waiting.remove(waiter);
+                    }
+                }
+            });
+        });
+    }
+
+    private void release() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+            // The slot passes on to the next waiter, unless it has given up meanwhile
+            if (next.state().compareAndSet(WAITING, GRANTED)) {
+                next.sink().success(true);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.filemanager;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * How the simulated scanner behaves under load: how long a scan takes, how many scans run at
+ * once, how often it fails and how fast it forwards clean files.
+ */
+@Data
+public class LoadProfile {
+    private static final double MIB = 1024 * 1024;
+
+    public enum Distribution { FIXED, UNIFORM, LOGNORMAL, PARETO }
+
+    /** Shape of the fixed part of the scan time. */
+    private Distribution distribution = Distribution.FIXED;
+    /** FIXED: the latency; UNIFORM: the minimum; LOGNORMAL: the median; PARETO: the minimum (scale). */
+    private long latencyMs = 2000;
+    /** UNIFORM: the maximum; LOGNORMAL and PARETO: cap for the tail, 0 for none. */
+    private long latencyMaxMs = 0;
+    /** LOGNORMAL: standard deviation of the log of the latency. */
+    private double latencySigma = 0.5;
+    /** PARETO: tail index, the lower the heavier the tail. */
+    private double paretoAlpha = 2.0;
+    /** Added scan time per MiB of content. */
+    private double perMibMs = 0;
+
+    /** Scans running at once, 0 for no limit. */
+    private int maxConcurrency = 0;
+    /** Scans waiting for a slot; beyond that requests get a 503. */
+    private int maxQueue = 0;
+
+    /** Share of scans that end with a 500 after the scan time. */
+    private double failureRate = 0;
+    /** Share of scans that hang and only get a 504 after {@code timeoutMs}. */
+    private double timeoutRate = 0;
+    private long timeoutMs = 60_000;
+
+    /** Rate at which clean files are forwarded, 0 for no limit. */
+    private long forwardBytesPerSecond = 0;
+
+    /**
+     * The fixed part of one scan time, drawn from the distribution.
+     */
+    public Duration sampleLatency(Random random) {
+        double ms = switch (distribution) {
+            case FIXED -> latencyMs;
+            case UNIFORM -> latencyMs + random.nextDouble() * Math.max(0, latencyMaxMs - latencyMs);
+            case LOGNORMAL -> latencyMs * Math.exp(latencySigma * random.nextGaussian());
+            case PARETO -> latencyMs / Math.pow(1 - random.nextDouble(), 1 / paretoAlpha);
+        };
+        if (latencyMaxMs > 0 && distribution != Distribution.FIXED) {
+            ms = Math.min(ms, latencyMaxMs);
+        }
+        return Duration.ofNanos((long) (ms * 1_000_000));
+    }
+
+    /**
+     * The part of the scan time that depends on the size of the content.
+     */
+    public Duration sizeCost(long bytes) {
+        return Duration.ofNanos((long) (bytes / MIB * perMibMs * 1_000_000));
+    }
+
+    /**
+     * The behaviour of the simulator before load profiles: a fixed delay and nothing else.
+     */
+    static LoadProfile fixed(long latencyMs) {
+        LoadProfile profile = new LoadProfile();
+        profile.setLatencyMs(latencyMs);
+        return profile;
+    }
+}
@@ -0,0 +1,164 @@
+package io.filemanager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Applies a {@link LoadProfile} to the scans of the simulator and keeps the {@link SimulatorStats}.
+ */
+@Slf4j
+@Component
+class LoadSimulator {
+
+    enum Fault { NONE, FAILURE, TIMEOUT }
+
+    private final Map<String, LoadProfile> profiles;
+    private final Map<String, ConcurrencyGate> gates = new ConcurrentHashMap<>();
+    private final SimulatorStats stats = new SimulatorStats();
+    private volatile String activeProfile;
+
+    LoadSimulator(SimulatorProperties properties, @Value("${scanner.scan-delay-ms:2000}") long scanDelayMs) {
+        this.profiles = new ConcurrentHashMap<>(properties.getProfiles());
+        this.profiles.putIfAbsent("default", LoadProfile.fixed(scanDelayMs));
+        activate(properties.getLoadProfile());
+        log.info("Load profiles {}, active: {}", profiles.keySet(), activeProfile);
+    }
+
+    /**
+     * Makes the named profile the one used by requests that don't pick their own.
+     */
+    void activate(String name) {
+        profile(name);
+        activeProfile = name;
+    }
+
+    /**
+     * The name of the profile a request runs under: the one it asked for, or the active one.
+     */
+    String resolve(String requested) {
+        return requested != null ? requested : activeProfile;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    LoadProfile profile(String name) {
+        LoadProfile profile = profiles.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown load profile " + name + ", known: " + profiles.keySet());
+        }
+        return profile;
+    }
+
+    /**
+     * Runs a scan once the profile has a slot for it, and records how long the caller waited.
+     * Without a slot, or a place in the queue, the caller gets a 503 straight away.
+     */
+    <T> Mono<ResponseEntity<T>> admit(String profileName, Supplier<Mono<ResponseEntity<T>>> scan) {
+        LoadProfile profile = profile(profileName);
+        return Mono.defer(() -> {
+            stats.requests.incrementAndGet();
+            stats.inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            Mono<ResponseEntity<T>> admitted = profile.getMaxConcurrency() > 0
+                    ? gates.computeIfAbsent(profileName,
+                            name -> new ConcurrencyGate(profile.getMaxConcurrency(), profile.getMaxQueue())).run(scan)
+                    : Mono.defer(scan);
+            return admitted
+                    .onErrorResume(ConcurrencyGate.BusyException.class, busy -> {
+                        stats.rejected.incrementAndGet();
+                        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+                    })
+                    .doOnSuccess(response -> stats.recordLatency(System.nanoTime() - start))
+                    .doFinally(signal -> stats.inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * Decides whether this scan fails, and how.
+     */
+    Fault fault(LoadProfile profile) {
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < profile.getTimeoutRate()) {
+            stats.timeoutsInjected.incrementAndGet();
+            return Fault.TIMEOUT;
+        }
+        if (draw < profile.getTimeoutRate() + profile.getFailureRate()) {
+            stats.failuresInjected.incrementAndGet();
+            return Fault.FAILURE;
+        }
+        return Fault.NONE;
+    }
+
+    /**
+     * Waits for the scan time of content of the given size.
+     */
+    Mono<Void> scanTime(LoadProfile profile, long bytes) {
+        Duration delay = profile.sampleLatency(ThreadLocalRandom.current()).plus(profile.sizeCost(bytes));
+        return Mono.delay(delay).then();
+    }
+
+    /**
+     * Never answers within the timeout of any sane caller, then gives up with a 504.
+     */
+    <T> Mono<ResponseEntity<T>> hang(LoadProfile profile) {
+        return Mono.delay(Duration.ofMillis(profile.getTimeoutMs()))
+                .thenReturn(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+    }
+
+    /**
+     * Counts the bytes of a body as they are scanned.
+     */
+    Flux<DataBuffer> scanned(Flux<DataBuffer> body) {
+        return body.doOnNext(buffer -> stats.bytesScanned.addAndGet(buffer.readableByteCount()));
+    }
+
+    /**
+     * Paces a forwarded body to the bandwidth of the profile.
+     */
+    Flux<DataBuffer> throttled(LoadProfile profile, Flux<DataBuffer> body) {
+        long bytesPerSecond = profile.getForwardBytesPerSecond();
+        Flux<DataBuffer> counted = body.doOnNext(buffer -> stats.bytesForwarded.addAndGet(buffer.readableByteCount()));
+        if (bytesPerSecond <= 0) {
+            return counted;
+        }
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong sent = new AtomicLong();
+            return counted
+                    .concatMap(buffer -> {
+                        long due = start + (long) (sent.addAndGet(buffer.readableByteCount()) * 1e9 / bytesPerSecond);
+                        long wait = due - System.nanoTime();
+                        return wait > 0 ? Mono.just(buffer).delayElement(Duration.ofNanos(wait)) : Mono.just(buffer);
+                    }, 1)
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    void recordVerdict(boolean infected) {
+        (infected ? stats.infected : stats.clean).incrementAndGet();
+    }
+
+    SimulatorStats.Snapshot stats() {
+        int queued = gates.values().stream().mapToInt(ConcurrencyGate::getQueued).sum();
+        return stats.snapshot(activeProfile, stats.inFlight.get() - queued, queued);
+    }
+
+    void resetStats() {
+        stats.reset();
+    }
+}
@@ -0,0 +1,52 @@
+package io.filemanager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch scan framing, the same as the file manager's: per file
+ * int32 length of the file ID | file ID (UTF-8) | int64 length of the content | content.
+ */
+final class ScanBatchFrames {
+
+    static final String CONTENT_TYPE = "application/x-scan-batch";
+
+    record Entry(String fileId, byte[] content) {}
+
+    private ScanBatchFrames() {
+    }
+
+    static byte[] encode(List<Entry> entries) {
+        int size = entries.stream()
+                .mapToInt(entry -> Integer.BYTES + entry.fileId().getBytes(StandardCharsets.UTF_8).length
+                        + Long.BYTES + entry.content().length)
+                .sum();
+        ByteBuffer body = ByteBuffer.allocate(size);
+        for (Entry entry : entries) {
+            byte[] id = entry.fileId().getBytes(StandardCharsets.UTF_8);
+            body.putInt(id.length).put(id).putLong(entry.content().length).put(entry.content());
+        }
+        return body.array();
+    }
+
+    static List<Entry> decode(ByteBuffer body) {
+        List<Entry> entries = new ArrayList<>();
+        while (body.hasRemaining()) {
+            byte[] id = new byte[length(body, body.remaining() >= Integer.BYTES ? body.getInt() : -1)];
+            body.get(id);
+            byte[] content = new byte[length(body, body.remaining() >= Long.BYTES ? body.getLong() : -1)];
+            body.get(content);
+            entries.add(new Entry(new String(id, StandardCharsets.UTF_8), content));
+        }
+        return entries;
+    }
+
+    private static int length(ByteBuffer body, long length) {
+        if (length < 0 || length > body.remaining()) {
+            throw new IllegalArgumentException("Truncated or malformed scan batch frame");
+        }
+        return (int) length;
+    }
+}
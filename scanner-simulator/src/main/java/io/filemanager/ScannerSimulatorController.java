@@ -3,19 +3,26 @@ package io.filemanager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
@@ -24,12 +31,18 @@ public class ScannerSimulatorController {
 
     @Value("${scanner.scan-delay-ms:2000}")
     private long scanDelayMs;
+
+    // Reported with every verdict, so callers that cache verdicts know when the signatures change
+    @Value("${scanner.signature-version:1}")
+    private String signatureVersion;
     //private final String targetUrl = "/api/files/upload-scanned"; // could be passed as a header or config property
 
     private final WebClient webClient;
+    private final LoadSimulator loadSimulator;
 
-    public ScannerSimulatorController(WebClient webClient) {
+    public ScannerSimulatorController(WebClient webClient, LoadSimulator loadSimulator) {
         this.webClient = webClient;
+        this.loadSimulator = loadSimulator;
     }
 
     @PostMapping("/scan")
@@ -38,16 +51,74 @@ public class ScannerSimulatorController {
             @RequestHeader("X-Marker") String marker,
             @RequestHeader(value = "X-Original-Filename", required = false) String originalFilename,
             @RequestHeader(value = "X-Content-Type", required = false) String originalContentType,
-            @RequestHeader(value = "X-Target-Url") String targetUrlFromHeader,
+            @RequestHeader(value = "X-Target-Url", required = false) String targetUrlFromHeader,
             @RequestHeader(value = "X-Test-Fail", defaultValue = "false") boolean testFail,
+            @RequestHeader(value = "X-Load-Profile", required = false) String loadProfile,
             ServerHttpRequest request)
     {
         log.info("Received scan request - FileId: {},  Marker: {}, Filename: {}, ContentType: {}, TestFail: {}, TargetUrl: {}",
                 fileId, marker, originalFilename, originalContentType, testFail, targetUrlFromHeader);
 
-        // return scanWithDelayAndByteCounting(fileId, marker, originalFilename, originalContentType, testFail, request);
-        return scanFileWithDelay(fileId, marker, originalFilename, originalContentType, targetUrlFromHeader, testFail, request);
+        String profileName = loadSimulator.resolve(loadProfile);
+        LoadProfile profile;
+        try {
+            profile = loadSimulator.profile(profileName);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+
+        return loadSimulator.admit(profileName, () -> {
+            // Without a target the caller stores the file itself and only wants the verdict
+            if (targetUrlFromHeader == null) {
+                return scanOnly(originalFilename, testFail, request, profile);
+            }
 
+            // return scanWithDelayAndByteCounting(fileId, marker, originalFilename, originalContentType, testFail, request);
+            return scanFileWithDelay(fileId, marker, originalFilename, originalContentType, targetUrlFromHeader, testFail, request, profile);
+        });
+    }
+
+    public Mono<ResponseEntity<String>> scanOnly(String originalFilename, boolean testFail, ServerHttpRequest request,
+                                                  LoadProfile profile) {
+        if (testFail) {
+            log.warn("Simulating scan failure due to X-Test-Fail header");
+            loadSimulator.recordVerdict(true);
+            return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .header("X-Signature-Version", signatureVersion)
+                    .body("INFECTED: Test virus detected"));
+        }
+        LoadSimulator.Fault fault = loadSimulator.fault(profile);
+        if (fault == LoadSimulator.Fault.TIMEOUT) {
+            return loadSimulator.hang(profile);
+        }
+
+        AtomicLong fileSize = new AtomicLong(0);
+        Mono<Void> scannedBody = loadSimulator.scanned(request.getBody())
+                .doOnNext(dataBuffer -> {
+                    fileSize.addAndGet(dataBuffer.readableByteCount());
+                    DataBufferUtils.release(dataBuffer);
+                })
+                .then();
+
+        // The scan time grows with the size, so it is only known once the whole body is in
+        return scannedBody
+                .then(Mono.defer(() -> loadSimulator.scanTime(profile, fileSize.get())))
+                .doOnSuccess(ignored -> log.info("File {} scanned - {} bytes processed", originalFilename, fileSize.get()))
+                .then(Mono.fromSupplier(() -> {
+                    if (fault == LoadSimulator.Fault.FAILURE) {
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                .body("SCAN_ERROR: Simulated failure");
+                    }
+                    loadSimulator.recordVerdict(false);
+                    return ResponseEntity.ok()
+                            .header("X-Signature-Version", signatureVersion)
+                            .body("CLEAN: File scanned");
+                }))
+                .onErrorResume(error -> {
+                    log.error("Error scanning file {}: {}", originalFilename, error.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body("SCAN_ERROR: " + error.getMessage()));
+                });
     }
 
     public Mono<ResponseEntity<String>> scanWithDelayAndByteCounting(
@@ -97,22 +168,40 @@ public class ScannerSimulatorController {
             String originalContentType,
             String targetUrl,
             boolean testFail,
-            ServerHttpRequest request)
+            ServerHttpRequest request,
+            LoadProfile profile)
     {
         // If test failure is requested, return error immediately
         if (testFail) {
             log.warn("Simulating scan failure due to X-Test-Fail header");
+            loadSimulator.recordVerdict(true);
             return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("INFECTED: Test virus detected"));
         }
+        LoadSimulator.Fault fault = loadSimulator.fault(profile);
+        if (fault == LoadSimulator.Fault.TIMEOUT) {
+            return loadSimulator.hang(profile);
+        }
+        if (fault == LoadSimulator.Fault.FAILURE) {
+            return loadSimulator.scanTime(profile, 0)
+                    .then(Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body("SCAN_ERROR: Simulated failure")));
+        }
 
-        Flux<DataBuffer> body = request.getBody();
+        AtomicLong fileSize = new AtomicLong(0);
+        Flux<DataBuffer> body = loadSimulator.scanned(request.getBody());
         Flux<DataBuffer> debugBody = body
                 .doOnNext(buffer -> log.debug("Buffer received - readable bytes: {}", buffer.readableByteCount()))
+                .doOnNext(buffer -> fileSize.addAndGet(buffer.readableByteCount()))
                 .doOnComplete(() -> log.debug("Body stream completed"));
 
-        return Mono.delay(Duration.ofMillis(scanDelayMs))
-                .then(forwardCleanFile(fileId, marker, originalFilename, originalContentType, targetUrl, debugBody))
+        // The body is scanned as it is forwarded; the part of the scan time that depends on its
+        // size is paid before the verdict.
+        return loadSimulator.scanTime(profile, 0)
+                .then(forwardCleanFile(fileId, marker, originalFilename, originalContentType, targetUrl,
+                        loadSimulator.throttled(profile, debugBody)))
+                .delayUntil(response -> Mono.delay(profile.sizeCost(fileSize.get())))
+                .doOnSuccess(response -> loadSimulator.recordVerdict(false))
                 .map(response -> ResponseEntity.ok("CLEAN: File scanned and forwarded successfully"))
                 .onErrorResume(error -> {
                     log.error("Error processing file {}: {}", originalFilename, error.getMessage(), error);
@@ -147,6 +236,130 @@ public class ScannerSimulatorController {
                 });
     }
 
+    /**
+     * Verdict for one file of a batch, sent as one JSON line per file.
+     */
+    record BatchVerdict(String fileId, String verdict) {}
+
+    // Files containing the EICAR test string are reported as infected
+    private static final String EICAR_MARKER = "EICAR-STANDARD-ANTIVIRUS-TEST-FILE";
+
+    @Value("${scanner.max-batch-size-bytes:67108864}")
+    private int maxBatchSizeBytes;
+
+    /**
+     * Scans many small files framed into one request. The scan delay is paid once per batch.
+     * With X-Target-Url, the clean files are forwarded there in one framed request before the
+     * verdicts are returned.
+     */
+    @PostMapping(value = "/scan-batch", consumes = ScanBatchFrames.CONTENT_TYPE)
+    public Mono<ResponseEntity<Flux<BatchVerdict>>> scanBatch(
+            @RequestHeader("X-Marker") String marker,
+            @RequestHeader(value = "X-Target-Url", required = false) String targetUrl,
+            @RequestHeader(value = "X-Test-Fail", defaultValue = "false") boolean testFail,
+            @RequestHeader(value = "X-Load-Profile", required = false) String loadProfile,
+            ServerHttpRequest request) {
+
+        String profileName = loadSimulator.resolve(loadProfile);
+        LoadProfile profile;
+        try {
+            profile = loadSimulator.profile(profileName);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return loadSimulator.admit(profileName, () -> scanBatch(marker, targetUrl, testFail, request, profile));
+    }
+
+    private Mono<ResponseEntity<Flux<BatchVerdict>>> scanBatch(String marker, String targetUrl, boolean testFail,
+                                                               ServerHttpRequest request, LoadProfile profile) {
+        LoadSimulator.Fault fault = loadSimulator.fault(profile);
+        if (fault == LoadSimulator.Fault.TIMEOUT) {
+            return loadSimulator.hang(profile);
+        }
+
+        return DataBufferUtils.join(loadSimulator.scanned(request.getBody()), maxBatchSizeBytes)
+                .map(joined -> {
+                    try {
+                        ByteBuffer bytes = ByteBuffer.allocate(joined.readableByteCount());
+                        joined.toByteBuffer(joined.readPosition(), bytes, 0, bytes.capacity());
+                        return ScanBatchFrames.decode(bytes);
+                    } finally {
+                        DataBufferUtils.release(joined);
+                    }
+                })
+                .defaultIfEmpty(List.of())
+                .delayUntil(files -> loadSimulator.scanTime(profile,
+                        files.stream().mapToLong(file -> file.content().length).sum()))
+                .flatMap(files -> {
+                    if (fault == LoadSimulator.Fault.FAILURE) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Flux<BatchVerdict>>build());
+                    }
+                    log.info("Scanned batch of {} files, Marker: {}, TargetUrl: {}", files.size(), marker, targetUrl);
+                    List<BatchVerdict> verdicts = files.stream()
+                            .map(file -> new BatchVerdict(file.fileId(), testFail || isInfected(file.content()) ? "INFECTED" : "CLEAN"))
+                            .toList();
+                    verdicts.forEach(verdict -> loadSimulator.recordVerdict(verdict.verdict().equals("INFECTED")));
+                    List<ScanBatchFrames.Entry> clean = files.stream()
+                            .filter(file -> !testFail && !isInfected(file.content()))
+                            .toList();
+
+                    Mono<Void> forwarded = targetUrl == null || clean.isEmpty()
+                            ? Mono.empty()
+                            : forwardCleanBatch(marker, targetUrl, clean);
+                    return forwarded.then(Mono.just(ResponseEntity.ok()
+                            .header("X-Signature-Version", signatureVersion)
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .body(Flux.fromIterable(verdicts))));
+                })
+                .onErrorResume(error -> {
+                    log.error("Error scanning batch: {}", error.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Flux<BatchVerdict>>build());
+                });
+    }
+
+    private static boolean isInfected(byte[] content) {
+        return new String(content, StandardCharsets.ISO_8859_1).contains(EICAR_MARKER);
+    }
+
+    private Mono<Void> forwardCleanBatch(String marker, String targetUrl, List<ScanBatchFrames.Entry> clean) {
+        log.info("Forwarding {} clean files to: {}", clean.size(), targetUrl);
+        return webClient.post()
+                .uri(targetUrl)
+                .header("X-Marker", marker)
+                .contentType(MediaType.parseMediaType(ScanBatchFrames.CONTENT_TYPE))
+                .bodyValue(ScanBatchFrames.encode(clean))
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    /**
+     * Counters and recent scan times, to compare against what the caller measured.
+     */
+    @GetMapping("/stats")
+    public Mono<SimulatorStats.Snapshot> stats() {
+        return Mono.just(loadSimulator.stats());
+    }
+
+    @DeleteMapping("/stats")
+    public Mono<ResponseEntity<Void>> resetStats() {
+        loadSimulator.resetStats();
+        return Mono.just(ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Switches the load profile of requests that don't pick one, e.g. between the phases of a test.
+     */
+    @PutMapping("/load-profile/{name}")
+    public Mono<ResponseEntity<String>> activateLoadProfile(@PathVariable String name) {
+        try {
+            loadSimulator.activate(name);
+            return Mono.just(ResponseEntity.ok(name));
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+    }
+
     // Health check endpoint
     @GetMapping("/health")
     public Mono<ResponseEntity<String>> health() {
@@ -2,8 +2,10 @@ package io.filemanager;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(SimulatorProperties.class)
 public class SimulatorApplication {
     public static void main(String[] args) {
         SpringApplication.run(SimulatorApplication.class, args);
@@ -0,0 +1,19 @@
+package io.filemanager;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load profiles of the simulator, by name. A profile called {@code default} is added with the
+ * plain {@code scanner.scan-delay-ms} unless one is configured.
+ */
+@Data
+@ConfigurationProperties(prefix = "scanner")
+public class SimulatorProperties {
+    /** The profile used unless a request picks one with the X-Load-Profile header. */
+    private String loadProfile = "default";
+    private Map<String, LoadProfile> profiles = new LinkedHashMap<>();
+}
@@ -0,0 +1,65 @@
+package io.filemanager;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the simulator since start or the last reset, and percentiles over the most
+ * recent scan times.
+ */
+class SimulatorStats {
+    private static final int SAMPLES = 8192;
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong clean = new AtomicLong();
+    final AtomicLong infected = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong failuresInjected = new AtomicLong();
+    final AtomicLong timeoutsInjected = new AtomicLong();
+    final AtomicLong bytesScanned = new AtomicLong();
+    final AtomicLong bytesForwarded = new AtomicLong();
+    final AtomicInteger inFlight = new AtomicInteger(); // not reset, requests outlive a reset
+
+    private final long[] latenciesNanos = new long[SAMPLES];
+    private long samples;
+    private long started = System.currentTimeMillis();
+
+    /**
+     * The stats as served by {@code /stats}; latencies in milliseconds, from request to response.
+     */
+    record Snapshot(String loadProfile, long uptimeMs, long requests, long clean, long infected, long rejected,
+                    long failuresInjected, long timeoutsInjected, long bytesScanned, long bytesForwarded,
+                    int active, int queued, double p50Ms, double p95Ms, double p99Ms, double maxMs) {}
+
+    synchronized void recordLatency(long nanos) {
+        latenciesNanos[(int) (samples++ % SAMPLES)] = nanos;
+    }
+
+    synchronized Snapshot snapshot(String loadProfile, int active, int queued) {
+        long[] sorted = Arrays.copyOf(latenciesNanos, (int) Math.min(samples, SAMPLES));
+        Arrays.sort(sorted);
+        return new Snapshot(loadProfile, System.currentTimeMillis() - started,
+                requests.get(), clean.get(), infected.get(), rejected.get(),
+                failuresInjected.get(), timeoutsInjected.get(), bytesScanned.get(), bytesForwarded.get(),
+                active, queued,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99), percentile(sorted, 1.0));
+    }
+
+    synchronized void reset() {
+        for (AtomicLong counter : new AtomicLong[]{requests, clean, infected, rejected,
+                failuresInjected, timeoutsInjected, bytesScanned, bytesForwarded}) {
+            counter.set(0);
+        }
+        samples = 0;
+        started = System.currentTimeMillis();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,103 @@
+package io.filemanager;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyGateTest {
+
+    @Test
+    void run_whenSlotsAndQueueAreFull_shouldFailWithBusy() {
+        // Arrange: one slot, taken, and one place in the queue, taken
+        ConcurrencyGate gate = new ConcurrencyGate(1, 1);
+        Sinks.One<String> running = Sinks.one();
+        gate.run(running::asMono).subscribe();
+        gate.run(() -> Mono.just("queued")).subscribe();
+        assertThat(gate.getQueued()).isEqualTo(1);
+
+        // Act & Assert
+        StepVerifier.create(gate.run(() -> Mono.just("third")))
+                .expectError(ConcurrencyGate.BusyException.class)
+                .verify();
+        assertThat(gate.getQueued()).isEqualTo(1);
+    }
+
+    @Test
+    void run_whenScanCompletes_shouldPassTheSlotToTheNextInLine() {
+        // Arrange
+        ConcurrencyGate gate = new ConcurrencyGate(1, 1);
+        Sinks.One<String> running = Sinks.one();
+        AtomicInteger started = new AtomicInteger();
+        StepVerifier first = StepVerifier.create(gate.run(running::asMono))
+                .expectNext("first")
+                .expectComplete()
+                .verifyLater();
+        StepVerifier second = StepVerifier.create(gate.run(() -> {
+                    started.incrementAndGet();
+                    return Mono.just("second");
+                }))
+                .expectNext("second")
+                .expectComplete()
+                .verifyLater();
+        assertThat(started).hasValue(0);
+
+        // Act
+        running.tryEmitValue("first");
+
+        // Assert
+        first.verify();
+        second.verify();
+        assertThat(started).hasValue(1);
+        assertThat(gate.getQueued()).isZero();
+    }
+
+    @Test
+    void run_whenQueuedScanIsCancelled_shouldGiveUpItsPlace() {
+        // Arrange
+        ConcurrencyGate gate = new ConcurrencyGate(1, 1);
+        Sinks.One<String> running = Sinks.one();
+        AtomicInteger started = new AtomicInteger();
+        gate.run(running::asMono).subscribe();
+        Disposable queued = gate.run(() -> {
+            started.incrementAndGet();
+            return Mono.just("cancelled");
+        }).subscribe();
+
+        // Act
+        queued.dispose();
+
+        // Assert: the place is free for the next scan, and the cancelled one never runs
+        assertThat(gate.getQueued()).isZero();
+        StepVerifier next = StepVerifier.create(gate.run(() -> Mono.just("next")))
+                .expectNext("next")
+                .expectComplete()
+                .verifyLater();
+        running.tryEmitValue("first");
+        next.verify();
+        assertThat(started).hasValue(0);
+    }
+
+    @Test
+    void run_whenRunningScanIsCancelled_shouldReleaseTheSlot() {
+        // Arrange
+        ConcurrencyGate gate = new ConcurrencyGate(1, 0);
+        Disposable running = gate.run(() -> Sinks.<String>one().asMono()).subscribe();
+        StepVerifier.create(gate.run(() -> Mono.just("busy")))
+                .expectError(ConcurrencyGate.BusyException.class)
+                .verify();
+
+        // Act
+        running.dispose();
+
+        // Assert
+        StepVerifier.create(gate.run(() -> Mono.just("next")))
+                .expectNext("next")
+                .verifyComplete();
+    }
+}
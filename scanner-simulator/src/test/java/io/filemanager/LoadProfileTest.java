@@ -0,0 +1,93 @@
+package io.filemanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LoadProfileTest {
+
+    private static final int DRAWS = 10_001;
+
+    @Test
+    void sampleLatency_whenFixed_shouldAlwaysGiveTheLatency() {
+        LoadProfile profile = LoadProfile.fixed(150);
+        profile.setLatencyMaxMs(100); // only caps the other distributions
+
+        assertThat(profile.sampleLatency(new Random(1))).isEqualTo(Duration.ofMillis(150));
+    }
+
+    @Test
+    void sampleLatency_whenUniform_shouldStayBetweenMinAndMax() {
+        LoadProfile profile = profile(LoadProfile.Distribution.UNIFORM, 100, 200);
+
+        long[] millis = draw(profile);
+
+        assertThat(millis[0]).isGreaterThanOrEqualTo(100);
+        assertThat(millis[DRAWS - 1]).isLessThanOrEqualTo(200);
+        assertThat(median(millis)).isCloseTo(150, within(5.0));
+    }
+
+    @Test
+    void sampleLatency_whenLognormal_shouldHaveTheLatencyAsMedian() {
+        LoadProfile profile = profile(LoadProfile.Distribution.LOGNORMAL, 100, 0);
+        profile.setLatencySigma(1.0);
+
+        long[] millis = draw(profile);
+
+        assertThat(median(millis)).isCloseTo(100, within(5.0));
+        // With a sigma of 1 about 16% are above e times the median
+        long aboveOneSigma = IntStream.range(0, millis.length).filter(i -> millis[i] > 100 * Math.E).count();
+        assertThat(aboveOneSigma / (double) DRAWS).isCloseTo(0.16, within(0.02));
+    }
+
+    @Test
+    void sampleLatency_whenPareto_shouldStartAtTheMinimumAndBeCappedByTheMax() {
+        LoadProfile profile = profile(LoadProfile.Distribution.PARETO, 100, 1000);
+        profile.setParetoAlpha(1.0);
+
+        long[] millis = draw(profile);
+
+        assertThat(millis[0]).isGreaterThanOrEqualTo(100);
+        // P(X > x) = (min / x)^alpha, so with alpha 1 half are above twice the minimum
+        assertThat(median(millis)).isCloseTo(200, within(10.0));
+        assertThat(millis[DRAWS - 1]).isEqualTo(1000);
+    }
+
+    @Test
+    void sizeCost_shouldAddTheCostPerMib() {
+        LoadProfile profile = LoadProfile.fixed(0);
+        profile.setPerMibMs(10);
+
+        assertThat(profile.sizeCost(2 * 1024 * 1024)).isEqualTo(Duration.ofMillis(20));
+        assertThat(profile.sizeCost(512 * 1024)).isEqualTo(Duration.ofMillis(5));
+    }
+
+    private static LoadProfile profile(LoadProfile.Distribution distribution, long latencyMs, long latencyMaxMs) {
+        LoadProfile profile = new LoadProfile();
+        profile.setDistribution(distribution);
+        profile.setLatencyMs(latencyMs);
+        profile.setLatencyMaxMs(latencyMaxMs);
+        return profile;
+    }
+
+    /**
+     * Draws latencies in milliseconds, sorted.
+     */
+    private static long[] draw(LoadProfile profile) {
+        // A fixed seed keeps the test repeatable
+        Random random = new Random(42);
+        return IntStream.range(0, DRAWS)
+                .mapToLong(i -> profile.sampleLatency(random).toMillis())
+                .sorted()
+                .toArray();
+    }
+
+    private static double median(long[] sorted) {
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,37 @@
+package io.filemanager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadSimulatorTest {
+
+    @Test
+    void admit_whenTheQueueIsFull_shouldAnswer503() {
+        // Arrange: one slot and no queue
+        LoadProfile profile = LoadProfile.fixed(0);
+        profile.setMaxConcurrency(1);
+        SimulatorProperties properties = new SimulatorProperties();
+        properties.setProfiles(Map.of("narrow", profile));
+        properties.setLoadProfile("narrow");
+        LoadSimulator simulator = new LoadSimulator(properties, 0);
+        Sinks.One<ResponseEntity<String>> running = Sinks.one();
+        simulator.admit("narrow", running::asMono).subscribe();
+
+        // Act & Assert
+        StepVerifier.create(simulator.admit("narrow", () -> Mono.just(ResponseEntity.ok("second"))))
+                .assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE))
+                .verifyComplete();
+        SimulatorStats.Snapshot stats = simulator.stats();
+        assertThat(stats.requests()).isEqualTo(2);
+        assertThat(stats.rejected()).isEqualTo(1);
+        assertThat(stats.active()).isEqualTo(1);
+    }
+}
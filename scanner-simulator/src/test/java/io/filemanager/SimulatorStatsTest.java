@@ -0,0 +1,82 @@
+package io.filemanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimulatorStatsTest {
+
+    private final SimulatorStats stats = new SimulatorStats();
+
+    @Test
+    void snapshot_shouldTakeThePercentilesByNearestRank() {
+        // Arrange: 1 to 100 ms, in no particular order
+        for (int ms = 100; ms >= 1; ms -= 2) {
+            stats.recordLatency(Duration.ofMillis(ms).toNanos());
+        }
+        for (int ms = 1; ms <= 99; ms += 2) {
+            stats.recordLatency(Duration.ofMillis(ms).toNanos());
+        }
+
+        // Act
+        SimulatorStats.Snapshot snapshot = stats.snapshot("default", 0, 0);
+
+        // Assert
+        assertThat(snapshot.p50Ms()).isEqualTo(50.0);
+        assertThat(snapshot.p95Ms()).isEqualTo(95.0);
+        assertThat(snapshot.p99Ms()).isEqualTo(99.0);
+        assertThat(snapshot.maxMs()).isEqualTo(100.0);
+    }
+
+    @Test
+    void snapshot_withOneSample_shouldUseItForAllPercentiles() {
+        stats.recordLatency(Duration.ofMillis(7).toNanos());
+
+        SimulatorStats.Snapshot snapshot = stats.snapshot("default", 0, 0);
+
+        assertThat(snapshot.p50Ms()).isEqualTo(7.0);
+        assertThat(snapshot.p99Ms()).isEqualTo(7.0);
+        assertThat(snapshot.maxMs()).isEqualTo(7.0);
+    }
+
+    @Test
+    void snapshot_withoutSamples_shouldGiveZero() {
+        SimulatorStats.Snapshot snapshot = stats.snapshot("default", 0, 0);
+
+        assertThat(snapshot.p50Ms()).isZero();
+        assertThat(snapshot.maxMs()).isZero();
+    }
+
+    @Test
+    void snapshot_shouldOnlyCoverTheMostRecentSamples() {
+        // Arrange: a slow start, then enough fast scans to push it out of the window
+        for (int i = 0; i < 8192; i++) {
+            stats.recordLatency(Duration.ofSeconds(1).toNanos());
+        }
+        for (int i = 0; i < 8192; i++) {
+            stats.recordLatency(Duration.ofMillis(2).toNanos());
+        }
+
+        // Act & Assert
+        assertThat(stats.snapshot("default", 0, 0).maxMs()).isEqualTo(2.0);
+    }
+
+    @Test
+    void reset_shouldDropSamplesAndCounters() {
+        // Arrange
+        stats.requests.incrementAndGet();
+        stats.rejected.incrementAndGet();
+        stats.recordLatency(Duration.ofMillis(5).toNanos());
+
+        // Act
+        stats.reset();
+
+        // Assert
+        SimulatorStats.Snapshot snapshot = stats.snapshot("default", 0, 0);
+        assertThat(snapshot.requests()).isZero();
+        assertThat(snapshot.rejected()).isZero();
+        assertThat(snapshot.maxMs()).isZero();
+    }
+}